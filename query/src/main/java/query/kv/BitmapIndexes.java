@@ -0,0 +1,196 @@
+package query.kv;
+
+import org.roaringbitmap.RoaringBitmap;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/*
+    Bitmaps of bitmap indexes of table ( TableInfo.bitmapIndex ) as kept by writers. Row gets ordinal when its PK is
+    first written and keeps it till row is deleted, ordinal of deleted row is not given again while table is open.
+    Bit of row is set in bitmap of its value in every bitmap index.
+
+    Table stores bitmaps where its reads find them, bitmaps changed since last flush are handed to table by flush.
+    Table that stores bytes of bitmaps flushes chunks of CHUNK_BITS low bits of ordinal, so write stores only chunks
+    it changed and not whole bitmap of value.
+    Methods are synchronized, table holds lock of this object when bitmaps must be stored in order of changes.
+
+    Ordinal of every PK is kept on heap, about 100 bytes of row with short PK, so table with bitmap index is meant for
+    rows in millions and not billions.
+ */
+public final class BitmapIndexes<Row_Type> {
+
+    // Chunk has 65536 ordinals like container of roaring bitmap
+    public static final int CHUNK_BITS = 16;
+
+    private final Map<String, Function<Row_Type, String>> indexes;
+    private final Map<String, Integer> ordinals = new HashMap<>();
+    // Index -> value -> ordinals of rows of value
+    private final Map<String, Map<String, RoaringBitmap>> bitmaps = new HashMap<>();
+    // Index -> value -> chunks changed since last flush
+    private final Map<String, Map<String, Set<Integer>>> changed = new HashMap<>();
+    private int nextOrdinal;
+
+    public BitmapIndexes(Map<String, Function<Row_Type, String>> indexes) {
+        this.indexes = indexes;
+        for (String index : indexes.keySet()) {
+            bitmaps.put(index, new HashMap<>());
+            changed.put(index, new HashMap<>());
+        }
+    }
+
+    public boolean isEmpty() {
+        return indexes.isEmpty();
+    }
+
+    /*
+        Sets bit of row in bitmap of its value and clears it in bitmaps of other values, so row written again moves
+        to its new value. Copy on write changes copy of bitmap, so bitmap handed out by flush is never changed.
+     */
+    public synchronized int set(String pk, Row_Type row, boolean copyOnWrite) {
+        Integer existing = ordinals.get(pk);
+        int ordinal = existing == null ? newOrdinal(pk) : existing;
+        for (Map.Entry<String, Function<Row_Type, String>> index : indexes.entrySet()) {
+            String value = index.getValue().apply(row);
+            Map<String, RoaringBitmap> values = bitmaps.get(index.getKey());
+            if (existing != null) {
+                for (String other : new ArrayList<>(values.keySet())) {
+                    if (!other.equals(value) && values.get(other).contains(ordinal)) {
+                        change(index.getKey(), other, ordinal, copyOnWrite).remove(ordinal);
+                    }
+                }
+            }
+            RoaringBitmap bitmap = values.get(value);
+            if (bitmap == null || !bitmap.contains(ordinal)) {
+                change(index.getKey(), value, ordinal, copyOnWrite).add(ordinal);
+            }
+        }
+        return ordinal;
+    }
+
+    // Ordinal of deleted row, null when PK has no row
+    public synchronized Integer clear(String pk, boolean copyOnWrite) {
+        Integer ordinal = ordinals.remove(pk);
+        if (ordinal == null) {
+            return null;
+        }
+        bitmaps.forEach((index, values) -> {
+            for (String value : new ArrayList<>(values.keySet())) {
+                if (values.get(value).contains(ordinal)) {
+                    change(index, value, ordinal, copyOnWrite).remove(ordinal);
+                }
+            }
+        });
+        return ordinal;
+    }
+
+    // Bitmaps changed since last flush, bitmap is empty when no row has value any more
+    public synchronized void flush(Changed consumer) {
+        changed.forEach((index, values) -> {
+            Map<String, RoaringBitmap> indexBitmaps = bitmaps.get(index);
+            for (String value : values.keySet()) {
+                RoaringBitmap bitmap = indexBitmaps.get(value);
+                consumer.accept(index, value, bitmap);
+                if (bitmap.isEmpty()) {
+                    indexBitmaps.remove(value);
+                }
+            }
+            values.clear();
+        });
+    }
+
+    // Copies of chunks changed since last flush, chunk is empty when no row of chunk has value any more
+    public synchronized void flushChunks(ChangedChunk consumer) {
+        changed.forEach((index, values) -> {
+            Map<String, RoaringBitmap> indexBitmaps = bitmaps.get(index);
+            values.forEach((value, chunks) -> {
+                RoaringBitmap bitmap = indexBitmaps.get(value);
+                for (int chunk : chunks) {
+                    RoaringBitmap range = new RoaringBitmap();
+                    range.add((long) chunk << CHUNK_BITS, (long) (chunk + 1) << CHUNK_BITS);
+                    consumer.accept(index, value, chunk, RoaringBitmap.and(bitmap, range));
+                }
+                if (bitmap.isEmpty()) {
+                    indexBitmaps.remove(value);
+                }
+            });
+            values.clear();
+        });
+    }
+
+    // Ordinals & bitmaps of rows already in store, given when table is opened
+    public synchronized void load(String pk, int ordinal) {
+        ordinals.put(pk, ordinal);
+        nextOrdinal = Math.max(nextOrdinal, ordinal + 1);
+    }
+
+    public synchronized void load(String index, String value, RoaringBitmap bitmap) {
+        bitmaps.get(index).put(value, bitmap);
+    }
+
+    public static int chunk(int ordinal) {
+        return ordinal >>> CHUNK_BITS;
+    }
+
+    // Bitmap is run optimized before it is written, so it must not be bitmap still changed by writers
+    public static byte[] toBytes(RoaringBitmap bitmap) {
+        bitmap.runOptimize();
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(bitmap.serializedSizeInBytes());
+            bitmap.serialize(new DataOutputStream(bytes));
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public static RoaringBitmap fromBytes(byte[] bytes) {
+        RoaringBitmap bitmap = new RoaringBitmap();
+        try {
+            bitmap.deserialize(new DataInputStream(new ByteArrayInputStream(bytes)));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return bitmap;
+    }
+
+    private int newOrdinal(String pk) {
+        int ordinal = nextOrdinal++;
+        ordinals.put(pk, ordinal);
+        return ordinal;
+    }
+
+    // Bitmap is copied once per flush, new bitmap is not handed out yet so it needs no copy
+    private RoaringBitmap change(String index, String value, int ordinal, boolean copyOnWrite) {
+        Map<String, RoaringBitmap> values = bitmaps.get(index);
+        RoaringBitmap bitmap = values.get(value);
+        Map<String, Set<Integer>> changedValues = changed.get(index);
+        boolean first = !changedValues.containsKey(value);
+        changedValues.computeIfAbsent(value, $ -> new HashSet<>()).add(chunk(ordinal));
+        if (bitmap == null) {
+            bitmap = new RoaringBitmap();
+            values.put(value, bitmap);
+        } else if (first && copyOnWrite) {
+            bitmap = bitmap.clone();
+            values.put(value, bitmap);
+        }
+        return bitmap;
+    }
+
+    public interface Changed {
+        void accept(String index, String value, RoaringBitmap bitmap);
+    }
+
+    public interface ChangedChunk {
+        void accept(String index, String value, int chunk, RoaringBitmap bitmap);
+    }
+}
@@ -0,0 +1,95 @@
+package query.kv;
+
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToLongFunction;
+
+/*
+    Column of table resolved once per query, reads need no schema lookup by name.
+    Long & double columns declared on TableInfo are read as primitives, other columns are read by schema function.
+    Row can be CoveredRow of covering index search, then value is read from covered columns.
+ */
+public final class ColumnReader {
+
+    private final String name;
+    private final Function<Object, Object> value;
+    private final ToLongFunction<Object> longValue;
+    private final ToDoubleFunction<Object> doubleValue;
+
+    private ColumnReader(String name, Function<Object, Object> value, ToLongFunction<Object> longValue, ToDoubleFunction<Object> doubleValue) {
+        this.name = name;
+        this.value = value;
+        this.longValue = longValue;
+        this.doubleValue = doubleValue;
+    }
+
+    // Rows given to reader are rows of table, so cast to Row_Type is safe
+    @SuppressWarnings("unchecked")
+    public static <Row_Type> ColumnReader of(TableInfo<Row_Type> tableInfo, String col) {
+        String name = col.toLowerCase();
+        Function<Row_Type, Object> value = tableInfo.getSchema().getOrDefault(col, tableInfo.getSchema().get(name));
+        if (value == null) {
+            throw new IllegalArgumentException(String.format("Column %s is not in schema of %s", col, tableInfo.getTableName()));
+        }
+        ToLongFunction<Row_Type> longValue = tableInfo.getLongColumn(name);
+        ToDoubleFunction<Row_Type> doubleValue = tableInfo.getDoubleColumn(name);
+        return new ColumnReader(name,
+                row -> value.apply((Row_Type) row),
+                longValue == null ? null : row -> longValue.applyAsLong((Row_Type) row),
+                doubleValue == null ? null : row -> doubleValue.applyAsDouble((Row_Type) row));
+    }
+
+    // Column of table that only has columnValue, every read goes to table
+    public static ColumnReader of(SSTable<?> table, String col) {
+        return of(col, row -> table.columnValue(col, row));
+    }
+
+    public static ColumnReader of(String col, Function<Object, Object> value) {
+        return new ColumnReader(col.toLowerCase(), value, null, null);
+    }
+
+    // Column of one part of row, like one table of joined row, typed reads stay primitive
+    public ColumnReader part(String col, Function<Object, Object> part) {
+        return new ColumnReader(col.toLowerCase(), row -> value(part.apply(row)),
+                longValue == null ? null : row -> longValue(part.apply(row)),
+                doubleValue == null ? null : row -> doubleValue(part.apply(row)));
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public boolean isLong() {
+        return longValue != null;
+    }
+
+    public boolean isDouble() {
+        return doubleValue != null;
+    }
+
+    public Object value(Object row) {
+        if (row instanceof CoveredRow) {
+            return ((CoveredRow) row).get(name);
+        }
+        return value.apply(row);
+    }
+
+    public long longValue(Object row) {
+        if (longValue != null && !(row instanceof CoveredRow)) {
+            return longValue.applyAsLong(row);
+        }
+        return ((Number) value(row)).longValue();
+    }
+
+    public double doubleValue(Object row) {
+        if (doubleValue != null && !(row instanceof CoveredRow)) {
+            return doubleValue.applyAsDouble(row);
+        }
+        return ((Number) value(row)).doubleValue();
+    }
+
+    @Override
+    public String toString() {
+        return "ColumnReader{" + name + (isLong() ? ", long" : isDouble() ? ", double" : "") + '}';
+    }
+}
@@ -0,0 +1,104 @@
+package query.kv;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+/*
+    Index on ordered list of schema columns. Index value is every column value encoded in order preserving form and
+    joined by SEPARATOR, so keys sort by first column, then second column and so on.
+
+        Numbers -> sortable long bits of double as 16 hex chars
+        Others  -> string, chars up to ESCAPE are escaped so SEPARATOR sorts before any char
+
+    Numbers of any type are encoded as double, TableInfo gives only long & double columns as numbers. Longs above 2^53
+    can share index value, order is still kept and caller rechecks rows.
+
+    Equality on leading columns is prefix search on prefix(values), range on next column is rangeSearch from
+    prefix(values + low) till upperBound(prefix(values) + encode(high)).
+ */
+public final class CompositeIndex<Row_Type> implements Function<Row_Type, String> {
+
+    public static final char SEPARATOR = '\u0001';
+    private static final char ESCAPE = '\u0002';
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final List<String> columns;
+    private final List<Function<Row_Type, Object>> values;
+
+    public CompositeIndex(List<String> columns, List<Function<Row_Type, Object>> values) {
+        if (columns.isEmpty() || columns.size() != values.size()) {
+            throw new IllegalArgumentException("Composite index needs value function for every column " + columns);
+        }
+        this.columns = Collections.unmodifiableList(new ArrayList<>(columns));
+        this.values = new ArrayList<>(values);
+    }
+
+    public List<String> columns() {
+        return columns;
+    }
+
+    @Override
+    public String apply(Row_Type row) {
+        StringBuilder value = new StringBuilder();
+        for (int index = 0; index < values.size(); index++) {
+            if (index > 0) {
+                value.append(SEPARATOR);
+            }
+            encode(values.get(index).apply(row), value);
+        }
+        return value.toString();
+    }
+
+    // Index value prefix of rows whose leading columns are equal to values
+    public static String prefix(List<?> values) {
+        StringBuilder prefix = new StringBuilder();
+        for (Object value : values) {
+            encode(value, prefix);
+            prefix.append(SEPARATOR);
+        }
+        return prefix.toString();
+    }
+
+    // Smallest value above every index value that starts with encoded, encoded chars are never below ESCAPE
+    public static String upperBound(String encoded) {
+        return encoded + ESCAPE;
+    }
+
+    public static String encode(Object value) {
+        StringBuilder encoded = new StringBuilder();
+        encode(value, encoded);
+        return encoded.toString();
+    }
+
+    // Null is encoded same as empty string
+    private static void encode(Object value, StringBuilder out) {
+        if (value instanceof Number) {
+            double number = ((Number) value).doubleValue();
+            // -0.0 is same value as 0.0
+            long bits = Double.doubleToLongBits(number == 0 ? 0.0 : number);
+            hex(bits < 0 ? ~bits : bits ^ Long.MIN_VALUE, out);
+        } else if (value != null) {
+            String text = value.toString();
+            for (int index = 0; index < text.length(); index++) {
+                char c = text.charAt(index);
+                if (c <= ESCAPE) {
+                    out.append(ESCAPE);
+                }
+                out.append(c);
+            }
+        }
+    }
+
+    private static void hex(long value, StringBuilder out) {
+        for (int shift = 60; shift >= 0; shift -= 4) {
+            out.append(HEX[(int) (value >>> shift) & 0xF]);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "CompositeIndex" + columns;
+    }
+}
@@ -0,0 +1,26 @@
+package query.kv;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/*
+    Subset of row columns read from covering index entry. Column names are case insensitive like SQL columns.
+ */
+public final class CoveredRow {
+
+    private final Map<String, Object> values = new HashMap<>();
+
+    public CoveredRow put(String col, Object value) {
+        values.put(col.toLowerCase(), value);
+        return this;
+    }
+
+    public Object get(String col) {
+        return values.get(col.toLowerCase());
+    }
+
+    @Override
+    public String toString() {
+        return "CoveredRow" + values;
+    }
+}
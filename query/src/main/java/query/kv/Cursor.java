@@ -0,0 +1,24 @@
+package query.kv;
+
+import java.util.Iterator;
+import java.util.List;
+
+/*
+    Pull based result of scan/search. Rows are read from storage as cursor moves, so large result is streamed in
+    bounded memory. Continuation token encodes key of last returned row, cursor opened later can seek to it and
+    continue with next row.
+ */
+public interface Cursor<T> extends Iterator<T>, AutoCloseable {
+
+    // Up to batchSize rows, fewer rows only at end of cursor
+    List<T> next(int batchSize);
+
+    // Moves cursor after row of token, next row returned is the one that followed token row
+    void seek(String continuationToken);
+
+    // Token of last returned row, null when no row is returned yet
+    String continuationToken();
+
+    @Override
+    void close();
+}
@@ -0,0 +1,123 @@
+package query.kv;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+
+import static query.kv.KeyCodec.*;
+
+/*
+    Growable byte buffer to build keys in KeyCodec format. Strings are utf8 encoded char by char, so building key
+    does not create temporary String or byte[]. Buffer can be reused by calling reset, only toBytes allocates.
+ */
+public final class KeyBuffer {
+
+    private byte[] buffer;
+    private int length;
+
+    public KeyBuffer() {
+        this(64);
+    }
+
+    public KeyBuffer(int capacity) {
+        this.buffer = new byte[capacity];
+    }
+
+    public KeyBuffer reset() {
+        length = 0;
+        return this;
+    }
+
+    public KeyBuffer segment(String name) {
+        int start = length;
+        writeByte(0);
+        utf8(name, false);
+        int segmentLength = length - start - 1;
+        if (segmentLength > MAX_SEGMENT_LENGTH) {
+            throw new IllegalArgumentException(String.format("Key segment %s is longer than %s bytes", name, MAX_SEGMENT_LENGTH));
+        }
+        buffer[start] = (byte) segmentLength;
+        return this;
+    }
+
+    public KeyBuffer value(String value) {
+        utf8(value, true);
+        return this;
+    }
+
+    public KeyBuffer terminator() {
+        writeByte(ESCAPE);
+        writeByte(TERMINATOR);
+        return this;
+    }
+
+    public KeyBuffer longValue(long value) {
+        long flipped = value ^ Long.MIN_VALUE;
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            writeByte((int) (flipped >>> shift));
+        }
+        return this;
+    }
+
+    public KeyBuffer intValue(int value) {
+        int flipped = value ^ Integer.MIN_VALUE;
+        for (int shift = 24; shift >= 0; shift -= 8) {
+            writeByte(flipped >>> shift);
+        }
+        return this;
+    }
+
+    public KeyBuffer dateValue(LocalDate value) {
+        return longValue(value.toEpochDay());
+    }
+
+    public KeyBuffer bytes(byte[] value) {
+        ensureCapacity(value.length);
+        System.arraycopy(value, 0, buffer, length, value.length);
+        length += value.length;
+        return this;
+    }
+
+    public int length() {
+        return length;
+    }
+
+    public byte[] toBytes() {
+        return Arrays.copyOf(buffer, length);
+    }
+
+    private void utf8(String value, boolean escape) {
+        for (int index = 0; index < value.length(); index++) {
+            char c = value.charAt(index);
+            if (c == 0 && escape) {
+                writeByte(ESCAPE);
+                writeByte(ESCAPED_ZERO);
+            } else if (c < 0x80) {
+                writeByte(c);
+            } else if (c < 0x800) {
+                writeByte(0xC0 | (c >> 6));
+                writeByte(0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && index + 1 < value.length() && Character.isLowSurrogate(value.charAt(index + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++index));
+                writeByte(0xF0 | (codePoint >> 18));
+                writeByte(0x80 | ((codePoint >> 12) & 0x3F));
+                writeByte(0x80 | ((codePoint >> 6) & 0x3F));
+                writeByte(0x80 | (codePoint & 0x3F));
+            } else {
+                writeByte(0xE0 | (c >> 12));
+                writeByte(0x80 | ((c >> 6) & 0x3F));
+                writeByte(0x80 | (c & 0x3F));
+            }
+        }
+    }
+
+    private void writeByte(int value) {
+        ensureCapacity(1);
+        buffer[length++] = (byte) value;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (length + extra > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + extra));
+        }
+    }
+}
@@ -1,5 +1,8 @@
 package query.kv;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 /*
 
     Key is stored in SortedMap for efficient range scan
@@ -26,23 +29,73 @@ package query.kv;
         orders/co/100#1/1 -> 1
         orders/co/100#2/2 -> 2
         orders/co/101#3/3 -> 3
+
+   Bitmap: By Status, row ordinal -> PK key. Bitmap of sorted key store is stored in chunks of 65536 ordinals
+        orders/#bitmap:status/SHIPPED -> serialized bitmap of row ordinals
+        orders/#bitmap:status/SHIPPED/0 -> serialized bitmap of ordinals 0 to 65535
+        orders/#ordinal/7 -> orders/pk/1
+
+    Keys are binary encoded by KeyCodec , '/' above is only for readability.
+    Each thread builds key in its own reusable KeyBuffer, so only final key byte[] is allocated.
  */
 public class KeyBuilder {
+    public static final String PK_INDEX = "pk";
+    public static final String ORDINAL_INDEX = "#ordinal";
+    private static final String BITMAP_PREFIX = "#bitmap:";
+
     final String tableName;
+    private final Map<String, byte[]> indexPrefix = new ConcurrentHashMap<>();
+    private final ThreadLocal<KeyBuffer> buffers = ThreadLocal.withInitial(KeyBuffer::new);
 
     public KeyBuilder(String tableName) {
         this.tableName = tableName;
     }
 
-    public String secondaryIndexKey(String indexName, String indexValue, String rowKey) {
-        return String.format("%s/%s/%s/%s", tableName, indexName, indexValue, rowKey);
+    public byte[] secondaryIndexKey(String indexName, String indexValue, String rowKey) {
+        return buffer(indexName)
+                .value(indexValue)
+                .terminator()
+                .value(rowKey)
+                .toBytes();
+    }
+
+    public byte[] searchKey(String indexName, String indexValue) {
+        return buffer(indexName)
+                .value(indexValue)
+                .toBytes();
+    }
+
+    public byte[] primaryKey(String rowKey) {
+        return searchKey(PK_INDEX, rowKey);
+    }
+
+    public byte[] primaryKey() {
+        return indexKey(PK_INDEX);
+    }
+
+    public byte[] bitmapKey(String indexName, String indexValue) {
+        return searchKey(BITMAP_PREFIX + indexName, indexValue);
+    }
+
+    public byte[] bitmapKey(String indexName, String indexValue, int chunk) {
+        return secondaryIndexKey(BITMAP_PREFIX + indexName, indexValue, Integer.toString(chunk));
+    }
+
+    public byte[] bitmapKey(String indexName) {
+        return indexKey(BITMAP_PREFIX + indexName);
+    }
+
+    public byte[] ordinalKey(int ordinal) {
+        return searchKey(ORDINAL_INDEX, Integer.toString(ordinal));
     }
 
-    public String searchKey(String indexName, String indexValue) {
-        return String.format("%s/%s/%s", tableName, indexName, indexValue);
+    public byte[] indexKey(String indexName) {
+        return indexPrefix.computeIfAbsent(indexName, name -> new KeyBuffer().segment(tableName).segment(name).toBytes());
     }
 
-    public String primaryKey() {
-        return String.format("%s/%s", tableName, "pk");
+    private KeyBuffer buffer(String indexName) {
+        return buffers.get()
+                .reset()
+                .bytes(indexKey(indexName));
     }
 }
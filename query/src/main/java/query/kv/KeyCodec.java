@@ -0,0 +1,153 @@
+package query.kv;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/*
+    Binary key format. Keys are compared as unsigned bytes, which is the default ordering of RocksDB and MVStore byte[] keys.
+
+    Key : [table segment][index segment][index value][terminator][rowId]
+
+        segment   -> 1 byte length + utf8 bytes. Table & index must match exactly so length prefix is fine.
+        value     -> utf8 bytes with 0x00 escaped as 0x00 0xFF. No length prefix so partial value works as prefix search
+        terminator-> 0x00 0x01 , sorts before any escaped value byte so 'A' < 'A#1' < 'AB'
+        rowId     -> escaped utf8 bytes
+
+    Numbers are written big endian with sign bit flipped, so byte order is same as numeric order.
+    Dates are written as epoch day.
+ */
+public final class KeyCodec {
+
+    public static final byte ESCAPE = 0x00;
+    public static final byte ESCAPED_ZERO = (byte) 0xFF;
+    public static final byte TERMINATOR = 0x01;
+    public static final int MAX_SEGMENT_LENGTH = 255;
+
+    public static final Comparator<byte[]> KEY_ORDER = KeyCodec::compare;
+
+    private KeyCodec() {
+    }
+
+    public static int compare(byte[] left, byte[] right) {
+        return compare(left, 0, left.length, right, 0, right.length);
+    }
+
+    public static int compare(byte[] left, int leftOffset, int leftLength, byte[] right, int rightOffset, int rightLength) {
+        int length = Math.min(leftLength, rightLength);
+        for (int index = 0; index < length; index++) {
+            int l = left[leftOffset + index] & 0xFF;
+            int r = right[rightOffset + index] & 0xFF;
+            if (l != r) {
+                return l - r;
+            }
+        }
+        return leftLength - rightLength;
+    }
+
+    // key is read from position to limit, buffer position is not changed
+    public static int compare(ByteBuffer key, byte[] right) {
+        int start = key.position();
+        int keyLength = key.remaining();
+        int length = Math.min(keyLength, right.length);
+        for (int index = 0; index < length; index++) {
+            int l = key.get(start + index) & 0xFF;
+            int r = right[index] & 0xFF;
+            if (l != r) {
+                return l - r;
+            }
+        }
+        return keyLength - right.length;
+    }
+
+    public static boolean startsWith(byte[] key, byte[] prefix) {
+        return key.length >= prefix.length && compare(key, 0, prefix.length, prefix, 0, prefix.length) == 0;
+    }
+
+    public static boolean startsWith(ByteBuffer key, byte[] prefix) {
+        if (key.remaining() < prefix.length) {
+            return false;
+        }
+        int start = key.position();
+        for (int index = 0; index < prefix.length; index++) {
+            if (key.get(start + index) != prefix[index]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /*
+        Smallest key that is greater than every key starting with prefix, null when no such key exists ( all 0xFF )
+     */
+    public static byte[] prefixUpperBound(byte[] prefix) {
+        for (int index = prefix.length - 1; index >= 0; index--) {
+            if (prefix[index] != (byte) 0xFF) {
+                byte[] bound = Arrays.copyOf(prefix, index + 1);
+                bound[index]++;
+                return bound;
+            }
+        }
+        return null;
+    }
+
+    // Smallest key that is greater than key
+    public static byte[] successor(byte[] key) {
+        return Arrays.copyOf(key, key.length + 1);
+    }
+
+    public static byte[] encodeString(String value) {
+        return new KeyBuffer().value(value).toBytes();
+    }
+
+    public static byte[] encodeLong(long value) {
+        return new KeyBuffer().longValue(value).toBytes();
+    }
+
+    public static byte[] encodeInt(int value) {
+        return new KeyBuffer().intValue(value).toBytes();
+    }
+
+    public static byte[] encodeDate(LocalDate value) {
+        return new KeyBuffer().dateValue(value).toBytes();
+    }
+
+    public static long decodeLong(byte[] key, int offset) {
+        long value = 0;
+        for (int index = 0; index < Long.BYTES; index++) {
+            value = (value << 8) | (key[offset + index] & 0xFF);
+        }
+        return value ^ Long.MIN_VALUE;
+    }
+
+    public static int decodeInt(byte[] key, int offset) {
+        int value = 0;
+        for (int index = 0; index < Integer.BYTES; index++) {
+            value = (value << 8) | (key[offset + index] & 0xFF);
+        }
+        return value ^ Integer.MIN_VALUE;
+    }
+
+    public static LocalDate decodeDate(byte[] key, int offset) {
+        return LocalDate.ofEpochDay(decodeLong(key, offset));
+    }
+
+    // Escaped value starting at offset, up to terminator or end of key
+    public static String decodeValue(byte[] key, int offset) {
+        byte[] value = new byte[key.length - offset];
+        int length = 0;
+        for (int index = offset; index < key.length; index++) {
+            if (key[index] == ESCAPE && index + 1 < key.length) {
+                if (key[++index] == TERMINATOR) {
+                    break;
+                }
+                value[length++] = 0;
+            } else {
+                value[length++] = key[index];
+            }
+        }
+        return new String(value, 0, length, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,98 @@
+package query.kv;
+
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/*
+    Cursor over key range [fromKey, toKey) of sorted key space, toKey null means no upper bound.
+    Token is base64 of last returned key, so it is opaque to client and is checked to be in cursor range on seek.
+    Entries whose row is not found ( e.g. index entry of deleted row ) are skipped.
+ */
+public abstract class KeyRangeCursor<T> implements Cursor<T> {
+
+    private final byte[] fromKey;
+    private final byte[] toKey;
+    private boolean positioned;
+    private boolean fetched;
+    private byte[] nextKey;
+    private T nextRow;
+    private byte[] lastKey;
+
+    protected KeyRangeCursor(byte[] fromKey, byte[] toKey) {
+        this.fromKey = fromKey;
+        this.toKey = toKey;
+    }
+
+    // Next advance moves to first key >= key
+    protected abstract void seekTo(byte[] key);
+
+    // Moves to next entry, false at end of data
+    protected abstract boolean advance();
+
+    protected abstract byte[] key();
+
+    // Row of current entry, null to skip entry
+    protected abstract T row();
+
+    @Override
+    public boolean hasNext() {
+        if (!positioned) {
+            seekTo(fromKey);
+            positioned = true;
+        }
+        while (!fetched) {
+            if (!advance() || (toKey != null && KeyCodec.compare(key(), toKey) >= 0)) {
+                nextKey = null;
+                fetched = true;
+            } else {
+                T row = row();
+                if (row != null) {
+                    nextKey = key();
+                    nextRow = row;
+                    fetched = true;
+                }
+            }
+        }
+        return nextKey != null;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        T row = nextRow;
+        lastKey = nextKey;
+        fetched = false;
+        nextRow = null;
+        return row;
+    }
+
+    @Override
+    public List<T> next(int batchSize) {
+        List<T> rows = new ArrayList<>(Math.min(batchSize, 1024));
+        while (rows.size() < batchSize && hasNext()) {
+            rows.add(next());
+        }
+        return rows;
+    }
+
+    @Override
+    public void seek(String continuationToken) {
+        byte[] key = Base64.getUrlDecoder().decode(continuationToken);
+        if (KeyCodec.compare(key, fromKey) < 0 || (toKey != null && KeyCodec.compare(key, toKey) >= 0)) {
+            throw new IllegalArgumentException("Continuation token is not of this cursor - " + continuationToken);
+        }
+        seekTo(KeyCodec.successor(key));
+        positioned = true;
+        fetched = false;
+        lastKey = key;
+    }
+
+    @Override
+    public String continuationToken() {
+        return lastKey == null ? null : Base64.getUrlEncoder().withoutPadding().encodeToString(lastKey);
+    }
+}
@@ -1,6 +1,11 @@
 package query.kv;
 
+import query.kv.codec.RowCodec;
+import query.kv.memory.DurableInMemoryStore;
 import query.kv.memory.InMemoryStore;
+import query.kv.memory.offheap.OffHeapStore;
+import query.kv.memory.wal.Durability;
+import query.kv.persistent.lsm.LsmStore;
 import query.kv.persistent.mvstore.H2MVStore;
 import query.kv.persistent.rocks.RocksStore;
 
@@ -11,25 +16,43 @@ import static java.util.Arrays.stream;
 public class KeyValueFactory {
 
     public static KeyValueStore create(String file, boolean reset) {
+        return create(file, reset, RowCodec.json());
+    }
+
+    /*
+        Codec factory is used by persistent & durable in memory stores, plain in memory store keeps row object as is.
+     */
+    public static KeyValueStore create(String file, boolean reset, RowCodec.Factory codecFactory) {
         System.out.println("Creating @ " + file);
 
         if (file.startsWith(InMemoryStore.type)) {
-            return new InMemoryStore();
+            return new InMemoryStore(codecFactory);
+        } else if (file.startsWith(DurableInMemoryStore.type)) {
+            File location = new File(file.replace(DurableInMemoryStore.type, ""));
+            resetFolder(reset, location);
+            return new DurableInMemoryStore(location, Durability.syncEveryBatch(), codecFactory);
+        } else if (file.startsWith(OffHeapStore.type)) {
+            String folder = file.replace(OffHeapStore.type, "");
+            return folder.isEmpty() ? new OffHeapStore(codecFactory) : new OffHeapStore(new File(folder), codecFactory);
         } else if (file.startsWith(H2MVStore.type)) {
             File location = new File(file.replace(H2MVStore.type, ""));
             resetH2(reset, location);
-            return new H2MVStore(location);
+            return new H2MVStore(location, codecFactory);
         } else if (file.startsWith(RocksStore.type)) {
             File location = new File(file.replace(RocksStore.type, ""));
-            resetRocks(reset, location);
-            return new RocksStore(location);
+            resetFolder(reset, location);
+            return new RocksStore(location, codecFactory);
+        } else if (file.startsWith(LsmStore.type)) {
+            File location = new File(file.replace(LsmStore.type, ""));
+            resetFolder(reset, location);
+            return new LsmStore(location, codecFactory);
         }
 
         return null;
     }
 
-    private static void resetRocks(boolean reset, File location) {
-        if (reset) {
+    private static void resetFolder(boolean reset, File location) {
+        if (reset && location.exists()) {
             stream(location.listFiles())
                     .filter(File::exists)
                     .forEach(File::delete);
@@ -1,5 +1,7 @@
 package query.kv;
 
+import query.sql.PreparedQuery;
+import query.sql.QueryCache;
 import query.sql.SqlAPI;
 import query.sql.SqlAPI.RowValue;
 
@@ -25,7 +27,23 @@ public interface KeyValueStore {
 
     <Row_Type> SSTable<Row_Type> table(String tableName);
 
+    // Consistent view of table rows & index entries of all tables, writers are not blocked while view is open
+    ReadView snapshot();
+
     default void execute(String sql, Consumer<RowValue> consumer) {
         new SqlAPI(this).execute(sql, consumer);
     }
+
+    default void execute(String sql, ReadView view, Consumer<RowValue> consumer) {
+        new SqlAPI(this).execute(sql, view, consumer);
+    }
+
+    default PreparedQuery prepare(String sql) {
+        return new SqlAPI(this).prepare(sql);
+    }
+
+    // Parsed queries of store, null when store does not keep them
+    default QueryCache queryCache() {
+        return null;
+    }
 }
@@ -0,0 +1,83 @@
+package query.kv;
+
+import org.roaringbitmap.PeekableIntIterator;
+import org.roaringbitmap.RoaringBitmap;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/*
+    Cursor over rows of ordinals of bitmap, in ordinal order. Token is last returned ordinal.
+    Ordinal whose row is not found ( e.g. row deleted after bitmap was read ) is skipped.
+ */
+public abstract class OrdinalCursor<T> implements Cursor<T> {
+
+    private final RoaringBitmap ordinals;
+    private final PeekableIntIterator itr;
+    private T nextRow;
+    private int nextOrdinal;
+    private Integer lastOrdinal;
+
+    protected OrdinalCursor(RoaringBitmap ordinals) {
+        this.ordinals = ordinals;
+        this.itr = ordinals.getIntIterator();
+    }
+
+    // Null when ordinal has no row
+    protected abstract T row(int ordinal);
+
+    @Override
+    public boolean hasNext() {
+        while (nextRow == null && itr.hasNext()) {
+            nextOrdinal = itr.next();
+            nextRow = row(nextOrdinal);
+        }
+        return nextRow != null;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        T row = nextRow;
+        lastOrdinal = nextOrdinal;
+        nextRow = null;
+        return row;
+    }
+
+    @Override
+    public List<T> next(int batchSize) {
+        List<T> rows = new ArrayList<>(Math.min(batchSize, 1024));
+        while (rows.size() < batchSize && hasNext()) {
+            rows.add(next());
+        }
+        return rows;
+    }
+
+    @Override
+    public void seek(String continuationToken) {
+        int ordinal;
+        try {
+            ordinal = Integer.parseInt(continuationToken);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Continuation token is not of this cursor - " + continuationToken);
+        }
+        if (!ordinals.contains(ordinal)) {
+            throw new IllegalArgumentException("Continuation token is not of this cursor - " + continuationToken);
+        }
+        nextRow = null;
+        itr.advanceIfNeeded(ordinal + 1);
+        lastOrdinal = ordinal;
+    }
+
+    @Override
+    public String continuationToken() {
+        return lastOrdinal == null ? null : Integer.toString(lastOrdinal);
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,97 @@
+package query.kv;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/*
+    Runs partition scans on fork join pool and shares limit between them.
+    Partition scan stops reading as soon as offer returns false, so remaining partitions are cancelled early once limit is reached.
+    In batch mode every partition collects rows it read in batch of its own and hands over full batches,
+    scan stops once batch consumer returns false.
+ */
+public final class ParallelScan<Row_Type> {
+
+    private final Predicate<Row_Type> filter;
+    private final Consumer<Row_Type> consumer;
+    private final AtomicInteger remaining;
+    private final Predicate<List<Row_Type>> batches;
+    private final int batchSize;
+    private final List<Row_Type> batch;
+
+    private ParallelScan(Predicate<Row_Type> filter, Consumer<Row_Type> consumer, AtomicInteger remaining,
+                         Predicate<List<Row_Type>> batches, int batchSize) {
+        this.filter = filter;
+        this.consumer = consumer;
+        this.remaining = remaining;
+        this.batches = batches;
+        this.batchSize = batchSize;
+        this.batch = batches == null ? null : new ArrayList<>(batchSize);
+    }
+
+    // Returns false when limit is reached and partition should stop, rows rejected by filter do not count
+    public boolean offer(Row_Type row) {
+        if (batch != null) {
+            batch.add(row);
+            return batch.size() < batchSize ? !isDone() : flush();
+        }
+        if (!filter.test(row)) {
+            return !isDone();
+        }
+        if (remaining.getAndDecrement() <= 0) {
+            return false;
+        }
+        consumer.accept(row);
+        return remaining.get() > 0;
+    }
+
+    public boolean isDone() {
+        return remaining.get() <= 0;
+    }
+
+    private boolean flush() {
+        if (!batch.isEmpty() && !isDone() && !batches.test(batch)) {
+            remaining.set(0);
+        }
+        batch.clear();
+        return !isDone();
+    }
+
+    // Batch of partition is its own, row mode partitions share scan
+    private ParallelScan<Row_Type> partition() {
+        return batch == null ? this : new ParallelScan<>(filter, consumer, remaining, batches, batchSize);
+    }
+
+    public static <Row_Type> void run(List<Consumer<ParallelScan<Row_Type>>> partitions, Consumer<Row_Type> consumer, int limit) {
+        run(partitions, row -> true, consumer, limit);
+    }
+
+    public static <Row_Type> void run(List<Consumer<ParallelScan<Row_Type>>> partitions, Predicate<Row_Type> filter, Consumer<Row_Type> consumer, int limit) {
+        run(partitions, new ParallelScan<>(filter, consumer, new AtomicInteger(limit), null, 0));
+    }
+
+    public static <Row_Type> void runBatches(List<Consumer<ParallelScan<Row_Type>>> partitions, int batchSize, Predicate<List<Row_Type>> batches) {
+        run(partitions, new ParallelScan<>(row -> true, row -> {
+        }, new AtomicInteger(1), batches, batchSize));
+    }
+
+    private static <Row_Type> void run(List<Consumer<ParallelScan<Row_Type>>> partitions, ParallelScan<Row_Type> scan) {
+        List<ForkJoinTask<?>> tasks = new ArrayList<>(partitions.size());
+        for (Consumer<ParallelScan<Row_Type>> partition : partitions) {
+            tasks.add(ForkJoinPool.commonPool().submit(() -> {
+                ParallelScan<Row_Type> partitionScan = scan.partition();
+                if (!partitionScan.isDone()) {
+                    partition.accept(partitionScan);
+                    if (partitionScan.batch != null) {
+                        partitionScan.flush();
+                    }
+                }
+            }));
+        }
+        tasks.forEach(ForkJoinTask::join);
+    }
+}
@@ -0,0 +1,11 @@
+package query.kv;
+
+/*
+    Point in time view of all tables of store, reads through view do not see writes done after it was opened.
+    Tables are read through view using SSTable.at, view must be closed so engine can release old data.
+ */
+public interface ReadView extends AutoCloseable {
+
+    @Override
+    void close();
+}
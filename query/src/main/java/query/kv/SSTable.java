@@ -1,21 +1,78 @@
 package query.kv;
 
+import org.roaringbitmap.RoaringBitmap;
+import query.kv.stats.TableStats;
+
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.Predicate;
 
 /*
         Interface for LSM data structure.
  */
 
 public interface SSTable<T_TYPE> {
+
+    int DEFAULT_BATCH_SIZE = 1_000;
+
     List<String> cols();
 
     //Search functions
     void scan(Consumer<T_TYPE> consumer, int limit);
 
+    /*
+        Key space is split in parallelism ranges and ranges are scanned on fork join pool.
+        Consumer is called from many threads, limit is shared by all ranges.
+     */
+    default void parallelScan(int parallelism, Consumer<T_TYPE> consumer, int limit) {
+        scan(consumer, limit);
+    }
+
+    default void parallelScan(int parallelism, Consumer<T_TYPE> consumer) {
+        parallelScan(parallelism, consumer, Integer.MAX_VALUE);
+    }
+
+    // Filter runs on scan threads and only rows passing it count against limit
+    default void parallelScan(int parallelism, Predicate<T_TYPE> filter, Consumer<T_TYPE> consumer, int limit) {
+        try (Cursor<T_TYPE> rows = scanCursor()) {
+            for (int matched = 0; matched < limit && rows.hasNext(); ) {
+                T_TYPE row = rows.next();
+                if (filter.test(row)) {
+                    consumer.accept(row);
+                    matched++;
+                }
+            }
+        }
+    }
+
+    /*
+        Rows are read like parallel scan and handed over in batches, every batch has rows read by one scan thread.
+        Batch is reused once consumer returns, scan stops when consumer returns false.
+     */
+    default void parallelBatchScan(int parallelism, int batchSize, Predicate<List<T_TYPE>> batches) {
+        List<T_TYPE> batch = new ArrayList<>(batchSize);
+        try (Cursor<T_TYPE> rows = scanCursor()) {
+            while (rows.hasNext()) {
+                batch.add(rows.next());
+                if (batch.size() == batchSize) {
+                    if (!batches.test(batch)) {
+                        return;
+                    }
+                    batch.clear();
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            batches.test(batch);
+        }
+    }
+
     void search(String indexName, String searchValue, Consumer<T_TYPE> consumer, int limit);
 
     void search(String indexName, String searchValue, Collection<T_TYPE> container, int limit);
@@ -24,6 +81,78 @@ public interface SSTable<T_TYPE> {
 
     T_TYPE get(String pk);
 
+    /*
+        Cursor versions of scan/search/rangeSearch, rows are read as cursor moves and cursor must be closed.
+        Rows are in key order, so continuation token of one cursor can be used to continue on new cursor of same query.
+     */
+    default Cursor<T_TYPE> scanCursor() {
+        throw new UnsupportedOperationException("Cursor is not supported by " + getClass().getSimpleName());
+    }
+
+    default Cursor<T_TYPE> searchCursor(String indexName, String searchValue) {
+        throw new UnsupportedOperationException("Cursor is not supported by " + getClass().getSimpleName());
+    }
+
+    // End is exclusive, null end reads till end of index
+    default Cursor<T_TYPE> rangeCursor(String index, String startKey, String endKey) {
+        throw new UnsupportedOperationException("Cursor is not supported by " + getClass().getSimpleName());
+    }
+
+    /*
+        Read only table that reads as of view, every read method of returned table uses view.
+        View must be opened by store of this table.
+     */
+    default SSTable<T_TYPE> at(ReadView view) {
+        throw new UnsupportedOperationException("Read view is not supported by " + getClass().getSimpleName());
+    }
+
+    // Columns that can be read from index entry without reading row, empty when index is not covering
+    default Collection<String> coveredColumns(String indexName) {
+        return Collections.emptyList();
+    }
+
+    // Column PK is made of, null when it is not declared
+    default String pkColumn() {
+        return null;
+    }
+
+    // Bitmap indexes of table by name, empty when table has none
+    default Map<String, Function<T_TYPE, String>> bitmapIndexes() {
+        return Collections.emptyMap();
+    }
+
+    // Bitmap of row ordinals of every value of bitmap index. Bitmaps are read only
+    default Map<String, RoaringBitmap> bitmaps(String indexName) {
+        throw new UnsupportedOperationException("Bitmap index is not supported by " + getClass().getSimpleName());
+    }
+
+    // Rows of ordinals in ordinal order, ordinal without row is skipped
+    default Cursor<T_TYPE> bitmapCursor(RoaringBitmap ordinals) {
+        throw new UnsupportedOperationException("Bitmap index is not supported by " + getClass().getSimpleName());
+    }
+
+    // Consumer gets row or CoveredRow, use columnValue to read covered columns
+    default void searchCovered(String indexName, String searchValue, Consumer<Object> consumer, int limit) {
+        search(indexName, searchValue, consumer::accept, limit);
+    }
+
+    // Same as searchCovered, consumer returns false to stop search. Default reads rows with search cursor
+    default void searchCoveredWhile(String indexName, String searchValue, Predicate<Object> consumer) {
+        try (Cursor<T_TYPE> rows = searchCursor(indexName, searchValue)) {
+            while (rows.hasNext() && consumer.test(rows.next())) {
+            }
+        }
+    }
+
+    /*
+        Every entry of index, consumer gets index value and row, CoveredRow of covering index or null when index
+        entry does not hold row, so index can be read without reading rows. Default reads rows by scan.
+     */
+    default void scanIndex(String indexName, BiConsumer<String, Object> consumer) {
+        Function<T_TYPE, String> index = indexes().get(indexName);
+        scan(row -> consumer.accept(index.apply(row), row), Integer.MAX_VALUE);
+    }
+
     default Map<String, Function<T_TYPE, Object>> schema() {
         return null;
     }
@@ -36,8 +165,38 @@ public interface SSTable<T_TYPE> {
         return null;
     }
 
+    // Reader of column resolved once, used when same column is read from many rows
+    default ColumnReader column(String col) {
+        return ColumnReader.of(this, col);
+    }
+
+    // Row count & index statistics kept by table, null when table keeps none
+    default TableStats<T_TYPE> tableStats() {
+        return null;
+    }
+
     //Mutation functions
+
+    /*
+        Row over existing PK replaces old row and its index entries. Table of sorted key store finds old row only with
+        TableInfo.exactStats, PK filter or earlier row of same batch, else entries & stats of old row stay, use update.
+     */
     void insert(T_TYPE row);
 
-    void update(T_TYPE record); // Secondary index needs rebuilding
+    // Rows are written in chunks of batchSize, each chunk is single write to storage engine. Batch size below 1 is rejected
+    void insertAll(Collection<T_TYPE> rows, int batchSize);
+
+    default void insertAll(Collection<T_TYPE> rows) {
+        insertAll(rows, DEFAULT_BATCH_SIZE);
+    }
+
+    static void checkBatchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive - " + batchSize);
+        }
+    }
+
+    void update(T_TYPE record); // Index entries of old row are removed
+
+    void delete(String pk);
 }
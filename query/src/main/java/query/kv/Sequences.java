@@ -0,0 +1,91 @@
+package query.kv;
+
+import query.kv.persistent.NavigablePersistentStore;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/*
+    Per table sequence used for auto generated PK.
+    Values are reserved in blocks and only end of block is persisted, so store write is done once per BLOCK_SIZE values.
+    After restart sequence continues from last reserved value, unused values of last block are skipped.
+ */
+public final class Sequences {
+
+    public static final String TABLE = "__sequence";
+    public static final int BLOCK_SIZE = 1000;
+
+    private final Map<String, Sequence> sequences = new ConcurrentHashMap<>();
+    private final Function<String, Long> reserved;
+    private final BiConsumer<String, Long> reserve;
+
+    /*
+        reserved - last reserved value of table, 0 when table has no sequence
+        reserve  - persists new reserved value, value must be durable when it returns
+     */
+    public Sequences(Function<String, Long> reserved, BiConsumer<String, Long> reserve) {
+        this.reserved = reserved;
+        this.reserve = reserve;
+    }
+
+    public static Sequences inMemory() {
+        return new Sequences($ -> 0L, (table, value) -> {
+        });
+    }
+
+    // Reserved value is kept as row of TABLE in same store, so it is written & recovered like table rows
+    public static Sequences persistent(NavigablePersistentStore store) {
+        KeyBuilder keyBuilder = new KeyBuilder(TABLE);
+        return new Sequences(
+                table -> {
+                    byte[] value = store.get(keyBuilder.primaryKey(table));
+                    return value == null ? 0L : toLong(value);
+                },
+                (table, value) -> store.write(batch -> batch.put(keyBuilder.primaryKey(table), toBytes(value))));
+    }
+
+    public Sequence of(String table) {
+        return sequences.computeIfAbsent(table, name -> new Sequence(name, reserved.apply(name)));
+    }
+
+    public static byte[] toBytes(long value) {
+        return ByteBuffer.allocate(Long.BYTES).putLong(value).array();
+    }
+
+    public static long toLong(byte[] value) {
+        return ByteBuffer.wrap(value).getLong();
+    }
+
+    public final class Sequence {
+        private final String table;
+        private final AtomicLong current;
+        private volatile long limit;
+
+        private Sequence(String table, long reserved) {
+            this.table = table;
+            this.current = new AtomicLong(reserved);
+            this.limit = reserved;
+        }
+
+        // Lock free till value crosses reserved block, caller of that value persists next block
+        public long next() {
+            long value = current.incrementAndGet();
+            if (value > limit) {
+                reserveUpTo(value);
+            }
+            return value;
+        }
+
+        private synchronized void reserveUpTo(long value) {
+            while (value > limit) {
+                long next = limit + BLOCK_SIZE;
+                reserve.accept(table, next);
+                limit = next;
+            }
+        }
+    }
+}
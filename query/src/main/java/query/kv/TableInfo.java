@@ -1,7 +1,18 @@
 package query.kv;
 
+import query.kv.cache.CacheConfig;
+import query.kv.codec.RowCodec;
+import query.kv.filter.FilterConfig;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToLongFunction;
 
 public class TableInfo<Row_Type> {
 
@@ -11,6 +22,15 @@ public class TableInfo<Row_Type> {
     private final Function<Row_Type, byte[]> encoder;
     private final Function<byte[], Row_Type> decoder;
     private final Function<Row_Type, String> pk;
+    private final Map<String, List<String>> coveringIndexes = new HashMap<>();
+    private final Map<String, ToLongFunction<Row_Type>> longColumns = new HashMap<>();
+    private final Map<String, ToDoubleFunction<Row_Type>> doubleColumns = new HashMap<>();
+    private final Map<String, Function<Row_Type, String>> bitmapIndexes = new LinkedHashMap<>();
+    private CacheConfig rowCache;
+    private int shards = 1;
+    private FilterConfig pkFilter;
+    private boolean exactStats;
+    private String pkColumn;
 
     public TableInfo(String tableName,
                      Map<String, Function<Row_Type, Object>> schema,
@@ -20,12 +40,20 @@ public class TableInfo<Row_Type> {
                      Function<Row_Type, String> pk) {
         this.tableName = tableName;
         this.schema = schema;
-        this.indexes = indexes;
+        this.indexes = new LinkedHashMap<>(indexes);
         this.encoder = encoder;
         this.decoder = decoder;
         this.pk = pk;
     }
 
+    public TableInfo(String tableName,
+                     Map<String, Function<Row_Type, Object>> schema,
+                     Map<String, Function<Row_Type, String>> indexes,
+                     RowCodec<Row_Type> codec,
+                     Function<Row_Type, String> pk) {
+        this(tableName, schema, indexes, codec::encode, codec::decode, pk);
+    }
+
     public String getTableName() {
         return tableName;
     }
@@ -49,4 +77,145 @@ public class TableInfo<Row_Type> {
     public Function<Row_Type, String> getPk() {
         return pk;
     }
+
+    /*
+        Index on schema columns in given order, see CompositeIndex for how values are encoded.
+        Long & double columns are indexed as numbers, other columns as string form of value, as queries compare them.
+        Column can be typed after index is declared, so type is looked up when row is indexed.
+        Index can be made covering like any other index.
+     */
+    public TableInfo<Row_Type> compositeIndex(String indexName, String... columns) {
+        List<Function<Row_Type, Object>> values = new ArrayList<>();
+        for (String column : columns) {
+            Function<Row_Type, Object> value = schema.get(column);
+            if (value == null) {
+                throw new IllegalArgumentException(String.format("Column %s of index %s is not in schema of %s", column, indexName, tableName));
+            }
+            String name = column.toLowerCase();
+            values.add(row -> {
+                Object columnValue = value.apply(row);
+                return columnValue == null || longColumns.containsKey(name) || doubleColumns.containsKey(name) ? columnValue : columnValue.toString();
+            });
+        }
+        indexes.put(indexName, new CompositeIndex<>(Arrays.asList(columns), values));
+        return this;
+    }
+
+    /*
+        Index entry keeps row data so index search does not need second lookup by PK.
+        No columns means full row is stored, otherwise only listed schema columns are stored.
+     */
+    public TableInfo<Row_Type> coveringIndex(String indexName, String... columns) {
+        coveringIndexes.put(indexName, Arrays.asList(columns));
+        return this;
+    }
+
+    public boolean isCovering(String indexName) {
+        return coveringIndexes.containsKey(indexName);
+    }
+
+    public boolean isFullRowCovering(String indexName) {
+        return isCovering(indexName) && coveringIndexes.get(indexName).isEmpty();
+    }
+
+    public List<String> getCoveredColumns(String indexName) {
+        return coveringIndexes.get(indexName);
+    }
+
+    /*
+        Index of low cardinality column, keeps bitmap of row ordinals for every value in place of index entry of every row.
+        Index is named as its column and value is string form of column value, like value of other indexes.
+     */
+    public TableInfo<Row_Type> bitmapIndex(String column) {
+        Function<Row_Type, Object> value = schema.get(schemaColumn(column));
+        bitmapIndexes.put(column.toLowerCase(), row -> String.valueOf(value.apply(row)));
+        return this;
+    }
+
+    public Map<String, Function<Row_Type, String>> getBitmapIndexes() {
+        return bitmapIndexes;
+    }
+
+    // Schema column that PK is made of, join on it reads rows by PK
+    public TableInfo<Row_Type> pkColumn(String column) {
+        this.pkColumn = schemaColumn(column);
+        return this;
+    }
+
+    public String getPkColumn() {
+        return pkColumn;
+    }
+
+    // Schema column read without boxing by queries, see ColumnReader
+    public TableInfo<Row_Type> longColumn(String column, ToLongFunction<Row_Type> value) {
+        longColumns.put(schemaColumn(column), value);
+        return this;
+    }
+
+    public TableInfo<Row_Type> doubleColumn(String column, ToDoubleFunction<Row_Type> value) {
+        doubleColumns.put(schemaColumn(column), value);
+        return this;
+    }
+
+    public ToLongFunction<Row_Type> getLongColumn(String column) {
+        return longColumns.get(column.toLowerCase());
+    }
+
+    public ToDoubleFunction<Row_Type> getDoubleColumn(String column) {
+        return doubleColumns.get(column.toLowerCase());
+    }
+
+    private String schemaColumn(String column) {
+        String name = column.toLowerCase();
+        if (!schema.containsKey(name)) {
+            throw new IllegalArgumentException(String.format("Column %s is not in schema of %s", column, tableName));
+        }
+        return name;
+    }
+
+    // PK lookups of table are served from row cache, store wraps table in CachedSSTable. Reads of SQL are not cached
+    public TableInfo<Row_Type> rowCache(CacheConfig config) {
+        this.rowCache = config;
+        return this;
+    }
+
+    public CacheConfig getRowCache() {
+        return rowCache;
+    }
+
+    // In memory table splits rows & every index in count shards, by hash of PK & index value
+    public TableInfo<Row_Type> shards(int count) {
+        if (count < 1) {
+            throw new IllegalArgumentException("Shards must be positive " + count);
+        }
+        this.shards = count;
+        return this;
+    }
+
+    public int getShards() {
+        return shards;
+    }
+
+    // PK lookups of missing rows are answered by bloom filter, used by tables of sorted key stores
+    public TableInfo<Row_Type> pkFilter(FilterConfig config) {
+        this.pkFilter = config;
+        return this;
+    }
+
+    public FilterConfig getPkFilter() {
+        return pkFilter;
+    }
+
+    /*
+        Insert of sorted key store reads row stored under PK so stats replace it. Without it old row is read only when
+        PK filter says PK may exist, row written again over its PK is then counted twice.
+     */
+    public TableInfo<Row_Type> exactStats(boolean exact) {
+        this.exactStats = exact;
+        return this;
+    }
+
+    public boolean isExactStats() {
+        return exactStats;
+    }
 }
@@ -0,0 +1,60 @@
+package query.kv.cache;
+
+/*
+    Row cache size & policy of a table.
+    ENTRIES bound counts rows, BYTES bound uses encoded row size as estimate of row size.
+    SEGMENTED_LRU - new rows go to probation segment, rows read again move to protected segment.
+    TINY_LFU      - segmented LRU with frequency based admission, new row is cached only if it is read more often than victim.
+ */
+public final class CacheConfig {
+
+    public enum Bound {
+        ENTRIES, BYTES
+    }
+
+    public enum Policy {
+        SEGMENTED_LRU, TINY_LFU
+    }
+
+    private final Bound bound;
+    private final long maximum;
+    private Policy policy = Policy.TINY_LFU;
+
+    private CacheConfig(Bound bound, long maximum) {
+        if (maximum <= 0) {
+            throw new IllegalArgumentException("Cache size must be positive - " + maximum);
+        }
+        this.bound = bound;
+        this.maximum = maximum;
+    }
+
+    public static CacheConfig entries(long maxRows) {
+        return new CacheConfig(Bound.ENTRIES, maxRows);
+    }
+
+    public static CacheConfig bytes(long maxBytes) {
+        return new CacheConfig(Bound.BYTES, maxBytes);
+    }
+
+    public CacheConfig policy(Policy policy) {
+        this.policy = policy;
+        return this;
+    }
+
+    public Bound getBound() {
+        return bound;
+    }
+
+    public long getMaximum() {
+        return maximum;
+    }
+
+    public Policy getPolicy() {
+        return policy;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("CacheConfig{bound=%s, maximum=%s, policy=%s}", bound, maximum, policy);
+    }
+}
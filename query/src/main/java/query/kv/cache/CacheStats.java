@@ -0,0 +1,45 @@
+package query.kv.cache;
+
+import java.util.concurrent.atomic.LongAdder;
+
+public final class CacheStats {
+
+    final LongAdder hits = new LongAdder();
+    final LongAdder misses = new LongAdder();
+    final LongAdder evictions = new LongAdder();
+    final LongAdder rejections = new LongAdder();
+    final LongAdder invalidations = new LongAdder();
+
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    public long missCount() {
+        return misses.sum();
+    }
+
+    public long evictionCount() {
+        return evictions.sum();
+    }
+
+    // Rows not cached because admission policy preferred the victim
+    public long rejectionCount() {
+        return rejections.sum();
+    }
+
+    public long invalidationCount() {
+        return invalidations.sum();
+    }
+
+    public double hitRate() {
+        long hits = hitCount();
+        long total = hits + missCount();
+        return total == 0 ? 0 : hits / (double) total;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("CacheStats{hits=%s, misses=%s, hitRate=%.3f, evictions=%s, rejections=%s, invalidations=%s}",
+                hitCount(), missCount(), hitRate(), evictionCount(), rejectionCount(), invalidationCount());
+    }
+}
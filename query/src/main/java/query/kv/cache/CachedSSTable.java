@@ -0,0 +1,229 @@
+package query.kv.cache;
+
+import org.roaringbitmap.RoaringBitmap;
+import query.kv.ColumnReader;
+import query.kv.Cursor;
+import query.kv.ReadView;
+import query.kv.SSTable;
+import query.kv.TableInfo;
+import query.kv.stats.TableStats;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+
+/*
+    Read through row cache in front of any table. Only PK lookup is served from cache, scans & index searches go to
+    table as they return many rows. Cached row is invalidated after it is written to table.
+    Reads through ReadView are not cached, so SQL queries ( always run on snapshot ) and their PK joins read table.
+ */
+public class CachedSSTable<Row_Type> implements SSTable<Row_Type> {
+
+    private static final int ENTRY_OVERHEAD = 64;
+
+    private final SSTable<Row_Type> table;
+    private final TableInfo<Row_Type> tableInfo;
+    private final RowCache<Row_Type> cache;
+
+    public CachedSSTable(SSTable<Row_Type> table, TableInfo<Row_Type> tableInfo, CacheConfig config) {
+        this.table = table;
+        this.tableInfo = tableInfo;
+        this.cache = new RowCache<>(config, weigher(tableInfo, config));
+    }
+
+    // Table is wrapped when table info has row cache config
+    public static <Row_Type> SSTable<Row_Type> wrap(SSTable<Row_Type> table, TableInfo<Row_Type> tableInfo) {
+        return tableInfo.getRowCache() == null ? table : new CachedSSTable<>(table, tableInfo, tableInfo.getRowCache());
+    }
+
+    private static <Row_Type> ToLongFunction<Row_Type> weigher(TableInfo<Row_Type> tableInfo, CacheConfig config) {
+        if (config.getBound() == CacheConfig.Bound.ENTRIES || tableInfo.getEncoder() == null) {
+            return row -> 1;
+        }
+        return row -> tableInfo.getEncoder().apply(row).length + ENTRY_OVERHEAD;
+    }
+
+    @Override
+    public Row_Type get(String pk) {
+        Row_Type row = cache.get(pk);
+        if (row != null) {
+            return row;
+        }
+        long generation = cache.generation(pk);
+        row = table.get(pk);
+        if (row != null) {
+            cache.put(pk, row, generation);
+        }
+        return row;
+    }
+
+    @Override
+    public void insert(Row_Type row) {
+        table.insert(row);
+        cache.invalidate(tableInfo.getPk().apply(row));
+    }
+
+    @Override
+    public void insertAll(Collection<Row_Type> rows, int batchSize) {
+        table.insertAll(rows, batchSize);
+        for (Row_Type row : rows) {
+            cache.invalidate(tableInfo.getPk().apply(row));
+        }
+    }
+
+    @Override
+    public void update(Row_Type record) {
+        table.update(record);
+        cache.invalidate(tableInfo.getPk().apply(record));
+    }
+
+    @Override
+    public void delete(String pk) {
+        table.delete(pk);
+        cache.invalidate(pk);
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    public long cachedRows() {
+        return cache.size();
+    }
+
+    @Override
+    public List<String> cols() {
+        return table.cols();
+    }
+
+    @Override
+    public void scan(Consumer<Row_Type> consumer, int limit) {
+        table.scan(consumer, limit);
+    }
+
+    @Override
+    public void parallelScan(int parallelism, Consumer<Row_Type> consumer, int limit) {
+        table.parallelScan(parallelism, consumer, limit);
+    }
+
+    @Override
+    public void parallelScan(int parallelism, Predicate<Row_Type> filter, Consumer<Row_Type> consumer, int limit) {
+        table.parallelScan(parallelism, filter, consumer, limit);
+    }
+
+    @Override
+    public void parallelBatchScan(int parallelism, int batchSize, Predicate<List<Row_Type>> batches) {
+        table.parallelBatchScan(parallelism, batchSize, batches);
+    }
+
+    @Override
+    public void search(String indexName, String searchValue, Consumer<Row_Type> consumer, int limit) {
+        table.search(indexName, searchValue, consumer, limit);
+    }
+
+    @Override
+    public void search(String indexName, String searchValue, Collection<Row_Type> container, int limit) {
+        table.search(indexName, searchValue, container, limit);
+    }
+
+    @Override
+    public void rangeSearch(String index, String startKey, String endKey, Collection<Row_Type> container, int limit) {
+        table.rangeSearch(index, startKey, endKey, container, limit);
+    }
+
+    @Override
+    public Cursor<Row_Type> scanCursor() {
+        return table.scanCursor();
+    }
+
+    @Override
+    public Cursor<Row_Type> searchCursor(String indexName, String searchValue) {
+        return table.searchCursor(indexName, searchValue);
+    }
+
+    @Override
+    public Cursor<Row_Type> rangeCursor(String index, String startKey, String endKey) {
+        return table.rangeCursor(index, startKey, endKey);
+    }
+
+    // Cache keeps no version of row, cached row can be newer than view so reads through view go to table
+    @Override
+    public SSTable<Row_Type> at(ReadView view) {
+        return table.at(view);
+    }
+
+    @Override
+    public Collection<String> coveredColumns(String indexName) {
+        return table.coveredColumns(indexName);
+    }
+
+    @Override
+    public String pkColumn() {
+        return table.pkColumn();
+    }
+
+    @Override
+    public Map<String, Function<Row_Type, String>> bitmapIndexes() {
+        return table.bitmapIndexes();
+    }
+
+    @Override
+    public Map<String, RoaringBitmap> bitmaps(String indexName) {
+        return table.bitmaps(indexName);
+    }
+
+    @Override
+    public Cursor<Row_Type> bitmapCursor(RoaringBitmap ordinals) {
+        return table.bitmapCursor(ordinals);
+    }
+
+    @Override
+    public void searchCovered(String indexName, String searchValue, Consumer<Object> consumer, int limit) {
+        table.searchCovered(indexName, searchValue, consumer, limit);
+    }
+
+    @Override
+    public void searchCoveredWhile(String indexName, String searchValue, Predicate<Object> consumer) {
+        table.searchCoveredWhile(indexName, searchValue, consumer);
+    }
+
+    @Override
+    public void scanIndex(String indexName, BiConsumer<String, Object> consumer) {
+        table.scanIndex(indexName, consumer);
+    }
+
+    @Override
+    public Map<String, Function<Row_Type, Object>> schema() {
+        return table.schema();
+    }
+
+    @Override
+    public Map<String, Function<Row_Type, String>> indexes() {
+        return table.indexes();
+    }
+
+    @Override
+    public Object columnValue(String col, Object row) {
+        return table.columnValue(col, row);
+    }
+
+    @Override
+    public ColumnReader column(String col) {
+        return table.column(col);
+    }
+
+    @Override
+    public TableStats<Row_Type> tableStats() {
+        return table.tableStats();
+    }
+
+    @Override
+    public String toString() {
+        return table.toString();
+    }
+}
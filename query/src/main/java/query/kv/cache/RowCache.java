@@ -0,0 +1,183 @@
+package query.kv.cache;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToLongFunction;
+
+/*
+    Bounded PK -> row cache split in shards, each shard is segmented LRU guarded by shard lock.
+    Loader reads generation of key before reading row from table and row is cached only if key was not invalidated
+    in between, so slow reader can not put back row that was updated after it was read.
+ */
+public final class RowCache<V> {
+
+    private static final int MAX_SHARDS = 16;
+    private static final int ROWS_PER_SHARD = 64;
+    // Share of shard capacity for rows read more than once
+    private static final double PROTECTED_SHARE = 0.8;
+
+    private final List<Shard> shards;
+    private final ToLongFunction<V> weigher;
+    private final boolean admission;
+    private final CacheStats stats = new CacheStats();
+
+    public RowCache(CacheConfig config, ToLongFunction<V> weigher) {
+        this.weigher = weigher;
+        this.admission = config.getPolicy() == CacheConfig.Policy.TINY_LFU;
+        long expectedRows = config.getBound() == CacheConfig.Bound.ENTRIES ? config.getMaximum() : config.getMaximum() / 256;
+        int shardCount = (int) Math.max(1, Math.min(MAX_SHARDS, expectedRows / ROWS_PER_SHARD));
+        this.shards = new ArrayList<>(shardCount);
+        for (int index = 0; index < shardCount; index++) {
+            shards.add(new Shard(config.getMaximum() / shardCount, expectedRows / shardCount));
+        }
+    }
+
+    public V get(String key) {
+        V value = shard(key).get(key);
+        if (value == null) {
+            stats.misses.increment();
+        } else {
+            stats.hits.increment();
+        }
+        return value;
+    }
+
+    // Read before loading row, pass to put
+    public long generation(String key) {
+        return shard(key).generation;
+    }
+
+    public void put(String key, V value, long generation) {
+        shard(key).put(key, value, weigher.applyAsLong(value), generation);
+    }
+
+    public void invalidate(String key) {
+        shard(key).invalidate(key);
+        stats.invalidations.increment();
+    }
+
+    public long size() {
+        long size = 0;
+        for (Shard shard : shards) {
+            size += shard.size();
+        }
+        return size;
+    }
+
+    public CacheStats stats() {
+        return stats;
+    }
+
+    private Shard shard(String key) {
+        return shards.get((spread(key.hashCode()) & 0x7fffffff) % shards.size());
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private static final class Node<V> {
+        final V value;
+        final long weight;
+
+        Node(V value, long weight) {
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+
+    private final class Shard {
+        private final long maxWeight;
+        private final long maxProtectedWeight;
+        // Insertion order is LRU order, row is removed & added again on access
+        private final LinkedHashMap<String, Node<V>> probation = new LinkedHashMap<>();
+        private final LinkedHashMap<String, Node<V>> protectedRows = new LinkedHashMap<>();
+        private final FrequencySketch sketch;
+        private long probationWeight;
+        private long protectedWeight;
+        // Changed on every invalidation of shard key
+        private volatile long generation;
+
+        Shard(long maxWeight, long expectedRows) {
+            this.maxWeight = Math.max(1, maxWeight);
+            this.maxProtectedWeight = (long) (this.maxWeight * PROTECTED_SHARE);
+            this.sketch = admission ? new FrequencySketch(expectedRows) : null;
+        }
+
+        synchronized V get(String key) {
+            if (sketch != null) {
+                sketch.increment(key.hashCode());
+            }
+            Node<V> node = protectedRows.remove(key);
+            if (node != null) {
+                protectedRows.put(key, node);
+                return node.value;
+            }
+            node = probation.remove(key);
+            if (node == null) {
+                return null;
+            }
+            probationWeight -= node.weight;
+            protectedRows.put(key, node);
+            protectedWeight += node.weight;
+            demoteProtected();
+            return node.value;
+        }
+
+        synchronized void put(String key, V value, long weight, long loadedAt) {
+            if (loadedAt != generation || weight > maxWeight || protectedRows.containsKey(key) || probation.containsKey(key)) {
+                return;
+            }
+            while (probationWeight + protectedWeight + weight > maxWeight) {
+                Map.Entry<String, Node<V>> victim = eldest(probation.isEmpty() ? protectedRows : probation);
+                if (sketch != null && sketch.frequency(key.hashCode()) <= sketch.frequency(victim.getKey().hashCode())) {
+                    stats.rejections.increment();
+                    return;
+                }
+                remove(victim.getKey());
+                stats.evictions.increment();
+            }
+            probation.put(key, new Node<>(value, weight));
+            probationWeight += weight;
+        }
+
+        synchronized void invalidate(String key) {
+            generation++;
+            remove(key);
+        }
+
+        synchronized long size() {
+            return probation.size() + protectedRows.size();
+        }
+
+        private void remove(String key) {
+            Node<V> node = probation.remove(key);
+            if (node != null) {
+                probationWeight -= node.weight;
+            }
+            node = protectedRows.remove(key);
+            if (node != null) {
+                protectedWeight -= node.weight;
+            }
+        }
+
+        // Least recently used protected rows get one more chance in probation
+        private void demoteProtected() {
+            while (protectedWeight > maxProtectedWeight && protectedRows.size() > 1) {
+                Map.Entry<String, Node<V>> eldest = eldest(protectedRows);
+                protectedRows.remove(eldest.getKey());
+                protectedWeight -= eldest.getValue().weight;
+                probation.put(eldest.getKey(), eldest.getValue());
+                probationWeight += eldest.getValue().weight;
+            }
+        }
+
+        private Map.Entry<String, Node<V>> eldest(LinkedHashMap<String, Node<V>> rows) {
+            Iterator<Map.Entry<String, Node<V>>> itr = rows.entrySet().iterator();
+            return itr.next();
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package query.kv.codec;
+
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.io.BinaryDecoder;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.DatumReader;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.io.EncoderFactory;
+import org.apache.avro.reflect.ReflectData;
+import org.apache.avro.reflect.ReflectDatumReader;
+import org.apache.avro.reflect.ReflectDatumWriter;
+import org.apache.avro.util.Utf8;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/*
+    Avro binary encoding with schema derived from row class fields. Field names are not stored, so row is much smaller than json.
+    ReflectDatumReader needs no arg constructor, for immutable row class pass rowFactory that builds row from field values.
+ */
+public class AvroRowCodec<Row_Type> implements RowCodec<Row_Type> {
+
+    private final Schema schema;
+    private final ReflectDatumWriter<Row_Type> writer;
+    private final DatumReader<Object> reader;
+    private final Function<Map<String, Object>, Row_Type> rowFactory;
+    private final ThreadLocal<ByteArrayOutputStream> buffers = ThreadLocal.withInitial(() -> new ByteArrayOutputStream(128));
+    private final ThreadLocal<BinaryEncoder> encoders = new ThreadLocal<>();
+    private final ThreadLocal<BinaryDecoder> decoders = new ThreadLocal<>();
+
+    public AvroRowCodec(Class<Row_Type> type) {
+        this(type, null);
+    }
+
+    public AvroRowCodec(Class<Row_Type> type, Function<Map<String, Object>, Row_Type> rowFactory) {
+        this.schema = ReflectData.get().getSchema(type);
+        this.writer = new ReflectDatumWriter<>(schema);
+        this.rowFactory = rowFactory;
+        this.reader = rowFactory == null ? new ReflectDatumReader<>(schema) : new GenericDatumReader<>(schema);
+    }
+
+    @Override
+    public byte[] encode(Row_Type row) {
+        ByteArrayOutputStream buffer = buffers.get();
+        buffer.reset();
+        BinaryEncoder encoder = EncoderFactory.get().binaryEncoder(buffer, encoders.get());
+        encoders.set(encoder);
+        try {
+            writer.write(row, encoder);
+            encoder.flush();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return buffer.toByteArray();
+    }
+
+    // Without row factory reader is made for row class, so record read is of Row_Type
+    @SuppressWarnings("unchecked")
+    @Override
+    public Row_Type decode(byte[] data) {
+        BinaryDecoder decoder = DecoderFactory.get().binaryDecoder(data, decoders.get());
+        decoders.set(decoder);
+        try {
+            Object value = reader.read(null, decoder);
+            return rowFactory == null ? (Row_Type) value : rowFactory.apply(toMap((GenericData.Record) value));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private Map<String, Object> toMap(GenericData.Record record) {
+        Map<String, Object> values = new HashMap<>();
+        for (Schema.Field field : schema.getFields()) {
+            Object value = record.get(field.pos());
+            values.put(field.name(), value instanceof Utf8 ? value.toString() : value);
+        }
+        return values;
+    }
+}
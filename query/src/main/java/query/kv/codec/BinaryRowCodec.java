@@ -0,0 +1,61 @@
+package query.kv.codec;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/*
+    Row is written as column values in sorted column name order, only values are stored.
+    Layout is fixed by schema so adding/removing column needs data to be rewritten.
+    Decoded column values are passed to rowFactory as column name -> value.
+ */
+public class BinaryRowCodec<Row_Type> implements RowCodec<Row_Type> {
+
+    private final List<String> columns;
+    private final List<Function<Row_Type, Object>> readers = new ArrayList<>();
+    private final Function<Map<String, Object>, Row_Type> rowFactory;
+    private final ThreadLocal<ByteArrayOutputStream> buffers = ThreadLocal.withInitial(() -> new ByteArrayOutputStream(128));
+
+    public BinaryRowCodec(Map<String, Function<Row_Type, Object>> schema, Function<Map<String, Object>, Row_Type> rowFactory) {
+        this.columns = new ArrayList<>(schema.keySet());
+        this.columns.sort(String::compareTo);
+        this.columns.forEach(col -> readers.add(schema.get(col)));
+        this.rowFactory = rowFactory;
+    }
+
+    @Override
+    public byte[] encode(Row_Type row) {
+        ByteArrayOutputStream buffer = buffers.get();
+        buffer.reset();
+        DataOutputStream out = new DataOutputStream(buffer);
+        try {
+            for (Function<Row_Type, Object> reader : readers) {
+                ColumnCodec.write(out, reader.apply(row));
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return buffer.toByteArray();
+    }
+
+    @Override
+    public Row_Type decode(byte[] data) {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        Map<String, Object> values = new HashMap<>(columns.size() * 2);
+        try {
+            for (String col : columns) {
+                values.put(col, ColumnCodec.read(in));
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return rowFactory.apply(values);
+    }
+}
@@ -0,0 +1,28 @@
+package query.kv.codec;
+
+import com.google.gson.Gson;
+
+import java.nio.charset.StandardCharsets;
+
+/*
+    Gson is thread safe and caches type adapters, so single instance is shared by all tables.
+ */
+public class JsonRowCodec<Row_Type> implements RowCodec<Row_Type> {
+
+    private static final Gson GSON = new Gson();
+    private final Class<Row_Type> type;
+
+    public JsonRowCodec(Class<Row_Type> type) {
+        this.type = type;
+    }
+
+    @Override
+    public byte[] encode(Row_Type row) {
+        return GSON.toJson(row).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public Row_Type decode(byte[] data) {
+        return GSON.fromJson(new String(data, StandardCharsets.UTF_8), type);
+    }
+}
@@ -0,0 +1,41 @@
+package query.kv.codec;
+
+import java.util.Map;
+import java.util.function.Function;
+
+/*
+    Converts row to bytes stored by persistent tables. Codec instance is shared by all readers/writers of table,
+    so implementation must be thread safe.
+ */
+public interface RowCodec<Row_Type> {
+
+    byte[] encode(Row_Type row);
+
+    Row_Type decode(byte[] data);
+
+    /*
+        Used by KeyValueStore when table is created using class & schema, without explicit TableInfo.
+     */
+    interface Factory {
+        <Row_Type> RowCodec<Row_Type> create(Class<Row_Type> type, Map<String, Function<Row_Type, Object>> schema);
+    }
+
+    static Factory json() {
+        return new Factory() {
+            @Override
+            public <Row_Type> RowCodec<Row_Type> create(Class<Row_Type> type, Map<String, Function<Row_Type, Object>> schema) {
+                return new JsonRowCodec<>(type);
+            }
+        };
+    }
+
+    // Row class needs no arg constructor
+    static Factory avro() {
+        return new Factory() {
+            @Override
+            public <Row_Type> RowCodec<Row_Type> create(Class<Row_Type> type, Map<String, Function<Row_Type, Object>> schema) {
+                return new AvroRowCodec<>(type);
+            }
+        };
+    }
+}
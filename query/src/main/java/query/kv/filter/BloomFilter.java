@@ -0,0 +1,90 @@
+package query.kv.filter;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/*
+    Bloom filter of keys, k bit positions are derived from single 64 bit hash ( double hashing ).
+    Bits are set atomically, so keys can be added while filter is read by other threads.
+ */
+public final class BloomFilter {
+
+    private final AtomicLongArray bits;
+    private final long bitCount;
+    private final int hashes;
+
+    private BloomFilter(AtomicLongArray bits, int hashes) {
+        this.bits = bits;
+        this.bitCount = bits.length() * 64L;
+        this.hashes = hashes;
+    }
+
+    public static BloomFilter create(long keys, int bitsPerKey) {
+        long bitCount = Math.max(64, keys * bitsPerKey);
+        int hashes = Math.max(1, Math.min(30, (int) Math.round(bitsPerKey * 0.69)));
+        return new BloomFilter(new AtomicLongArray((int) ((bitCount + 63) / 64)), hashes);
+    }
+
+    public void add(byte[] key) {
+        long hash = hash(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < hashes; i++) {
+            long bit = ((h1 + (long) i * h2) & Long.MAX_VALUE) % bitCount;
+            long mask = 1L << bit;
+            int word = (int) (bit >>> 6);
+            if ((bits.get(word) & mask) == 0) {
+                bits.getAndAccumulate(word, mask, (current, value) -> current | value);
+            }
+        }
+    }
+
+    public boolean mightContain(byte[] key) {
+        long hash = hash(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < hashes; i++) {
+            long bit = ((h1 + (long) i * h2) & Long.MAX_VALUE) % bitCount;
+            if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public int hashes() {
+        return hashes;
+    }
+
+    public byte[] toBytes() {
+        ByteBuffer buffer = ByteBuffer.allocate(bits.length() * Long.BYTES);
+        for (int i = 0; i < bits.length(); i++) {
+            buffer.putLong(bits.get(i));
+        }
+        return buffer.array();
+    }
+
+    public static BloomFilter fromBytes(byte[] data, int hashes) {
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        AtomicLongArray bits = new AtomicLongArray(data.length / Long.BYTES);
+        for (int i = 0; i < bits.length(); i++) {
+            bits.set(i, buffer.getLong());
+        }
+        return new BloomFilter(bits, hashes);
+    }
+
+    // FNV-1a with murmur3 finalizer, so both halves of hash are well mixed
+    private static long hash(byte[] key) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : key) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
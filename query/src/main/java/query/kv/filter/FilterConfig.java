@@ -0,0 +1,44 @@
+package query.kv.filter;
+
+/*
+    PK filter size of a table. Filter is sized for expectedRows, false positive rate grows when table has more rows
+    or many deleted rows, as deleted keys stay in filter till it is rebuilt.
+    10 bits per key gives ~1% false positives.
+ */
+public final class FilterConfig {
+
+    private final long expectedRows;
+    private int bitsPerKey = 10;
+
+    private FilterConfig(long expectedRows) {
+        if (expectedRows <= 0) {
+            throw new IllegalArgumentException("Expected rows must be positive - " + expectedRows);
+        }
+        this.expectedRows = expectedRows;
+    }
+
+    public static FilterConfig bloom(long expectedRows) {
+        return new FilterConfig(expectedRows);
+    }
+
+    public FilterConfig bitsPerKey(int bitsPerKey) {
+        if (bitsPerKey <= 0) {
+            throw new IllegalArgumentException("Bits per key must be positive - " + bitsPerKey);
+        }
+        this.bitsPerKey = bitsPerKey;
+        return this;
+    }
+
+    public long getExpectedRows() {
+        return expectedRows;
+    }
+
+    public int getBitsPerKey() {
+        return bitsPerKey;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("FilterConfig{expectedRows=%s, bitsPerKey=%s}", expectedRows, bitsPerKey);
+    }
+}
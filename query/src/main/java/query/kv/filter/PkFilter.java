@@ -0,0 +1,120 @@
+package query.kv.filter;
+
+import query.kv.KeyBuilder;
+import query.kv.KeyCodec;
+import query.kv.persistent.NavigablePersistentStore;
+import query.kv.persistent.NavigablePersistentStore.KeyCursor;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+    Bloom filter of PK keys of a table, lookup of key that filter does not contain skips store.
+    Key is added before row is written, so reader that finds row in store also finds key in filter.
+    Deleted keys are not removed, they only add to false positives.
+
+    Filter is saved as row of TABLE when store is closed and removed from store when table is opened,
+    so filter that misses writes of crashed process is never loaded and is rebuilt from PK keys instead.
+ */
+public final class PkFilter {
+
+    public static final String TABLE = "__pk_filter";
+
+    private final NavigablePersistentStore store;
+    private final byte[] filterKey;
+    private final BloomFilter bloom;
+    private final boolean rebuilt;
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder negatives = new LongAdder();
+    private final LongAdder falsePositives = new LongAdder();
+
+    private PkFilter(NavigablePersistentStore store, byte[] filterKey, BloomFilter bloom, boolean rebuilt) {
+        this.store = store;
+        this.filterKey = filterKey;
+        this.bloom = bloom;
+        this.rebuilt = rebuilt;
+    }
+
+    // Saved filter is used when it has same size as config, otherwise filter is rebuilt by reading PK keys of table
+    static PkFilter open(NavigablePersistentStore store, String tableName, FilterConfig config) {
+        byte[] filterKey = new KeyBuilder(TABLE).primaryKey(tableName);
+        BloomFilter empty = BloomFilter.create(config.getExpectedRows(), config.getBitsPerKey());
+        byte[] saved = store.get(filterKey);
+        if (saved != null) {
+            store.write(batch -> batch.delete(filterKey));
+            ByteBuffer buffer = ByteBuffer.wrap(saved);
+            int hashes = buffer.getInt();
+            byte[] bits = Arrays.copyOfRange(saved, Integer.BYTES, saved.length);
+            if (hashes == empty.hashes() && bits.length == empty.toBytes().length) {
+                return new PkFilter(store, filterKey, BloomFilter.fromBytes(bits, hashes), false);
+            }
+        }
+
+        byte[] pkPrefix = new KeyBuilder(tableName).primaryKey();
+        try (KeyCursor keys = store.cursor(KeyCodec.prefixUpperBound(pkPrefix))) {
+            keys.seek(pkPrefix);
+            while (keys.next()) {
+                empty.add(keys.key());
+            }
+        }
+        return new PkFilter(store, filterKey, empty, true);
+    }
+
+    public void add(byte[] pkKey) {
+        bloom.add(pkKey);
+    }
+
+    public boolean mightContain(byte[] pkKey) {
+        lookups.increment();
+        boolean found = bloom.mightContain(pkKey);
+        if (!found) {
+            negatives.increment();
+        }
+        return found;
+    }
+
+    // Check of writer looking for row it replaces, not counted with lookups of reads
+    public boolean mightContainUncounted(byte[] pkKey) {
+        return bloom.mightContain(pkKey);
+    }
+
+    // Called when key passed by filter is not in store
+    public void falsePositive() {
+        falsePositives.increment();
+    }
+
+    public long lookups() {
+        return lookups.sum();
+    }
+
+    public long negatives() {
+        return negatives.sum();
+    }
+
+    public long falsePositives() {
+        return falsePositives.sum();
+    }
+
+    // Share of lookups of missing keys that filter passed to store
+    public double falsePositiveRate() {
+        long misses = negatives.sum() + falsePositives.sum();
+        return misses == 0 ? 0 : falsePositives.sum() / (double) misses;
+    }
+
+    // True when filter was built from PK keys at open, not loaded from store
+    public boolean isRebuilt() {
+        return rebuilt;
+    }
+
+    void save() {
+        byte[] bits = bloom.toBytes();
+        byte[] value = ByteBuffer.allocate(Integer.BYTES + bits.length).putInt(bloom.hashes()).put(bits).array();
+        store.write(batch -> batch.put(filterKey, value));
+    }
+
+    @Override
+    public String toString() {
+        return String.format("PkFilter{lookups=%s, negatives=%s, falsePositives=%s}", lookups(), negatives(), falsePositives());
+    }
+}
@@ -0,0 +1,28 @@
+package query.kv.filter;
+
+import query.kv.TableInfo;
+import query.kv.persistent.NavigablePersistentStore;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+    PK filters of tables of one store. Store saves filters before it is closed.
+ */
+public final class PkFilters {
+
+    private final Map<String, PkFilter> filters = new ConcurrentHashMap<>();
+
+    // Null when table info has no filter config, table created again in same store gets same filter
+    public PkFilter of(NavigablePersistentStore store, TableInfo<?> tableInfo) {
+        FilterConfig config = tableInfo.getPkFilter();
+        if (config == null) {
+            return null;
+        }
+        return filters.computeIfAbsent(tableInfo.getTableName(), table -> PkFilter.open(store, table, config));
+    }
+
+    public void save() {
+        filters.values().forEach(PkFilter::save);
+    }
+}
@@ -0,0 +1,174 @@
+package query.kv.memory;
+
+import query.kv.SSTable;
+import query.kv.Sequences;
+import query.kv.TableInfo;
+import query.kv.cache.CachedSSTable;
+import query.kv.codec.RowCodec;
+import query.kv.memory.wal.Durability;
+import query.kv.memory.wal.LogRecord;
+import query.kv.memory.wal.Snapshot;
+import query.kv.memory.wal.WriteAheadLog;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/*
+    In memory store that survives restart. Mutations are appended to write ahead log and applied to table under table lock,
+    so log order of a row is same as in memory order. Snapshot of all rows is taken when log grows past configured size.
+
+    Recovery reads latest snapshot and log after it when store is opened, rows of table are loaded when table is created
+    and indexes are built as rows are inserted.
+ */
+public class DurableInMemoryStore extends InMemoryStore {
+
+    public static final String type = "memory-wal:";
+
+    private final WriteAheadLog wal;
+    private final Durability durability;
+    private final Map<String, Map<String, byte[]>> recovered;
+    private final Map<String, DurableSSTable<?>> durableTables = new ConcurrentHashMap<>();
+    // Reserved value of auto PK sequences, logged as rows of Sequences.TABLE
+    private final Map<String, byte[]> reservedSequences;
+    private final Sequences sequences;
+    private final long recoveredRows;
+    private final long recoveryMillis;
+    // Writes hold read lock from log append till row is applied, snapshot takes write lock to start new log segment
+    private final ReadWriteLock checkpointLock = new ReentrantReadWriteLock();
+    private final Object snapshotLock = new Object();
+    private final AtomicBoolean snapshotScheduled = new AtomicBoolean();
+    private final ExecutorService snapshotter = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "wal-snapshot");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public DurableInMemoryStore(File location, Durability durability) {
+        this(location, durability, RowCodec.json());
+    }
+
+    public DurableInMemoryStore(File location, Durability durability, RowCodec.Factory codecFactory) {
+        super(codecFactory);
+        this.durability = durability;
+
+        long start = System.currentTimeMillis();
+        this.recovered = WriteAheadLog.recover(location);
+        this.recoveryMillis = System.currentTimeMillis() - start;
+
+        this.wal = new WriteAheadLog(location, durability);
+
+        Map<String, byte[]> reserved = recovered.remove(Sequences.TABLE);
+        this.recoveredRows = recovered.values().stream().mapToLong(Map::size).sum();
+        this.reservedSequences = reserved == null ? new ConcurrentHashMap<>() : reserved;
+        this.sequences = new Sequences(
+                table -> reservedSequences.containsKey(table) ? Sequences.toLong(reservedSequences.get(table)) : 0L,
+                (table, value) -> {
+                    byte[] row = Sequences.toBytes(value);
+                    byte[] record = LogRecord.put(Sequences.TABLE, table, row).toBytes();
+                    write(reservedSequences, Collections.singletonList(record), () -> reservedSequences.put(table, row));
+                });
+    }
+
+    // Rows of tables read from snapshot & log when store was opened
+    public long recoveredRows() {
+        return recoveredRows;
+    }
+
+    // Time taken to read snapshot & replay log when store was opened
+    public long recoveryMillis() {
+        return recoveryMillis;
+    }
+
+    @Override
+    protected Sequences sequences() {
+        return sequences;
+    }
+
+    @Override
+    public <Row_Type> SSTable<Row_Type> createTable(TableInfo<Row_Type> tableInfo) {
+        if (tableInfo.getEncoder() == null || tableInfo.getDecoder() == null) {
+            throw new IllegalArgumentException("Durable table " + tableInfo.getTableName() + " needs row encoder & decoder");
+        }
+
+        InMemorySSTable<Row_Type> table = new InMemorySSTable<>(tableInfo, views());
+        DurableSSTable<Row_Type> durableTable = new DurableSSTable<>(table, tableInfo, this);
+        synchronized (snapshotLock) {
+            Map<String, byte[]> rows = recovered.remove(tableInfo.getTableName());
+            if (rows != null) {
+                rows.forEach((pk, row) -> table.addRecord(pk, tableInfo.getDecoder().apply(row)));
+            }
+            durableTables.put(tableInfo.getTableName(), durableTable);
+        }
+        SSTable<Row_Type> cachedTable = CachedSSTable.wrap(durableTable, tableInfo);
+        registerTable(tableInfo.getTableName(), cachedTable);
+        return cachedTable;
+    }
+
+    void write(Object tableLock, List<byte[]> records, Runnable apply) {
+        long lsn;
+        checkpointLock.readLock().lock();
+        try {
+            synchronized (tableLock) {
+                lsn = wal.append(records);
+                apply.run();
+            }
+        } finally {
+            checkpointLock.readLock().unlock();
+        }
+        wal.commit(lsn);
+
+        if (wal.sizeSinceCheckpoint() >= durability.getSnapshotEvery() && snapshotScheduled.compareAndSet(false, true)) {
+            snapshotter.execute(() -> {
+                try {
+                    checkpoint();
+                } finally {
+                    snapshotScheduled.set(false);
+                }
+            });
+        }
+    }
+
+    /*
+        Snapshot is fuzzy - rows changed while it is written can be old or new version. Log from snapshot start is replayed
+        on top of it, so recovered row is always latest.
+     */
+    public void checkpoint() {
+        synchronized (snapshotLock) {
+            long replayFrom;
+            checkpointLock.writeLock().lock();
+            try {
+                replayFrom = wal.roll();
+            } finally {
+                checkpointLock.writeLock().unlock();
+            }
+
+            try (Snapshot snapshot = wal.newSnapshot(replayFrom)) {
+                recovered.forEach((table, rows) -> rows.forEach((pk, row) -> snapshot.add(table, pk, row)));
+                reservedSequences.forEach((table, row) -> snapshot.add(Sequences.TABLE, table, row));
+                durableTables.values().forEach(table -> table.snapshot(snapshot));
+                wal.commitSnapshot(snapshot, replayFrom);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        snapshotter.shutdown();
+        try {
+            snapshotter.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        checkpoint();
+        wal.close();
+    }
+}
@@ -0,0 +1,228 @@
+package query.kv.memory;
+
+import org.roaringbitmap.RoaringBitmap;
+import query.kv.ColumnReader;
+import query.kv.Cursor;
+import query.kv.ReadView;
+import query.kv.SSTable;
+import query.kv.TableInfo;
+import query.kv.stats.TableStats;
+import query.kv.memory.wal.LogRecord;
+import query.kv.memory.wal.Snapshot;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/*
+    In memory table that logs every mutation before applying it. Reads go to in memory table as is.
+    Row is encoded outside of log lock, PK is computed once and used for both log record and in memory row.
+ */
+class DurableSSTable<Row_Type> implements SSTable<Row_Type> {
+
+    private final InMemorySSTable<Row_Type> table;
+    private final TableInfo<Row_Type> tableInfo;
+    private final DurableInMemoryStore store;
+
+    DurableSSTable(InMemorySSTable<Row_Type> table, TableInfo<Row_Type> tableInfo, DurableInMemoryStore store) {
+        this.table = table;
+        this.tableInfo = tableInfo;
+        this.store = store;
+    }
+
+    @Override
+    public void insert(Row_Type row) {
+        String pk = tableInfo.getPk().apply(row);
+        byte[] record = LogRecord.put(tableInfo.getTableName(), pk, tableInfo.getEncoder().apply(row)).toBytes();
+        store.write(this, Collections.singletonList(record), () -> table.addRecord(pk, row));
+    }
+
+    @Override
+    public void insertAll(Collection<Row_Type> rows, int batchSize) {
+        SSTable.checkBatchSize(batchSize);
+        List<String> pks = new ArrayList<>(batchSize);
+        List<Row_Type> batch = new ArrayList<>(batchSize);
+        List<byte[]> records = new ArrayList<>(batchSize);
+        for (Row_Type row : rows) {
+            String pk = tableInfo.getPk().apply(row);
+            pks.add(pk);
+            batch.add(row);
+            records.add(LogRecord.put(tableInfo.getTableName(), pk, tableInfo.getEncoder().apply(row)).toBytes());
+            if (records.size() == batchSize) {
+                writeBatch(pks, batch, records);
+            }
+        }
+        if (!records.isEmpty()) {
+            writeBatch(pks, batch, records);
+        }
+    }
+
+    private void writeBatch(List<String> pks, List<Row_Type> batch, List<byte[]> records) {
+        store.write(this, records, () -> {
+            for (int index = 0; index < batch.size(); index++) {
+                table.addRecord(pks.get(index), batch.get(index));
+            }
+        });
+        pks.clear();
+        batch.clear();
+        records.clear();
+    }
+
+    @Override
+    public void update(Row_Type record) {
+        String pk = tableInfo.getPk().apply(record);
+        byte[] logRecord = LogRecord.put(tableInfo.getTableName(), pk, tableInfo.getEncoder().apply(record)).toBytes();
+        store.write(this, Collections.singletonList(logRecord), () -> table.update(pk, record));
+    }
+
+    @Override
+    public void delete(String pk) {
+        byte[] logRecord = LogRecord.delete(tableInfo.getTableName(), pk).toBytes();
+        store.write(this, Collections.singletonList(logRecord), () -> table.delete(pk));
+    }
+
+    void snapshot(Snapshot snapshot) {
+        table.forEachRow((pk, row) -> snapshot.add(tableInfo.getTableName(), pk, tableInfo.getEncoder().apply(row)));
+    }
+
+    @Override
+    public List<String> cols() {
+        return table.cols();
+    }
+
+    @Override
+    public void scan(Consumer<Row_Type> consumer, int limit) {
+        table.scan(consumer, limit);
+    }
+
+    @Override
+    public void parallelScan(int parallelism, Consumer<Row_Type> consumer, int limit) {
+        table.parallelScan(parallelism, consumer, limit);
+    }
+
+    @Override
+    public void parallelScan(int parallelism, Predicate<Row_Type> filter, Consumer<Row_Type> consumer, int limit) {
+        table.parallelScan(parallelism, filter, consumer, limit);
+    }
+
+    @Override
+    public void parallelBatchScan(int parallelism, int batchSize, Predicate<List<Row_Type>> batches) {
+        table.parallelBatchScan(parallelism, batchSize, batches);
+    }
+
+    @Override
+    public void search(String indexName, String searchValue, Consumer<Row_Type> consumer, int limit) {
+        table.search(indexName, searchValue, consumer, limit);
+    }
+
+    @Override
+    public void search(String indexName, String searchValue, Collection<Row_Type> container, int limit) {
+        table.search(indexName, searchValue, container, limit);
+    }
+
+    @Override
+    public void rangeSearch(String index, String startKey, String endKey, Collection<Row_Type> container, int limit) {
+        table.rangeSearch(index, startKey, endKey, container, limit);
+    }
+
+    @Override
+    public Row_Type get(String pk) {
+        return table.get(pk);
+    }
+
+    @Override
+    public Cursor<Row_Type> scanCursor() {
+        return table.scanCursor();
+    }
+
+    @Override
+    public Cursor<Row_Type> searchCursor(String indexName, String searchValue) {
+        return table.searchCursor(indexName, searchValue);
+    }
+
+    @Override
+    public Cursor<Row_Type> rangeCursor(String index, String startKey, String endKey) {
+        return table.rangeCursor(index, startKey, endKey);
+    }
+
+    @Override
+    public SSTable<Row_Type> at(ReadView view) {
+        return table.at(view);
+    }
+
+    @Override
+    public Collection<String> coveredColumns(String indexName) {
+        return table.coveredColumns(indexName);
+    }
+
+    @Override
+    public String pkColumn() {
+        return table.pkColumn();
+    }
+
+    @Override
+    public Map<String, Function<Row_Type, String>> bitmapIndexes() {
+        return table.bitmapIndexes();
+    }
+
+    @Override
+    public Map<String, RoaringBitmap> bitmaps(String indexName) {
+        return table.bitmaps(indexName);
+    }
+
+    @Override
+    public Cursor<Row_Type> bitmapCursor(RoaringBitmap ordinals) {
+        return table.bitmapCursor(ordinals);
+    }
+
+    @Override
+    public void searchCovered(String indexName, String searchValue, Consumer<Object> consumer, int limit) {
+        table.searchCovered(indexName, searchValue, consumer, limit);
+    }
+
+    @Override
+    public void searchCoveredWhile(String indexName, String searchValue, Predicate<Object> consumer) {
+        table.searchCoveredWhile(indexName, searchValue, consumer);
+    }
+
+    @Override
+    public void scanIndex(String indexName, BiConsumer<String, Object> consumer) {
+        table.scanIndex(indexName, consumer);
+    }
+
+    @Override
+    public Map<String, Function<Row_Type, Object>> schema() {
+        return table.schema();
+    }
+
+    @Override
+    public Map<String, Function<Row_Type, String>> indexes() {
+        return table.indexes();
+    }
+
+    @Override
+    public Object columnValue(String col, Object row) {
+        return table.columnValue(col, row);
+    }
+
+    @Override
+    public ColumnReader column(String col) {
+        return table.column(col);
+    }
+
+    @Override
+    public TableStats<Row_Type> tableStats() {
+        return table.tableStats();
+    }
+
+    @Override
+    public String toString() {
+        return table.toString();
+    }
+}
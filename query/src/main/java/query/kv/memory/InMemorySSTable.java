@@ -1,24 +1,93 @@
 package query.kv.memory;
 
+import org.roaringbitmap.RoaringBitmap;
+import query.kv.BitmapIndexes;
+import query.kv.ColumnReader;
+import query.kv.Cursor;
+import query.kv.KeyBuilder;
+import query.kv.KeyCodec;
+import query.kv.KeyRangeCursor;
+import query.kv.OrdinalCursor;
+import query.kv.ParallelScan;
+import query.kv.ReadView;
 import query.kv.SSTable;
 import query.kv.TableInfo;
+import query.kv.stats.TableStats;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
+/*
+    Rows are kept in hash map for PK lookup and scan. Sorted maps keep index entries and PK key of every row,
+    PK keys give scan cursor a stable order to continue from.
+    Table read through view reads only sorted maps, changes of sorted maps are saved by open views.
+
+    Bitmaps of bitmap indexes & row of every ordinal are kept in sorted maps that are read through view too,
+    bitmap is copied before change while views are open so view keeps bitmap it has seen.
+
+    Table with shards ( TableInfo.shards ) splits rows by hash of PK and every index by hash of index value,
+    so writers of different rows mostly touch different maps.
+ */
 public class InMemorySSTable<Row_Type> implements SSTable<Row_Type> {
 
-    private final Map<String, Row_Type> rawRows = new ConcurrentHashMap<>();
-    private final NavigableMap<String, Row_Type> indexRows = new ConcurrentSkipListMap<>();
+    private final List<Map<String, Row_Type>> rawRows;
+    private final IndexShards<Row_Type> indexRows;
     private final TableInfo<Row_Type> tableInfo;
+    private final KeyBuilder keyBuilder;
+    private final ReadViews views;
+    private final TableStats<Row_Type> stats;
+    private final BitmapIndexes<Row_Type> bitmapIndexes;
+    private final NavigableMap<byte[], RoaringBitmap> bitmaps;
+    private final NavigableMap<byte[], Row_Type> ordinalRows;
+    // View of read only table, null for live table
+    private final ReadViews.View view;
 
     public InMemorySSTable(TableInfo<Row_Type> tableInfo) {
+        this(tableInfo, new ReadViews());
+    }
+
+    // Tables of store share views, so one view covers all tables
+    InMemorySSTable(TableInfo<Row_Type> tableInfo, ReadViews views) {
         this.tableInfo = tableInfo;
+        this.keyBuilder = new KeyBuilder(tableInfo.getTableName());
+        this.rawRows = new ArrayList<>(tableInfo.getShards());
+        for (int shard = 0; shard < tableInfo.getShards(); shard++) {
+            rawRows.add(new ConcurrentHashMap<>());
+        }
+        this.indexRows = new IndexShards<>(tableInfo.getShards());
+        this.views = views;
+        this.stats = new TableStats<>(tableInfo.getIndexes());
+        this.bitmapIndexes = new BitmapIndexes<>(tableInfo.getBitmapIndexes());
+        this.bitmaps = new ConcurrentSkipListMap<>(KeyCodec.KEY_ORDER);
+        this.ordinalRows = new ConcurrentSkipListMap<>(KeyCodec.KEY_ORDER);
+        this.view = null;
+    }
+
+    private InMemorySSTable(InMemorySSTable<Row_Type> table, ReadViews.View view) {
+        this.tableInfo = table.tableInfo;
+        this.keyBuilder = table.keyBuilder;
+        this.rawRows = table.rawRows;
+        this.indexRows = table.indexRows;
+        this.views = table.views;
+        this.stats = table.stats;
+        this.bitmapIndexes = table.bitmapIndexes;
+        this.bitmaps = table.bitmaps;
+        this.ordinalRows = table.ordinalRows;
+        this.view = view;
+    }
+
+    @Override
+    public SSTable<Row_Type> at(ReadView view) {
+        if (!views.owns(view)) {
+            throw new IllegalArgumentException("View is not opened by store of table " + tableInfo.getTableName());
+        }
+        return new InMemorySSTable<>(this, (ReadViews.View) view);
     }
 
     @Override
@@ -43,40 +112,175 @@ public class InMemorySSTable<Row_Type> implements SSTable<Row_Type> {
 
     @Override
     public void scan(Consumer<Row_Type> consumer, int limit) {
-        rawRows.entrySet().stream()
+        if (view != null) {
+            byte[] fromKey = keyBuilder.primaryKey();
+            forEach(KeyBuilder.PK_INDEX, fromKey, key -> !KeyCodec.startsWith(key, fromKey), consumer::accept, limit);
+            return;
+        }
+        rawRows.stream()
+                .flatMap(rows -> rows.values().stream())
                 .limit(limit)
-                .map(Map.Entry::getValue)
                 .forEach(consumer::accept);
 
     }
 
+    // ConcurrentHashMap spliterators of shards are split till there are parallelism parts, parts are bins of hash table
     @Override
-    public void search(String indexName, String searchValue, Consumer<Row_Type> consumer, int limit) {
-        String indexKey = buildIndexKey(indexName, searchValue);
-        Stream<Row_Type> rows = rows(indexKey, limit);
-        rows.forEach(consumer::accept);
+    public void parallelScan(int parallelism, Consumer<Row_Type> consumer, int limit) {
+        parallelScan(parallelism, row -> true, consumer, limit);
     }
 
     @Override
-    public void search(String indexName, String searchValue, Collection<Row_Type> container, int limit) {
-        search(indexName, searchValue, container::add, limit);
+    public void parallelScan(int parallelism, Predicate<Row_Type> filter, Consumer<Row_Type> consumer, int limit) {
+        ParallelScan.run(partitions(parallelism), filter, consumer, limit);
     }
 
-    private Stream<Row_Type> rows(String indexKey, int limit) {
-        Stream<Map.Entry<String, Row_Type>> filterRows = indexRows
-                .tailMap(indexKey).entrySet()
-                .stream()
-                .filter(e -> e.getKey().startsWith(indexKey));
+    @Override
+    public void parallelBatchScan(int parallelism, int batchSize, Predicate<List<Row_Type>> batches) {
+        ParallelScan.runBatches(partitions(parallelism), batchSize, batches);
+    }
 
-        Stream<Row_Type> rows = filterRows
-                .limit(limit)
-                .map(Map.Entry::getValue);
+    private List<Consumer<ParallelScan<Row_Type>>> partitions(int parallelism) {
+        if (view != null) {
+            return viewPartitions(parallelism);
+        }
+        List<Spliterator<Row_Type>> parts = new ArrayList<>();
+        rawRows.forEach(rows -> parts.add(rows.values().spliterator()));
+        split(parts, parallelism);
+
+        List<Consumer<ParallelScan<Row_Type>>> partitions = new ArrayList<>();
+        for (Spliterator<Row_Type> part : parts) {
+            partitions.add(scan -> {
+                boolean more = true;
+                while (more) {
+                    more = !scan.isDone() && part.tryAdvance(scan::offer);
+                }
+            });
+        }
+        return partitions;
+    }
+
+    // PK key range is split using skip list spliterator and every range is read through view
+    private List<Consumer<ParallelScan<Row_Type>>> viewPartitions(int parallelism) {
+        byte[] fromKey = keyBuilder.primaryKey();
+        byte[] toKey = KeyCodec.prefixUpperBound(fromKey);
+
+        List<byte[]> bounds = new ArrayList<>();
+        bounds.add(fromKey);
+        bounds.addAll(splitKeys(fromKey, toKey, parallelism));
+        bounds.add(toKey);
+
+        List<Consumer<ParallelScan<Row_Type>>> partitions = new ArrayList<>();
+        for (int index = 0; index < bounds.size() - 1; index++) {
+            byte[] start = bounds.get(index);
+            byte[] end = bounds.get(index + 1);
+            partitions.add(scan -> {
+                Iterator<Map.Entry<byte[], Row_Type>> itr = entries(KeyBuilder.PK_INDEX, start);
+                while (itr.hasNext()) {
+                    Map.Entry<byte[], Row_Type> e = itr.next();
+                    if (KeyCodec.compare(e.getKey(), end) >= 0 || !scan.offer(e.getValue())) {
+                        break;
+                    }
+                }
+            });
+        }
+        return partitions;
+    }
+
+    /*
+        Skip list spliterator is split on index levels, so first keys of parts split map in ranges of similar size.
+        PK is hashed over stripes, so keys of first stripe are sample of all keys.
+     */
+    private List<byte[]> splitKeys(byte[] fromKey, byte[] toKey, int parts) {
+        List<byte[]> firstKeys = new ArrayList<>();
+        List<Spliterator<byte[]>> keyParts = new ArrayList<>();
+        keyParts.add(indexRows.stripes(KeyBuilder.PK_INDEX).get(0).keySet().spliterator());
+        for (Spliterator<byte[]> part : split(keyParts, parts)) {
+            part.tryAdvance(key -> {
+                if (KeyCodec.compare(key, fromKey) > 0 && KeyCodec.compare(key, toKey) < 0) {
+                    firstKeys.add(key);
+                }
+            });
+        }
+        firstKeys.sort(KeyCodec.KEY_ORDER);
+
+        List<byte[]> splits = new ArrayList<>();
+        for (int part = 1; part < parts && firstKeys.size() >= parts; part++) {
+            byte[] key = firstKeys.get(part * firstKeys.size() / parts);
+            if (splits.isEmpty() || KeyCodec.compare(splits.get(splits.size() - 1), key) < 0) {
+                splits.add(key);
+            }
+        }
+        return splits;
+    }
+
+    private static <T> List<Spliterator<T>> split(List<Spliterator<T>> parts, int parallelism) {
+        for (boolean split = true; split && parts.size() < parallelism; ) {
+            split = false;
+            for (int index = parts.size() - 1; index >= 0 && parts.size() < parallelism; index--) {
+                Spliterator<T> part = parts.get(index).trySplit();
+                if (part != null) {
+                    parts.add(part);
+                    split = true;
+                }
+            }
+        }
+        return parts;
+    }
+
+    @Override
+    public void search(String indexName, String searchValue, Consumer<Row_Type> consumer, int limit) {
+        byte[] indexKey = keyBuilder.searchKey(indexName, searchValue);
+        forEach(indexName, indexKey, key -> !KeyCodec.startsWith(key, indexKey), consumer, limit);
+    }
+
+    // Entries of index from fromKey till pastEnd key, sorted maps are read through view of table if any
+    private void forEach(String index, byte[] fromKey, Predicate<byte[]> pastEnd, Consumer<Row_Type> consumer, int limit) {
+        Iterator<Map.Entry<byte[], Row_Type>> itr = entries(index, fromKey);
+        for (int tracker = limit; tracker > 0 && itr.hasNext(); tracker--) {
+            Map.Entry<byte[], Row_Type> e = itr.next();
+            if (pastEnd.test(e.getKey())) {
+                break;
+            }
+            consumer.accept(e.getValue());
+        }
+    }
 
-        return rows;
+    private Iterator<Map.Entry<byte[], Row_Type>> entries(String index, byte[] fromKey) {
+        Iterator<Map.Entry<byte[], Row_Type>> entries = indexRows.entries(index, fromKey);
+        return view == null ? entries : view.entries(entries, fromKey);
     }
 
-    private String buildIndexKey(String indexName, String matchValue) {
-        return String.format("%s/%s/%s", tableInfo.getTableName(), indexName, matchValue);
+    private Map<String, Row_Type> rows(String pk) {
+        return rawRows.size() == 1 ? rawRows.get(0) : rawRows.get(Math.floorMod(IndexShards.spread(pk.hashCode()), rawRows.size()));
+    }
+
+    // Columns declared as covered by index, same as persistent tables so plan does not depend on engine
+    @Override
+    public Collection<String> coveredColumns(String indexName) {
+        if (tableInfo.isFullRowCovering(indexName)) {
+            return cols();
+        } else if (tableInfo.isCovering(indexName)) {
+            return tableInfo.getCoveredColumns(indexName);
+        }
+        return Collections.emptyList();
+    }
+
+    @Override
+    public String pkColumn() {
+        return tableInfo.getPkColumn();
+    }
+
+    @Override
+    public void scanIndex(String indexName, BiConsumer<String, Object> consumer) {
+        byte[] indexKey = keyBuilder.indexKey(indexName);
+        Function<Row_Type, String> index = tableInfo.getIndexes().get(indexName);
+        forEach(indexName, indexKey, key -> !KeyCodec.startsWith(key, indexKey), row -> consumer.accept(index.apply(row), row), Integer.MAX_VALUE);
+    }
+
+    @Override
+    public void search(String indexName, String searchValue, Collection<Row_Type> container, int limit) {
+        search(indexName, searchValue, container::add, limit);
     }
 
     @Override
@@ -84,53 +288,243 @@ public class InMemorySSTable<Row_Type> implements SSTable<Row_Type> {
         addRecord(row);
     }
 
+    @Override
+    public void insertAll(Collection<Row_Type> rows, int batchSize) {
+        SSTable.checkBatchSize(batchSize);
+        rows.forEach(this::addRecord);
+    }
+
     private void addRecord(Row_Type row) {
-        String key = tableInfo.getPk().apply(row);
-        rawRows.put(key, row);
-        buildIndex(row, key);
+        addRecord(tableInfo.getPk().apply(row), row);
+    }
+
+    void forEachRow(BiConsumer<String, Row_Type> consumer) {
+        rawRows.forEach(rows -> rows.forEach(consumer));
+    }
+
+    /*
+        PK is passed by caller when it is already computed, like durable table that logs PK before applying row.
+        Row written again over its PK replaces old row like update, index entries of old values are removed.
+     */
+    void addRecord(String key, Row_Type row) {
+        update(key, row);
     }
 
     @Override
     public void rangeSearch(String index, String start, String end, Collection<Row_Type> container, int limit) {
-        String startKey = buildIndexKey(index, start);
-        String endKey = buildIndexKey(index, end);
-        Stream<Row_Type> rows = rows(startKey, endKey, limit);
-        rows.forEach(container::add);
-
+        byte[] startKey = keyBuilder.searchKey(index, start);
+        byte[] endKey = keyBuilder.searchKey(index, end);
+        forEach(index, startKey, key -> KeyCodec.compare(key, endKey) > 0, container::add, limit);
     }
 
     @Override
     public Row_Type get(String pk) {
-        return rawRows.get(pk);
+        return view == null ? rows(pk).get(pk) : view.get(indexRows.stripe(KeyBuilder.PK_INDEX, pk), keyBuilder.primaryKey(pk));
     }
 
+    /*
+        Row is replaced inside compute, so concurrent update of same row see each other and no stale index entry is left.
+     */
     @Override
     public void update(Row_Type record) {
-        addRecord(record);
+        update(tableInfo.getPk().apply(record), record);
     }
 
-    private Stream<Row_Type> rows(String startKey, String endKey, int limit) {
-        Stream<Map.Entry<String, Row_Type>> filterRows = indexRows
-                .subMap(startKey, true, endKey, true)
-                .entrySet()
-                .stream();
+    void update(String key, Row_Type record) {
+        checkWritable();
+        views.write(() -> rows(key).compute(key, (rowKey, oldRow) -> {
+            if (oldRow != null) {
+                removeIndex(oldRow, record, rowKey);
+                stats.update(oldRow, record);
+            } else {
+                stats.insert(record);
+            }
+            putIndex(KeyBuilder.PK_INDEX, rowKey, keyBuilder.primaryKey(rowKey), record);
+            buildIndex(record, rowKey);
+            putBitmaps(rowKey, record);
+            return record;
+        }));
+    }
 
-        Stream<Row_Type> rows = filterRows
-                .limit(limit)
-                .map(Map.Entry::getValue);
+    @Override
+    public void delete(String pk) {
+        checkWritable();
+        views.write(() -> rows(pk).computeIfPresent(pk, (rowKey, oldRow) -> {
+            removeIndex(oldRow, null, rowKey);
+            removeIndex(KeyBuilder.PK_INDEX, rowKey, keyBuilder.primaryKey(rowKey));
+            removeBitmaps(rowKey);
+            stats.delete(oldRow);
+            return null;
+        }));
+    }
+
+    private void checkWritable() {
+        if (view != null) {
+            throw new UnsupportedOperationException("Table read through view is read only");
+        }
+    }
 
-        return rows;
+    private void putIndex(String index, String value, byte[] key, Row_Type row) {
+        NavigableMap<byte[], Row_Type> stripe = indexRows.stripe(index, value);
+        views.beforeChange(stripe, key);
+        stripe.put(key, row);
+    }
+
+    private void removeIndex(String index, String value, byte[] key) {
+        NavigableMap<byte[], Row_Type> stripe = indexRows.stripe(index, value);
+        views.beforeChange(stripe, key);
+        stripe.remove(key);
+    }
+
+    // newRow is null when row is deleted
+    private void removeIndex(Row_Type oldRow, Row_Type newRow, String key) {
+        for (Map.Entry<String, Function<Row_Type, String>> index : tableInfo.getIndexes().entrySet()) {
+            String oldValue = index.getValue().apply(oldRow);
+            if (newRow == null || !oldValue.equals(index.getValue().apply(newRow))) {
+                removeIndex(index.getKey(), oldValue, keyBuilder.secondaryIndexKey(index.getKey(), oldValue, key));
+            }
+        }
     }
 
     private void buildIndex(Row_Type row, String key) {
         for (Map.Entry<String, Function<Row_Type, String>> index : tableInfo.getIndexes().entrySet()) {
             String indexValue = index.getValue().apply(row);
             String indexName = index.getKey();
-            String indexKey = String.format("%s/%s/%s/%s", tableInfo.getTableName(), indexName, indexValue, key);
-            indexRows.put(indexKey, row);
+            byte[] indexKey = keyBuilder.secondaryIndexKey(indexName, indexValue, key);
+            putIndex(indexName, indexValue, indexKey, row);
+        }
+    }
+
+    private void putBitmaps(String key, Row_Type row) {
+        if (bitmapIndexes.isEmpty()) {
+            return;
+        }
+        synchronized (bitmapIndexes) {
+            byte[] ordinalKey = keyBuilder.ordinalKey(bitmapIndexes.set(key, row, views.isOpen()));
+            views.beforeChange(ordinalRows, ordinalKey);
+            ordinalRows.put(ordinalKey, row);
+            flushBitmaps();
         }
     }
 
+    private void removeBitmaps(String key) {
+        if (bitmapIndexes.isEmpty()) {
+            return;
+        }
+        synchronized (bitmapIndexes) {
+            Integer ordinal = bitmapIndexes.clear(key, views.isOpen());
+            if (ordinal != null) {
+                byte[] ordinalKey = keyBuilder.ordinalKey(ordinal);
+                views.beforeChange(ordinalRows, ordinalKey);
+                ordinalRows.remove(ordinalKey);
+            }
+            flushBitmaps();
+        }
+    }
+
+    private void flushBitmaps() {
+        bitmapIndexes.flush((index, value, bitmap) -> {
+            byte[] key = keyBuilder.bitmapKey(index, value);
+            views.beforeChange(bitmaps, key);
+            if (bitmap.isEmpty()) {
+                bitmaps.remove(key);
+            } else {
+                bitmaps.put(key, bitmap);
+            }
+        });
+    }
+
+    @Override
+    public Map<String, Function<Row_Type, String>> bitmapIndexes() {
+        return tableInfo.getBitmapIndexes();
+    }
+
+    // Bitmaps of live table change in place while no view is open, so they are copied
+    @Override
+    public Map<String, RoaringBitmap> bitmaps(String indexName) {
+        byte[] prefix = keyBuilder.bitmapKey(indexName);
+        Map<String, RoaringBitmap> values = new HashMap<>();
+        if (view == null) {
+            synchronized (bitmapIndexes) {
+                bitmaps.tailMap(prefix).entrySet().stream()
+                        .filter(e -> KeyCodec.startsWith(e.getKey(), prefix))
+                        .forEach(e -> values.put(KeyCodec.decodeValue(e.getKey(), prefix.length), e.getValue().clone()));
+            }
+            return values;
+        }
+        Iterator<Map.Entry<byte[], RoaringBitmap>> itr = view.entries(bitmaps.tailMap(prefix).entrySet().iterator(), prefix);
+        while (itr.hasNext()) {
+            Map.Entry<byte[], RoaringBitmap> e = itr.next();
+            if (!KeyCodec.startsWith(e.getKey(), prefix)) {
+                break;
+            }
+            values.put(KeyCodec.decodeValue(e.getKey(), prefix.length), e.getValue());
+        }
+        return values;
+    }
+
+    @Override
+    public Cursor<Row_Type> bitmapCursor(RoaringBitmap ordinals) {
+        return new OrdinalCursor<Row_Type>(ordinals) {
+            @Override
+            protected Row_Type row(int ordinal) {
+                byte[] key = keyBuilder.ordinalKey(ordinal);
+                return view == null ? ordinalRows.get(key) : view.get(ordinalRows, key);
+            }
+        };
+    }
+
+    @Override
+    public Cursor<Row_Type> scanCursor() {
+        byte[] fromKey = keyBuilder.primaryKey();
+        return cursor(KeyBuilder.PK_INDEX, fromKey, KeyCodec.prefixUpperBound(fromKey));
+    }
+
+    @Override
+    public Cursor<Row_Type> searchCursor(String indexName, String searchValue) {
+        byte[] indexKey = keyBuilder.searchKey(indexName, searchValue);
+        return cursor(indexName, indexKey, KeyCodec.prefixUpperBound(indexKey));
+    }
+
+    @Override
+    public Cursor<Row_Type> rangeCursor(String index, String start, String end) {
+        byte[] endKey = end == null ? KeyCodec.prefixUpperBound(keyBuilder.indexKey(index)) : keyBuilder.searchKey(index, end);
+        return cursor(index, keyBuilder.searchKey(index, start), endKey);
+    }
+
+    // Skip list iterator is weakly consistent, rows changed while cursor is open may or may not be seen unless table is read through view
+    private Cursor<Row_Type> cursor(String index, byte[] fromKey, byte[] toKey) {
+        return new KeyRangeCursor<Row_Type>(fromKey, toKey) {
+            Iterator<Map.Entry<byte[], Row_Type>> itr;
+            Map.Entry<byte[], Row_Type> current;
+
+            @Override
+            protected void seekTo(byte[] key) {
+                itr = entries(index, key);
+            }
+
+            @Override
+            protected boolean advance() {
+                current = itr.hasNext() ? itr.next() : null;
+                return current != null;
+            }
+
+            @Override
+            protected byte[] key() {
+                return current.getKey();
+            }
+
+            @Override
+            protected Row_Type row() {
+                return current.getValue();
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
     @Override
     public Object columnValue(String col, Object row) {
         return tableInfo
@@ -139,6 +533,16 @@ public class InMemorySSTable<Row_Type> implements SSTable<Row_Type> {
                 .apply((Row_Type) row);
     }
 
+    @Override
+    public ColumnReader column(String col) {
+        return ColumnReader.of(tableInfo, col);
+    }
+
+    @Override
+    public TableStats<Row_Type> tableStats() {
+        return stats;
+    }
+
 
     @Override
     public String toString() {
@@ -1,13 +1,17 @@
 package query.kv.memory;
 
 import query.kv.KeyValueStore;
+import query.kv.ReadView;
 import query.kv.SSTable;
+import query.kv.Sequences;
 import query.kv.TableInfo;
+import query.kv.cache.CachedSSTable;
+import query.kv.codec.RowCodec;
+import query.sql.QueryCache;
 
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
 
 import static java.util.Collections.emptyMap;
@@ -15,17 +19,41 @@ import static java.util.Collections.emptyMap;
 public class InMemoryStore implements KeyValueStore {
 
     public static String type = "memory:";
-    private final Map<String, SSTable<?>> tables = new HashMap<>();
+    private final Map<String, SSTable<?>> tables = new ConcurrentHashMap<>();
+    private final QueryCache queryCache = new QueryCache(QueryCache.DEFAULT_SIZE);
+    private final RowCodec.Factory codecFactory;
+    private final Sequences sequences = Sequences.inMemory();
+    private final ReadViews views = new ReadViews();
+
+    public InMemoryStore() {
+        this(RowCodec.json());
+    }
+
+    // Rows are kept as objects, codec is only used when table is made durable
+    public InMemoryStore(RowCodec.Factory codecFactory) {
+        this.codecFactory = codecFactory;
+    }
 
     @Override
     public <Row_Type> SSTable<Row_Type> createTable(String tableName, Class<Row_Type> type, Map<String, Function<Row_Type, Object>> schema, Map<String, Function<Row_Type, String>> indexes) {
-        AtomicLong l = new AtomicLong(System.nanoTime());
-        TableInfo<Row_Type> tableInfo = new TableInfo<>(tableName, schema, indexes, null, null, $ -> String.valueOf(l.incrementAndGet()));
+        Sequences.Sequence sequence = sequences().of(tableName);
+        TableInfo<Row_Type> tableInfo = new TableInfo<>(tableName, schema, indexes, codecFactory.create(type, schema), $ -> String.valueOf(sequence.next()));
         return createTable(tableInfo);
     }
 
-    private <Row_Type> void registerTable(String tableName, InMemorySSTable<Row_Type> table) {
+    // Auto PK sequences, durable store keeps them in its log
+    protected Sequences sequences() {
+        return sequences;
+    }
+
+    // Shared by all tables, so snapshot covers every table of store
+    ReadViews views() {
+        return views;
+    }
+
+    protected <Row_Type> void registerTable(String tableName, SSTable<Row_Type> table) {
         tables.put(tableName, table);
+        queryCache.clear();
     }
 
     @Override
@@ -35,11 +63,16 @@ public class InMemoryStore implements KeyValueStore {
 
     @Override
     public <Row_Type> SSTable<Row_Type> createTable(TableInfo<Row_Type> tableInfo) {
-        InMemorySSTable<Row_Type> table = new InMemorySSTable<>(tableInfo);
+        SSTable<Row_Type> table = CachedSSTable.wrap(new InMemorySSTable<>(tableInfo, views), tableInfo);
         registerTable(tableInfo.getTableName(), table);
         return table;
     }
 
+    @Override
+    public QueryCache queryCache() {
+        return queryCache;
+    }
+
     @Override
     public List<String> desc(String tableName) {
         SSTable<?> SSTable = tables.get(tableName);
@@ -56,4 +89,9 @@ public class InMemoryStore implements KeyValueStore {
         return (SSTable<Row_Type>) tables.get(tableName);
     }
 
+    @Override
+    public ReadView snapshot() {
+        return views.open();
+    }
+
 }
@@ -0,0 +1,104 @@
+package query.kv.memory;
+
+import query.kv.KeyCodec;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/*
+    Sorted entries of table split by key range of index, every index ( and PK ) has its own skip lists so writers of
+    different indexes do not contend on head of same list.
+    Index is striped in shards by hash of index value, read of key range seeks every stripe and merges them in key order.
+ */
+final class IndexShards<V> {
+
+    private final int stripes;
+    private final Map<String, List<NavigableMap<byte[], V>>> indexes = new ConcurrentHashMap<>();
+
+    IndexShards(int stripes) {
+        this.stripes = stripes;
+    }
+
+    // Stripe that has entries of index value
+    NavigableMap<byte[], V> stripe(String index, String value) {
+        List<NavigableMap<byte[], V>> maps = stripes(index);
+        return stripes == 1 ? maps.get(0) : maps.get(Math.floorMod(spread(value.hashCode()), stripes));
+    }
+
+    List<NavigableMap<byte[], V>> stripes(String index) {
+        return indexes.computeIfAbsent(index, name -> {
+            List<NavigableMap<byte[], V>> maps = new ArrayList<>(stripes);
+            for (int stripe = 0; stripe < stripes; stripe++) {
+                maps.add(new ConcurrentSkipListMap<>(KeyCodec.KEY_ORDER));
+            }
+            return maps;
+        });
+    }
+
+    // Entries of index from fromKey in key order
+    Iterator<Map.Entry<byte[], V>> entries(String index, byte[] fromKey) {
+        List<NavigableMap<byte[], V>> maps = stripes(index);
+        if (maps.size() == 1) {
+            return maps.get(0).tailMap(fromKey, true).entrySet().iterator();
+        }
+        List<Iterator<Map.Entry<byte[], V>>> sources = new ArrayList<>(maps.size());
+        for (NavigableMap<byte[], V> map : maps) {
+            sources.add(map.tailMap(fromKey, true).entrySet().iterator());
+        }
+        return new MergedEntries<>(sources);
+    }
+
+    // Same as HashMap, high bits are mixed in so values that differ only in high bits go to different stripes
+    static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    // Stripes do not share keys, so merge only picks smallest head
+    private static final class MergedEntries<V> implements Iterator<Map.Entry<byte[], V>> {
+
+        private final PriorityQueue<Head<V>> heads = new PriorityQueue<>((h1, h2) -> KeyCodec.compare(h1.entry.getKey(), h2.entry.getKey()));
+
+        MergedEntries(List<Iterator<Map.Entry<byte[], V>>> sources) {
+            for (Iterator<Map.Entry<byte[], V>> source : sources) {
+                if (source.hasNext()) {
+                    heads.add(new Head<>(source.next(), source));
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !heads.isEmpty();
+        }
+
+        @Override
+        public Map.Entry<byte[], V> next() {
+            Head<V> head = heads.poll();
+            if (head == null) {
+                throw new NoSuchElementException();
+            }
+            Map.Entry<byte[], V> entry = head.entry;
+            if (head.source.hasNext()) {
+                heads.add(new Head<>(head.source.next(), head.source));
+            }
+            return entry;
+        }
+    }
+
+    private static final class Head<V> {
+        final Map.Entry<byte[], V> entry;
+        final Iterator<Map.Entry<byte[], V>> source;
+
+        Head(Map.Entry<byte[], V> entry, Iterator<Map.Entry<byte[], V>> source) {
+            this.entry = entry;
+            this.source = source;
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package query.kv.memory;
+
+import query.kv.KeyCodec;
+import query.kv.ReadView;
+
+import java.util.AbstractMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/*
+    Open read views of in memory store. Before key of sorted map is changed, writer saves its old value in every open view
+    and view reads saved value instead of current one. Writers pay for views only while views are open.
+
+    Mutation runs under read lock and view is opened under write lock, so view sees row & its index entries
+    either before or after mutation.
+ */
+final class ReadViews {
+
+    // Saved value of key that was not present when view was opened
+    private static final Object ABSENT = new Object();
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Set<View> open = ConcurrentHashMap.newKeySet();
+
+    View open() {
+        lock.writeLock().lock();
+        try {
+            View view = new View();
+            open.add(view);
+            return view;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void write(Runnable mutation) {
+        lock.readLock().lock();
+        try {
+            mutation.run();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Called by writer before key of map is changed
+    <V> void beforeChange(NavigableMap<byte[], V> map, byte[] key) {
+        if (open.isEmpty()) {
+            return;
+        }
+        V oldValue = map.get(key);
+        for (View view : open) {
+            view.saved.putIfAbsent(key, oldValue == null ? ABSENT : oldValue);
+        }
+    }
+
+    // Writer checks it under read lock, so no view is opened till its mutation ends
+    boolean isOpen() {
+        return !open.isEmpty();
+    }
+
+    boolean owns(ReadView view) {
+        return view instanceof View && ((View) view).owner() == this;
+    }
+
+    final class View implements ReadView {
+
+        private final ConcurrentSkipListMap<byte[], Object> saved = new ConcurrentSkipListMap<>(KeyCodec.KEY_ORDER);
+
+        private ReadViews owner() {
+            return ReadViews.this;
+        }
+
+        // Current value is read before saved one, writer saves old value before change so change is never missed
+        // Saved value is old value of same map, so it is of V when it is not ABSENT
+        @SuppressWarnings("unchecked")
+        <V> V get(NavigableMap<byte[], V> map, byte[] key) {
+            V value = map.get(key);
+            Object old = saved.get(key);
+            return old == null ? value : old == ABSENT ? null : (V) old;
+        }
+
+        /*
+            Entries from fromKey as of view. Current entries are merged with saved values, saved map is looked up again
+            after every move of current iterator so key removed behind iterator is still found in saved values.
+            Saved values of keys outside of current entries are returned too, caller stops at end of its key range.
+         */
+        <V> Iterator<Map.Entry<byte[], V>> entries(Iterator<Map.Entry<byte[], V>> itr, byte[] fromKey) {
+            return new Iterator<Map.Entry<byte[], V>>() {
+                Map.Entry<byte[], V> head;
+                byte[] position;
+                Map.Entry<byte[], V> next = advance();
+
+                // Saved value is old value of same map, so it is of V when it is not ABSENT
+                @SuppressWarnings("unchecked")
+                Map.Entry<byte[], V> advance() {
+                    while (true) {
+                        if (head == null && itr.hasNext()) {
+                            head = itr.next();
+                        }
+                        Map.Entry<byte[], Object> old = position == null ? saved.ceilingEntry(fromKey) : saved.higherEntry(position);
+                        byte[] key;
+                        Object value;
+                        if (old != null && (head == null || KeyCodec.compare(old.getKey(), head.getKey()) <= 0)) {
+                            key = old.getKey();
+                            value = old.getValue();
+                            if (head != null && KeyCodec.compare(key, head.getKey()) == 0) {
+                                head = null;
+                            }
+                        } else if (head != null) {
+                            key = head.getKey();
+                            Object savedValue = saved.get(key);
+                            value = savedValue == null ? head.getValue() : savedValue;
+                            head = null;
+                        } else {
+                            return null;
+                        }
+                        position = key;
+                        if (value != ABSENT) {
+                            return new AbstractMap.SimpleImmutableEntry<>(key, (V) value);
+                        }
+                    }
+                }
+
+                @Override
+                public boolean hasNext() {
+                    return next != null;
+                }
+
+                @Override
+                public Map.Entry<byte[], V> next() {
+                    if (next == null) {
+                        throw new NoSuchElementException();
+                    }
+                    Map.Entry<byte[], V> current = next;
+                    next = advance();
+                    return current;
+                }
+            };
+        }
+
+        @Override
+        public void close() {
+            open.remove(this);
+        }
+    }
+}
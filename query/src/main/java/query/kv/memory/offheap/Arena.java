@@ -0,0 +1,130 @@
+package query.kv.memory.offheap;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/*
+    Append only records of key & value in slabs of direct or memory mapped buffers.
+    Record is [key length][value length][key][value], address of record is slab number in high int and offset in low int.
+    Space of replaced & deleted records is not reused, arena is dropped with store.
+
+    Append is called by single writer ( store write lock ), reads use absolute gets so readers do not share buffer position.
+ */
+final class Arena {
+
+    static final int DEFAULT_SLAB_SIZE = 64 * 1024 * 1024;
+    private static final int HEADER = Integer.BYTES * 2;
+
+    private final int slabSize;
+    // Slabs are mapped from files of folder, null means direct buffers
+    private final File folder;
+    private volatile ByteBuffer[] slabs = new ByteBuffer[0];
+    private int position;
+    private long allocated;
+
+    Arena(int slabSize, File folder) {
+        this.slabSize = slabSize;
+        this.folder = folder;
+    }
+
+    long append(byte[] key, byte[] value) {
+        int length = HEADER + key.length + value.length;
+        if (slabs.length == 0 || position + length > slabs[slabs.length - 1].capacity()) {
+            addSlab(Math.max(slabSize, length));
+        }
+        int slab = slabs.length - 1;
+        ByteBuffer writer = slabs[slab].duplicate();
+        writer.position(position);
+        writer.putInt(key.length).putInt(value.length).put(key).put(value);
+        long address = address(slab, position);
+        position += length;
+        allocated += length;
+        return address;
+    }
+
+    private void addSlab(int size) {
+        ByteBuffer slab = folder == null ? ByteBuffer.allocateDirect(size) : map(slabs.length, size);
+        ByteBuffer[] grown = Arrays.copyOf(slabs, slabs.length + 1);
+        grown[grown.length - 1] = slab;
+        slabs = grown;
+        position = 0;
+    }
+
+    private ByteBuffer map(int slab, int size) {
+        File file = new File(folder, String.format("slab-%06d.arena", slab));
+        file.deleteOnExit();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(size);
+            return raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    byte[] key(long address) {
+        ByteBuffer slab = slab(address);
+        int offset = offset(address);
+        return read(slab, offset + HEADER, slab.getInt(offset));
+    }
+
+    byte[] value(long address) {
+        ByteBuffer slab = slab(address);
+        int offset = offset(address);
+        int keyLength = slab.getInt(offset);
+        return read(slab, offset + HEADER + keyLength, slab.getInt(offset + Integer.BYTES));
+    }
+
+    // Key of record compared with key as unsigned bytes, same order as KeyCodec.compare
+    int compare(long address, byte[] key) {
+        ByteBuffer slab = slab(address);
+        int offset = offset(address);
+        int length = slab.getInt(offset);
+        int start = offset + HEADER;
+        for (int index = 0; index < length && index < key.length; index++) {
+            int diff = (slab.get(start + index) & 0xFF) - (key[index] & 0xFF);
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return length - key.length;
+    }
+
+    // Bytes taken by records, including replaced ones
+    long allocated() {
+        return allocated;
+    }
+
+    void close() {
+        ByteBuffer[] current = slabs;
+        slabs = new ByteBuffer[0];
+        if (folder != null) {
+            for (int slab = 0; slab < current.length; slab++) {
+                new File(folder, String.format("slab-%06d.arena", slab)).delete();
+            }
+        }
+    }
+
+    private static byte[] read(ByteBuffer slab, int offset, int length) {
+        byte[] bytes = new byte[length];
+        ByteBuffer reader = slab.duplicate();
+        reader.position(offset);
+        reader.get(bytes);
+        return bytes;
+    }
+
+    private ByteBuffer slab(long address) {
+        return slabs[(int) (address >>> 32)];
+    }
+
+    private static int offset(long address) {
+        return (int) address;
+    }
+
+    private static long address(int slab, int offset) {
+        return ((long) slab << 32) | (offset & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,116 @@
+package query.kv.memory.offheap;
+
+import java.util.Arrays;
+
+/*
+    Open addressing hash of key to record address, keys are kept only in arena.
+    Slots are primitive arrays so index has no object per key, hash of slot avoids reading arena on most misses.
+    Guarded by store lock, single writer & many readers.
+ */
+final class HashIndex {
+
+    private static final long EMPTY = 0;
+    private static final long REMOVED = -1;
+    private static final int MIN_CAPACITY = 1024;
+
+    private final Arena arena;
+    // Address + 1, so address 0 is not taken as empty slot
+    private long[] slots = new long[MIN_CAPACITY];
+    private int[] hashes = new int[MIN_CAPACITY];
+    private int size;
+    private int used;
+
+    HashIndex(Arena arena) {
+        this.arena = arena;
+    }
+
+    // Address of record of key, -1 when key is not present
+    long get(byte[] key) {
+        long[] currentSlots = slots;
+        int[] currentHashes = hashes;
+        int hash = hash(key);
+        int mask = currentSlots.length - 1;
+        for (int slot = hash & mask; currentSlots[slot] != EMPTY; slot = (slot + 1) & mask) {
+            long stored = currentSlots[slot];
+            if (stored != REMOVED && currentHashes[slot] == hash && arena.compare(stored - 1, key) == 0) {
+                return stored - 1;
+            }
+        }
+        return -1;
+    }
+
+    void put(byte[] key, long address) {
+        if ((used + 1) * 4L > slots.length * 3L) {
+            resize(size * 4L > slots.length ? slots.length * 2 : slots.length);
+        }
+        int hash = hash(key);
+        int mask = slots.length - 1;
+        int free = -1;
+        int slot = hash & mask;
+        for (; slots[slot] != EMPTY; slot = (slot + 1) & mask) {
+            long stored = slots[slot];
+            if (stored == REMOVED) {
+                free = free == -1 ? slot : free;
+            } else if (hashes[slot] == hash && arena.compare(stored - 1, key) == 0) {
+                slots[slot] = address + 1;
+                return;
+            }
+        }
+        if (free == -1) {
+            free = slot;
+            used++;
+        }
+        slots[free] = address + 1;
+        hashes[free] = hash;
+        size++;
+    }
+
+    void remove(byte[] key) {
+        int hash = hash(key);
+        int mask = slots.length - 1;
+        for (int slot = hash & mask; slots[slot] != EMPTY; slot = (slot + 1) & mask) {
+            long stored = slots[slot];
+            if (stored != REMOVED && hashes[slot] == hash && arena.compare(stored - 1, key) == 0) {
+                slots[slot] = REMOVED;
+                size--;
+                return;
+            }
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    // Removed slots are dropped, capacity stays same when table is full of removed slots
+    private void resize(int capacity) {
+        long[] oldSlots = slots;
+        int[] oldHashes = hashes;
+        long[] newSlots = new long[capacity];
+        int[] newHashes = new int[capacity];
+        int mask = capacity - 1;
+        for (int index = 0; index < oldSlots.length; index++) {
+            if (oldSlots[index] != EMPTY && oldSlots[index] != REMOVED) {
+                int slot = oldHashes[index] & mask;
+                while (newSlots[slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                newSlots[slot] = oldSlots[index];
+                newHashes[slot] = oldHashes[index];
+            }
+        }
+        hashes = newHashes;
+        slots = newSlots;
+        used = size;
+    }
+
+    // Murmur finalizer, key bytes like "pk" prefix are shared by many keys so low bits need mixing
+    private static int hash(byte[] key) {
+        int hash = Arrays.hashCode(key);
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,213 @@
+package query.kv.memory.offheap;
+
+import query.kv.persistent.NavigablePersistentStore;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.LongPredicate;
+
+/*
+    Sorted key value store with keys & values kept outside of java heap. Records are appended to arena,
+    hash index serves point reads and sorted index serves ranges, both keep only record addresses.
+    Store is not durable, mapped slabs only let OS page out cold records.
+
+    Writes take write lock, so batch is seen fully or not at all. Live reads take read lock, snapshot reads take no lock.
+ */
+public class NavigableOffHeap extends OffHeapReader {
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final HashIndex hashIndex;
+    private final SortedIndex sortedIndex;
+
+    public NavigableOffHeap() {
+        this(Arena.DEFAULT_SLAB_SIZE, null);
+    }
+
+    // Slabs of slabSize bytes, mapped from files of folder when folder is not null
+    public NavigableOffHeap(int slabSize, File folder) {
+        super(new Arena(slabSize, folder));
+        if (folder != null) {
+            folder.mkdirs();
+        }
+        this.hashIndex = new HashIndex(arena);
+        this.sortedIndex = new SortedIndex(arena);
+    }
+
+    @Override
+    public void put(byte[] key, byte[] value) {
+        apply(batch -> batch.put(key, value));
+    }
+
+    @Override
+    public byte[] get(byte[] key) {
+        lock.readLock().lock();
+        try {
+            long address = hashIndex.get(key);
+            return address == -1 ? null : arena.value(address);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void delete(byte[] key) {
+        apply(batch -> batch.delete(key));
+    }
+
+    @Override
+    public void write(Consumer<Batch> writes) {
+        lock.writeLock().lock();
+        try {
+            writes.accept(new Batch() {
+                @Override
+                public void put(byte[] key, byte[] value) {
+                    long address = arena.append(key, value);
+                    hashIndex.put(key, address);
+                    sortedIndex.put(key, address);
+                }
+
+                @Override
+                public void delete(byte[] key) {
+                    if (hashIndex.get(key) != -1) {
+                        hashIndex.remove(key);
+                        sortedIndex.remove(key);
+                    }
+                }
+            });
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    void scan(byte[] fromKey, LongPredicate pastEnd, LongPredicate consumer) {
+        lock.readLock().lock();
+        try {
+            SortedIndex.scan(arena, sortedIndex.chunks(), fromKey, pastEnd, consumer);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<byte[]> splitKeys(byte[] fromKey, byte[] toKey, int parts) {
+        lock.readLock().lock();
+        try {
+            return SortedIndex.splitKeys(arena, sortedIndex.chunks(), fromKey, toKey, parts);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Live cursor reads snapshot taken when cursor is created, so it does not hold lock between calls
+    @Override
+    public KeyCursor cursor(byte[] upperBound) {
+        Snapshot snapshot = snapshot();
+        return cursor(snapshot.chunks, upperBound, snapshot::close);
+    }
+
+    @Override
+    public Snapshot snapshot() {
+        lock.writeLock().lock();
+        try {
+            return new Snapshot(sortedIndex.snapshot());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Number of live keys
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return hashIndex.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Off heap bytes taken by records, including replaced ones
+    public long allocated() {
+        lock.readLock().lock();
+        try {
+            return arena.allocated();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            arena.close();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /*
+        Chunks of sorted index as of snapshot, records are never moved so addresses stay valid.
+     */
+    public final class Snapshot extends OffHeapReader implements SnapshotStore {
+        private final List<SortedIndex.Chunk> chunks;
+        private boolean closed;
+
+        private Snapshot(List<SortedIndex.Chunk> chunks) {
+            super(NavigableOffHeap.this.arena);
+            this.chunks = chunks;
+        }
+
+        @Override
+        public byte[] get(byte[] key) {
+            long address = SortedIndex.get(arena, chunks, key);
+            return address == -1 ? null : arena.value(address);
+        }
+
+        @Override
+        void scan(byte[] fromKey, LongPredicate pastEnd, LongPredicate consumer) {
+            SortedIndex.scan(arena, chunks, fromKey, pastEnd, consumer);
+        }
+
+        @Override
+        public List<byte[]> splitKeys(byte[] fromKey, byte[] toKey, int parts) {
+            return SortedIndex.splitKeys(arena, chunks, fromKey, toKey, parts);
+        }
+
+        @Override
+        public KeyCursor cursor(byte[] upperBound) {
+            return cursor(chunks, upperBound, () -> {
+            });
+        }
+
+        @Override
+        public SnapshotStore snapshot() {
+            return NavigableOffHeap.this.snapshot();
+        }
+
+        @Override
+        public void put(byte[] key, byte[] value) {
+            throw new UnsupportedOperationException("Snapshot is read only");
+        }
+
+        @Override
+        public void delete(byte[] key) {
+            throw new UnsupportedOperationException("Snapshot is read only");
+        }
+
+        @Override
+        public void write(Consumer<Batch> writes) {
+            throw new UnsupportedOperationException("Snapshot is read only");
+        }
+
+        @Override
+        public synchronized void close() {
+            if (!closed) {
+                closed = true;
+                sortedIndex.release();
+            }
+        }
+    }
+}
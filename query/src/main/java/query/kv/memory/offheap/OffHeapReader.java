@@ -0,0 +1,109 @@
+package query.kv.memory.offheap;
+
+import query.kv.KeyCodec;
+import query.kv.persistent.NavigablePersistentStore;
+
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.LongPredicate;
+import java.util.function.Predicate;
+
+/*
+    Range reads of off heap store built on ordered scan of record addresses. Live store and snapshot differ only
+    in chunks of sorted index that scan reads. Keys are compared in arena, only values passed to converter are copied.
+ */
+abstract class OffHeapReader implements NavigablePersistentStore {
+
+    final Arena arena;
+
+    OffHeapReader(Arena arena) {
+        this.arena = arena;
+    }
+
+    // Addresses from fromKey in key order, stops at end address or when consumer returns false
+    abstract void scan(byte[] fromKey, LongPredicate pastEnd, LongPredicate consumer);
+
+    @Override
+    public <Row_Type> void iterate(byte[] prefix, Function<byte[], Row_Type> converter, Consumer<Row_Type> consumer, int limit) {
+        byte[] upperBound = KeyCodec.prefixUpperBound(prefix);
+        LongPredicate pastEnd = upperBound == null ? address -> false : address -> arena.compare(address, upperBound) >= 0;
+        iterateLimit(prefix, pastEnd, converter, consumer, limit);
+    }
+
+    @Override
+    public <Row_Type> void iterate(byte[] fromKey, byte[] toKey, Function<byte[], Row_Type> converter, Consumer<Row_Type> consumer, int limit) {
+        iterateLimit(fromKey, address -> arena.compare(address, toKey) > 0, converter, consumer, limit);
+    }
+
+    @Override
+    public <Row_Type> void iterateWhile(byte[] fromKey, byte[] toKey, Function<byte[], Row_Type> converter, Predicate<Row_Type> consumer) {
+        scan(fromKey, address -> arena.compare(address, toKey) >= 0, address -> consumer.test(converter.apply(arena.value(address))));
+    }
+
+    private <Row_Type> void iterateLimit(byte[] fromKey, LongPredicate pastEnd, Function<byte[], Row_Type> converter, Consumer<Row_Type> consumer, int limit) {
+        if (limit <= 0) {
+            return;
+        }
+        int[] tracker = {limit};
+        scan(fromKey, pastEnd, address -> {
+            consumer.accept(converter.apply(arena.value(address)));
+            return --tracker[0] > 0;
+        });
+    }
+
+    /*
+        Cursor walks chunks of snapshot, chunks do not change so position is kept between calls.
+        onClose is called when cursor is closed.
+     */
+    KeyCursor cursor(List<SortedIndex.Chunk> chunks, byte[] upperBound, Runnable onClose) {
+        return new KeyCursor() {
+            int chunkIndex;
+            int position = -1;
+            long address = -1;
+
+            @Override
+            public void seek(byte[] key) {
+                chunkIndex = Math.max(0, SortedIndex.chunkOf(arena, chunks, key));
+                position = chunks.isEmpty() ? 0 : SortedIndex.search(arena, chunks.get(chunkIndex), key);
+                position = (position < 0 ? -position - 1 : position) - 1;
+                address = -1;
+            }
+
+            @Override
+            public boolean next() {
+                position++;
+                while (chunkIndex < chunks.size() && position >= chunks.get(chunkIndex).size) {
+                    chunkIndex++;
+                    position = 0;
+                }
+                address = chunkIndex < chunks.size() ? chunks.get(chunkIndex).addresses[position] : -1;
+                if (address != -1 && upperBound != null && arena.compare(address, upperBound) >= 0) {
+                    address = -1;
+                }
+                return address != -1;
+            }
+
+            @Override
+            public byte[] key() {
+                return arena.key(address);
+            }
+
+            @Override
+            public byte[] value() {
+                return arena.value(address);
+            }
+
+            @Override
+            public byte[] get(byte[] key) {
+                long found = SortedIndex.get(arena, chunks, key);
+                return found == -1 ? null : arena.value(found);
+            }
+
+            @Override
+            public void close() {
+                onClose.run();
+            }
+        };
+    }
+}
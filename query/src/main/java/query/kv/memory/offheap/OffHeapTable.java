@@ -0,0 +1,13 @@
+package query.kv.memory.offheap;
+
+import query.kv.TableInfo;
+import query.kv.persistent.NavigableSSTable;
+
+public class OffHeapTable<Row_Type> extends NavigableSSTable<Row_Type> {
+
+    public OffHeapTable(NavigableOffHeap nvStores,
+                        TableInfo<Row_Type> tableInfo) {
+        super(nvStores, tableInfo);
+    }
+
+}
@@ -0,0 +1,200 @@
+package query.kv.memory.offheap;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongPredicate;
+
+/*
+    Record addresses sorted by key of record, kept in chunks of primitive arrays so index costs 8 bytes per key and
+    has no object per key for GC to trace. Chunks are found by binary search on first key, keys are read from arena.
+
+    Snapshot copies only list of chunks. Chunk created before snapshot is shared, writer copies it before change
+    while snapshots are open, so snapshot chunks never change.
+    Writes are guarded by store write lock, live reads by read lock.
+ */
+final class SortedIndex {
+
+    static final int CHUNK_SIZE = 256;
+
+    private final Arena arena;
+    private final List<Chunk> chunks = new ArrayList<>();
+    private final AtomicInteger openSnapshots = new AtomicInteger();
+    private int epoch;
+
+    SortedIndex(Arena arena) {
+        this.arena = arena;
+    }
+
+    static final class Chunk {
+        final long[] addresses;
+        int size;
+        final int epoch;
+
+        Chunk(long[] addresses, int size, int epoch) {
+            this.addresses = addresses;
+            this.size = size;
+            this.epoch = epoch;
+        }
+    }
+
+    // Chunks of live index, changed by writer
+    List<Chunk> chunks() {
+        return chunks;
+    }
+
+    // Chunks as of now, caller must call release when done
+    List<Chunk> snapshot() {
+        epoch++;
+        openSnapshots.incrementAndGet();
+        return Collections.unmodifiableList(new ArrayList<>(chunks));
+    }
+
+    void release() {
+        openSnapshots.decrementAndGet();
+    }
+
+    void put(byte[] key, long address) {
+        if (chunks.isEmpty()) {
+            chunks.add(new Chunk(new long[CHUNK_SIZE], 0, epoch));
+        }
+        int chunkIndex = Math.max(0, chunkOf(arena, chunks, key));
+        Chunk chunk = chunks.get(chunkIndex);
+        int position = search(arena, chunk, key);
+        if (position >= 0) {
+            writable(chunkIndex).addresses[position] = address;
+            return;
+        }
+        position = -position - 1;
+        if (chunk.size == CHUNK_SIZE) {
+            split(chunkIndex);
+            if (position > CHUNK_SIZE / 2) {
+                chunkIndex++;
+                position -= CHUNK_SIZE / 2;
+            }
+        }
+        Chunk target = writable(chunkIndex);
+        System.arraycopy(target.addresses, position, target.addresses, position + 1, target.size - position);
+        target.addresses[position] = address;
+        target.size++;
+    }
+
+    void remove(byte[] key) {
+        int chunkIndex = chunkOf(arena, chunks, key);
+        if (chunkIndex < 0) {
+            return;
+        }
+        int position = search(arena, chunks.get(chunkIndex), key);
+        if (position < 0) {
+            return;
+        }
+        Chunk target = writable(chunkIndex);
+        System.arraycopy(target.addresses, position + 1, target.addresses, position, target.size - position - 1);
+        target.size--;
+        if (target.size == 0) {
+            chunks.remove(chunkIndex);
+        }
+    }
+
+    private void split(int chunkIndex) {
+        Chunk full = chunks.get(chunkIndex);
+        int half = CHUNK_SIZE / 2;
+        long[] left = new long[CHUNK_SIZE];
+        long[] right = new long[CHUNK_SIZE];
+        System.arraycopy(full.addresses, 0, left, 0, half);
+        System.arraycopy(full.addresses, half, right, 0, full.size - half);
+        chunks.set(chunkIndex, new Chunk(left, half, epoch));
+        chunks.add(chunkIndex + 1, new Chunk(right, full.size - half, epoch));
+    }
+
+    private Chunk writable(int chunkIndex) {
+        Chunk chunk = chunks.get(chunkIndex);
+        if (chunk.epoch == epoch || openSnapshots.get() == 0) {
+            return chunk;
+        }
+        Chunk copy = new Chunk(chunk.addresses.clone(), chunk.size, epoch);
+        chunks.set(chunkIndex, copy);
+        return copy;
+    }
+
+    // Last chunk with first key <= key, -1 when key is before all chunks
+    static int chunkOf(Arena arena, List<Chunk> chunks, byte[] key) {
+        int low = 0;
+        int high = chunks.size() - 1;
+        int found = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (arena.compare(chunks.get(mid).addresses[0], key) <= 0) {
+                found = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return found;
+    }
+
+    // Position of key in chunk, or -(insertion point) - 1 like Arrays.binarySearch
+    static int search(Arena arena, Chunk chunk, byte[] key) {
+        int low = 0;
+        int high = chunk.size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int compare = arena.compare(chunk.addresses[mid], key);
+            if (compare < 0) {
+                low = mid + 1;
+            } else if (compare > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    // Address of key in chunks, -1 when key is not present
+    static long get(Arena arena, List<Chunk> chunks, byte[] key) {
+        int chunkIndex = chunkOf(arena, chunks, key);
+        if (chunkIndex < 0) {
+            return -1;
+        }
+        Chunk chunk = chunks.get(chunkIndex);
+        int position = search(arena, chunk, key);
+        return position < 0 ? -1 : chunk.addresses[position];
+    }
+
+    // Addresses from fromKey in key order till pastEnd address or consumer returns false
+    static void scan(Arena arena, List<Chunk> chunks, byte[] fromKey, LongPredicate pastEnd, LongPredicate consumer) {
+        if (chunks.isEmpty()) {
+            return;
+        }
+        int chunkIndex = Math.max(0, chunkOf(arena, chunks, fromKey));
+        int position = search(arena, chunks.get(chunkIndex), fromKey);
+        position = position < 0 ? -position - 1 : position;
+        for (; chunkIndex < chunks.size(); chunkIndex++, position = 0) {
+            Chunk chunk = chunks.get(chunkIndex);
+            for (; position < chunk.size; position++) {
+                long address = chunk.addresses[position];
+                if (pastEnd.test(address) || !consumer.test(address)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    // First keys of chunks inside fromKey till toKey, picked so ranges have similar number of chunks
+    static List<byte[]> splitKeys(Arena arena, List<Chunk> chunks, byte[] fromKey, byte[] toKey, int parts) {
+        int first = chunkOf(arena, chunks, fromKey) + 1;
+        int last = toKey == null ? chunks.size() - 1 : chunkOf(arena, chunks, toKey);
+        List<byte[]> splits = new ArrayList<>();
+        int candidates = last - first + 1;
+        for (int part = 1; part < parts && candidates >= parts; part++) {
+            long address = chunks.get(first + part * candidates / parts).addresses[0];
+            if (toKey == null || arena.compare(address, toKey) < 0) {
+                splits.add(arena.key(address));
+            }
+        }
+        return splits;
+    }
+}
@@ -0,0 +1,60 @@
+package query.kv.memory.wal;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+    When log is forced to disk and how big log grows before snapshot is taken.
+    BATCH - every write call waits for fsync, concurrent writers share single fsync ( group commit ).
+    INTERVAL - log is forced by background thread, writes of last interval can be lost on crash.
+ */
+public class Durability {
+
+    public enum SyncMode {
+        BATCH, INTERVAL
+    }
+
+    private final SyncMode syncMode;
+    private final long syncIntervalMs;
+    private int segmentSize = 64 * 1024 * 1024;
+    private long snapshotEvery = 256L * 1024 * 1024;
+
+    private Durability(SyncMode syncMode, long syncIntervalMs) {
+        this.syncMode = syncMode;
+        this.syncIntervalMs = syncIntervalMs;
+    }
+
+    public static Durability syncEveryBatch() {
+        return new Durability(SyncMode.BATCH, 0);
+    }
+
+    public static Durability syncEvery(long interval, TimeUnit unit) {
+        return new Durability(SyncMode.INTERVAL, unit.toMillis(interval));
+    }
+
+    public Durability segmentSize(int bytes) {
+        this.segmentSize = bytes;
+        return this;
+    }
+
+    // Log bytes written after last snapshot that trigger next snapshot
+    public Durability snapshotEvery(long bytes) {
+        this.snapshotEvery = bytes;
+        return this;
+    }
+
+    public SyncMode getSyncMode() {
+        return syncMode;
+    }
+
+    public long getSyncIntervalMs() {
+        return syncIntervalMs;
+    }
+
+    public int getSegmentSize() {
+        return segmentSize;
+    }
+
+    public long getSnapshotEvery() {
+        return snapshotEvery;
+    }
+}
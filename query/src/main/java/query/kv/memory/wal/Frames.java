@@ -0,0 +1,64 @@
+package query.kv.memory.wal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/*
+    Log and snapshot entries are framed as [length][crc32][payload]. Zero length marks end of data, mapped segment is zero filled
+    so unused tail of segment reads as end. Frame with bad length or crc is torn write of crash, reading stops there.
+ */
+final class Frames {
+
+    static final int HEADER_SIZE = Integer.BYTES * 2;
+
+    private Frames() {
+    }
+
+    static int size(byte[] payload) {
+        return HEADER_SIZE + payload.length;
+    }
+
+    static void write(ByteBuffer buffer, byte[] payload) {
+        buffer.putInt(payload.length);
+        buffer.putInt(crc(payload));
+        buffer.put(payload);
+    }
+
+    static int crc(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload, 0, payload.length);
+        return (int) crc.getValue();
+    }
+
+    static int read(Path location, Consumer<byte[]> consumer) {
+        try {
+            return read(ByteBuffer.wrap(Files.readAllBytes(location)), consumer);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    // Returns number of valid frames
+    static int read(ByteBuffer buffer, Consumer<byte[]> consumer) {
+        int frames = 0;
+        while (buffer.remaining() >= HEADER_SIZE) {
+            int length = buffer.getInt();
+            int crc = buffer.getInt();
+            if (length <= 0 || length > buffer.remaining()) {
+                break;
+            }
+            byte[] payload = new byte[length];
+            buffer.get(payload);
+            if (crc(payload) != crc) {
+                break;
+            }
+            consumer.accept(payload);
+            frames++;
+        }
+        return frames;
+    }
+}
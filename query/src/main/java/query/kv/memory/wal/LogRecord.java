@@ -0,0 +1,66 @@
+package query.kv.memory.wal;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/*
+    Row mutation as written to log and snapshot. Row is encoded using table encoder, delete has no row.
+    Layout - [type][table][pk][row length][row]
+ */
+public final class LogRecord {
+
+    public static final byte PUT = 1;
+    public static final byte DELETE = 2;
+
+    public final byte type;
+    public final String table;
+    public final String pk;
+    public final byte[] row;
+
+    private LogRecord(byte type, String table, String pk, byte[] row) {
+        this.type = type;
+        this.table = table;
+        this.pk = pk;
+        this.row = row;
+    }
+
+    public static LogRecord put(String table, String pk, byte[] row) {
+        return new LogRecord(PUT, table, pk, row);
+    }
+
+    public static LogRecord delete(String table, String pk) {
+        return new LogRecord(DELETE, table, pk, new byte[0]);
+    }
+
+    public byte[] toBytes() {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(row.length + table.length() + pk.length() + 16);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(type);
+            out.writeUTF(table);
+            out.writeUTF(pk);
+            out.writeInt(row.length);
+            out.write(row);
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public static LogRecord fromBytes(byte[] data) {
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+            byte type = in.readByte();
+            String table = in.readUTF();
+            String pk = in.readUTF();
+            byte[] row = new byte[in.readInt()];
+            in.readFully(row);
+            return new LogRecord(type, table, pk, row);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
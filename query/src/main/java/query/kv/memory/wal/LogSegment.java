@@ -0,0 +1,53 @@
+package query.kv.memory.wal;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/*
+    Fixed size memory mapped log file. Appends are memory copy, force() flushes dirty pages to disk.
+ */
+final class LogSegment {
+
+    final long id;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+
+    private LogSegment(long id, FileChannel channel, MappedByteBuffer buffer) {
+        this.id = id;
+        this.channel = channel;
+        this.buffer = buffer;
+    }
+
+    static LogSegment create(Path location, long id, int size) {
+        try {
+            FileChannel channel = FileChannel.open(location, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            return new LogSegment(id, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    boolean hasRoom(int frameSize) {
+        return buffer.remaining() >= frameSize;
+    }
+
+    void append(byte[] payload) {
+        Frames.write(buffer, payload);
+    }
+
+    void force() {
+        buffer.force();
+    }
+
+    void close() {
+        force();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
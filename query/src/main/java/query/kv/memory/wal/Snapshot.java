@@ -0,0 +1,74 @@
+package query.kv.memory.wal;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/*
+    Rows of all tables as PUT records. File is written with temp name and renamed after fsync, so snapshot file is always complete.
+    Snapshot id is first log segment that must be replayed on top of it.
+ */
+public final class Snapshot implements Closeable {
+
+    private final Path location;
+    private final Path tmpLocation;
+    private final FileOutputStream file;
+    private final DataOutputStream out;
+    private boolean committed;
+
+    private Snapshot(Path location) {
+        this.location = location;
+        this.tmpLocation = location.resolveSibling(location.getFileName() + ".tmp");
+        try {
+            this.file = new FileOutputStream(tmpLocation.toFile());
+            this.out = new DataOutputStream(new BufferedOutputStream(file, 64 * 1024));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    static Snapshot create(Path location) {
+        return new Snapshot(location);
+    }
+
+    public void add(String table, String pk, byte[] row) {
+        byte[] payload = LogRecord.put(table, pk, row).toBytes();
+        try {
+            out.writeInt(payload.length);
+            out.writeInt(Frames.crc(payload));
+            out.write(payload);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    void commit() {
+        try {
+            out.writeInt(0);
+            out.flush();
+            file.getFD().sync();
+            out.close();
+            Files.move(tmpLocation, location, StandardCopyOption.ATOMIC_MOVE);
+            committed = true;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (!committed) {
+            try {
+                out.close();
+                Files.deleteIfExists(tmpLocation);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package query.kv.memory.wal;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/*
+    Log is sequence of segments wal-<id>.log, position in log ( lsn ) is total bytes appended since open.
+    Appends are serialized, sync is group commit - thread that gets sync lock forces everything appended so far,
+    threads waiting behind it find their lsn already synced and return without fsync.
+ */
+public class WriteAheadLog implements Closeable {
+
+    private static final Pattern SEGMENT = Pattern.compile("wal-(\\d+)\\.log");
+    private static final Pattern SNAPSHOT = Pattern.compile("snapshot-(\\d+)\\.dat");
+
+    private final Path location;
+    private final Durability durability;
+    private final Object syncLock = new Object();
+    private final ScheduledExecutorService syncer;
+    private LogSegment current;
+    private volatile long appendedLsn;
+    private volatile long syncedLsn;
+    private volatile long checkpointLsn;
+
+    public WriteAheadLog(File location, Durability durability) {
+        this.location = location.toPath();
+        this.durability = durability;
+        location.mkdirs();
+        long lastSegment = Math.max(max(ids(this.location, SEGMENT)), max(ids(this.location, SNAPSHOT)));
+        this.current = newSegment(lastSegment + 1, 0);
+
+        if (durability.getSyncMode() == Durability.SyncMode.INTERVAL) {
+            this.syncer = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "wal-sync");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long interval = durability.getSyncIntervalMs();
+            syncer.scheduleWithFixedDelay(() -> sync(appendedLsn), interval, interval, TimeUnit.MILLISECONDS);
+        } else {
+            this.syncer = null;
+        }
+    }
+
+    // Returns lsn after last record, records are not durable till commit/sync of this lsn
+    public synchronized long append(List<byte[]> records) {
+        for (byte[] record : records) {
+            int frameSize = Frames.size(record);
+            if (!current.hasRoom(frameSize)) {
+                switchSegment(frameSize);
+            }
+            current.append(record);
+            appendedLsn += frameSize;
+        }
+        return appendedLsn;
+    }
+
+    // Waits for fsync when sync mode is BATCH, otherwise background thread makes it durable
+    public void commit(long lsn) {
+        if (durability.getSyncMode() == Durability.SyncMode.BATCH) {
+            sync(lsn);
+        }
+    }
+
+    public void sync(long lsn) {
+        if (syncedLsn >= lsn) {
+            return;
+        }
+        synchronized (syncLock) {
+            if (syncedLsn >= lsn) {
+                return;
+            }
+            long target;
+            LogSegment segment;
+            synchronized (this) {
+                target = appendedLsn;
+                segment = current;
+            }
+            segment.force();
+            syncedLsn = target;
+        }
+    }
+
+    /*
+        Starts new segment for snapshot, returns id of new segment. Records of older segments must be part of snapshot.
+     */
+    public synchronized long roll() {
+        switchSegment(0);
+        checkpointLsn = appendedLsn;
+        return current.id;
+    }
+
+    // Log bytes written after last roll, used to decide when to take next snapshot
+    public long sizeSinceCheckpoint() {
+        return appendedLsn - checkpointLsn;
+    }
+
+    public Snapshot newSnapshot(long id) {
+        return Snapshot.create(snapshotFile(location, id));
+    }
+
+    // Snapshot is complete, older snapshot & segments are not required for recovery
+    public void commitSnapshot(Snapshot snapshot, long id) {
+        snapshot.commit();
+        deleteBefore(id);
+        for (long old : ids(location, SNAPSHOT)) {
+            if (old < id) {
+                delete(snapshotFile(location, old));
+            }
+        }
+    }
+
+    // Segments older than id are not required for recovery
+    public void deleteBefore(long id) {
+        for (long segment : ids(location, SEGMENT)) {
+            if (segment < id) {
+                delete(segmentFile(location, segment));
+            }
+        }
+    }
+
+    private void switchSegment(int minSize) {
+        LogSegment old = current;
+        current = newSegment(old.id + 1, minSize);
+        old.close();
+    }
+
+    private LogSegment newSegment(long id, int minSize) {
+        return LogSegment.create(segmentFile(location, id), id, Math.max(durability.getSegmentSize(), minSize));
+    }
+
+    /*
+        Table -> pk -> row of latest snapshot with log replayed on top of it. Deleted rows are removed.
+     */
+    public static Map<String, Map<String, byte[]>> recover(File location) {
+        Map<String, Map<String, byte[]>> tables = new ConcurrentHashMap<>();
+        if (!location.exists()) {
+            return tables;
+        }
+
+        Path path = location.toPath();
+        Consumer<byte[]> apply = payload -> {
+            LogRecord record = LogRecord.fromBytes(payload);
+            Map<String, byte[]> rows = tables.computeIfAbsent(record.table, $ -> new ConcurrentHashMap<>());
+            if (record.type == LogRecord.PUT) {
+                rows.put(record.pk, record.row);
+            } else {
+                rows.remove(record.pk);
+            }
+        };
+
+        long snapshot = max(ids(path, SNAPSHOT));
+        if (snapshot >= 0) {
+            Frames.read(snapshotFile(path, snapshot), apply);
+        }
+        for (long segment : ids(path, SEGMENT)) {
+            if (segment >= snapshot) {
+                Frames.read(segmentFile(path, segment), apply);
+            }
+        }
+        return tables;
+    }
+
+    // Records of all segments in log order, for owners that keep their own record format
+    public static void replay(File location, Consumer<byte[]> consumer) {
+        if (location.exists()) {
+            for (long segment : ids(location.toPath(), SEGMENT)) {
+                Frames.read(segmentFile(location.toPath(), segment), consumer);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        if (syncer != null) {
+            syncer.shutdownNow();
+        }
+        sync(appendedLsn);
+        synchronized (this) {
+            current.close();
+        }
+    }
+
+    private static Path segmentFile(Path location, long id) {
+        return location.resolve(String.format("wal-%020d.log", id));
+    }
+
+    private static Path snapshotFile(Path location, long id) {
+        return location.resolve(String.format("snapshot-%020d.dat", id));
+    }
+
+    private static List<Long> ids(Path location, Pattern pattern) {
+        List<Long> ids = new ArrayList<>();
+        try (Stream<Path> files = Files.list(location)) {
+            files.forEach(file -> {
+                Matcher matcher = pattern.matcher(file.getFileName().toString());
+                if (matcher.matches()) {
+                    ids.add(Long.parseLong(matcher.group(1)));
+                }
+            });
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        Collections.sort(ids);
+        return ids;
+    }
+
+    private static long max(List<Long> ids) {
+        return ids.isEmpty() ? -1 : ids.get(ids.size() - 1);
+    }
+
+    private static void delete(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
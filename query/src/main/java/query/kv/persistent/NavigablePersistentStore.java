@@ -1,7 +1,9 @@
 package query.kv.persistent;
 
+import java.util.List;
 import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.Predicate;
 
 public interface NavigablePersistentStore {
 
@@ -9,7 +11,67 @@ public interface NavigablePersistentStore {
 
     byte[] get(byte[] key);
 
-    <Row_Type> void iterate(String fromKey, Function<byte[], Row_Type> converter, Consumer<Row_Type> consumer, int limit);
+    void delete(byte[] key);
 
-    <Row_Type> void iterate(String fromKey, String toKey, Function<byte[], Row_Type> converter, Consumer<Row_Type> consumer, int limit);
+    /*
+        All puts & deletes done by writes are applied by engine as single unit ( RocksDB WriteBatch / MVStore commit )
+     */
+    void write(Consumer<Batch> writes);
+
+    // Applied as single unit like write, but engine can make it durable later ( MVStore auto commit )
+    default void apply(Consumer<Batch> writes) {
+        write(writes);
+    }
+
+    // All keys starting with prefix
+    <Row_Type> void iterate(byte[] prefix, Function<byte[], Row_Type> converter, Consumer<Row_Type> consumer, int limit);
+
+    // Keys from fromKey till toKey, keys are compared as unsigned bytes
+    <Row_Type> void iterate(byte[] fromKey, byte[] toKey, Function<byte[], Row_Type> converter, Consumer<Row_Type> consumer, int limit);
+
+    // Keys from fromKey till toKey ( exclusive ), iteration stops when consumer returns false
+    <Row_Type> void iterateWhile(byte[] fromKey, byte[] toKey, Function<byte[], Row_Type> converter, Predicate<Row_Type> consumer);
+
+    // Up to parts - 1 keys that split fromKey till toKey in ranges of similar size, keys are sorted
+    List<byte[]> splitKeys(byte[] fromKey, byte[] toKey, int parts);
+
+    /*
+        Cursor of keys below upperBound ( null means no bound ). Engines that support snapshot pin view of data when
+        cursor is created, so iteration and get of cursor see same data.
+     */
+    KeyCursor cursor(byte[] upperBound);
+
+    /*
+        Read only view of store as of this call, writes done later and writes through view are not seen.
+        Write batches are seen fully or not at all. View must be closed to release engine snapshot.
+     */
+    SnapshotStore snapshot();
+
+    interface SnapshotStore extends NavigablePersistentStore, AutoCloseable {
+        @Override
+        void close();
+    }
+
+    interface KeyCursor extends AutoCloseable {
+        // Next call of next() moves to first key >= key
+        void seek(byte[] key);
+
+        boolean next();
+
+        byte[] key();
+
+        byte[] value();
+
+        // Point read in same view as cursor
+        byte[] get(byte[] key);
+
+        @Override
+        void close();
+    }
+
+    interface Batch {
+        void put(byte[] key, byte[] value);
+
+        void delete(byte[] key);
+    }
 }
@@ -0,0 +1,568 @@
+package query.kv.persistent;
+
+import org.roaringbitmap.RoaringBitmap;
+import query.kv.BitmapIndexes;
+import query.kv.ColumnReader;
+import query.kv.CoveredRow;
+import query.kv.Cursor;
+import query.kv.KeyBuilder;
+import query.kv.KeyCodec;
+import query.kv.KeyRangeCursor;
+import query.kv.OrdinalCursor;
+import query.kv.ParallelScan;
+import query.kv.ReadView;
+import query.kv.SSTable;
+import query.kv.TableInfo;
+import query.kv.codec.ColumnCodec;
+import query.kv.filter.PkFilter;
+import query.kv.persistent.NavigablePersistentStore.Batch;
+import query.kv.persistent.NavigablePersistentStore.KeyCursor;
+import query.kv.persistent.NavigablePersistentStore.SnapshotStore;
+import query.kv.stats.TableStats;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/*
+    SSTable over sorted byte key store. Row is stored against PK key and secondary index keeps reference to PK key
+    or row data for covering index.
+    Bitmap index keeps serialized bitmap of every value and PK key of every row ordinal, written in batch of row.
+    Engine specific part is only NavigablePersistentStore.
+ */
+public abstract class NavigableSSTable<Row_Type> implements SSTable<Row_Type> {
+
+    protected final KeyBuilder keyBuilder;
+    protected final NavigablePersistentStore nvStores;
+    protected final TableInfo<Row_Type> tableInfo;
+    private final Set<Map.Entry<String, Function<Row_Type, String>>> indexToProcess;
+    // Null when table has no PK filter
+    private final PkFilter pkFilter;
+    // Loaded from keys when table is opened, shared with tables of views
+    private final TableStats<Row_Type> stats;
+    // Loaded when table is opened, used by writers only as reads go to stored bitmaps
+    private final BitmapIndexes<Row_Type> bitmapIndexes;
+    // Read before write of update/delete is done under row lock, so concurrent update of same row does not leave stale index
+    private final Object[] rowLocks = new Object[64];
+
+    protected NavigableSSTable(NavigablePersistentStore nvStores, TableInfo<Row_Type> tableInfo) {
+        this(nvStores, tableInfo, null);
+    }
+
+    protected NavigableSSTable(NavigablePersistentStore nvStores, TableInfo<Row_Type> tableInfo, PkFilter pkFilter) {
+        this(nvStores, tableInfo, pkFilter, null, null);
+    }
+
+    private NavigableSSTable(NavigablePersistentStore nvStores, TableInfo<Row_Type> tableInfo, PkFilter pkFilter, TableStats<Row_Type> stats,
+                             BitmapIndexes<Row_Type> bitmapIndexes) {
+        this.tableInfo = tableInfo;
+        this.pkFilter = pkFilter;
+        this.keyBuilder = new KeyBuilder(tableInfo.getTableName());
+        this.nvStores = nvStores;
+        this.stats = stats == null ? TableStats.load(nvStores, keyBuilder, tableInfo.getIndexes()) : stats;
+        this.indexToProcess = tableInfo.getIndexes().entrySet();
+        this.bitmapIndexes = bitmapIndexes == null ? loadBitmaps() : bitmapIndexes;
+        for (int index = 0; index < rowLocks.length; index++) {
+            rowLocks[index] = new Object();
+        }
+    }
+
+    @Override
+    public List<String> cols() {
+        return tableInfo.getSchema()
+                .entrySet()
+                .stream()
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public void scan(Consumer<Row_Type> consumer, int limit) {
+
+        byte[] fromKey = keyBuilder.primaryKey();
+        nvStores.iterate(fromKey, v -> tableInfo.getDecoder().apply(v), consumer, limit);
+
+    }
+
+    @Override
+    public void parallelScan(int parallelism, Consumer<Row_Type> consumer, int limit) {
+        parallelScan(parallelism, row -> true, consumer, limit);
+    }
+
+    @Override
+    public void parallelScan(int parallelism, Predicate<Row_Type> filter, Consumer<Row_Type> consumer, int limit) {
+        ParallelScan.run(partitions(parallelism), filter, consumer, limit);
+    }
+
+    @Override
+    public void parallelBatchScan(int parallelism, int batchSize, Predicate<List<Row_Type>> batches) {
+        ParallelScan.runBatches(partitions(parallelism), batchSize, batches);
+    }
+
+    private List<Consumer<ParallelScan<Row_Type>>> partitions(int parallelism) {
+        byte[] fromKey = keyBuilder.primaryKey();
+        byte[] toKey = KeyCodec.prefixUpperBound(fromKey);
+
+        List<byte[]> bounds = new ArrayList<>();
+        bounds.add(fromKey);
+        bounds.addAll(nvStores.splitKeys(fromKey, toKey, parallelism));
+        bounds.add(toKey);
+
+        List<Consumer<ParallelScan<Row_Type>>> partitions = new ArrayList<>();
+        for (int index = 0; index < bounds.size() - 1; index++) {
+            byte[] start = bounds.get(index);
+            byte[] end = bounds.get(index + 1);
+            partitions.add(scan -> nvStores.iterateWhile(start, end, tableInfo.getDecoder(), scan::offer));
+        }
+        return partitions;
+    }
+
+    @Override
+    public void search(String indexName, String searchValue, Consumer<Row_Type> consumer, int limit) {
+        byte[] indexKey = keyBuilder.searchKey(indexName, searchValue);
+        nvStores.iterate(indexKey, rowReader(indexName), consumer, limit);
+    }
+
+    @Override
+    public Cursor<Row_Type> scanCursor() {
+        byte[] fromKey = keyBuilder.primaryKey();
+        return cursor(fromKey, KeyCodec.prefixUpperBound(fromKey), keys -> tableInfo.getDecoder().apply(keys.value()));
+    }
+
+    @Override
+    public Cursor<Row_Type> searchCursor(String indexName, String searchValue) {
+        byte[] indexKey = keyBuilder.searchKey(indexName, searchValue);
+        return cursor(indexKey, KeyCodec.prefixUpperBound(indexKey), cursorRowReader(indexName));
+    }
+
+    @Override
+    public Cursor<Row_Type> rangeCursor(String index, String start, String end) {
+        byte[] startKey = keyBuilder.searchKey(index, start);
+        byte[] endKey = end == null ? KeyCodec.prefixUpperBound(keyBuilder.indexKey(index)) : keyBuilder.searchKey(index, end);
+        return cursor(startKey, endKey, cursorRowReader(index));
+    }
+
+    private Cursor<Row_Type> cursor(byte[] fromKey, byte[] toKey, Function<KeyCursor, Row_Type> reader) {
+        KeyCursor keys = nvStores.cursor(toKey);
+        return new KeyRangeCursor<Row_Type>(fromKey, toKey) {
+            @Override
+            protected void seekTo(byte[] key) {
+                keys.seek(key);
+            }
+
+            @Override
+            protected boolean advance() {
+                return keys.next();
+            }
+
+            @Override
+            protected byte[] key() {
+                return keys.key();
+            }
+
+            @Override
+            protected Row_Type row() {
+                return reader.apply(keys);
+            }
+
+            @Override
+            public void close() {
+                keys.close();
+            }
+        };
+    }
+
+    // Same as rowReader, but PK row is read from cursor view. Null when row is deleted after index entry was read
+    private Function<KeyCursor, Row_Type> cursorRowReader(String indexName) {
+        if (tableInfo.isFullRowCovering(indexName)) {
+            return keys -> tableInfo.getDecoder().apply(keys.value());
+        }
+        return keys -> {
+            byte[] value = keys.value();
+            byte[] pkKey = tableInfo.isCovering(indexName) ? Arrays.copyOfRange(value, Integer.BYTES, Integer.BYTES + keyLength(value)) : value;
+            byte[] row = keys.get(pkKey);
+            return row == null ? null : tableInfo.getDecoder().apply(row);
+        };
+    }
+
+    // Same table over engine snapshot of view, writes through it fail as snapshot is read only
+    @Override
+    public SSTable<Row_Type> at(ReadView view) {
+        SnapshotStore snapshot = view instanceof StoreReadView ? ((StoreReadView) view).of(nvStores) : null;
+        if (snapshot == null) {
+            throw new IllegalArgumentException("View is not opened by store of table " + tableInfo.getTableName());
+        }
+        return new NavigableSSTable<Row_Type>(snapshot, tableInfo, null, stats, bitmapIndexes) {
+        };
+    }
+
+    @Override
+    public Collection<String> coveredColumns(String indexName) {
+        if (tableInfo.isFullRowCovering(indexName)) {
+            return cols();
+        } else if (tableInfo.isCovering(indexName)) {
+            return tableInfo.getCoveredColumns(indexName);
+        }
+        return Collections.emptyList();
+    }
+
+    @Override
+    public String pkColumn() {
+        return tableInfo.getPkColumn();
+    }
+
+    @Override
+    public void searchCovered(String indexName, String searchValue, Consumer<Object> consumer, int limit) {
+        if (tableInfo.isCovering(indexName) && !tableInfo.isFullRowCovering(indexName)) {
+            byte[] indexKey = keyBuilder.searchKey(indexName, searchValue);
+            List<String> columns = tableInfo.getCoveredColumns(indexName);
+            nvStores.iterate(indexKey, value -> toCoveredRow(value, columns), consumer, limit);
+        } else {
+            search(indexName, searchValue, consumer::accept, limit);
+        }
+    }
+
+    @Override
+    public void searchCoveredWhile(String indexName, String searchValue, Predicate<Object> consumer) {
+        if (tableInfo.isCovering(indexName) && !tableInfo.isFullRowCovering(indexName)) {
+            byte[] indexKey = keyBuilder.searchKey(indexName, searchValue);
+            List<String> columns = tableInfo.getCoveredColumns(indexName);
+            nvStores.iterateWhile(indexKey, KeyCodec.prefixUpperBound(indexKey), value -> toCoveredRow(value, columns), consumer);
+        } else {
+            SSTable.super.searchCoveredWhile(indexName, searchValue, consumer);
+        }
+    }
+
+    // Value is decoded from index key, row is read from index entry only when index covers it
+    @Override
+    public void scanIndex(String indexName, BiConsumer<String, Object> consumer) {
+        byte[] indexKey = keyBuilder.indexKey(indexName);
+        boolean fullRow = tableInfo.isFullRowCovering(indexName);
+        List<String> columns = tableInfo.isCovering(indexName) && !fullRow ? tableInfo.getCoveredColumns(indexName) : null;
+        try (KeyCursor keys = nvStores.cursor(KeyCodec.prefixUpperBound(indexKey))) {
+            keys.seek(indexKey);
+            while (keys.next()) {
+                Object row = fullRow ? tableInfo.getDecoder().apply(keys.value()) : columns != null ? toCoveredRow(keys.value(), columns) : null;
+                consumer.accept(KeyCodec.decodeValue(keys.key(), indexKey.length), row);
+            }
+        }
+    }
+
+    @Override
+    public void search(String indexName, String searchValue, Collection<Row_Type> container, int limit) {
+        search(indexName, searchValue, container::add, limit);
+    }
+
+    // Row & its index entries are applied as one unit, so snapshot never sees row without index entries
+    @Override
+    public void insert(Row_Type row) {
+        write(true, batch -> addRecord(row, batch, new HashMap<>()));
+    }
+
+    @Override
+    public void insertAll(Collection<Row_Type> rows, int batchSize) {
+        SSTable.checkBatchSize(batchSize);
+        Iterator<Row_Type> itr = rows.iterator();
+        while (itr.hasNext()) {
+            write(false, batch -> {
+                Map<String, Row_Type> written = new HashMap<>();
+                for (int count = 0; count < batchSize && itr.hasNext(); count++) {
+                    addRecord(itr.next(), batch, written);
+                }
+            });
+        }
+    }
+
+    /*
+        Row written again over its PK replaces old row in stats & indexes. Stored row is read only for exact stats or
+        when PK filter says PK may exist, row written earlier in same batch is taken from written rows of batch.
+     */
+    private void addRecord(Row_Type row, Batch batch, Map<String, Row_Type> written) {
+        String rowKey = tableInfo.getPk().apply(row);
+        Row_Type oldRow = written.put(rowKey, row);
+        if (oldRow == null && (tableInfo.isExactStats() || pkFilter != null)) {
+            byte[] key = keyBuilder.primaryKey(rowKey);
+            byte[] stored = pkFilter == null || pkFilter.mightContainUncounted(key) ? nvStores.get(key) : null;
+            oldRow = stored == null ? null : tableInfo.getDecoder().apply(stored);
+        }
+        addRecord(row, oldRow, batch);
+    }
+
+    // oldRow is row stored under PK of row, null when PK is new or old row is not known
+    private void addRecord(Row_Type row, Row_Type oldRow, Batch batch) {
+        String rowKey = tableInfo.getPk().apply(row);
+        byte[] key = keyBuilder.primaryKey(rowKey);
+        if (pkFilter != null) {
+            pkFilter.add(key);
+        }
+        batch.put(key, tableInfo.getEncoder().apply(row));
+        buildIndex(row, key, rowKey, batch);
+        if (!bitmapIndexes.isEmpty()) {
+            batch.put(keyBuilder.ordinalKey(bitmapIndexes.set(rowKey, row, false)), key);
+        }
+        if (oldRow != null) {
+            removeStaleIndex(oldRow, row, rowKey, batch);
+            stats.delete(oldRow);
+        }
+        stats.insert(row);
+    }
+
+    @Override
+    public void rangeSearch(String index, String start, String end, Collection<Row_Type> container, int limit) {
+        byte[] startKey = keyBuilder.searchKey(index, start);
+        byte[] endKey = keyBuilder.searchKey(index, end);
+        nvStores.iterate(startKey, endKey, rowReader(index), container::add, limit);
+    }
+
+    @Override
+    public Row_Type get(String pk) {
+        byte[] key = keyBuilder.primaryKey(pk);
+        if (pkFilter != null && !pkFilter.mightContain(key)) {
+            return null;
+        }
+        byte[] data = nvStores.get(key);
+        if (data == null && pkFilter != null) {
+            pkFilter.falsePositive();
+        }
+        return data == null ? null : tableInfo.getDecoder().apply(data);
+    }
+
+    // Null when table has no PK filter
+    public PkFilter pkFilter() {
+        return pkFilter;
+    }
+
+    /*
+        Old row is read to find index entries whose value changed, stale entries are deleted in same batch as new row.
+     */
+    @Override
+    public void update(Row_Type record) {
+        String rowKey = tableInfo.getPk().apply(record);
+        synchronized (lockFor(rowKey)) {
+            Row_Type oldRow = get(rowKey);
+            write(false, batch -> addRecord(record, oldRow, batch));
+        }
+    }
+
+    @Override
+    public void delete(String pk) {
+        synchronized (lockFor(pk)) {
+            Row_Type oldRow = get(pk);
+            if (oldRow == null) {
+                return;
+            }
+            write(false, batch -> {
+                removeStaleIndex(oldRow, null, pk, batch);
+                batch.delete(keyBuilder.primaryKey(pk));
+                Integer ordinal = bitmapIndexes.isEmpty() ? null : bitmapIndexes.clear(pk, false);
+                if (ordinal != null) {
+                    batch.delete(keyBuilder.ordinalKey(ordinal));
+                }
+                stats.delete(oldRow);
+            });
+        }
+    }
+
+    // newRow is null when row is deleted
+    private void removeStaleIndex(Row_Type oldRow, Row_Type newRow, String rowKey, Batch batch) {
+        for (Map.Entry<String, Function<Row_Type, String>> index : indexToProcess) {
+            String oldValue = index.getValue().apply(oldRow);
+            if (newRow == null || !oldValue.equals(index.getValue().apply(newRow))) {
+                batch.delete(keyBuilder.secondaryIndexKey(index.getKey(), oldValue, rowKey));
+            }
+        }
+    }
+
+    /*
+        Table with bitmap index writes under lock of bitmaps, so bitmaps are stored in order of their changes.
+        Write stores only chunks it changed, so time under lock is bounded by one chunk of every changed value.
+     */
+    private void write(boolean apply, Consumer<Batch> writes) {
+        if (bitmapIndexes.isEmpty()) {
+            if (apply) {
+                nvStores.apply(writes);
+            } else {
+                nvStores.write(writes);
+            }
+            return;
+        }
+        synchronized (bitmapIndexes) {
+            Consumer<Batch> withBitmaps = writes.andThen(batch -> bitmapIndexes.flushChunks((index, value, chunk, bitmap) -> {
+                if (bitmap.isEmpty()) {
+                    batch.delete(keyBuilder.bitmapKey(index, value, chunk));
+                } else {
+                    batch.put(keyBuilder.bitmapKey(index, value, chunk), BitmapIndexes.toBytes(bitmap));
+                }
+            }));
+            if (apply) {
+                nvStores.apply(withBitmaps);
+            } else {
+                nvStores.write(withBitmaps);
+            }
+        }
+    }
+
+    // Ordinal of every row is read by scan of ordinal keys, see BitmapIndexes for heap it takes
+    private BitmapIndexes<Row_Type> loadBitmaps() {
+        BitmapIndexes<Row_Type> bitmaps = new BitmapIndexes<>(tableInfo.getBitmapIndexes());
+        if (bitmaps.isEmpty()) {
+            return bitmaps;
+        }
+        byte[] ordinalPrefix = keyBuilder.indexKey(KeyBuilder.ORDINAL_INDEX);
+        int pkPrefix = keyBuilder.primaryKey().length;
+        try (KeyCursor keys = nvStores.cursor(KeyCodec.prefixUpperBound(ordinalPrefix))) {
+            keys.seek(ordinalPrefix);
+            while (keys.next()) {
+                bitmaps.load(KeyCodec.decodeValue(keys.value(), pkPrefix), Integer.parseInt(KeyCodec.decodeValue(keys.key(), ordinalPrefix.length)));
+            }
+        }
+        tableInfo.getBitmapIndexes().keySet().forEach(index -> bitmaps(index).forEach((value, bitmap) -> bitmaps.load(index, value, bitmap)));
+        return bitmaps;
+    }
+
+    @Override
+    public Map<String, Function<Row_Type, String>> bitmapIndexes() {
+        return tableInfo.getBitmapIndexes();
+    }
+
+    // Chunks of value are in key order after value, they are OR'ed into bitmap of value
+    @Override
+    public Map<String, RoaringBitmap> bitmaps(String indexName) {
+        byte[] prefix = keyBuilder.bitmapKey(indexName);
+        Map<String, RoaringBitmap> values = new HashMap<>();
+        try (KeyCursor keys = nvStores.cursor(KeyCodec.prefixUpperBound(prefix))) {
+            keys.seek(prefix);
+            while (keys.next()) {
+                RoaringBitmap chunk = BitmapIndexes.fromBytes(keys.value());
+                values.merge(KeyCodec.decodeValue(keys.key(), prefix.length), chunk, (bitmap, next) -> {
+                    bitmap.or(next);
+                    return bitmap;
+                });
+            }
+        }
+        return values;
+    }
+
+    // Ordinal key gives PK key of row
+    @Override
+    public Cursor<Row_Type> bitmapCursor(RoaringBitmap ordinals) {
+        return new OrdinalCursor<Row_Type>(ordinals) {
+            @Override
+            protected Row_Type row(int ordinal) {
+                byte[] pkKey = nvStores.get(keyBuilder.ordinalKey(ordinal));
+                byte[] row = pkKey == null ? null : nvStores.get(pkKey);
+                return row == null ? null : tableInfo.getDecoder().apply(row);
+            }
+        };
+    }
+
+    private Object lockFor(String rowKey) {
+        return rowLocks[(rowKey.hashCode() & 0x7fffffff) % rowLocks.length];
+    }
+
+    private void buildIndex(Row_Type row, byte[] keyRef, String rowKey, Batch batch) {
+        for (Map.Entry<String, Function<Row_Type, String>> index : indexToProcess) {
+            byte[] indexKey = keyBuilder.secondaryIndexKey(index.getKey(), index.getValue().apply(row), rowKey);
+            batch.put(indexKey, indexValue(index.getKey(), row, keyRef));
+        }
+    }
+
+    /*
+        Index value is one of
+            PK key                      -> Plain index, row is read using PK
+            encoded row                 -> Full row covering index
+            PK key + covered columns    -> Partial covering index
+     */
+    private byte[] indexValue(String indexName, Row_Type row, byte[] keyRef) {
+        if (!tableInfo.isCovering(indexName)) {
+            return keyRef;
+        } else if (tableInfo.isFullRowCovering(indexName)) {
+            return tableInfo.getEncoder().apply(row);
+        }
+
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(keyRef.length);
+            out.write(keyRef);
+            for (String col : tableInfo.getCoveredColumns(indexName)) {
+                ColumnCodec.write(out, tableInfo.getSchema().get(col).apply(row));
+            }
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private Function<byte[], Row_Type> rowReader(String indexName) {
+        if (tableInfo.isFullRowCovering(indexName)) {
+            return tableInfo.getDecoder();
+        } else if (tableInfo.isCovering(indexName)) {
+            return value -> tableInfo.getDecoder().apply(nvStores.get(Arrays.copyOfRange(value, Integer.BYTES, Integer.BYTES + keyLength(value))));
+        }
+        return key -> tableInfo.getDecoder().apply(nvStores.get(key));
+    }
+
+    private static int keyLength(byte[] value) {
+        return ByteBuffer.wrap(value).getInt();
+    }
+
+    private CoveredRow toCoveredRow(byte[] value, List<String> columns) {
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(value));
+            in.skipBytes(in.readInt());
+            CoveredRow row = new CoveredRow();
+            for (String col : columns) {
+                row.put(col, ColumnCodec.read(in));
+            }
+            return row;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    // Row that is not CoveredRow is row of this table
+    @SuppressWarnings("unchecked")
+    @Override
+    public Object columnValue(String col, Object row) {
+        if (row instanceof CoveredRow) {
+            return ((CoveredRow) row).get(col);
+        }
+        return tableInfo
+                .getSchema()
+                .get(col.toLowerCase())
+                .apply((Row_Type) row);
+    }
+
+    @Override
+    public ColumnReader column(String col) {
+        return ColumnReader.of(tableInfo, col);
+    }
+
+    @Override
+    public TableStats<Row_Type> tableStats() {
+        return stats;
+    }
+
+    @Override
+    public Map<String, Function<Row_Type, String>> indexes() {
+        return tableInfo.getIndexes();
+    }
+}
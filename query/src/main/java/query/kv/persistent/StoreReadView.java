@@ -0,0 +1,31 @@
+package query.kv.persistent;
+
+import query.kv.ReadView;
+import query.kv.persistent.NavigablePersistentStore.SnapshotStore;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/*
+    Read view of store made of engine snapshots, one per engine store. RocksDB & LSM store share one engine store
+    between tables, MVStore has map per table.
+ */
+public final class StoreReadView implements ReadView {
+
+    private final Map<NavigablePersistentStore, SnapshotStore> snapshots = new IdentityHashMap<>();
+
+    public StoreReadView add(NavigablePersistentStore store, SnapshotStore snapshot) {
+        snapshots.put(store, snapshot);
+        return this;
+    }
+
+    // Null when store was not part of view, like table created after view was opened
+    SnapshotStore of(NavigablePersistentStore store) {
+        return snapshots.get(store);
+    }
+
+    @Override
+    public void close() {
+        snapshots.values().forEach(SnapshotStore::close);
+    }
+}
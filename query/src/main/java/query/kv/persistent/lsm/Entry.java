@@ -0,0 +1,17 @@
+package query.kv.persistent.lsm;
+
+/*
+    Key value of memtable or sorted file. Deleted entry ( tombstone ) hides older value of key till it is compacted away.
+ */
+final class Entry {
+
+    final byte[] key;
+    final byte[] value;
+    final boolean deleted;
+
+    Entry(byte[] key, byte[] value, boolean deleted) {
+        this.key = key;
+        this.value = value;
+        this.deleted = deleted;
+    }
+}
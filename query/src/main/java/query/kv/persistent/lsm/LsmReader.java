@@ -0,0 +1,112 @@
+package query.kv.persistent.lsm;
+
+import query.kv.KeyCodec;
+import query.kv.persistent.NavigablePersistentStore;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/*
+    Range reads of LSM store built on ordered scan of live entries. Live store and snapshot differ only in
+    memtables & files that scan reads.
+ */
+abstract class LsmReader implements NavigablePersistentStore {
+
+    // Live entries from fromKey in key order, stops at end key or when consumer returns false
+    abstract void scan(byte[] fromKey, Predicate<byte[]> pastEnd, Predicate<Entry> consumer);
+
+    @Override
+    public <Row_Type> void iterate(byte[] prefix, Function<byte[], Row_Type> converter, Consumer<Row_Type> consumer, int limit) {
+        byte[] upperBound = KeyCodec.prefixUpperBound(prefix);
+        Predicate<byte[]> pastEnd = upperBound == null ? key -> false : key -> KeyCodec.compare(key, upperBound) >= 0;
+        iterateLimit(prefix, pastEnd, converter, consumer, limit);
+    }
+
+    @Override
+    public <Row_Type> void iterate(byte[] fromKey, byte[] toKey, Function<byte[], Row_Type> converter, Consumer<Row_Type> consumer, int limit) {
+        iterateLimit(fromKey, key -> KeyCodec.compare(key, toKey) > 0, converter, consumer, limit);
+    }
+
+    @Override
+    public <Row_Type> void iterateWhile(byte[] fromKey, byte[] toKey, Function<byte[], Row_Type> converter, Predicate<Row_Type> consumer) {
+        scan(fromKey, key -> KeyCodec.compare(key, toKey) >= 0, entry -> consumer.test(converter.apply(entry.value)));
+    }
+
+    private <Row_Type> void iterateLimit(byte[] fromKey, Predicate<byte[]> pastEnd, Function<byte[], Row_Type> converter, Consumer<Row_Type> consumer, int limit) {
+        if (limit <= 0) {
+            return;
+        }
+        int[] tracker = {limit};
+        scan(fromKey, pastEnd, entry -> {
+            consumer.accept(converter.apply(entry.value));
+            return --tracker[0] > 0;
+        });
+    }
+
+    /*
+        Cursor reads CURSOR_BATCH entries at a time and next batch starts after last key read.
+        Files are not held open between batches, onClose is called when cursor is closed.
+     */
+    KeyCursor cursor(byte[] upperBound, Runnable onClose) {
+        Predicate<byte[]> pastEnd = upperBound == null ? key -> false : key -> KeyCodec.compare(key, upperBound) >= 0;
+        return new KeyCursor() {
+            List<Entry> batch = Collections.emptyList();
+            int index = -1;
+            byte[] resumeKey;
+            boolean exhausted;
+
+            @Override
+            public void seek(byte[] key) {
+                resumeKey = key;
+                batch = Collections.emptyList();
+                index = -1;
+                exhausted = false;
+            }
+
+            @Override
+            public boolean next() {
+                if (index + 1 < batch.size()) {
+                    index++;
+                    return true;
+                }
+                if (exhausted) {
+                    return false;
+                }
+                List<Entry> entries = new ArrayList<>(NavigableLsm.CURSOR_BATCH);
+                scan(resumeKey, pastEnd, entry -> entries.add(entry) && entries.size() < NavigableLsm.CURSOR_BATCH);
+                exhausted = entries.size() < NavigableLsm.CURSOR_BATCH;
+                if (entries.isEmpty()) {
+                    return false;
+                }
+                batch = entries;
+                index = 0;
+                resumeKey = KeyCodec.successor(entries.get(entries.size() - 1).key);
+                return true;
+            }
+
+            @Override
+            public byte[] key() {
+                return batch.get(index).key;
+            }
+
+            @Override
+            public byte[] value() {
+                return batch.get(index).value;
+            }
+
+            @Override
+            public byte[] get(byte[] key) {
+                return LsmReader.this.get(key);
+            }
+
+            @Override
+            public void close() {
+                onClose.run();
+            }
+        };
+    }
+}
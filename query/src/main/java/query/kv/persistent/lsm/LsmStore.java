@@ -0,0 +1,100 @@
+package query.kv.persistent.lsm;
+
+import query.kv.KeyValueStore;
+import query.kv.ReadView;
+import query.kv.SSTable;
+import query.kv.Sequences;
+import query.kv.TableInfo;
+import query.kv.cache.CachedSSTable;
+import query.kv.codec.RowCodec;
+import query.kv.filter.PkFilters;
+import query.kv.persistent.StoreReadView;
+import query.sql.QueryCache;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import static java.util.Collections.emptyMap;
+
+/*
+    Key value store on native LSM engine, sorted files are written using page layer.
+ */
+public class LsmStore implements KeyValueStore {
+    public static final String type = "lsm:";
+    private final Map<String, SSTable<?>> tables = new ConcurrentHashMap<>();
+    private final QueryCache queryCache = new QueryCache(QueryCache.DEFAULT_SIZE);
+    private final NavigableLsm nvStores;
+    private final RowCodec.Factory codecFactory;
+    private final Sequences sequences;
+    private final PkFilters pkFilters = new PkFilters();
+
+    public LsmStore(File rootFolder) {
+        this(rootFolder, RowCodec.json());
+    }
+
+    public LsmStore(File rootFolder, RowCodec.Factory codecFactory) {
+        this(rootFolder, NavigableLsm.DEFAULT_MEMTABLE_SIZE, codecFactory);
+    }
+
+    public LsmStore(File rootFolder, int memtableSize, RowCodec.Factory codecFactory) {
+        this.nvStores = new NavigableLsm(rootFolder, memtableSize);
+        this.codecFactory = codecFactory;
+        this.sequences = Sequences.persistent(nvStores);
+    }
+
+    @Override
+    public <Row_Type> SSTable<Row_Type> createTable(String tableName, Class<Row_Type> type, Map<String, Function<Row_Type, Object>> schema, Map<String, Function<Row_Type, String>> indexes) {
+        RowCodec<Row_Type> codec = codecFactory.create(type, schema);
+        Sequences.Sequence sequence = sequences.of(tableName);
+        return createTable(new TableInfo<>(tableName, schema, indexes, codec, $ -> String.valueOf(sequence.next())));
+    }
+
+    private <Row_Type> void registerTable(String tableName, SSTable<Row_Type> SSTable) {
+        tables.put(tableName, SSTable);
+        queryCache.clear();
+    }
+
+    @Override
+    public <Row_Type> SSTable<Row_Type> createTable(String tableName, Class<Row_Type> type, Map<String, Function<Row_Type, Object>> schema) {
+        return createTable(tableName, type, schema, emptyMap());
+    }
+
+    @Override
+    public <Row_Type> SSTable<Row_Type> createTable(TableInfo<Row_Type> tableInfo) {
+        SSTable<Row_Type> SSTable = CachedSSTable.wrap(new LsmTable<>(nvStores, tableInfo, pkFilters.of(nvStores, tableInfo)), tableInfo);
+        registerTable(tableInfo.getTableName(), SSTable);
+        return SSTable;
+    }
+
+    @Override
+    public QueryCache queryCache() {
+        return queryCache;
+    }
+
+    @Override
+    public List<String> desc(String tableName) {
+        SSTable<?> SSTable = tables.get(tableName);
+        return SSTable.cols();
+    }
+
+    public void close() {
+        pkFilters.save();
+        nvStores.close();
+    }
+
+    // Caller names table it created with Row_Type, tables of every row type share one map
+    @SuppressWarnings("unchecked")
+    @Override
+    public <Row_Type> SSTable<Row_Type> table(String tableName) {
+        return (SSTable<Row_Type>) tables.get(tableName);
+    }
+
+    // All tables share one engine store, so single snapshot covers them
+    @Override
+    public ReadView snapshot() {
+        return new StoreReadView().add(nvStores, nvStores.snapshot());
+    }
+}
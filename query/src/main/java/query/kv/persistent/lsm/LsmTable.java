@@ -0,0 +1,20 @@
+package query.kv.persistent.lsm;
+
+import query.kv.TableInfo;
+import query.kv.filter.PkFilter;
+import query.kv.persistent.NavigableSSTable;
+
+public class LsmTable<Row_Type> extends NavigableSSTable<Row_Type> {
+
+    public LsmTable(NavigableLsm nvStores,
+                    TableInfo<Row_Type> tableInfo) {
+        super(nvStores, tableInfo);
+    }
+
+    public LsmTable(NavigableLsm nvStores,
+                    TableInfo<Row_Type> tableInfo,
+                    PkFilter pkFilter) {
+        super(nvStores, tableInfo, pkFilter);
+    }
+
+}
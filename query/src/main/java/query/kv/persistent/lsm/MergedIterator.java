@@ -0,0 +1,69 @@
+package query.kv.persistent.lsm;
+
+import query.kv.KeyCodec;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/*
+    Merges sorted sources into single sorted stream. Sources are passed newest first, when same key is present
+    in many sources entry of newest source is returned and others are skipped.
+ */
+final class MergedIterator implements Iterator<Entry> {
+
+    private final PriorityQueue<Source> heap = new PriorityQueue<>((s1, s2) -> {
+        int compare = KeyCodec.compare(s1.current.key, s2.current.key);
+        return compare != 0 ? compare : Integer.compare(s1.age, s2.age);
+    });
+
+    MergedIterator(List<Iterator<Entry>> sources) {
+        for (int age = 0; age < sources.size(); age++) {
+            Source source = new Source(sources.get(age), age);
+            if (source.advance()) {
+                heap.add(source);
+            }
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        return !heap.isEmpty();
+    }
+
+    @Override
+    public Entry next() {
+        if (heap.isEmpty()) {
+            throw new NoSuchElementException();
+        }
+        Source newest = heap.poll();
+        Entry entry = newest.current;
+        if (newest.advance()) {
+            heap.add(newest);
+        }
+        while (!heap.isEmpty() && KeyCodec.compare(heap.peek().current.key, entry.key) == 0) {
+            Source older = heap.poll();
+            if (older.advance()) {
+                heap.add(older);
+            }
+        }
+        return entry;
+    }
+
+    private static final class Source {
+        final Iterator<Entry> itr;
+        final int age;
+        Entry current;
+
+        Source(Iterator<Entry> itr, int age) {
+            this.itr = itr;
+            this.age = age;
+        }
+
+        boolean advance() {
+            current = itr.hasNext() ? itr.next() : null;
+            return current != null;
+        }
+    }
+}
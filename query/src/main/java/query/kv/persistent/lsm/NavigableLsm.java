@@ -0,0 +1,698 @@
+package query.kv.persistent.lsm;
+
+import query.kv.KeyCodec;
+import query.kv.memory.wal.Durability;
+import query.kv.memory.wal.WriteAheadLog;
+import query.kv.persistent.NavigablePersistentStore;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/*
+    Log structured merge store.
+    Write   -> WAL + memtable ( skip list ), full memtable is switched to immutable and flushed to sorted file by background thread
+    Read    -> memtable -> immutable memtables -> sorted files newest first, bloom filter of file is checked before page read
+    Compact -> Size tiered, run of COMPACTION_TRIGGER adjacent files of same tier are merged in single file.
+               Deletes are kept as tombstone till oldest file is part of compaction.
+    Snapshot-> State as of write version, memtable keeps older versions of key while snapshot that reads them is open.
+ */
+public class NavigableLsm extends LsmReader implements Closeable {
+
+    // Value of deleted key in memtable, compared by reference
+    static final byte[] TOMBSTONE = new byte[0];
+    public static final int DEFAULT_MEMTABLE_SIZE = 32 * 1024 * 1024;
+    static final int COMPACTION_TRIGGER = 4;
+    static final int MAX_IMMUTABLE = 2;
+    static final int PAGE_SIZE = 16 * 1024;
+    static final int CURSOR_BATCH = 256;
+    private static final int ENTRY_OVERHEAD = 64;
+    private static final byte PUT = 1;
+    private static final byte DELETE = 2;
+    private static final Pattern FILE_NAME = Pattern.compile("sst-(\\d+)\\.db");
+
+    private final Path location;
+    private final int memtableSize;
+    private final WriteAheadLog wal;
+    private final Object writeLock = new Object();
+    // Read lock is held while files are read, compaction takes write lock to close replaced files
+    private final ReadWriteLock filesLock = new ReentrantReadWriteLock();
+    private final ExecutorService background;
+    private final AtomicInteger flushCount = new AtomicInteger();
+    private volatile State state;
+    private volatile RuntimeException backgroundFailure;
+    private long memtableBytes;
+    private long nextFileId;
+    private long nextSeq;
+    // Version of last write batch & open snapshot versions with their count, guarded by write lock
+    private long writeVersion;
+    private final TreeMap<Long, Integer> snapshotVersions = new TreeMap<>();
+
+    public NavigableLsm(File location) {
+        this(location, DEFAULT_MEMTABLE_SIZE);
+    }
+
+    public NavigableLsm(File location, int memtableSize) {
+        this(location, memtableSize, Durability.syncEvery(1, TimeUnit.SECONDS).segmentSize(Math.max(1024 * 1024, memtableSize)));
+    }
+
+    public NavigableLsm(File location, int memtableSize, Durability durability) {
+        location.mkdirs();
+        this.location = location.toPath();
+        this.memtableSize = memtableSize;
+
+        List<SortedFile> files = openFiles();
+        files.forEach(file -> {
+            nextFileId = Math.max(nextFileId, file.id);
+            nextSeq = Math.max(nextSeq, file.seq);
+        });
+
+        // WAL segments are kept next to sorted files, names do not overlap
+        ConcurrentSkipListMap<byte[], Version> memtable = new ConcurrentSkipListMap<>(KeyCodec.KEY_ORDER);
+        WriteAheadLog.replay(location, record -> {
+            Entry entry = fromRecord(record);
+            memtable.put(entry.key, new Version(0, entry.deleted ? TOMBSTONE : entry.value, null));
+            memtableBytes += entrySize(entry);
+        });
+        this.wal = new WriteAheadLog(location, durability);
+        this.state = new State(memtable, Collections.emptyList(), files);
+        this.background = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "lsm-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public void put(byte[] key, byte[] value) {
+        apply(Collections.singletonList(new Entry(key, value, false)));
+    }
+
+    @Override
+    public byte[] get(byte[] key) {
+        filesLock.readLock().lock();
+        try {
+            return read(state, Long.MAX_VALUE, key);
+        } finally {
+            filesLock.readLock().unlock();
+        }
+    }
+
+    // Value of key as of version, files only have versions older than any open snapshot
+    private static byte[] read(State current, long version, byte[] key) {
+        byte[] value = visible(current.memtable.get(key), version);
+        for (int index = 0; value == null && index < current.immutables.size(); index++) {
+            value = visible(current.immutables.get(index).memtable.get(key), version);
+        }
+        for (int index = 0; value == null && index < current.files.size(); index++) {
+            value = current.files.get(index).get(key);
+        }
+        return value == TOMBSTONE ? null : value;
+    }
+
+    // Newest value written at or before version, null when key was first written after it
+    private static byte[] visible(Version latest, long version) {
+        for (Version value = latest; value != null; value = value.older) {
+            if (value.version <= version) {
+                return value.value;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void delete(byte[] key) {
+        apply(Collections.singletonList(new Entry(key, TOMBSTONE, true)));
+    }
+
+    @Override
+    public void write(Consumer<Batch> writes) {
+        List<Entry> entries = new ArrayList<>();
+        writes.accept(new Batch() {
+            @Override
+            public void put(byte[] key, byte[] value) {
+                entries.add(new Entry(key, value, false));
+            }
+
+            @Override
+            public void delete(byte[] key) {
+                entries.add(new Entry(key, TOMBSTONE, true));
+            }
+        });
+        apply(entries);
+    }
+
+    /*
+        Entries are logged & applied to memtable under write lock, so WAL order is same as memtable order.
+        Writer waits when flush is behind by MAX_IMMUTABLE memtables.
+        All entries of batch get same version, snapshot is taken under write lock so it sees batch fully or not at all.
+     */
+    private void apply(List<Entry> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        List<byte[]> records = new ArrayList<>(entries.size());
+        for (Entry entry : entries) {
+            records.add(toRecord(entry));
+        }
+
+        long lsn;
+        synchronized (writeLock) {
+            awaitFlush();
+            lsn = wal.append(records);
+            ConcurrentSkipListMap<byte[], Version> memtable = state.memtable;
+            long version = ++writeVersion;
+            Long oldestSnapshot = snapshotVersions.isEmpty() ? null : snapshotVersions.firstKey();
+            for (Entry entry : entries) {
+                Version older = oldestSnapshot == null ? null : trim(memtable.get(entry.key), oldestSnapshot);
+                memtable.put(entry.key, new Version(version, entry.deleted ? TOMBSTONE : entry.value, older));
+                memtableBytes += entrySize(entry);
+            }
+            if (memtableBytes >= memtableSize) {
+                switchMemtable();
+            }
+        }
+        wal.commit(lsn);
+    }
+
+    // Versions newer than oldest snapshot and one version that oldest snapshot reads are kept
+    private static Version trim(Version latest, long oldestSnapshot) {
+        for (Version value = latest; value != null; value = value.older) {
+            if (value.version <= oldestSnapshot) {
+                value.older = null;
+                break;
+            }
+        }
+        return latest;
+    }
+
+    private void awaitFlush() {
+        while (state.immutables.size() > MAX_IMMUTABLE && backgroundFailure == null) {
+            try {
+                writeLock.wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            }
+        }
+        if (backgroundFailure != null) {
+            throw backgroundFailure;
+        }
+    }
+
+    // Called under write lock
+    private void switchMemtable() {
+        long rollId = wal.roll();
+        State current = state;
+        List<Immutable> immutables = new ArrayList<>();
+        immutables.add(new Immutable(current.memtable, rollId));
+        immutables.addAll(current.immutables);
+        state = new State(new ConcurrentSkipListMap<>(KeyCodec.KEY_ORDER), immutables, current.files);
+        memtableBytes = 0;
+        background.submit(this::flush);
+    }
+
+    /*
+        Oldest immutable memtable is written as sorted file, WAL segments older than memtable switch are not required after that.
+     */
+    private void flush() {
+        try {
+            Immutable oldest = last(state.immutables);
+            long id;
+            long seq;
+            synchronized (writeLock) {
+                id = ++nextFileId;
+                seq = ++nextSeq;
+            }
+            Iterator<Entry> entries = oldest.memtable.entrySet()
+                    .stream()
+                    .map(e -> new Entry(e.getKey(), e.getValue().value, e.getValue().value == TOMBSTONE))
+                    .iterator();
+            SortedFile file = SortedFile.write(fileName(id), id, seq, Collections.emptyList(), entries, oldest.memtable.size(), PAGE_SIZE);
+
+            synchronized (writeLock) {
+                State current = state;
+                List<Immutable> immutables = new ArrayList<>(current.immutables);
+                immutables.remove(oldest);
+                List<SortedFile> files = new ArrayList<>();
+                if (file != null) {
+                    files.add(file);
+                }
+                files.addAll(current.files);
+                state = new State(current.memtable, immutables, files);
+                writeLock.notifyAll();
+            }
+            wal.deleteBefore(oldest.rollId);
+            flushCount.incrementAndGet();
+
+            while (compact()) {
+                // Merged file can complete run of next tier
+            }
+        } catch (RuntimeException e) {
+            synchronized (writeLock) {
+                backgroundFailure = e;
+                writeLock.notifyAll();
+            }
+            throw e;
+        }
+    }
+
+    /*
+        Files are grouped in tiers by size ( memtable size * COMPACTION_TRIGGER ^ tier ), first run of adjacent files
+        of same tier is merged. Only adjacent files are merged so newer value of key is never hidden by older one.
+     */
+    private boolean compact() {
+        List<SortedFile> files = state.files;
+        int runStart = 0;
+        for (int index = 1; index <= files.size(); index++) {
+            if (index == files.size() || tier(files.get(index)) != tier(files.get(runStart))) {
+                if (index - runStart >= COMPACTION_TRIGGER) {
+                    merge(files.subList(runStart, index), index == files.size());
+                    return true;
+                }
+                runStart = index;
+            }
+        }
+        return false;
+    }
+
+    private void merge(List<SortedFile> inputs, boolean includesOldest) {
+        List<Iterator<Entry>> sources = new ArrayList<>();
+        List<Long> replaced = new ArrayList<>();
+        long entries = 0;
+        for (SortedFile input : inputs) {
+            sources.add(input.iterator(new byte[0]));
+            replaced.add(input.id);
+            entries += input.entries;
+        }
+        Iterator<Entry> merged = new MergedIterator(sources);
+        if (includesOldest) {
+            merged = skipDeleted(merged);
+        }
+
+        long id;
+        synchronized (writeLock) {
+            id = ++nextFileId;
+        }
+        SortedFile output = SortedFile.write(fileName(id), id, inputs.get(0).seq, replaced, merged, entries, PAGE_SIZE);
+
+        synchronized (writeLock) {
+            List<SortedFile> files = new ArrayList<>(state.files);
+            int position = files.indexOf(inputs.get(0));
+            files.removeAll(inputs);
+            if (output != null) {
+                files.add(position, output);
+            }
+            state = new State(state.memtable, state.immutables, files);
+        }
+
+        release(inputs);
+    }
+
+    // Files are deleted when store & all snapshots that read them have released them
+    private void release(List<SortedFile> files) {
+        filesLock.writeLock().lock();
+        try {
+            for (SortedFile file : files) {
+                if (file.release()) {
+                    file.delete();
+                }
+            }
+        } finally {
+            filesLock.writeLock().unlock();
+        }
+    }
+
+    private int tier(SortedFile file) {
+        int tier = 0;
+        // Small memtable still makes file of few pages, so base is not less than that
+        long base = Math.max(memtableSize, PAGE_SIZE * 4L);
+        for (long size = file.size(); size >= base * COMPACTION_TRIGGER; size /= COMPACTION_TRIGGER) {
+            tier++;
+        }
+        return tier;
+    }
+
+    @Override
+    void scan(byte[] fromKey, Predicate<byte[]> pastEnd, Predicate<Entry> consumer) {
+        filesLock.readLock().lock();
+        try {
+            scan(state, Long.MAX_VALUE, fromKey, pastEnd, consumer);
+        } finally {
+            filesLock.readLock().unlock();
+        }
+    }
+
+    private static void scan(State current, long version, byte[] fromKey, Predicate<byte[]> pastEnd, Predicate<Entry> consumer) {
+        List<Iterator<Entry>> sources = new ArrayList<>();
+        sources.add(iterator(current.memtable, version, fromKey));
+        for (Immutable immutable : current.immutables) {
+            sources.add(iterator(immutable.memtable, version, fromKey));
+        }
+        for (SortedFile file : current.files) {
+            sources.add(file.iterator(fromKey));
+        }
+
+        Iterator<Entry> itr = skipDeleted(new MergedIterator(sources));
+        while (itr.hasNext()) {
+            Entry entry = itr.next();
+            if (pastEnd.test(entry.key) || !consumer.test(entry)) {
+                break;
+            }
+        }
+    }
+
+    // Cursor reads from snapshot taken when it is created, snapshot is closed with cursor
+    @Override
+    public KeyCursor cursor(byte[] upperBound) {
+        Snapshot snapshot = snapshot();
+        return snapshot.cursor(upperBound, snapshot::close);
+    }
+
+    /*
+        Snapshot keeps state & write version of this moment. Files of state are not deleted till snapshot is closed,
+        memtables of state keep getting writes but versions after snapshot are not read.
+     */
+    @Override
+    public Snapshot snapshot() {
+        synchronized (writeLock) {
+            State current = state;
+            current.files.forEach(SortedFile::retain);
+            snapshotVersions.merge(writeVersion, 1, Integer::sum);
+            return new Snapshot(current, writeVersion);
+        }
+    }
+
+    /*
+        Split keys are first keys of file pages, every page holds similar amount of data.
+        Rows still in memtable are not part of any file, they go to range that contains their key.
+     */
+    @Override
+    public List<byte[]> splitKeys(byte[] fromKey, byte[] toKey, int parts) {
+        List<byte[]> pageKeys = new ArrayList<>();
+        for (SortedFile file : state.files) {
+            for (byte[] key : file.firstKeys()) {
+                if (KeyCodec.compare(key, fromKey) > 0 && KeyCodec.compare(key, toKey) < 0) {
+                    pageKeys.add(key);
+                }
+            }
+        }
+        pageKeys.sort(KeyCodec.KEY_ORDER);
+
+        List<byte[]> splits = new ArrayList<>();
+        for (int part = 1; part < parts && pageKeys.size() >= parts; part++) {
+            byte[] key = pageKeys.get(part * pageKeys.size() / parts);
+            if (splits.isEmpty() || KeyCodec.compare(last(splits), key) < 0) {
+                splits.add(key);
+            }
+        }
+        return splits;
+    }
+
+    // No of memtables flushed, used by tests to wait for background work
+    int flushCount() {
+        return flushCount.get();
+    }
+
+    int fileCount() {
+        return state.files.size();
+    }
+
+    final class Snapshot extends LsmReader implements SnapshotStore {
+        private final State state;
+        private final long version;
+        private boolean closed;
+
+        private Snapshot(State state, long version) {
+            this.state = state;
+            this.version = version;
+        }
+
+        @Override
+        public byte[] get(byte[] key) {
+            return read(state, version, key);
+        }
+
+        @Override
+        void scan(byte[] fromKey, Predicate<byte[]> pastEnd, Predicate<Entry> consumer) {
+            NavigableLsm.scan(state, version, fromKey, pastEnd, consumer);
+        }
+
+        @Override
+        public KeyCursor cursor(byte[] upperBound) {
+            return cursor(upperBound, () -> {
+            });
+        }
+
+        @Override
+        public SnapshotStore snapshot() {
+            return NavigableLsm.this.snapshot();
+        }
+
+        // Split keys only balance ranges, so they are taken from live store
+        @Override
+        public List<byte[]> splitKeys(byte[] fromKey, byte[] toKey, int parts) {
+            return NavigableLsm.this.splitKeys(fromKey, toKey, parts);
+        }
+
+        @Override
+        public void put(byte[] key, byte[] value) {
+            throw new UnsupportedOperationException("Snapshot is read only");
+        }
+
+        @Override
+        public void delete(byte[] key) {
+            throw new UnsupportedOperationException("Snapshot is read only");
+        }
+
+        @Override
+        public void write(Consumer<Batch> writes) {
+            throw new UnsupportedOperationException("Snapshot is read only");
+        }
+
+        @Override
+        public void close() {
+            synchronized (writeLock) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                snapshotVersions.computeIfPresent(version, (key, count) -> count == 1 ? null : count - 1);
+            }
+            release(state.files);
+        }
+    }
+
+    /*
+        Memtable is flushed so next open does not replay log.
+     */
+    @Override
+    public void close() {
+        synchronized (writeLock) {
+            if (!state.memtable.isEmpty()) {
+                switchMemtable();
+            }
+        }
+        background.shutdown();
+        try {
+            background.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+        wal.close();
+        state.files.forEach(SortedFile::close);
+    }
+
+    /*
+        Files replaced by compaction are deleted if process stopped before deleting them.
+     */
+    private List<SortedFile> openFiles() {
+        List<SortedFile> files = new ArrayList<>();
+        try (Stream<Path> paths = Files.list(location)) {
+            paths.forEach(path -> {
+                String name = path.getFileName().toString();
+                Matcher matcher = FILE_NAME.matcher(name);
+                if (matcher.matches()) {
+                    files.add(SortedFile.open(path, Long.parseLong(matcher.group(1))));
+                } else if (name.endsWith(".tmp")) {
+                    deleteFile(path);
+                }
+            });
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        Set<Long> replaced = new HashSet<>();
+        files.forEach(file -> replaced.addAll(file.replaced));
+        files.removeIf(file -> {
+            if (replaced.contains(file.id)) {
+                file.delete();
+                return true;
+            }
+            return false;
+        });
+        files.sort((f1, f2) -> f1.seq != f2.seq ? Long.compare(f2.seq, f1.seq) : Long.compare(f2.id, f1.id));
+        return files;
+    }
+
+    private Path fileName(long id) {
+        return location.resolve(String.format("sst-%020d.db", id));
+    }
+
+    private static void deleteFile(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    // Entries visible at version, keys first written after version are skipped
+    private static Iterator<Entry> iterator(ConcurrentSkipListMap<byte[], Version> memtable, long version, byte[] fromKey) {
+        Iterator<Map.Entry<byte[], Version>> itr = memtable.tailMap(fromKey, true).entrySet().iterator();
+        return new Iterator<Entry>() {
+            Entry next = advance();
+
+            Entry advance() {
+                while (itr.hasNext()) {
+                    Map.Entry<byte[], Version> e = itr.next();
+                    byte[] value = visible(e.getValue(), version);
+                    if (value != null) {
+                        return new Entry(e.getKey(), value, value == TOMBSTONE);
+                    }
+                }
+                return null;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public Entry next() {
+                Entry current = next;
+                next = advance();
+                return current;
+            }
+        };
+    }
+
+    private static Iterator<Entry> skipDeleted(Iterator<Entry> itr) {
+        return new Iterator<Entry>() {
+            Entry next = advance();
+
+            Entry advance() {
+                while (itr.hasNext()) {
+                    Entry entry = itr.next();
+                    if (!entry.deleted) {
+                        return entry;
+                    }
+                }
+                return null;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public Entry next() {
+                Entry current = next;
+                next = advance();
+                return current;
+            }
+        };
+    }
+
+    // WAL record [type][key length][key][value]
+    private static byte[] toRecord(Entry entry) {
+        return ByteBuffer.allocate(1 + Integer.BYTES + entry.key.length + entry.value.length)
+                .put(entry.deleted ? DELETE : PUT)
+                .putInt(entry.key.length)
+                .put(entry.key)
+                .put(entry.value)
+                .array();
+    }
+
+    private static Entry fromRecord(byte[] record) {
+        ByteBuffer buffer = ByteBuffer.wrap(record);
+        boolean deleted = buffer.get() == DELETE;
+        byte[] key = new byte[buffer.getInt()];
+        buffer.get(key);
+        byte[] value = new byte[buffer.remaining()];
+        buffer.get(value);
+        return new Entry(key, value, deleted);
+    }
+
+    private static long entrySize(Entry entry) {
+        return entry.key.length + entry.value.length + ENTRY_OVERHEAD;
+    }
+
+    private static <T> T last(List<T> values) {
+        return values.get(values.size() - 1);
+    }
+
+    // Memtable & files visible to reader, new state is published on every memtable switch, flush & compaction
+    private static final class State {
+        final ConcurrentSkipListMap<byte[], Version> memtable;
+        final List<Immutable> immutables;
+        final List<SortedFile> files;
+
+        State(ConcurrentSkipListMap<byte[], Version> memtable, List<Immutable> immutables, List<SortedFile> files) {
+            this.memtable = memtable;
+            this.immutables = immutables;
+            this.files = files;
+        }
+    }
+
+    private static final class Immutable {
+        final ConcurrentSkipListMap<byte[], Version> memtable;
+        // First WAL segment that is not part of this memtable
+        final long rollId;
+
+        Immutable(ConcurrentSkipListMap<byte[], Version> memtable, long rollId) {
+            this.memtable = memtable;
+            this.rollId = rollId;
+        }
+    }
+
+    // Value of key in memtable, older version is kept while snapshot that reads it is open
+    private static final class Version {
+        final long version;
+        final byte[] value;
+        volatile Version older;
+
+        Version(long version, byte[] value, Version older) {
+            this.version = version;
+            this.value = value;
+            this.older = older;
+        }
+    }
+}
@@ -0,0 +1,336 @@
+package query.kv.persistent.lsm;
+
+import query.kv.KeyCodec;
+import query.kv.filter.BloomFilter;
+import query.page.allocator.DiskPageAllocator;
+import query.page.read.ReadPage;
+import query.page.write.WritePage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+    Immutable sorted file made of slotted pages.
+    Page 1..n       -> Entries in key order [deleted][key length][key][value]
+    Index pages     -> [page no][first key of page] for every data page, this is sparse index kept in memory
+    Bloom pages     -> Bloom filter bits split in page size chunks
+    Last page       -> Meta - location of index/bloom pages, seq and ids of files this file replaced ( compaction )
+
+    Seq orders files by age, flushed file gets new seq and compacted file keeps newest seq of its inputs.
+ */
+final class SortedFile {
+
+    static final byte VERSION = 1;
+    private static final int BLOOM_BITS_PER_KEY = 10;
+
+    final long id;
+    final long seq;
+    final List<Long> replaced;
+    final long entries;
+    private final Path location;
+    private final DiskPageAllocator allocator;
+    private final int pageSize;
+    private final List<byte[]> firstKeys;
+    private final BloomFilter bloom;
+    // Store holds one reference while file is part of its state, every open snapshot holds one more
+    private final AtomicInteger references = new AtomicInteger(1);
+
+    private SortedFile(long id, Path location, DiskPageAllocator allocator, long seq, List<Long> replaced, long entries, List<byte[]> firstKeys, BloomFilter bloom) {
+        this.id = id;
+        this.location = location;
+        this.allocator = allocator;
+        this.pageSize = allocator.pageSize();
+        this.seq = seq;
+        this.replaced = replaced;
+        this.entries = entries;
+        this.firstKeys = firstKeys;
+        this.bloom = bloom;
+    }
+
+    // Value, TOMBSTONE when key is deleted or null when file does not have key
+    byte[] get(byte[] key) {
+        if (!bloom.mightContain(key)) {
+            return null;
+        }
+        int page = pageFor(key);
+        if (page < 0) {
+            return null;
+        }
+        List<Entry> pageEntries = readPage(page);
+        int low = 0;
+        int high = pageEntries.size() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            Entry entry = pageEntries.get(mid);
+            int compare = KeyCodec.compare(entry.key, key);
+            if (compare < 0) {
+                low = mid + 1;
+            } else if (compare > 0) {
+                high = mid - 1;
+            } else {
+                return entry.deleted ? NavigableLsm.TOMBSTONE : entry.value;
+            }
+        }
+        return null;
+    }
+
+    // Entries from first key >= fromKey
+    Iterator<Entry> iterator(byte[] fromKey) {
+        int startPage = Math.max(0, pageFor(fromKey));
+        return new Iterator<Entry>() {
+            int page = startPage;
+            List<Entry> pageEntries = readPage(page);
+            int index = skipTo(pageEntries, fromKey);
+
+            @Override
+            public boolean hasNext() {
+                while (index >= pageEntries.size()) {
+                    if (++page >= firstKeys.size()) {
+                        return false;
+                    }
+                    pageEntries = readPage(page);
+                    index = 0;
+                }
+                return true;
+            }
+
+            @Override
+            public Entry next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return pageEntries.get(index++);
+            }
+        };
+    }
+
+    List<byte[]> firstKeys() {
+        return firstKeys;
+    }
+
+    long size() {
+        return location.toFile().length();
+    }
+
+    void close() {
+        allocator.close();
+    }
+
+    void retain() {
+        references.incrementAndGet();
+    }
+
+    // True when last reference is released and file can be deleted
+    boolean release() {
+        return references.decrementAndGet() == 0;
+    }
+
+    void delete() {
+        close();
+        try {
+            Files.deleteIfExists(location);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static int skipTo(List<Entry> entries, byte[] fromKey) {
+        int index = 0;
+        while (index < entries.size() && KeyCodec.compare(entries.get(index).key, fromKey) < 0) {
+            index++;
+        }
+        return index;
+    }
+
+    // Index of last page whose first key <= key, -1 when key is before first page
+    private int pageFor(byte[] key) {
+        int low = 0;
+        int high = firstKeys.size() - 1;
+        int page = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (KeyCodec.compare(firstKeys.get(mid), key) <= 0) {
+                page = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return page;
+    }
+
+    private List<Entry> readPage(int index) {
+        ReadPage page = allocator.readByPageId(index + 1);
+        byte[] buffer = new byte[pageSize];
+        List<Entry> pageEntries = new ArrayList<>(page.totalRecords());
+        for (int record = 0; record < page.totalRecords(); record++) {
+            int length = page.record(record, buffer);
+            ByteBuffer data = ByteBuffer.wrap(buffer, 0, length);
+            boolean deleted = data.get() == 1;
+            byte[] key = new byte[data.getInt()];
+            data.get(key);
+            byte[] value = new byte[data.remaining()];
+            data.get(value);
+            pageEntries.add(new Entry(key, value, deleted));
+        }
+        return pageEntries;
+    }
+
+    static SortedFile open(Path location, long id) {
+        DiskPageAllocator allocator = new DiskPageAllocator(VERSION, 0, location);
+        byte[] buffer = new byte[allocator.pageSize()];
+
+        ReadPage metaPage = allocator.readByPageId(allocator.noOfPages());
+        int length = metaPage.record(0, buffer);
+        ByteBuffer meta = ByteBuffer.wrap(buffer, 0, length);
+        int indexFirst = meta.getInt();
+        int indexPages = meta.getInt();
+        int bloomFirst = meta.getInt();
+        int bloomPages = meta.getInt();
+        int hashes = meta.getInt();
+        long entries = meta.getLong();
+        long seq = meta.getLong();
+        List<Long> replaced = new ArrayList<>();
+        for (int count = meta.getInt(); count > 0; count--) {
+            replaced.add(meta.getLong());
+        }
+
+        List<byte[]> firstKeys = new ArrayList<>();
+        for (int pageId = indexFirst; pageId < indexFirst + indexPages; pageId++) {
+            ReadPage page = allocator.readByPageId(pageId);
+            for (int record = 0; record < page.totalRecords(); record++) {
+                int size = page.record(record, buffer);
+                firstKeys.add(java.util.Arrays.copyOfRange(buffer, Integer.BYTES, size));
+            }
+        }
+
+        ByteBuffer bloomBits = ByteBuffer.allocate(bloomPages * allocator.pageSize());
+        for (int pageId = bloomFirst; pageId < bloomFirst + bloomPages; pageId++) {
+            ReadPage page = allocator.readByPageId(pageId);
+            for (int record = 0; record < page.totalRecords(); record++) {
+                int size = page.record(record, buffer);
+                bloomBits.put(buffer, 0, size);
+            }
+        }
+        byte[] bloom = java.util.Arrays.copyOf(bloomBits.array(), bloomBits.position());
+
+        return new SortedFile(id, location, allocator, seq, replaced, entries, firstKeys, BloomFilter.fromBytes(bloom, hashes));
+    }
+
+    /*
+        Writes entries to temp file and renames it after fsync, returns null when there is no entry to write.
+     */
+    static SortedFile write(Path location, long id, long seq, List<Long> replaced, Iterator<Entry> entries, long expectedEntries, int pageSize) {
+        Path tmpLocation = location.resolveSibling(location.getFileName() + ".tmp");
+        DiskPageAllocator allocator = new DiskPageAllocator(VERSION, pageSize, tmpLocation);
+        BloomFilter bloom = BloomFilter.create(expectedEntries, BLOOM_BITS_PER_KEY);
+        List<byte[]> firstKeys = new ArrayList<>();
+        long count = 0;
+
+        WritePage page = null;
+        while (entries.hasNext()) {
+            Entry entry = entries.next();
+            byte[] record = ByteBuffer.allocate(1 + Integer.BYTES + entry.key.length + entry.value.length)
+                    .put((byte) (entry.deleted ? 1 : 0))
+                    .putInt(entry.key.length)
+                    .put(entry.key)
+                    .put(entry.value)
+                    .array();
+            if (page == null || page.write(record) < 0) {
+                if (page != null) {
+                    allocator.append(page);
+                }
+                page = allocator.newPage();
+                if (page.write(record) < 0) {
+                    throw new IllegalArgumentException(String.format("Entry of %s bytes does not fit in page of %s bytes", record.length, pageSize));
+                }
+                firstKeys.add(entry.key);
+            }
+            bloom.add(entry.key);
+            count++;
+        }
+
+        if (page == null) {
+            allocator.close();
+            delete(tmpLocation);
+            return null;
+        }
+        allocator.append(page);
+
+        int indexFirst = allocator.noOfPages() + 1;
+        List<byte[]> indexRecords = new ArrayList<>();
+        for (int index = 0; index < firstKeys.size(); index++) {
+            byte[] key = firstKeys.get(index);
+            indexRecords.add(ByteBuffer.allocate(Integer.BYTES + key.length).putInt(index + 1).put(key).array());
+        }
+        int indexPages = writeRecords(allocator, indexRecords);
+
+        int bloomFirst = allocator.noOfPages() + 1;
+        byte[] bloomBytes = bloom.toBytes();
+        List<byte[]> bloomChunks = new ArrayList<>();
+        int chunkSize = pageSize / 2;
+        for (int offset = 0; offset < bloomBytes.length; offset += chunkSize) {
+            bloomChunks.add(java.util.Arrays.copyOfRange(bloomBytes, offset, Math.min(bloomBytes.length, offset + chunkSize)));
+        }
+        int bloomPages = writeRecords(allocator, bloomChunks);
+
+        ByteBuffer meta = ByteBuffer.allocate(Integer.BYTES * 6 + Long.BYTES * (2 + replaced.size()))
+                .putInt(indexFirst)
+                .putInt(indexPages)
+                .putInt(bloomFirst)
+                .putInt(bloomPages)
+                .putInt(bloom.hashes())
+                .putLong(count)
+                .putLong(seq)
+                .putInt(replaced.size());
+        replaced.forEach(meta::putLong);
+        writeRecords(allocator, Collections.singletonList(meta.array()));
+
+        allocator.sync();
+        allocator.close();
+        try {
+            Files.move(tmpLocation, location, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return open(location, id);
+    }
+
+    private static int writeRecords(DiskPageAllocator allocator, List<byte[]> records) {
+        int pages = 0;
+        WritePage page = null;
+        for (byte[] record : records) {
+            if (page == null || page.write(record) < 0) {
+                if (page != null) {
+                    allocator.append(page);
+                }
+                page = allocator.newPage();
+                pages++;
+                if (page.write(record) < 0) {
+                    throw new IllegalArgumentException(String.format("Record of %s bytes does not fit in page", record.length));
+                }
+            }
+        }
+        if (page != null) {
+            allocator.append(page);
+        }
+        return pages;
+    }
+
+    private static void delete(Path location) {
+        try {
+            Files.deleteIfExists(location);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
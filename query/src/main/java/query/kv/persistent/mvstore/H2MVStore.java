@@ -1,16 +1,23 @@
 package query.kv.persistent.mvstore;
 
-import com.google.gson.Gson;
 import query.kv.KeyValueStore;
+import query.kv.ReadView;
 import query.kv.SSTable;
+import query.kv.Sequences;
 import query.kv.TableInfo;
+import query.kv.cache.CachedSSTable;
+import query.kv.codec.RowCodec;
+import query.kv.filter.PkFilters;
+import query.kv.persistent.StoreReadView;
+import query.sql.QueryCache;
 import org.h2.mvstore.MVStore;
 
 import java.io.File;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.function.Function;
 
 import static java.util.Collections.emptyMap;
@@ -18,23 +25,36 @@ import static java.util.Collections.emptyMap;
 public class H2MVStore implements KeyValueStore {
 
     public static final String type = "mv:";
-    private final Map<String, SSTable<?>> tables = new HashMap<>();
+    private final Map<String, SSTable<?>> tables = new ConcurrentHashMap<>();
+    private final QueryCache queryCache = new QueryCache(QueryCache.DEFAULT_SIZE);
+    private final Map<String, NavigableMVStores> maps = new ConcurrentHashMap<>();
+    // Shared by maps of all tables, so snapshot pins roots of all maps between write batches
+    private final ReadWriteLock snapshotLock = new ReentrantReadWriteLock();
     private final MVStore mvStore;
+    private final RowCodec.Factory codecFactory;
+    private final Sequences sequences;
+    private final PkFilters pkFilters = new PkFilters();
 
     public H2MVStore(File rootFolder) {
+        this(rootFolder, RowCodec.json());
+    }
+
+    public H2MVStore(File rootFolder, RowCodec.Factory codecFactory) {
         this.mvStore = MVStore.open(rootFolder.getAbsolutePath());
+        this.codecFactory = codecFactory;
+        this.sequences = Sequences.persistent(new NavigableMVStores(mvStore, Sequences.TABLE));
     }
 
     @Override
     public <Row_Type> SSTable<Row_Type> createTable(String tableName, Class<Row_Type> type, Map<String, Function<Row_Type, Object>> schema, Map<String, Function<Row_Type, String>> indexes) {
-        Function<Row_Type, byte[]> toJson = row -> new Gson().toJson(row).getBytes();
-        Function<byte[], Row_Type> toRecord = rawBytes -> new Gson().fromJson(new String(rawBytes), type);
-        AtomicLong auto = new AtomicLong(System.nanoTime());
-        return createTable(new TableInfo<>(tableName, schema, indexes, toJson, toRecord, $ -> String.valueOf(auto.incrementAndGet())));
+        RowCodec<Row_Type> codec = codecFactory.create(type, schema);
+        Sequences.Sequence sequence = sequences.of(tableName);
+        return createTable(new TableInfo<>(tableName, schema, indexes, codec, $ -> String.valueOf(sequence.next())));
     }
 
     private <Row_Type> void registerTable(String tableName, SSTable<Row_Type> SSTable) {
         tables.put(tableName, SSTable);
+        queryCache.clear();
     }
 
     @Override
@@ -44,11 +64,18 @@ public class H2MVStore implements KeyValueStore {
 
     @Override
     public <Row_Type> SSTable<Row_Type> createTable(TableInfo<Row_Type> tableInfo) {
-        SSTable<Row_Type> SSTable = new MVStoreTable<>(mvStore, tableInfo);
+        NavigableMVStores map = new NavigableMVStores(mvStore, tableInfo.getTableName(), snapshotLock);
+        maps.put(tableInfo.getTableName(), map);
+        SSTable<Row_Type> SSTable = CachedSSTable.wrap(new MVStoreTable<>(map, tableInfo, pkFilters.of(map, tableInfo)), tableInfo);
         registerTable(tableInfo.getTableName(), SSTable);
         return SSTable;
     }
 
+    @Override
+    public QueryCache queryCache() {
+        return queryCache;
+    }
+
     @Override
     public List<String> desc(String tableName) {
         SSTable<?> SSTable = tables.get(tableName);
@@ -56,6 +83,7 @@ public class H2MVStore implements KeyValueStore {
     }
 
     public void close() {
+        pkFilters.save();
         this.mvStore.compactFile(1000);
         this.mvStore.close();
     }
@@ -65,4 +93,17 @@ public class H2MVStore implements KeyValueStore {
     public <Row_Type> SSTable<Row_Type> table(String tableName) {
         return (SSTable<Row_Type>) tables.get(tableName);
     }
+
+    // Root page of every table map is pinned under write lock, so view sees same write batches in all tables
+    @Override
+    public ReadView snapshot() {
+        StoreReadView view = new StoreReadView();
+        snapshotLock.writeLock().lock();
+        try {
+            maps.values().forEach(map -> view.add(map, map.snapshot()));
+        } finally {
+            snapshotLock.writeLock().unlock();
+        }
+        return view;
+    }
 }
@@ -1,10 +1,16 @@
 package query.kv.persistent.mvstore;
 
+import query.kv.KeyCodec;
 import query.kv.persistent.NavigablePersistentStore;
 import org.h2.mvstore.Cursor;
 import org.h2.mvstore.MVMap;
 import org.h2.mvstore.MVStore;
+import org.h2.mvstore.Page;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Predicate;
@@ -12,45 +18,210 @@ import java.util.function.Predicate;
 public class NavigableMVStores implements NavigablePersistentStore {
     private final MVStore store;
     private final MVMap<byte[], byte[]> db;
+    // Writes hold read lock, snapshot takes write lock so it never pins root in middle of batch. Shared by maps of store
+    private final ReadWriteLock snapshotLock;
+    // Root page of snapshot view, null for live map
+    private final Page root;
 
     public NavigableMVStores(MVStore store, String table) {
+        this(store, table, new ReentrantReadWriteLock());
+    }
+
+    public NavigableMVStores(MVStore store, String table, ReadWriteLock snapshotLock) {
+        this(store, store.openMap(table), snapshotLock, null);
+    }
+
+    private NavigableMVStores(MVStore store, MVMap<byte[], byte[]> db, ReadWriteLock snapshotLock, Page root) {
         this.store = store;
-        this.db = this.store.openMap(table);
+        this.db = db;
+        this.snapshotLock = snapshotLock;
+        this.root = root;
     }
 
     @Override
     public void put(byte[] key, byte[] value) {
-        db.put(key, value);
+        apply(batch -> batch.put(key, value));
     }
 
     @Override
     public byte[] get(byte[] key) {
-        return db.get(key);
+        return root == null ? db.get(key) : get(root, key);
+    }
+
+    @Override
+    public void delete(byte[] key) {
+        apply(batch -> batch.delete(key));
+    }
+
+    /*
+        Changes are committed as single store version. Map changes are visible to readers as they are applied,
+        MVStore background auto commit can still persist part of batch before this commit.
+     */
+    @Override
+    public void write(Consumer<Batch> writes) {
+        apply(writes);
+        store.commit();
+    }
+
+    // Batch is persisted by MVStore background auto commit
+    @Override
+    public void apply(Consumer<Batch> writes) {
+        if (root != null) {
+            throw new UnsupportedOperationException("Snapshot is read only");
+        }
+        snapshotLock.readLock().lock();
+        try {
+            writes.accept(new Batch() {
+                @Override
+                public void put(byte[] key, byte[] value) {
+                    db.put(key, value);
+                }
+
+                @Override
+                public void delete(byte[] key) {
+                    db.remove(key);
+                }
+            });
+        } finally {
+            snapshotLock.readLock().unlock();
+        }
+    }
+
+    /*
+        MVMap is copy on write B-tree, view keeps root page of map and reads only from it.
+        Old pages stay readable while store retains their chunks ( MVStore retention time ).
+     */
+    @Override
+    public SnapshotStore snapshot() {
+        snapshotLock.writeLock().lock();
+        try {
+            return new SnapshotView(store, db, snapshotLock, db.getRootPage());
+        } finally {
+            snapshotLock.writeLock().unlock();
+        }
     }
 
     @Override
-    public <Row_Type> void iterate(String fromKey, Function<byte[], Row_Type> converter, Consumer<Row_Type> consumer, int limit) {
+    public <Row_Type> void iterate(byte[] prefix, Function<byte[], Row_Type> converter, Consumer<Row_Type> consumer, int limit) {
 
-        Predicate<String> predicate = v1 -> v1.startsWith(fromKey);
-        match(fromKey, predicate.negate(), converter, consumer, limit);
+        Predicate<byte[]> predicate = key -> KeyCodec.startsWith(key, prefix);
+        match(prefix, predicate.negate(), converter, consumer, limit);
     }
 
     @Override
-    public <Row_Type> void iterate(String fromKey, String toKey, Function<byte[], Row_Type> converter, Consumer<Row_Type> consumer, int limit) {
-        Predicate<String> predicate = v1 -> v1.compareTo(toKey) > 0;
+    public <Row_Type> void iterate(byte[] fromKey, byte[] toKey, Function<byte[], Row_Type> converter, Consumer<Row_Type> consumer, int limit) {
+        Predicate<byte[]> predicate = key -> KeyCodec.compare(key, toKey) > 0;
         match(fromKey, predicate, converter, consumer, limit);
     }
 
-    private <Row_Type> void match(String fromKey, Predicate<String> predicate, Function<byte[], Row_Type> converter, Consumer<Row_Type> consumer, int limit) {
-        Cursor<byte[], byte[]> itr = db.cursor(fromKey.getBytes());
+    @Override
+    public <Row_Type> void iterateWhile(byte[] fromKey, byte[] toKey, Function<byte[], Row_Type> converter, Predicate<Row_Type> consumer) {
+        Cursor<byte[], byte[]> itr = cursorFrom(fromKey);
+        while (itr.hasNext()) {
+            byte[] key = itr.next();
+            if (KeyCodec.compare(key, toKey) >= 0 || !consumer.test(converter.apply(itr.getValue()))) {
+                break;
+            }
+        }
+    }
+
+    // Cursor keeps root page of map when it is created like snapshot view
+    @Override
+    public KeyCursor cursor(byte[] upperBound) {
+        Page root = this.root == null ? db.getRootPage() : this.root;
+        return new KeyCursor() {
+            Cursor<byte[], byte[]> itr;
+            byte[] key;
+
+            @Override
+            public void seek(byte[] key) {
+                itr = new Cursor<>(root, key);
+            }
+
+            @Override
+            public boolean next() {
+                if (!itr.hasNext()) {
+                    return false;
+                }
+                key = itr.next();
+                return upperBound == null || KeyCodec.compare(key, upperBound) < 0;
+            }
+
+            @Override
+            public byte[] key() {
+                return key;
+            }
+
+            @Override
+            public byte[] value() {
+                return itr.getValue();
+            }
+
+            @Override
+            public byte[] get(byte[] key) {
+                return NavigableMVStores.get(root, key);
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    private static byte[] get(Page root, byte[] key) {
+        Cursor<byte[], byte[]> lookup = new Cursor<>(root, key);
+        return lookup.hasNext() && KeyCodec.compare(lookup.next(), key) == 0 ? lookup.getValue() : null;
+    }
+
+    private Cursor<byte[], byte[]> cursorFrom(byte[] fromKey) {
+        return root == null ? db.cursor(fromKey) : new Cursor<>(root, fromKey);
+    }
+
+    // MVMap is counted B-tree, so key at any position is found without reading the keys before it
+    @Override
+    public List<byte[]> splitKeys(byte[] fromKey, byte[] toKey, int parts) {
+        long start = position(fromKey);
+        long end = position(toKey);
+        long rangeSize = (end - start) / parts;
+
+        List<byte[]> splits = new ArrayList<>();
+        if (rangeSize == 0) {
+            return splits;
+        }
+        for (int part = 1; part < parts; part++) {
+            splits.add(db.getKey(start + rangeSize * part));
+        }
+        return splits;
+    }
+
+    // Index of key or of the key that would follow it
+    private long position(byte[] key) {
+        long index = db.getKeyIndex(key);
+        return index < 0 ? -(index + 1) : index;
+    }
+
+    private <Row_Type> void match(byte[] fromKey, Predicate<byte[]> predicate, Function<byte[], Row_Type> converter, Consumer<Row_Type> consumer, int limit) {
+        Cursor<byte[], byte[]> itr = cursorFrom(fromKey);
         int tracker = limit;
 
-        for (; itr.hasNext() && tracker > 0; itr.next(), tracker--) {
-            String s = new String(itr.getKey());
-            if (predicate.test(s)) {
+        for (; itr.hasNext() && tracker > 0; tracker--) {
+            byte[] key = itr.next();
+            if (predicate.test(key)) {
                 break;
             }
             consumer.accept(converter.apply(itr.getValue()));
         }
     }
+
+    // Split keys of view are taken from live map, they only balance ranges
+    private static final class SnapshotView extends NavigableMVStores implements SnapshotStore {
+
+        SnapshotView(MVStore store, MVMap<byte[], byte[]> db, ReadWriteLock snapshotLock, Page root) {
+            super(store, db, snapshotLock, root);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
 }
@@ -1,19 +1,50 @@
 package query.kv.persistent.rocks;
 
+import query.kv.KeyCodec;
 import query.kv.persistent.NavigablePersistentStore;
+import org.rocksdb.LiveFileMetaData;
+import org.rocksdb.ReadOptions;
 import org.rocksdb.RocksDB;
 import org.rocksdb.RocksDBException;
 import org.rocksdb.RocksIterator;
+import org.rocksdb.Slice;
+import org.rocksdb.Snapshot;
+import org.rocksdb.WriteBatch;
+import org.rocksdb.WriteOptions;
 
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Predicate;
 
 public class NavigableRocks implements NavigablePersistentStore {
     private final RocksDB db;
+    private final boolean boundedScan;
+    // Reads of snapshot view use this snapshot, null for live store
+    private final Snapshot snapshot;
+    private final ReadOptions pointReads;
+    // Iterated keys are copied in this buffer for comparison, this avoids byte[] per key
+    private final ThreadLocal<ByteBuffer> keyBuffers = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(256));
 
     public NavigableRocks(RocksDB db) {
+        this(db, true);
+    }
+
+    /*
+        boundedScan - iterator gets upper bound so RocksDB stops at end of prefix/range and can skip SST files using prefix bloom.
+        Otherwise every key is read back and compared, this is kept to compare scan cost.
+     */
+    public NavigableRocks(RocksDB db, boolean boundedScan) {
+        this(db, boundedScan, null);
+    }
+
+    private NavigableRocks(RocksDB db, boolean boundedScan, Snapshot snapshot) {
         this.db = db;
+        this.boundedScan = boundedScan;
+        this.snapshot = snapshot;
+        this.pointReads = snapshot == null ? null : new ReadOptions().setSnapshot(snapshot);
     }
 
     @Override
@@ -28,36 +59,221 @@ public class NavigableRocks implements NavigablePersistentStore {
     @Override
     public byte[] get(byte[] key) {
         try {
-            return db.get(key);
+            return pointReads == null ? db.get(key) : db.get(pointReads, key);
+        } catch (RocksDBException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public void delete(byte[] key) {
+        try {
+            db.delete(key);
         } catch (RocksDBException e) {
             throw new RuntimeException(e);
         }
     }
 
     @Override
-    public <Row_Type> void iterate(String fromKey, Function<byte[], Row_Type> converter, Consumer<Row_Type> consumer, int limit) {
+    public void write(Consumer<Batch> writes) {
+        try (WriteBatch batch = new WriteBatch();
+             WriteOptions options = new WriteOptions()) {
+            writes.accept(new Batch() {
+                @Override
+                public void put(byte[] key, byte[] value) {
+                    try {
+                        batch.put(key, value);
+                    } catch (RocksDBException e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+
+                @Override
+                public void delete(byte[] key) {
+                    try {
+                        batch.delete(key);
+                    } catch (RocksDBException e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            });
+            db.write(options, batch);
+        } catch (RocksDBException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public <Row_Type> void iterate(byte[] prefix, Function<byte[], Row_Type> converter, Consumer<Row_Type> consumer, int limit) {
+
+        if (boundedScan) {
+            boolean samePrefix = prefix.length >= RocksDBDriver.PREFIX_LENGTH;
+            bounded(prefix, KeyCodec.prefixUpperBound(prefix), samePrefix, converter, consumer, limit);
+        } else {
+            Predicate<ByteBuffer> predicate = key -> KeyCodec.startsWith(key, prefix);
+            match(prefix, predicate.negate(), converter, consumer, limit);
+        }
 
-        Predicate<String> predicate = v1 -> v1.startsWith(fromKey);
-        match(fromKey, predicate.negate(), converter, consumer, limit);
+    }
+
+    @Override
+    public <Row_Type> void iterate(byte[] fromKey, byte[] toKey, Function<byte[], Row_Type> converter, Consumer<Row_Type> consumer, int limit) {
 
+        if (boundedScan) {
+            bounded(fromKey, KeyCodec.successor(toKey), false, converter, consumer, limit);
+        } else {
+            Predicate<ByteBuffer> predicate = key -> KeyCodec.compare(key, toKey) > 0;
+            match(fromKey, predicate, converter, consumer, limit);
+        }
     }
 
     @Override
-    public <Row_Type> void iterate(String fromKey, String toKey, Function<byte[], Row_Type> converter, Consumer<Row_Type> consumer, int limit) {
+    public <Row_Type> void iterateWhile(byte[] fromKey, byte[] toKey, Function<byte[], Row_Type> converter, Predicate<Row_Type> consumer) {
 
-        Predicate<String> predicate = v1 -> v1.compareTo(toKey) > 0;
-        match(fromKey, predicate, converter, consumer, limit);
+        try (ReadOptions options = readOptions().setTotalOrderSeek(true);
+             Slice bound = new Slice(toKey)) {
+            options.setIterateUpperBound(bound);
+            try (RocksIterator itr = db.newIterator(options)) {
+                for (itr.seek(fromKey); itr.isValid(); itr.next()) {
+                    if (!consumer.test(converter.apply(itr.value()))) {
+                        break;
+                    }
+                }
+            }
+        }
     }
 
-    private <Row_Type> void match(String fromKey, Predicate<String> predicate, Function<byte[], Row_Type> converter, Consumer<Row_Type> consumer, int limit) {
+    // Iterator & point reads of cursor use snapshot taken when cursor is created or snapshot of view
+    @Override
+    public KeyCursor cursor(byte[] upperBound) {
+        Snapshot snapshot = this.snapshot == null ? db.getSnapshot() : this.snapshot;
+        ReadOptions options = new ReadOptions().setSnapshot(snapshot).setTotalOrderSeek(true);
+        Slice bound = upperBound == null ? null : new Slice(upperBound);
+        if (bound != null) {
+            options.setIterateUpperBound(bound);
+        }
+        RocksIterator itr = db.newIterator(options);
+        return new KeyCursor() {
+            boolean started;
+
+            @Override
+            public void seek(byte[] key) {
+                itr.seek(key);
+                started = false;
+            }
+
+            @Override
+            public boolean next() {
+                if (started) {
+                    itr.next();
+                }
+                started = true;
+                return itr.isValid();
+            }
+
+            @Override
+            public byte[] key() {
+                return itr.key();
+            }
 
-        try (RocksIterator itr = db.newIterator()) {
-            itr.seek(fromKey.getBytes());
+            @Override
+            public byte[] value() {
+                return itr.value();
+            }
+
+            @Override
+            public byte[] get(byte[] key) {
+                try {
+                    return db.get(options, key);
+                } catch (RocksDBException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+
+            @Override
+            public void close() {
+                itr.close();
+                options.close();
+                if (bound != null) {
+                    bound.close();
+                }
+                if (NavigableRocks.this.snapshot == null) {
+                    db.releaseSnapshot(snapshot);
+                }
+            }
+        };
+    }
+
+    @Override
+    public SnapshotStore snapshot() {
+        return new SnapshotView(db, boundedScan, db.getSnapshot());
+    }
+
+    private ReadOptions readOptions() {
+        ReadOptions options = new ReadOptions();
+        return snapshot == null ? options : options.setSnapshot(snapshot);
+    }
+
+    /*
+        Split keys are picked from SST file boundaries, file size is used as weight so ranges get similar amount of data.
+        Rows still in memtable are not part of any file, they go to range that contains their key.
+     */
+    @Override
+    public List<byte[]> splitKeys(byte[] fromKey, byte[] toKey, int parts) {
+        List<LiveFileMetaData> files = new ArrayList<>();
+        long totalSize = 0;
+        for (LiveFileMetaData file : db.getLiveFilesMetaData()) {
+            if (KeyCodec.compare(file.smallestKey(), fromKey) > 0 && KeyCodec.compare(file.smallestKey(), toKey) < 0) {
+                files.add(file);
+                totalSize += file.size();
+            }
+        }
+        files.sort((f1, f2) -> KeyCodec.compare(f1.smallestKey(), f2.smallestKey()));
+
+        List<byte[]> splits = new ArrayList<>();
+        long rangeSize = totalSize / parts;
+        long size = 0;
+        for (LiveFileMetaData file : files) {
+            if (size >= rangeSize * (splits.size() + 1) && splits.size() < parts - 1) {
+                splits.add(file.smallestKey());
+            }
+            size += file.size();
+        }
+        return splits;
+    }
+
+    private <Row_Type> void bounded(byte[] fromKey, byte[] upperBound, boolean samePrefix, Function<byte[], Row_Type> converter, Consumer<Row_Type> consumer, int limit) {
+
+        try (ReadOptions options = readOptions();
+             Slice bound = upperBound == null ? null : new Slice(upperBound)) {
+
+            if (bound != null) {
+                options.setIterateUpperBound(bound);
+            }
+            if (samePrefix) {
+                options.setPrefixSameAsStart(true);
+            } else {
+                options.setTotalOrderSeek(true);
+            }
+
+            try (RocksIterator itr = db.newIterator(options)) {
+                itr.seek(fromKey);
+                for (int tracker = limit; itr.isValid() && tracker > 0; itr.next(), tracker--) {
+                    consumer.accept(converter.apply(itr.value()));
+                }
+            }
+        }
+    }
+
+    private <Row_Type> void match(byte[] fromKey, Predicate<ByteBuffer> predicate, Function<byte[], Row_Type> converter, Consumer<Row_Type> consumer, int limit) {
+
+        try (ReadOptions options = readOptions().setTotalOrderSeek(true);
+             RocksIterator itr = db.newIterator(options)) {
+            itr.seek(fromKey);
             int tracker = limit;
             for (; itr.isValid() && tracker > 0; itr.next(), tracker--) {
 
-                String s = new String(itr.key());
-                if (predicate.test(s)) {
+                if (predicate.test(readKey(itr))) {
                     break;
                 }
                 consumer.accept(converter.apply(itr.value()));
@@ -65,4 +281,50 @@ public class NavigableRocks implements NavigablePersistentStore {
             }
         }
     }
+
+    // Copies current key of iterator into direct buffer of thread, buffer grows when key does not fit and is reused by next read
+    private ByteBuffer readKey(RocksIterator itr) {
+        ByteBuffer key = keyBuffers.get();
+        key.clear();
+        int keySize = itr.key(key);
+        if (keySize > key.capacity()) {
+            key = ByteBuffer.allocateDirect(Math.max(keySize, key.capacity() * 2));
+            keyBuffers.set(key);
+            itr.key(key);
+        }
+        return key;
+    }
+
+    // Same reads as store with every read option pinned to snapshot
+    private static final class SnapshotView extends NavigableRocks implements SnapshotStore {
+        private final RocksDB db;
+        private final Snapshot snapshot;
+
+        SnapshotView(RocksDB db, boolean boundedScan, Snapshot snapshot) {
+            super(db, boundedScan, snapshot);
+            this.db = db;
+            this.snapshot = snapshot;
+        }
+
+        @Override
+        public void put(byte[] key, byte[] value) {
+            throw new UnsupportedOperationException("Snapshot is read only");
+        }
+
+        @Override
+        public void delete(byte[] key) {
+            throw new UnsupportedOperationException("Snapshot is read only");
+        }
+
+        @Override
+        public void write(Consumer<Batch> writes) {
+            throw new UnsupportedOperationException("Snapshot is read only");
+        }
+
+        @Override
+        public void close() {
+            super.pointReads.close();
+            db.releaseSnapshot(snapshot);
+        }
+    }
 }
@@ -1,6 +1,8 @@
 package query.kv.persistent.rocks;
 
 
+import org.rocksdb.BlockBasedTableConfig;
+import org.rocksdb.BloomFilter;
 import org.rocksdb.Options;
 import org.rocksdb.RocksDB;
 
@@ -10,6 +12,15 @@ import java.io.IOException;
 import static java.nio.file.Files.createDirectories;
 
 public class RocksDBDriver {
+
+    /*
+        Keys start with {table}/{index}/ segments ( KeyCodec ). Java api can not plug custom prefix extractor, so capped
+        extractor on leading bytes is used. It covers table & index name for typical names, scans with seek key shorter than
+        this fall back to total order seek.
+     */
+    public static final int PREFIX_LENGTH = 16;
+    private static final double BLOOM_BITS_PER_KEY = 10;
+
     public static RocksDB openDatabase(File dbDir) {
         try {
             RocksDB.loadLibrary();
@@ -23,6 +34,14 @@ public class RocksDBDriver {
     private static Options createOptions(File dbDir) throws IOException {
         Options options = new Options();
         options.setCreateIfMissing(true);
+
+        BlockBasedTableConfig tableConfig = new BlockBasedTableConfig();
+        tableConfig.setFilterPolicy(new BloomFilter(BLOOM_BITS_PER_KEY, false));
+        tableConfig.setWholeKeyFiltering(true); // Point lookup by PK still use bloom
+        options.setTableFormatConfig(tableConfig);
+        options.useCappedPrefixExtractor(PREFIX_LENGTH);
+        options.setMemtablePrefixBloomSizeRatio(0.1);
+
         createDirectories(dbDir.getParentFile().toPath());
         createDirectories(dbDir.getAbsoluteFile().toPath());
         return options;
@@ -1,40 +1,65 @@
 package query.kv.persistent.rocks;
 
-import com.google.gson.Gson;
 import query.kv.KeyValueStore;
+import query.kv.ReadView;
 import query.kv.SSTable;
+import query.kv.Sequences;
 import query.kv.TableInfo;
+import query.kv.cache.CachedSSTable;
+import query.kv.codec.RowCodec;
+import query.kv.filter.PkFilters;
+import query.kv.persistent.StoreReadView;
+import query.sql.QueryCache;
 import org.rocksdb.RocksDB;
 import org.rocksdb.RocksDBException;
 
 import java.io.File;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
 
 import static java.util.Collections.emptyMap;
 
 public class RocksStore implements KeyValueStore {
     public static final String type = "rocks:";
-    private final Map<String, SSTable<?>> tables = new HashMap<>();
+    private final Map<String, SSTable<?>> tables = new ConcurrentHashMap<>();
+    private final QueryCache queryCache = new QueryCache(QueryCache.DEFAULT_SIZE);
     private final RocksDB rocksDB;
+    private final NavigableRocks nvStores;
+    private final RowCodec.Factory codecFactory;
+    private final Sequences sequences;
+    private final PkFilters pkFilters = new PkFilters();
 
     public RocksStore(File rootFolder) {
+        this(rootFolder, true);
+    }
+
+    public RocksStore(File rootFolder, boolean boundedScan) {
+        this(rootFolder, boundedScan, RowCodec.json());
+    }
+
+    public RocksStore(File rootFolder, RowCodec.Factory codecFactory) {
+        this(rootFolder, true, codecFactory);
+    }
+
+    public RocksStore(File rootFolder, boolean boundedScan, RowCodec.Factory codecFactory) {
         this.rocksDB = RocksDBDriver.openDatabase(rootFolder);
+        this.nvStores = new NavigableRocks(rocksDB, boundedScan);
+        this.codecFactory = codecFactory;
+        this.sequences = Sequences.persistent(nvStores);
     }
 
     @Override
     public <Row_Type> SSTable<Row_Type> createTable(String tableName, Class<Row_Type> type, Map<String, Function<Row_Type, Object>> schema, Map<String, Function<Row_Type, String>> indexes) {
-        Function<Row_Type, byte[]> toJson = row -> new Gson().toJson(row).getBytes();
-        Function<byte[], Row_Type> toRecord = rawBytes -> new Gson().fromJson(new String(rawBytes), type);
-        AtomicLong auto = new AtomicLong(System.nanoTime());
-        return createTable(new TableInfo<>(tableName, schema, indexes, toJson, toRecord, $ -> String.valueOf(auto.incrementAndGet())));
+        RowCodec<Row_Type> codec = codecFactory.create(type, schema);
+        Sequences.Sequence sequence = sequences.of(tableName);
+        return createTable(new TableInfo<>(tableName, schema, indexes, codec, $ -> String.valueOf(sequence.next())));
     }
 
     private <Row_Type> void registerTable(String tableName, SSTable<Row_Type> SSTable) {
         tables.put(tableName, SSTable);
+        queryCache.clear();
     }
 
     @Override
@@ -44,11 +69,16 @@ public class RocksStore implements KeyValueStore {
 
     @Override
     public <Row_Type> SSTable<Row_Type> createTable(TableInfo<Row_Type> tableInfo) {
-        SSTable<Row_Type> SSTable = new RocksTable<>(rocksDB, tableInfo);
+        SSTable<Row_Type> SSTable = CachedSSTable.wrap(new RocksTable<>(nvStores, tableInfo, pkFilters.of(nvStores, tableInfo)), tableInfo);
         registerTable(tableInfo.getTableName(), SSTable);
         return SSTable;
     }
 
+    @Override
+    public QueryCache queryCache() {
+        return queryCache;
+    }
+
     @Override
     public List<String> desc(String tableName) {
         SSTable<?> SSTable = tables.get(tableName);
@@ -56,6 +86,7 @@ public class RocksStore implements KeyValueStore {
     }
 
     public void close() {
+        pkFilters.save();
         try {
             this.rocksDB.compactRange();
         } catch (RocksDBException e) {
@@ -69,4 +100,10 @@ public class RocksStore implements KeyValueStore {
     public <Row_Type> SSTable<Row_Type> table(String tableName) {
         return (SSTable<Row_Type>) tables.get(tableName);
     }
+
+    // All tables share one engine store, so single snapshot covers them
+    @Override
+    public ReadView snapshot() {
+        return new StoreReadView().add(nvStores, nvStores.snapshot());
+    }
 }
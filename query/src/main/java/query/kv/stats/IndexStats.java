@@ -0,0 +1,131 @@
+package query.kv.stats;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/*
+    Statistics of one index, kept up to date by table writes.
+
+    Distinct values are estimated by HyperLogLog, so stats size does not grow with values. Removed values stay counted.
+    Most frequent values are tracked by space saving counters, counter keeps count & error inherited from replaced value,
+    so count - error is lower bound of entries of value.
+ */
+public final class IndexStats {
+
+    static final int REGISTER_BITS = 11;
+    static final int TOP_K = 32;
+
+    private final byte[] registers = new byte[1 << REGISTER_BITS];
+    // value -> { count, error }
+    private final Map<String, long[]> top = new HashMap<>();
+    private long entries;
+
+    public synchronized void add(String value) {
+        entries++;
+        long hash = hash(value);
+        int register = (int) (hash >>> (64 - REGISTER_BITS));
+        byte rank = (byte) (Long.numberOfLeadingZeros((hash << REGISTER_BITS) | (1L << (REGISTER_BITS - 1))) + 1);
+        if (rank > registers[register]) {
+            registers[register] = rank;
+        }
+
+        long[] counter = top.get(value);
+        if (counter != null) {
+            counter[0]++;
+        } else if (top.size() < TOP_K) {
+            top.put(value, new long[]{1, 0});
+        } else {
+            // Least frequent value is replaced, new value inherits its count as error
+            Map.Entry<String, long[]> min = null;
+            for (Map.Entry<String, long[]> e : top.entrySet()) {
+                if (min == null || e.getValue()[0] < min.getValue()[0]) {
+                    min = e;
+                }
+            }
+            long count = min.getValue()[0];
+            top.remove(min.getKey());
+            top.put(value, new long[]{count + 1, count});
+        }
+    }
+
+    public synchronized void remove(String value) {
+        entries--;
+        long[] counter = top.get(value);
+        if (counter != null && --counter[0] <= 0) {
+            top.remove(value);
+        }
+    }
+
+    public synchronized long entries() {
+        return entries;
+    }
+
+    public synchronized long distinct() {
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) {
+                zeros++;
+            }
+        }
+        int m = registers.length;
+        double estimate = 0.7213 / (1 + 1.079 / m) * m * m / sum;
+        if (estimate <= 2.5 * m && zeros > 0) {
+            estimate = m * Math.log((double) m / zeros);
+        }
+        return Math.min(Math.round(estimate), Math.max(entries, 0));
+    }
+
+    /*
+        Estimated entries with value. Tracked value uses its counter, other values share entries not tracked
+        evenly, so value of uniform index is estimated as entries / distinct.
+     */
+    public synchronized long estimate(String value) {
+        long[] counter = top.get(value);
+        if (counter != null) {
+            return Math.max(1, counter[0] - counter[1]);
+        }
+        long tracked = 0;
+        for (long[] c : top.values()) {
+            tracked += c[0] - c[1];
+        }
+        long rest = entries - tracked;
+        long restDistinct = distinct() - top.size();
+        if (rest <= 0 || restDistinct <= 0) {
+            return 0;
+        }
+        return Math.max(1, Math.round((double) rest / restDistinct));
+    }
+
+    // Tracked values with lower bound of their entries, most frequent first
+    public synchronized Map<String, Long> topValues() {
+        Map<String, Long> values = new LinkedHashMap<>();
+        top.entrySet()
+                .stream()
+                .sorted((e1, e2) -> Long.compare(e2.getValue()[0] - e2.getValue()[1], e1.getValue()[0] - e1.getValue()[1]))
+                .forEach(e -> values.put(e.getKey(), e.getValue()[0] - e.getValue()[1]));
+        return values;
+    }
+
+    // FNV-1a over chars with murmur finalizer, String.hashCode is only 32 bits and too weak for HyperLogLog
+    static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int index = 0; index < value.length(); index++) {
+            hash ^= value.charAt(index);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return "IndexStats{entries=" + entries() + ", distinct=" + distinct() + '}';
+    }
+}
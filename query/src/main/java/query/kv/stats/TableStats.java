@@ -0,0 +1,85 @@
+package query.kv.stats;
+
+import query.kv.KeyBuilder;
+import query.kv.KeyCodec;
+import query.kv.persistent.NavigablePersistentStore;
+import query.kv.persistent.NavigablePersistentStore.KeyCursor;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/*
+    Row count & index statistics of table, used by query planner to estimate rows read by each plan.
+    Table updates stats on every write, insert of existing PK is counted as new row so counts are estimates.
+ */
+public final class TableStats<Row_Type> {
+
+    private final Map<String, Function<Row_Type, String>> indexes;
+    private final Map<String, IndexStats> stats = new LinkedHashMap<>();
+    private final LongAdder rows = new LongAdder();
+
+    public TableStats(Map<String, Function<Row_Type, String>> indexes) {
+        this.indexes = indexes;
+        indexes.keySet().forEach(index -> stats.put(index, new IndexStats()));
+    }
+
+    // Stats of rows already in store, read from PK & index keys without reading rows
+    public static <Row_Type> TableStats<Row_Type> load(NavigablePersistentStore store, KeyBuilder keyBuilder, Map<String, Function<Row_Type, String>> indexes) {
+        TableStats<Row_Type> tableStats = new TableStats<>(indexes);
+        byte[] pkPrefix = keyBuilder.primaryKey();
+        try (KeyCursor keys = store.cursor(KeyCodec.prefixUpperBound(pkPrefix))) {
+            keys.seek(pkPrefix);
+            while (keys.next()) {
+                tableStats.rows.increment();
+            }
+        }
+        for (Map.Entry<String, IndexStats> index : tableStats.stats.entrySet()) {
+            byte[] indexPrefix = keyBuilder.indexKey(index.getKey());
+            try (KeyCursor keys = store.cursor(KeyCodec.prefixUpperBound(indexPrefix))) {
+                keys.seek(indexPrefix);
+                while (keys.next()) {
+                    index.getValue().add(KeyCodec.decodeValue(keys.key(), indexPrefix.length));
+                }
+            }
+        }
+        return tableStats;
+    }
+
+    public void insert(Row_Type row) {
+        rows.increment();
+        indexes.forEach((index, value) -> stats.get(index).add(value.apply(row)));
+    }
+
+    // Only indexes whose value changed are updated
+    public void update(Row_Type oldRow, Row_Type newRow) {
+        indexes.forEach((index, value) -> {
+            String oldValue = value.apply(oldRow);
+            String newValue = value.apply(newRow);
+            if (!oldValue.equals(newValue)) {
+                stats.get(index).remove(oldValue);
+                stats.get(index).add(newValue);
+            }
+        });
+    }
+
+    public void delete(Row_Type row) {
+        rows.decrement();
+        indexes.forEach((index, value) -> stats.get(index).remove(value.apply(row)));
+    }
+
+    public long rows() {
+        return Math.max(0, rows.sum());
+    }
+
+    // Null when table has no such index
+    public IndexStats index(String indexName) {
+        return stats.get(indexName);
+    }
+
+    @Override
+    public String toString() {
+        return "TableStats{rows=" + rows() + ", indexes=" + stats + '}';
+    }
+}
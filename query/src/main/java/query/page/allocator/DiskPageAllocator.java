@@ -51,12 +51,26 @@ public class DiskPageAllocator implements PageAllocator {
 
     @Override
     public long commit(WritePage page) {
+        long writePosition = append(page);
+        sync();
+        return writePosition;
+    }
+
+    // Page is written without fsync, used when many pages are written and file is synced once using sync()
+    public long append(WritePage page) {
         long writePosition = header.pageOffSet(page.pageNumber());
         rafBlock.write(writePosition, page.commit());
-        rafBlock.commit();
         return writePosition;
     }
 
+    public void sync() {
+        rafBlock.commit();
+    }
+
+    public void close() {
+        rafBlock.close();
+    }
+
     @Override
     public ReadPage readByPageId(int pageId) {
         header.checkPageNumber(pageId);
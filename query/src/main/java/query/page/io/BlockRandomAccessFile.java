@@ -3,18 +3,27 @@ package query.page.io;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 
+/*
+    Reads & writes are positional ( pread/pwrite ), so file can be read by many threads at same time.
+ */
 public class BlockRandomAccessFile {
     private final RandomAccessFile raf;
+    private final FileChannel channel;
 
     public BlockRandomAccessFile(RandomAccessFile raf) {
         this.raf = raf;
+        this.channel = raf.getChannel();
     }
 
     public void write(long position, byte[] data) {
         try {
-            raf.seek(position);
-            raf.write(data);
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer, position + buffer.position());
+            }
         } catch (IOException e) {
             throw asUnChecked(e);
         }
@@ -35,8 +44,21 @@ public class BlockRandomAccessFile {
 
     public int read(long position, byte[] data) {
         try {
-            raf.seek(position);
-            return raf.read(data);
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position + buffer.position()) < 0) {
+                    break;
+                }
+            }
+            return buffer.position() == 0 && data.length > 0 ? -1 : buffer.position();
+        } catch (IOException e) {
+            throw asUnChecked(e);
+        }
+    }
+
+    public void close() {
+        try {
+            raf.close();
         } catch (IOException e) {
             throw asUnChecked(e);
         }
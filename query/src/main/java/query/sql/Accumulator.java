@@ -0,0 +1,591 @@
+package query.sql;
+
+import query.kv.ColumnReader;
+import query.kv.codec.ColumnCodec;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+/*
+    State of one aggregate function for every group of hash aggregation. State is kept in primitive arrays indexed
+    by group slot, so adding row of existing group does not allocate.
+    Every accumulator counts values it added, group without values has null result except for COUNT.
+    State of slot can be written to spill file and merged back into slot of other table.
+ */
+abstract class Accumulator {
+
+    private static final int INITIAL_GROUPS = 16;
+
+    // Null for COUNT(*)
+    final ColumnReader column;
+    long[] counts = new long[INITIAL_GROUPS];
+
+    Accumulator(ColumnReader column) {
+        this.column = column;
+    }
+
+    static Accumulator of(String function, ColumnReader column) {
+        switch (function) {
+            case "count":
+                return new Count(column);
+            case "sum":
+                return column.isLong() ? new LongSum(column) : column.isDouble() ? new DoubleSum(column) : new NumberSum(column);
+            case "avg":
+                return new Avg(column);
+            case "min":
+            case "max":
+                boolean max = function.equals("max");
+                return column.isLong() ? new LongExtreme(column, max) : column.isDouble() ? new DoubleExtreme(column, max) : new ValueExtreme(column, max);
+        }
+        throw new IllegalArgumentException(function + " not supported");
+    }
+
+    // Slots below groups can be used, new slots are empty
+    final void grow(int groups) {
+        if (groups > counts.length) {
+            int capacity = Math.max(groups, counts.length * 2);
+            counts = Arrays.copyOf(counts, capacity);
+            growValues(capacity);
+        }
+    }
+
+    final void clear() {
+        Arrays.fill(counts, 0);
+        clearValues();
+    }
+
+    final void write(int group, DataOutput out) throws IOException {
+        out.writeLong(counts[group]);
+        writeValue(group, out);
+    }
+
+    // Value of partial state is always read, MIN & MAX take it only when partial state has values
+    final void merge(int group, DataInput in) throws IOException {
+        long count = in.readLong();
+        boolean first = counts[group] == 0;
+        counts[group] += count;
+        mergeValue(group, in, count > 0, first);
+    }
+
+    Object result(int group) {
+        return counts[group] == 0 ? null : value(group);
+    }
+
+    abstract void add(int group, Object row);
+
+    // Selected rows of batch from..to, slots has group slot of every selected row
+    void addAll(ColumnBatch batch, int[] slots, int from, int to) {
+        for (int index = from; index < to; index++) {
+            add(slots[index], batch.row(batch.selection[index]));
+        }
+    }
+
+    abstract void growValues(int capacity);
+
+    abstract void clearValues();
+
+    abstract void writeValue(int group, DataOutput out) throws IOException;
+
+    abstract void mergeValue(int group, DataInput in, boolean hasValues, boolean first) throws IOException;
+
+    abstract Object value(int group);
+
+    // Estimated bytes of state of one group
+    abstract int bytesPerGroup();
+
+    static final class Count extends Accumulator {
+
+        Count(ColumnReader column) {
+            super(column);
+        }
+
+        @Override
+        void add(int group, Object row) {
+            if (column == null || column.value(row) != null) {
+                counts[group]++;
+            }
+        }
+
+        @Override
+        void addAll(ColumnBatch batch, int[] slots, int from, int to) {
+            if (column != null) {
+                super.addAll(batch, slots, from, to);
+                return;
+            }
+            for (int index = from; index < to; index++) {
+                counts[slots[index]]++;
+            }
+        }
+
+        @Override
+        void growValues(int capacity) {
+        }
+
+        @Override
+        void clearValues() {
+        }
+
+        @Override
+        void writeValue(int group, DataOutput out) {
+        }
+
+        @Override
+        void mergeValue(int group, DataInput in, boolean hasValues, boolean first) {
+        }
+
+        @Override
+        Object value(int group) {
+            return counts[group];
+        }
+
+        // Zero when group has no values
+        @Override
+        Object result(int group) {
+            return counts[group];
+        }
+
+        @Override
+        int bytesPerGroup() {
+            return Long.BYTES;
+        }
+    }
+
+    static final class LongSum extends Accumulator {
+        private long[] sums = new long[counts.length];
+
+        LongSum(ColumnReader column) {
+            super(column);
+        }
+
+        @Override
+        void add(int group, Object row) {
+            counts[group]++;
+            sums[group] += column.longValue(row);
+        }
+
+        @Override
+        void addAll(ColumnBatch batch, int[] slots, int from, int to) {
+            long[] values = batch.longs(column);
+            for (int index = from; index < to; index++) {
+                int group = slots[index];
+                counts[group]++;
+                sums[group] += values[batch.selection[index]];
+            }
+        }
+
+        @Override
+        void growValues(int capacity) {
+            sums = Arrays.copyOf(sums, capacity);
+        }
+
+        @Override
+        void clearValues() {
+            Arrays.fill(sums, 0);
+        }
+
+        @Override
+        void writeValue(int group, DataOutput out) throws IOException {
+            out.writeLong(sums[group]);
+        }
+
+        @Override
+        void mergeValue(int group, DataInput in, boolean hasValues, boolean first) throws IOException {
+            sums[group] += in.readLong();
+        }
+
+        @Override
+        Object value(int group) {
+            return sums[group];
+        }
+
+        @Override
+        int bytesPerGroup() {
+            return 2 * Long.BYTES;
+        }
+    }
+
+    static final class DoubleSum extends Accumulator {
+        private double[] sums = new double[counts.length];
+
+        DoubleSum(ColumnReader column) {
+            super(column);
+        }
+
+        @Override
+        void add(int group, Object row) {
+            counts[group]++;
+            sums[group] += column.doubleValue(row);
+        }
+
+        @Override
+        void addAll(ColumnBatch batch, int[] slots, int from, int to) {
+            double[] values = batch.doubles(column);
+            for (int index = from; index < to; index++) {
+                int group = slots[index];
+                counts[group]++;
+                sums[group] += values[batch.selection[index]];
+            }
+        }
+
+        @Override
+        void growValues(int capacity) {
+            sums = Arrays.copyOf(sums, capacity);
+        }
+
+        @Override
+        void clearValues() {
+            Arrays.fill(sums, 0);
+        }
+
+        @Override
+        void writeValue(int group, DataOutput out) throws IOException {
+            out.writeDouble(sums[group]);
+        }
+
+        @Override
+        void mergeValue(int group, DataInput in, boolean hasValues, boolean first) throws IOException {
+            sums[group] += in.readDouble();
+        }
+
+        @Override
+        Object value(int group) {
+            return sums[group];
+        }
+
+        @Override
+        int bytesPerGroup() {
+            return Long.BYTES + Double.BYTES;
+        }
+    }
+
+    // Column without declared type, integral values are summed exactly and sum is double once any value is fractional
+    static final class NumberSum extends Accumulator {
+        private long[] longSums = new long[counts.length];
+        private double[] doubleSums = new double[counts.length];
+        private boolean fractional;
+
+        NumberSum(ColumnReader column) {
+            super(column);
+        }
+
+        @Override
+        void add(int group, Object row) {
+            Object value = column.value(row);
+            if (value == null) {
+                return;
+            }
+            counts[group]++;
+            if (isFractional(value)) {
+                fractional = true;
+                doubleSums[group] += ((Number) value).doubleValue();
+            } else {
+                longSums[group] += ((Number) value).longValue();
+            }
+        }
+
+        @Override
+        void growValues(int capacity) {
+            longSums = Arrays.copyOf(longSums, capacity);
+            doubleSums = Arrays.copyOf(doubleSums, capacity);
+        }
+
+        @Override
+        void clearValues() {
+            Arrays.fill(longSums, 0);
+            Arrays.fill(doubleSums, 0);
+        }
+
+        @Override
+        void writeValue(int group, DataOutput out) throws IOException {
+            out.writeBoolean(fractional);
+            out.writeLong(longSums[group]);
+            out.writeDouble(doubleSums[group]);
+        }
+
+        @Override
+        void mergeValue(int group, DataInput in, boolean hasValues, boolean first) throws IOException {
+            fractional |= in.readBoolean();
+            longSums[group] += in.readLong();
+            doubleSums[group] += in.readDouble();
+        }
+
+        @Override
+        Object value(int group) {
+            if (fractional) {
+                return longSums[group] + doubleSums[group];
+            }
+            return longSums[group];
+        }
+
+        @Override
+        int bytesPerGroup() {
+            return 2 * Long.BYTES + Double.BYTES;
+        }
+    }
+
+    static final class Avg extends Accumulator {
+        private final boolean typed;
+        private double[] sums = new double[counts.length];
+
+        Avg(ColumnReader column) {
+            super(column);
+            this.typed = column.isLong() || column.isDouble();
+        }
+
+        @Override
+        void add(int group, Object row) {
+            if (typed) {
+                sums[group] += column.doubleValue(row);
+            } else {
+                Object value = column.value(row);
+                if (value == null) {
+                    return;
+                }
+                sums[group] += ((Number) value).doubleValue();
+            }
+            counts[group]++;
+        }
+
+        // Long column is added as double like row by row
+        @Override
+        void addAll(ColumnBatch batch, int[] slots, int from, int to) {
+            if (!typed) {
+                super.addAll(batch, slots, from, to);
+                return;
+            }
+            double[] values = batch.doubles(column);
+            for (int index = from; index < to; index++) {
+                int group = slots[index];
+                counts[group]++;
+                sums[group] += values[batch.selection[index]];
+            }
+        }
+
+        @Override
+        void growValues(int capacity) {
+            sums = Arrays.copyOf(sums, capacity);
+        }
+
+        @Override
+        void clearValues() {
+            Arrays.fill(sums, 0);
+        }
+
+        @Override
+        void writeValue(int group, DataOutput out) throws IOException {
+            out.writeDouble(sums[group]);
+        }
+
+        @Override
+        void mergeValue(int group, DataInput in, boolean hasValues, boolean first) throws IOException {
+            sums[group] += in.readDouble();
+        }
+
+        @Override
+        Object value(int group) {
+            return sums[group] / counts[group];
+        }
+
+        @Override
+        int bytesPerGroup() {
+            return Long.BYTES + Double.BYTES;
+        }
+    }
+
+    // MIN or MAX of long column
+    static final class LongExtreme extends Accumulator {
+        private final boolean max;
+        private long[] values = new long[counts.length];
+
+        LongExtreme(ColumnReader column, boolean max) {
+            super(column);
+            this.max = max;
+        }
+
+        @Override
+        void add(int group, Object row) {
+            accept(group, column.longValue(row), counts[group]++ == 0);
+        }
+
+        @Override
+        void addAll(ColumnBatch batch, int[] slots, int from, int to) {
+            long[] values = batch.longs(column);
+            for (int index = from; index < to; index++) {
+                int group = slots[index];
+                accept(group, values[batch.selection[index]], counts[group]++ == 0);
+            }
+        }
+
+        private void accept(int group, long value, boolean first) {
+            if (first || (max ? value > values[group] : value < values[group])) {
+                values[group] = value;
+            }
+        }
+
+        @Override
+        void growValues(int capacity) {
+            values = Arrays.copyOf(values, capacity);
+        }
+
+        @Override
+        void clearValues() {
+        }
+
+        @Override
+        void writeValue(int group, DataOutput out) throws IOException {
+            out.writeLong(values[group]);
+        }
+
+        @Override
+        void mergeValue(int group, DataInput in, boolean hasValues, boolean first) throws IOException {
+            long value = in.readLong();
+            if (hasValues) {
+                accept(group, value, first);
+            }
+        }
+
+        @Override
+        Object value(int group) {
+            return values[group];
+        }
+
+        @Override
+        int bytesPerGroup() {
+            return 2 * Long.BYTES;
+        }
+    }
+
+    static final class DoubleExtreme extends Accumulator {
+        private final boolean max;
+        private double[] values = new double[counts.length];
+
+        DoubleExtreme(ColumnReader column, boolean max) {
+            super(column);
+            this.max = max;
+        }
+
+        @Override
+        void add(int group, Object row) {
+            accept(group, column.doubleValue(row), counts[group]++ == 0);
+        }
+
+        @Override
+        void addAll(ColumnBatch batch, int[] slots, int from, int to) {
+            double[] values = batch.doubles(column);
+            for (int index = from; index < to; index++) {
+                int group = slots[index];
+                accept(group, values[batch.selection[index]], counts[group]++ == 0);
+            }
+        }
+
+        private void accept(int group, double value, boolean first) {
+            if (first || (max ? value > values[group] : value < values[group])) {
+                values[group] = value;
+            }
+        }
+
+        @Override
+        void growValues(int capacity) {
+            values = Arrays.copyOf(values, capacity);
+        }
+
+        @Override
+        void clearValues() {
+        }
+
+        @Override
+        void writeValue(int group, DataOutput out) throws IOException {
+            out.writeDouble(values[group]);
+        }
+
+        @Override
+        void mergeValue(int group, DataInput in, boolean hasValues, boolean first) throws IOException {
+            double value = in.readDouble();
+            if (hasValues) {
+                accept(group, value, first);
+            }
+        }
+
+        @Override
+        Object value(int group) {
+            return values[group];
+        }
+
+        @Override
+        int bytesPerGroup() {
+            return Long.BYTES + Double.BYTES;
+        }
+    }
+
+    // MIN or MAX of column without declared type, values of column must be comparable with each other
+    static final class ValueExtreme extends Accumulator {
+        private final boolean max;
+        private Object[] values = new Object[counts.length];
+
+        ValueExtreme(ColumnReader column, boolean max) {
+            super(column);
+            this.max = max;
+        }
+
+        @Override
+        void add(int group, Object row) {
+            Object value = column.value(row);
+            if (value != null) {
+                accept(group, value, counts[group]++ == 0);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private void accept(int group, Object value, boolean first) {
+            if (first) {
+                values[group] = value;
+                return;
+            }
+            int order = ((Comparable<Object>) value).compareTo(values[group]);
+            if (max ? order > 0 : order < 0) {
+                values[group] = value;
+            }
+        }
+
+        @Override
+        void growValues(int capacity) {
+            values = Arrays.copyOf(values, capacity);
+        }
+
+        @Override
+        void clearValues() {
+            Arrays.fill(values, null);
+        }
+
+        @Override
+        void writeValue(int group, DataOutput out) throws IOException {
+            ColumnCodec.write(out, values[group]);
+        }
+
+        @Override
+        void mergeValue(int group, DataInput in, boolean hasValues, boolean first) throws IOException {
+            Object value = ColumnCodec.read(in);
+            if (hasValues) {
+                accept(group, value, first);
+            }
+        }
+
+        @Override
+        Object value(int group) {
+            return values[group];
+        }
+
+        // Value is counted as boxed number or short string
+        @Override
+        int bytesPerGroup() {
+            return Long.BYTES + 48;
+        }
+    }
+
+    private static boolean isFractional(Object value) {
+        return value instanceof Double || value instanceof Float || value instanceof BigDecimal;
+    }
+}
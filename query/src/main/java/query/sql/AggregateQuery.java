@@ -0,0 +1,181 @@
+package query.sql;
+
+import org.apache.calcite.sql.SqlBasicCall;
+import org.apache.calcite.sql.SqlFunction;
+import org.apache.calcite.sql.SqlIdentifier;
+import org.apache.calcite.sql.SqlKind;
+import org.apache.calcite.sql.SqlNode;
+import org.apache.calcite.sql.SqlSelect;
+import query.kv.ColumnReader;
+import query.kv.SSTable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/*
+    Select with aggregate functions or GROUP BY. Row of hash aggregation has group columns followed by aggregates
+    of select list and HAVING, select list picks its columns from that row by position.
+    Aggregate is named as function(column) in lower case, like count(*) or sum(amount), unless select list gives alias.
+ */
+final class AggregateQuery {
+
+    private static final Set<String> FUNCTIONS = new HashSet<>(Arrays.asList("count", "sum", "avg", "min", "max"));
+
+    final List<String> groupBy = new ArrayList<>();
+    // Name -> column, null for count(*)
+    final Map<String, String> aggregates = new LinkedHashMap<>();
+    final List<String> names = new ArrayList<>();
+    final List<Integer> positions = new ArrayList<>();
+    final Predicate<Object[]> having;
+
+    AggregateQuery(SqlSelect node, Object[] params) {
+        if (node.getGroup() != null) {
+            for (SqlNode group : node.getGroup().getList()) {
+                groupBy.add(column(group));
+            }
+        }
+        for (SqlNode item : node.getSelectList().getList()) {
+            if (item.getKind() == SqlKind.AS) {
+                SqlNode[] operands = ((SqlBasicCall) item).operands;
+                names.add(((SqlIdentifier) operands[1]).getSimple().toLowerCase());
+                positions.add(position(operands[0], false));
+            } else {
+                positions.add(position(item, false));
+                names.add(item instanceof SqlIdentifier ? column(item) : aggregateName((SqlBasicCall) item));
+            }
+        }
+        having = node.getHaving() == null ? $ -> true : having((SqlBasicCall) node.getHaving(), params);
+    }
+
+    static boolean isAggregate(SqlSelect node) {
+        return node.getGroup() != null || node.getSelectList().getList().stream().anyMatch(item ->
+                isAggregateCall(item.getKind() == SqlKind.AS ? ((SqlBasicCall) item).operands[0] : item));
+    }
+
+    private static boolean isAggregateCall(SqlNode node) {
+        return node instanceof SqlBasicCall
+                && ((SqlBasicCall) node).getOperator() instanceof SqlFunction
+                && FUNCTIONS.contains(((SqlBasicCall) node).getOperator().getName().toLowerCase());
+    }
+
+    // Group columns are read from row, except index only scan that gives group value
+    List<ColumnReader> keys(SSTable<?> table) {
+        List<ColumnReader> keys = new ArrayList<>();
+        groupBy.forEach(column -> keys.add(table.column(column)));
+        return keys;
+    }
+
+    List<Accumulator> accumulators(SSTable<?> table) {
+        List<Accumulator> accumulators = new ArrayList<>();
+        aggregates.forEach((name, column) ->
+                accumulators.add(Accumulator.of(name.substring(0, name.indexOf('(')), column == null ? null : table.column(column))));
+        return accumulators;
+    }
+
+    // Columns read by aggregates
+    Set<String> aggregatedColumns() {
+        Set<String> columns = new HashSet<>(aggregates.values());
+        columns.remove(null);
+        return columns;
+    }
+
+    Map<String, Integer> nameToIndex() {
+        Map<String, Integer> nameToIndex = new HashMap<>();
+        for (int index = 0; index < names.size(); index++) {
+            nameToIndex.put(names.get(index), index);
+        }
+        return nameToIndex;
+    }
+
+    ColumnReader[] columns() {
+        ColumnReader[] columns = new ColumnReader[names.size()];
+        for (int index = 0; index < columns.length; index++) {
+            int position = positions.get(index);
+            columns[index] = ColumnReader.of(names.get(index), row -> ((Object[]) row)[position]);
+        }
+        return columns;
+    }
+
+    // Position in aggregation row, HAVING can also refer to alias of select list
+    private int position(SqlNode node, boolean alias) {
+        if (node instanceof SqlIdentifier) {
+            String column = column(node);
+            if (groupBy.contains(column)) {
+                return groupBy.indexOf(column);
+            }
+            if (alias && names.contains(column)) {
+                return positions.get(names.indexOf(column));
+            }
+            throw new RuntimeException("Column " + column + " is not in GROUP BY");
+        }
+        if (!isAggregateCall(node)) {
+            throw new RuntimeException(node + " not supported");
+        }
+        SqlBasicCall call = (SqlBasicCall) node;
+        if (call.getFunctionQuantifier() != null) {
+            throw new RuntimeException(call.getFunctionQuantifier() + " aggregate not supported");
+        }
+        SqlIdentifier argument = (SqlIdentifier) call.operands[0];
+        String name = aggregateName(call);
+        if (argument.isStar() && !name.equals("count(*)")) {
+            throw new RuntimeException(name + " not supported");
+        }
+        aggregates.put(name, argument.isStar() ? null : column(argument));
+        return groupBy.size() + new ArrayList<>(aggregates.keySet()).indexOf(name);
+    }
+
+    private static String aggregateName(SqlBasicCall call) {
+        SqlIdentifier argument = (SqlIdentifier) call.operands[0];
+        return call.getOperator().getName().toLowerCase() + "(" + (argument.isStar() ? "*" : column(argument)) + ")";
+    }
+
+    private static String column(SqlNode node) {
+        SqlIdentifier id = (SqlIdentifier) node;
+        return id.names.get(id.names.size() - 1).toLowerCase();
+    }
+
+    // Comparison of group column or aggregate with literal, aggregate without values matches nothing
+    private Predicate<Object[]> having(SqlBasicCall condition, Object[] params) {
+        String operator = condition.getOperator().getName().toLowerCase();
+        switch (operator) {
+            case "and":
+                return having((SqlBasicCall) condition.operands[0], params).and(having((SqlBasicCall) condition.operands[1], params));
+            case "or":
+                return having((SqlBasicCall) condition.operands[0], params).or(having((SqlBasicCall) condition.operands[1], params));
+            case "=":
+            case "<>":
+            case "<":
+            case "<=":
+            case ">":
+            case ">=":
+                int position = position(condition.operands[0], true);
+                Object literal = SqlAPI.value(condition.operands[1], params);
+                return row -> row[position] != null && matches(operator, SqlAPI.compare(row[position], literal));
+        }
+        throw new RuntimeException(condition.getOperator() + " not supported ");
+    }
+
+    private static boolean matches(String operator, int order) {
+        switch (operator) {
+            case "=":
+                return order == 0;
+            case "<>":
+                return order != 0;
+            case "<":
+                return order < 0;
+            case "<=":
+                return order <= 0;
+            case ">":
+                return order > 0;
+            default:
+                return order >= 0;
+        }
+    }
+}
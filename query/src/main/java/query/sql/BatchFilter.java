@@ -0,0 +1,121 @@
+package query.sql;
+
+import query.kv.ColumnReader;
+
+import java.util.Arrays;
+import java.util.function.Predicate;
+
+/*
+    Where clause applied to column batch. Filter narrows selected positions in place and returns how many are left,
+    positions stay in row order. Conditions of long & double columns loop over decoded primitives,
+    other conditions test rows of selection one at a time with predicate of row path.
+ */
+interface BatchFilter {
+
+    BatchFilter ALL = (batch, selection, selected) -> selected;
+    BatchFilter NONE = (batch, selection, selected) -> 0;
+
+    int filter(ColumnBatch batch, int[] selection, int selected);
+
+    default BatchFilter and(BatchFilter other) {
+        return (batch, selection, selected) -> other.filter(batch, selection, filter(batch, selection, selected));
+    }
+
+    // Rows matched by either side, merged back in row order
+    default BatchFilter or(BatchFilter other) {
+        return (batch, selection, selected) -> {
+            int[] left = Arrays.copyOf(selection, selected);
+            int leftSelected = filter(batch, left, selected);
+            int[] right = Arrays.copyOf(selection, selected);
+            int rightSelected = other.filter(batch, right, selected);
+
+            int count = 0;
+            int l = 0;
+            int r = 0;
+            while (l < leftSelected || r < rightSelected) {
+                if (r == rightSelected || (l < leftSelected && left[l] < right[r])) {
+                    selection[count++] = left[l++];
+                } else {
+                    if (l < leftSelected && left[l] == right[r]) {
+                        l++;
+                    }
+                    selection[count++] = right[r++];
+                }
+            }
+            return count;
+        };
+    }
+
+    // Inclusive bounds
+    static BatchFilter longRange(ColumnReader column, long from, long to) {
+        return (batch, selection, selected) -> {
+            long[] values = batch.longs(column);
+            int count = 0;
+            for (int index = 0; index < selected; index++) {
+                int position = selection[index];
+                long value = values[position];
+                if (value >= from && value <= to) {
+                    selection[count++] = position;
+                }
+            }
+            return count;
+        };
+    }
+
+    static BatchFilter doubleRange(ColumnReader column, double from, boolean fromInclusive, double to, boolean toInclusive) {
+        return (batch, selection, selected) -> {
+            double[] values = batch.doubles(column);
+            int count = 0;
+            for (int index = 0; index < selected; index++) {
+                int position = selection[index];
+                double value = values[position];
+                if ((fromInclusive ? value >= from : value > from) && (toInclusive ? value <= to : value < to)) {
+                    selection[count++] = position;
+                }
+            }
+            return count;
+        };
+    }
+
+    static BatchFilter longIn(ColumnReader column, long[] sorted) {
+        return (batch, selection, selected) -> {
+            long[] values = batch.longs(column);
+            int count = 0;
+            for (int index = 0; index < selected; index++) {
+                int position = selection[index];
+                if (Arrays.binarySearch(sorted, values[position]) >= 0) {
+                    selection[count++] = position;
+                }
+            }
+            return count;
+        };
+    }
+
+    static BatchFilter doubleIn(ColumnReader column, double[] sorted) {
+        return (batch, selection, selected) -> {
+            double[] values = batch.doubles(column);
+            int count = 0;
+            for (int index = 0; index < selected; index++) {
+                int position = selection[index];
+                // Adding 0.0 turns -0.0 into 0.0, which binary search orders apart
+                if (Arrays.binarySearch(sorted, values[position] + 0.0) >= 0) {
+                    selection[count++] = position;
+                }
+            }
+            return count;
+        };
+    }
+
+    static BatchFilter rows(Predicate<Object> predicate) {
+        return (batch, selection, selected) -> {
+            int count = 0;
+            for (int index = 0; index < selected; index++) {
+                int position = selection[index];
+                if (predicate.test(batch.row(position))) {
+                    selection[count++] = position;
+                }
+            }
+            return count;
+        };
+    }
+}
@@ -0,0 +1,71 @@
+package query.sql;
+
+import query.kv.ColumnReader;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+    Rows read by one scan thread, columns are decoded for whole batch on first use.
+    Long & double columns are decoded into primitive arrays indexed by position of row in batch.
+    Selection has positions of rows matched by filter in row order, it starts with every row.
+ */
+final class ColumnBatch {
+
+    static final int DEFAULT_SIZE = Integer.getInteger("sql.batch.size", 1024);
+
+    private final Object[] rows;
+    final int size;
+    final int[] selection;
+    int selected;
+    private final Map<String, long[]> longs = new HashMap<>();
+    private final Map<String, double[]> doubles = new HashMap<>();
+
+    ColumnBatch(List<?> rows) {
+        this.rows = rows.toArray();
+        this.size = this.rows.length;
+        this.selection = new int[size];
+        for (int position = 0; position < size; position++) {
+            selection[position] = position;
+        }
+        this.selected = size;
+    }
+
+    Object row(int position) {
+        return rows[position];
+    }
+
+    long[] longs(ColumnReader column) {
+        long[] values = longs.get(column.name());
+        if (values == null) {
+            values = new long[size];
+            for (int position = 0; position < size; position++) {
+                values[position] = column.longValue(rows[position]);
+            }
+            longs.put(column.name(), values);
+        }
+        return values;
+    }
+
+    double[] doubles(ColumnReader column) {
+        double[] values = doubles.get(column.name());
+        if (values == null) {
+            values = new double[size];
+            for (int position = 0; position < size; position++) {
+                values[position] = column.doubleValue(rows[position]);
+            }
+            doubles.put(column.name(), values);
+        }
+        return values;
+    }
+
+    void filter(BatchFilter filter) {
+        selected = filter.filter(this, selection, selected);
+    }
+
+    // Keeps first rows of selection
+    void limit(int rows) {
+        selected = Math.min(selected, Math.max(rows, 0));
+    }
+}
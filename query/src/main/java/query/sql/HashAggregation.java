@@ -0,0 +1,273 @@
+package query.sql;
+
+import query.kv.ColumnReader;
+import query.kv.codec.ColumnCodec;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/*
+    Hash aggregation of rows by group key. Hash table maps key to slot of group and accumulators keep state of slot.
+
+    Estimated size of group table is kept under memory limit. When new group would go over it, state of every group
+    is written to one of SPILL_PARTITIONS files by hash of key and table starts empty. Spilled groups are finished
+    partition by partition, partial states of group are merged, so only groups of one partition are in memory.
+    Output row is values of group key followed by result of every accumulator.
+ */
+final class HashAggregation implements AutoCloseable {
+
+    static final int SPILL_PARTITIONS = 16;
+    private static final int PARTITION_BITS = Integer.numberOfTrailingZeros(SPILL_PARTITIONS);
+    // Hash entry, key object & slot number
+    private static final int GROUP_OVERHEAD = 80;
+
+    private final ColumnReader[] keys;
+    private final Accumulator[] accumulators;
+    private final long memoryLimit;
+    private final int bytesPerGroup;
+    private final Map<GroupKey, Integer> groups = new HashMap<>();
+    private long memory;
+
+    private File spillDir;
+    private DataOutputStream[] partitions;
+    private final long[] spilledGroups = new long[SPILL_PARTITIONS];
+
+    HashAggregation(List<ColumnReader> keys, List<Accumulator> accumulators, long memoryLimit) {
+        this.keys = keys.toArray(new ColumnReader[0]);
+        this.accumulators = accumulators.toArray(new Accumulator[0]);
+        this.memoryLimit = memoryLimit;
+        this.bytesPerGroup = GROUP_OVERHEAD + accumulators.stream().mapToInt(Accumulator::bytesPerGroup).sum();
+    }
+
+    void add(Object row) {
+        Object[] values = new Object[keys.length];
+        for (int index = 0; index < keys.length; index++) {
+            values[index] = keys[index].value(row);
+        }
+        add(values, row);
+    }
+
+    // Key is given when it is not read from row, like index value of index only scan
+    void add(Object[] key, Object row) {
+        GroupKey groupKey = new GroupKey(key);
+        Integer slot = groups.get(groupKey);
+        if (slot == null) {
+            long size = bytesPerGroup + groupKey.size();
+            if (memory + size > memoryLimit && !groups.isEmpty()) {
+                spill();
+            }
+            slot = newGroup(groupKey);
+            memory += size;
+        }
+        for (Accumulator accumulator : accumulators) {
+            accumulator.add(slot, row);
+        }
+    }
+
+    // Rows of batch selection, accumulators add rows of batch that fall in group table before it is spilled
+    void add(ColumnBatch batch) {
+        int[] slots = new int[batch.selected];
+        if (keys.length == 0) {
+            // Only group is made once and never spilled
+            if (groups.isEmpty()) {
+                newGroup(new GroupKey(new Object[0]));
+                memory += bytesPerGroup;
+            }
+            addAll(batch, slots, 0, batch.selected);
+            return;
+        }
+        int added = 0;
+        Object[] values = new Object[keys.length];
+        for (int index = 0; index < batch.selected; index++) {
+            Object row = batch.row(batch.selection[index]);
+            for (int key = 0; key < keys.length; key++) {
+                values[key] = keys[key].value(row);
+            }
+            GroupKey groupKey = new GroupKey(values);
+            Integer slot = groups.get(groupKey);
+            if (slot == null) {
+                long size = bytesPerGroup + groupKey.size();
+                if (memory + size > memoryLimit && !groups.isEmpty()) {
+                    addAll(batch, slots, added, index);
+                    added = index;
+                    spill();
+                }
+                slot = newGroup(groupKey);
+                memory += size;
+                values = new Object[keys.length];
+            }
+            slots[index] = slot;
+        }
+        addAll(batch, slots, added, batch.selected);
+    }
+
+    private void addAll(ColumnBatch batch, int[] slots, int from, int to) {
+        for (Accumulator accumulator : accumulators) {
+            accumulator.addAll(batch, slots, from, to);
+        }
+    }
+
+    boolean spilled() {
+        return partitions != null;
+    }
+
+    // Query without GROUP BY has one group even when no row is added
+    void finish(Consumer<Object[]> consumer) {
+        if (!spilled()) {
+            if (keys.length == 0 && groups.isEmpty()) {
+                newGroup(new GroupKey(new Object[0]));
+            }
+            emit(consumer);
+            return;
+        }
+        try {
+            spill();
+            for (DataOutputStream partition : partitions) {
+                partition.close();
+            }
+            for (int partition = 0; partition < SPILL_PARTITIONS; partition++) {
+                try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(partitionFile(partition))))) {
+                    for (long group = 0; group < spilledGroups[partition]; group++) {
+                        Object[] key = new Object[keys.length];
+                        for (int index = 0; index < key.length; index++) {
+                            key[index] = ColumnCodec.read(in);
+                        }
+                        GroupKey groupKey = new GroupKey(key);
+                        Integer slot = groups.get(groupKey);
+                        if (slot == null) {
+                            slot = newGroup(groupKey);
+                        }
+                        for (Accumulator accumulator : accumulators) {
+                            accumulator.merge(slot, in);
+                        }
+                    }
+                }
+                emit(consumer);
+                clear();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private int newGroup(GroupKey key) {
+        int slot = groups.size();
+        groups.put(key, slot);
+        for (Accumulator accumulator : accumulators) {
+            accumulator.grow(slot + 1);
+        }
+        return slot;
+    }
+
+    private void emit(Consumer<Object[]> consumer) {
+        for (Map.Entry<GroupKey, Integer> group : groups.entrySet()) {
+            Object[] row = Arrays.copyOf(group.getKey().values, keys.length + accumulators.length);
+            for (int index = 0; index < accumulators.length; index++) {
+                row[keys.length + index] = accumulators[index].result(group.getValue());
+            }
+            consumer.accept(row);
+        }
+    }
+
+    private void spill() {
+        try {
+            if (partitions == null) {
+                spillDir = Files.createTempDirectory("aggregation").toFile();
+                partitions = new DataOutputStream[SPILL_PARTITIONS];
+                for (int partition = 0; partition < SPILL_PARTITIONS; partition++) {
+                    partitions[partition] = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(partitionFile(partition))));
+                }
+            }
+            for (Map.Entry<GroupKey, Integer> group : groups.entrySet()) {
+                int partition = group.getKey().partition();
+                DataOutputStream out = partitions[partition];
+                for (Object value : group.getKey().values) {
+                    ColumnCodec.write(out, value);
+                }
+                for (Accumulator accumulator : accumulators) {
+                    accumulator.write(group.getValue(), out);
+                }
+                spilledGroups[partition]++;
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        clear();
+    }
+
+    private void clear() {
+        groups.clear();
+        memory = 0;
+        for (Accumulator accumulator : accumulators) {
+            accumulator.clear();
+        }
+    }
+
+    private File partitionFile(int partition) {
+        return new File(spillDir, "partition-" + partition);
+    }
+
+    @Override
+    public void close() {
+        if (spillDir == null) {
+            return;
+        }
+        for (int partition = 0; partition < SPILL_PARTITIONS; partition++) {
+            try {
+                if (partitions[partition] != null) {
+                    partitions[partition].close();
+                }
+            } catch (IOException e) {
+                // File is deleted next
+            }
+            partitionFile(partition).delete();
+        }
+        spillDir.delete();
+        spillDir = null;
+    }
+
+    private static final class GroupKey {
+        final Object[] values;
+        final int hash;
+
+        GroupKey(Object[] values) {
+            this.values = values;
+            this.hash = Arrays.hashCode(values);
+        }
+
+        // High bits of spread hash, low bits pick bucket of hash table of partition
+        int partition() {
+            return (hash * 0x9E3779B9) >>> (Integer.SIZE - PARTITION_BITS);
+        }
+
+        long size() {
+            long size = 16L + 8L * values.length;
+            for (Object value : values) {
+                size += value instanceof String ? 40 + 2 * ((String) value).length() : 16;
+            }
+            return size;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof GroupKey && hash == ((GroupKey) o).hash && Arrays.equals(values, ((GroupKey) o).values);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package query.sql;
+
+import query.kv.ColumnReader;
+import query.kv.CoveredRow;
+import query.kv.codec.ColumnCodec;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiPredicate;
+
+/*
+    Hash table of build rows by join key for hash join, probe row is joined with build rows of its key.
+
+    Estimated size of table is kept under memory limit. When build row would go over it, every build row is written
+    to one of SPILL_PARTITIONS files by hash of key, and so are build rows added after it. Probe rows of spilled table
+    are written to partition of their key too, then partitions are joined one by one with build rows of one partition
+    in memory. Spilled row keeps only columns read by query and is read back as CoveredRow.
+    Partition over memory limit is joined by hash table of next level, that partitions it again by other bits of hash.
+    Rows of one key are never split, so partition is loaded in memory at MAX_LEVEL or when all its rows share key.
+    Joined pair is given to predicate as build row & probe row, join stops when predicate returns false.
+ */
+final class JoinHashTable implements AutoCloseable {
+
+    static final int SPILL_PARTITIONS = 16;
+    private static final int PARTITION_BITS = Integer.numberOfTrailingZeros(SPILL_PARTITIONS);
+    static final int MAX_LEVEL = Integer.SIZE / PARTITION_BITS - 1;
+    // Hash entry, key object, list of rows & row reference
+    private static final int ROW_OVERHEAD = 96;
+    private static final int COLUMN_BYTES = 16;
+
+    private final Map<String, ColumnReader> buildColumns;
+    private final Map<String, ColumnReader> probeColumns;
+    private final long memoryLimit;
+    private final int level;
+    private final Map<String, List<Object>> rows = new HashMap<>();
+    private long memory;
+    private boolean done;
+
+    private File spillDir;
+    private DataOutputStream[] buildPartitions;
+    private DataOutputStream[] probePartitions;
+    private final long[] spilledBuild = new long[SPILL_PARTITIONS];
+    private final long[] spilledProbe = new long[SPILL_PARTITIONS];
+
+    JoinHashTable(Map<String, ColumnReader> buildColumns, Map<String, ColumnReader> probeColumns, long memoryLimit) {
+        this(buildColumns, probeColumns, memoryLimit, 0);
+    }
+
+    private JoinHashTable(Map<String, ColumnReader> buildColumns, Map<String, ColumnReader> probeColumns, long memoryLimit, int level) {
+        this.buildColumns = buildColumns;
+        this.probeColumns = probeColumns;
+        this.memoryLimit = memoryLimit;
+        this.level = level;
+    }
+
+    void add(String key, Object row) {
+        if (spilled()) {
+            write(buildPartitions, spilledBuild, key, row, buildColumns);
+            return;
+        }
+        long size = ROW_OVERHEAD + COLUMN_BYTES * buildColumns.size() + 2L * key.length();
+        if (memory + size > memoryLimit && !rows.isEmpty() && level < MAX_LEVEL && !(rows.size() == 1 && rows.containsKey(key))) {
+            spill();
+            write(buildPartitions, spilledBuild, key, row, buildColumns);
+            return;
+        }
+        rows.computeIfAbsent(key, $ -> new ArrayList<>(1)).add(row);
+        memory += size;
+    }
+
+    // False once join is stopped, probe row of spilled table is joined by finish
+    boolean probe(String key, Object row, BiPredicate<Object, Object> joined) {
+        if (done) {
+            return false;
+        }
+        if (spilled()) {
+            write(probePartitions, spilledProbe, key, row, probeColumns);
+            return true;
+        }
+        return join(rows.get(key), row, joined);
+    }
+
+    boolean spilled() {
+        return buildPartitions != null;
+    }
+
+    void finish(BiPredicate<Object, Object> joined) {
+        if (!spilled() || done) {
+            return;
+        }
+        try {
+            for (int partition = 0; partition < SPILL_PARTITIONS; partition++) {
+                buildPartitions[partition].close();
+                probePartitions[partition].close();
+            }
+            for (int partition = 0; partition < SPILL_PARTITIONS && !done; partition++) {
+                try (JoinHashTable partitionTable = new JoinHashTable(buildColumns, probeColumns, memoryLimit, level + 1)) {
+                    try (DataInputStream in = input(partitionFile("build", partition))) {
+                        for (long row = 0; row < spilledBuild[partition]; row++) {
+                            partitionTable.add((String) ColumnCodec.read(in), read(in, buildColumns));
+                        }
+                    }
+                    try (DataInputStream in = input(partitionFile("probe", partition))) {
+                        for (long row = 0; row < spilledProbe[partition] && !partitionTable.done; row++) {
+                            partitionTable.probe((String) ColumnCodec.read(in), read(in, probeColumns), joined);
+                        }
+                    }
+                    partitionTable.finish(joined);
+                    done = partitionTable.done;
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private boolean join(List<Object> buildRows, Object probeRow, BiPredicate<Object, Object> joined) {
+        if (buildRows == null) {
+            return true;
+        }
+        for (Object buildRow : buildRows) {
+            if (!joined.test(buildRow, probeRow)) {
+                done = true;
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void spill() {
+        try {
+            spillDir = Files.createTempDirectory("join").toFile();
+            buildPartitions = new DataOutputStream[SPILL_PARTITIONS];
+            probePartitions = new DataOutputStream[SPILL_PARTITIONS];
+            for (int partition = 0; partition < SPILL_PARTITIONS; partition++) {
+                buildPartitions[partition] = output(partitionFile("build", partition));
+                probePartitions[partition] = output(partitionFile("probe", partition));
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        rows.forEach((key, keyRows) -> keyRows.forEach(row -> write(buildPartitions, spilledBuild, key, row, buildColumns)));
+        rows.clear();
+        memory = 0;
+    }
+
+    private void write(DataOutputStream[] partitions, long[] spilled, String key, Object row, Map<String, ColumnReader> columns) {
+        int partition = partition(key, level);
+        DataOutputStream out = partitions[partition];
+        try {
+            ColumnCodec.write(out, key);
+            for (ColumnReader column : columns.values()) {
+                ColumnCodec.write(out, column.value(row));
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        spilled[partition]++;
+    }
+
+    // Columns are read in order they were written, map is not changed while table is used
+    private static CoveredRow read(DataInputStream in, Map<String, ColumnReader> columns) throws IOException {
+        CoveredRow row = new CoveredRow();
+        for (String column : columns.keySet()) {
+            row.put(column, ColumnCodec.read(in));
+        }
+        return row;
+    }
+
+    // Bits of spread hash from the top, every level takes next bits, low bits pick bucket of hash table of partition
+    private static int partition(String key, int level) {
+        return (key.hashCode() * 0x9E3779B9) >>> (Integer.SIZE - PARTITION_BITS * (level + 1)) & (SPILL_PARTITIONS - 1);
+    }
+
+    private static DataOutputStream output(File file) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+    }
+
+    private static DataInputStream input(File file) throws IOException {
+        return new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+    }
+
+    private File partitionFile(String side, int partition) {
+        return new File(spillDir, side + "-" + partition);
+    }
+
+    @Override
+    public void close() {
+        if (spillDir == null) {
+            return;
+        }
+        for (int partition = 0; partition < SPILL_PARTITIONS; partition++) {
+            try {
+                buildPartitions[partition].close();
+                probePartitions[partition].close();
+            } catch (IOException e) {
+                // File is deleted next
+            }
+            partitionFile("build", partition).delete();
+            partitionFile("probe", partition).delete();
+        }
+        spillDir.delete();
+        spillDir = null;
+    }
+}
@@ -0,0 +1,195 @@
+package query.sql;
+
+import org.apache.calcite.sql.JoinConditionType;
+import org.apache.calcite.sql.JoinType;
+import org.apache.calcite.sql.SqlBasicCall;
+import org.apache.calcite.sql.SqlIdentifier;
+import org.apache.calcite.sql.SqlJoin;
+import org.apache.calcite.sql.SqlKind;
+import org.apache.calcite.sql.SqlNode;
+import org.apache.calcite.sql.SqlSelect;
+import org.apache.calcite.sql.fun.SqlStdOperatorTable;
+import org.apache.calcite.sql.parser.SqlParserPos;
+import org.apache.calcite.sql.util.SqlBasicVisitor;
+import query.kv.SSTable;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+
+/*
+    Inner join of two tables, FROM a [alias] JOIN b [alias] ON a.x = b.y.
+    Column is qualified by alias or table name, column without qualifier belongs to first table that has it.
+    Conditions of ON & where clause other than join condition must each read one table, they are pushed down to scan of their table.
+ */
+final class JoinQuery {
+
+    final Side left;
+    final Side right;
+
+    JoinQuery(SqlSelect node, Function<String, SSTable<?>> tables) {
+        SqlJoin join = (SqlJoin) node.getFrom();
+        if (join.getJoinType() != JoinType.INNER || join.getConditionType() != JoinConditionType.ON) {
+            throw new RuntimeException(join.getJoinType() + " join not supported, only inner join with ON condition");
+        }
+        this.left = side(join.getLeft(), tables);
+        this.right = side(join.getRight(), tables);
+
+        List<SqlNode> conditions = new ArrayList<>();
+        conjuncts(join.getCondition(), conditions);
+        if (node.getWhere() != null) {
+            conjuncts(node.getWhere(), conditions);
+        }
+        for (SqlNode condition : conditions) {
+            if (!isJoinCondition(condition)) {
+                sideOf(condition).conditions.add((SqlBasicCall) condition);
+            }
+        }
+        if (left.joinColumn == null) {
+            throw new RuntimeException("Join needs ON condition of column of " + left.alias + " = column of " + right.alias);
+        }
+
+        SqlBasicVisitor<Void> collector = new SqlBasicVisitor<Void>() {
+            @Override
+            public Void visit(SqlIdentifier id) {
+                if (id.isStar() && id.names.size() == 1) {
+                    left.projection.addAll(left.columns);
+                    right.projection.addAll(right.columns);
+                } else if (id.isStar()) {
+                    Side side = qualifier(id);
+                    side.projection.addAll(side.columns);
+                } else {
+                    resolve(id).projection.add(column(id));
+                }
+                return null;
+            }
+        };
+        node.getSelectList().accept(collector);
+        conditions.forEach(condition -> condition.accept(collector));
+    }
+
+    static boolean isJoin(SqlSelect node) {
+        return node.getFrom() instanceof SqlJoin;
+    }
+
+    private static Side side(SqlNode from, Function<String, SSTable<?>> tables) {
+        if (from instanceof SqlJoin) {
+            throw new RuntimeException("Join of more than two tables not supported");
+        }
+        SqlNode table = from.getKind() == SqlKind.AS ? ((SqlBasicCall) from).operands[0] : from;
+        String name = column(table);
+        String alias = from.getKind() == SqlKind.AS ? column(((SqlBasicCall) from).operands[1]) : name;
+        return new Side(name, alias, tables.apply(name));
+    }
+
+    private static void conjuncts(SqlNode condition, List<SqlNode> conjuncts) {
+        if (condition.getKind() == SqlKind.AND) {
+            for (SqlNode operand : ((SqlBasicCall) condition).operands) {
+                conjuncts(operand, conjuncts);
+            }
+        } else {
+            conjuncts.add(condition);
+        }
+    }
+
+    // Equality of columns of both tables, first one found is join condition
+    private boolean isJoinCondition(SqlNode condition) {
+        if (condition.getKind() != SqlKind.EQUALS) {
+            return false;
+        }
+        SqlNode[] operands = ((SqlBasicCall) condition).operands;
+        if (!(operands[0] instanceof SqlIdentifier) || !(operands[1] instanceof SqlIdentifier)) {
+            return false;
+        }
+        Side first = resolve((SqlIdentifier) operands[0]);
+        Side second = resolve((SqlIdentifier) operands[1]);
+        if (first == second) {
+            throw new RuntimeException(condition + " not supported, columns must be of different tables");
+        }
+        if (left.joinColumn != null) {
+            throw new RuntimeException(condition + " not supported, join has one join condition");
+        }
+        first.joinColumn = column(operands[0]);
+        second.joinColumn = column(operands[1]);
+        return true;
+    }
+
+    private Side sideOf(SqlNode condition) {
+        Set<Side> sides = new HashSet<>();
+        condition.accept(new SqlBasicVisitor<Void>() {
+            @Override
+            public Void visit(SqlIdentifier id) {
+                sides.add(resolve(id));
+                return null;
+            }
+        });
+        if (sides.size() != 1) {
+            throw new RuntimeException(condition + " not supported, condition must read columns of one table");
+        }
+        return sides.iterator().next();
+    }
+
+    Side resolve(SqlIdentifier id) {
+        if (id.names.size() > 1) {
+            Side side = qualifier(id);
+            if (!side.columns.contains(column(id))) {
+                throw new RuntimeException("Column " + id + " is not in " + side.name);
+            }
+            return side;
+        }
+        String column = column(id);
+        if (left.columns.contains(column)) {
+            return left;
+        }
+        if (right.columns.contains(column)) {
+            return right;
+        }
+        throw new RuntimeException("Column " + column + " is not in " + left.name + " or " + right.name);
+    }
+
+    private Side qualifier(SqlIdentifier id) {
+        String qualifier = id.names.get(id.names.size() - 2).toLowerCase();
+        if (qualifier.equals(left.alias) || qualifier.equals(left.name)) {
+            return left;
+        }
+        if (qualifier.equals(right.alias) || qualifier.equals(right.name)) {
+            return right;
+        }
+        throw new RuntimeException("Table " + qualifier + " is not in query");
+    }
+
+    private static String column(SqlNode node) {
+        SqlIdentifier id = (SqlIdentifier) node;
+        return id.names.get(id.names.size() - 1).toLowerCase();
+    }
+
+    // One table of join
+    static final class Side {
+        final String name;
+        final String alias;
+        final SSTable<?> table;
+        final Set<String> columns = new HashSet<>();
+        // Columns read by query, used to decide if index covers scan of table
+        final Set<String> projection = new HashSet<>();
+        final List<SqlBasicCall> conditions = new ArrayList<>();
+        String joinColumn;
+
+        private Side(String name, String alias, SSTable<?> table) {
+            this.name = name;
+            this.alias = alias;
+            this.table = table;
+            table.cols().forEach(col -> columns.add(col.toLowerCase()));
+        }
+
+        // AND of conditions on table, null when there is none
+        SqlBasicCall where() {
+            SqlBasicCall where = null;
+            for (SqlBasicCall condition : conditions) {
+                where = where == null ? condition : (SqlBasicCall) SqlStdOperatorTable.AND.createCall(SqlParserPos.ZERO, where, condition);
+            }
+            return where;
+        }
+    }
+}
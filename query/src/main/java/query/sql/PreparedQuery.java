@@ -0,0 +1,34 @@
+package query.sql;
+
+import query.kv.ReadView;
+import query.sql.SqlAPI.RowValue;
+
+import java.util.function.Consumer;
+
+/*
+    Query parsed once and executed many times with values bound to ? parameters in order.
+    Numbers are bound as numeric literal and other values by string form. Can be executed by many threads.
+    Columns are resolved from table on first execution, so query is prepared again when its table is created again.
+ */
+public final class PreparedQuery {
+
+    private final SqlAPI sqlAPI;
+    private final Statement statement;
+
+    PreparedQuery(SqlAPI sqlAPI, Statement statement) {
+        this.sqlAPI = sqlAPI;
+        this.statement = statement;
+    }
+
+    public int parameterCount() {
+        return statement.parameters;
+    }
+
+    public void execute(Consumer<RowValue> consumer, Object... params) {
+        sqlAPI.execute(statement, consumer, params);
+    }
+
+    public void execute(ReadView view, Consumer<RowValue> consumer, Object... params) {
+        sqlAPI.execute(statement, view, consumer, params);
+    }
+}
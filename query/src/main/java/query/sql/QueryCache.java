@@ -0,0 +1,94 @@
+package query.sql;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/*
+    Bounded LRU cache of parsed queries by normalized SQL text, kept by store. Cached query holds columns & plan
+    resolved from tables, so store clears cache when table is created.
+    Text is normalized by collapsing whitespace & lower casing outside of quotes, literal values stay part of key.
+ */
+public final class QueryCache {
+
+    public static final int DEFAULT_SIZE = Integer.getInteger("sql.cache.size", 256);
+
+    private final Map<String, Statement> statements;
+    private long hits;
+    private long misses;
+
+    public QueryCache(int size) {
+        this.statements = new LinkedHashMap<String, Statement>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Statement> eldest) {
+                return size() > size;
+            }
+        };
+    }
+
+    // Parsing is done outside of lock, two threads can parse same text and last one is kept
+    Statement get(String sql, Function<String, Statement> parser) {
+        String key = normalize(sql);
+        synchronized (this) {
+            Statement statement = statements.get(key);
+            if (statement != null) {
+                hits++;
+                return statement;
+            }
+            misses++;
+        }
+        Statement statement = parser.apply(sql);
+        synchronized (this) {
+            statements.put(key, statement);
+        }
+        return statement;
+    }
+
+    public synchronized void clear() {
+        statements.clear();
+    }
+
+    public synchronized int size() {
+        return statements.size();
+    }
+
+    public synchronized long hits() {
+        return hits;
+    }
+
+    public synchronized long misses() {
+        return misses;
+    }
+
+    static String normalize(String sql) {
+        StringBuilder normalized = new StringBuilder(sql.length());
+        char quote = 0;
+        boolean space = false;
+        for (int index = 0; index < sql.length(); index++) {
+            char c = sql.charAt(index);
+            if (quote != 0) {
+                normalized.append(c);
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (Character.isWhitespace(c)) {
+                space = normalized.length() > 0;
+            } else {
+                if (space) {
+                    normalized.append(' ');
+                    space = false;
+                }
+                if (c == '\'' || c == '"' || c == '`') {
+                    quote = c;
+                }
+                normalized.append(Character.toLowerCase(c));
+            }
+        }
+        return normalized.toString();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "QueryCache{size=" + statements.size() + ", hits=" + hits + ", misses=" + misses + '}';
+    }
+}
@@ -0,0 +1,254 @@
+package query.sql;
+
+import org.roaringbitmap.RoaringBitmap;
+import query.kv.CompositeIndex;
+import query.kv.SSTable;
+import query.sql.RecordFilterInfo.IndexParameter;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/*
+    Plan of where clause, picked by lowest cost. Cost is estimated rows read, index entry costs more than row of
+    table scan as row is read by PK after index entry, unless index covers query.
+    Predicate of plan is applied to every row read.
+ */
+abstract class QueryPlan {
+
+    static final double SCAN_ROW_COST = 1.0;
+    static final double INDEX_ROW_COST = 2.0;
+    static final double COVERED_ROW_COST = 1.0;
+    static final double INDEX_SEEK_COST = 10.0;
+
+    final Predicate<Object> predicate;
+    final long rows;
+
+    QueryPlan(Predicate<Object> predicate, long rows) {
+        this.predicate = predicate;
+        this.rows = rows;
+    }
+
+    abstract double cost();
+
+    abstract void explain(String indent, List<String> lines);
+
+    @Override
+    public String toString() {
+        return String.format("%s(rows=%s, cost=%.1f)", getClass().getSimpleName(), rows, cost());
+    }
+
+    static final class FullScan extends QueryPlan {
+        private final Supplier<BatchFilter> batchFilterSupplier;
+        private volatile BatchFilter batchFilter;
+
+        // Batch filter is made when vectorized scan first runs plan
+        FullScan(Predicate<Object> predicate, Supplier<BatchFilter> batchFilter, long rows) {
+            super(predicate, rows);
+            this.batchFilterSupplier = batchFilter;
+        }
+
+        BatchFilter batchFilter() {
+            BatchFilter filter = batchFilter;
+            if (filter == null) {
+                filter = batchFilterSupplier.get();
+                batchFilter = filter;
+            }
+            return filter;
+        }
+
+        @Override
+        double cost() {
+            return rows * SCAN_ROW_COST;
+        }
+
+        @Override
+        void explain(String indent, List<String> lines) {
+            lines.add(String.format("%sFullScan rows=%s cost=%.1f", indent, rows, cost()));
+        }
+    }
+
+    static final class IndexScan extends QueryPlan {
+        final IndexParameter index;
+        final boolean covering;
+
+        IndexScan(IndexParameter index, boolean covering, Predicate<Object> predicate, long rows) {
+            super(predicate, rows);
+            this.index = index;
+            this.covering = covering;
+        }
+
+        // Every value of IN list is seek of its own
+        @Override
+        double cost() {
+            int seeks = index.isMultiSeek() ? index.values.size() : 1;
+            return seeks * INDEX_SEEK_COST + rows * (covering ? COVERED_ROW_COST : INDEX_ROW_COST);
+        }
+
+        @Override
+        void explain(String indent, List<String> lines) {
+            String values;
+            if (index.isMultiSeek()) {
+                values = "values=" + index.values;
+            } else if (index.isRange()) {
+                values = "from=" + printable(index.indexValue) + (index.rangeEnd == null ? "" : " to=" + printable(index.rangeEnd));
+            } else {
+                values = (index.prefix ? "prefix=" : "value=") + printable(index.indexValue);
+            }
+            lines.add(String.format("%s%s index=%s %s rows=%s cost=%.1f", indent, covering ? "CoveringIndexScan" : index.isRange() ? "IndexRangeScan" : "IndexScan",
+                    index.indexName, values, rows, cost()));
+        }
+
+        // Composite values have control char between columns, exact value range ends with zero char
+        private static String printable(String value) {
+            return value.replace(CompositeIndex.SEPARATOR, '|').replace("\u0000", "\\0");
+        }
+    }
+
+    // Branch reads rows of one OR condition and skips rows of earlier branches, so no row is returned twice
+    static final class Union extends QueryPlan {
+        final List<IndexScan> branches;
+
+        Union(Predicate<Object> predicate, List<IndexScan> branches) {
+            super(predicate, branches.stream().mapToLong(branch -> branch.rows).sum());
+            this.branches = branches;
+        }
+
+        @Override
+        double cost() {
+            return branches.stream().mapToDouble(QueryPlan::cost).sum();
+        }
+
+        @Override
+        void explain(String indent, List<String> lines) {
+            lines.add(String.format("%sUnion rows=%s cost=%.1f", indent, rows, cost()));
+            branches.forEach(branch -> branch.explain(indent + "  ", lines));
+        }
+    }
+
+    // Rows of bitmap of where clause are read by ordinal, bitmap is made again from table every time plan runs
+    static final class BitmapScan extends QueryPlan {
+        final Collection<String> indexes;
+        final Function<SSTable<?>, RoaringBitmap> bitmap;
+
+        BitmapScan(Predicate<Object> predicate, Function<SSTable<?>, RoaringBitmap> bitmap, Collection<String> indexes, long rows) {
+            super(predicate, rows);
+            this.indexes = indexes;
+            this.bitmap = bitmap;
+        }
+
+        @Override
+        double cost() {
+            return INDEX_SEEK_COST + rows * INDEX_ROW_COST;
+        }
+
+        @Override
+        void explain(String indent, List<String> lines) {
+            lines.add(String.format("%sBitmapScan indexes=%s rows=%s cost=%.1f", indent, indexes, rows, cost()));
+        }
+    }
+
+    // Reads every entry of index, row is read only when index entry holds it
+    static final class IndexOnlyScan extends QueryPlan {
+        final String indexName;
+
+        IndexOnlyScan(String indexName, long rows) {
+            super($ -> true, rows);
+            this.indexName = indexName;
+        }
+
+        @Override
+        double cost() {
+            return rows * COVERED_ROW_COST;
+        }
+
+        @Override
+        void explain(String indent, List<String> lines) {
+            lines.add(String.format("%sIndexOnlyScan index=%s rows=%s cost=%.1f", indent, indexName, rows, cost()));
+        }
+    }
+
+    // Rows of input are aggregated by group key, cost is cost of reading input
+    static final class HashAggregate extends QueryPlan {
+        final List<String> groupBy;
+        final List<String> aggregates;
+        final QueryPlan input;
+
+        HashAggregate(List<String> groupBy, List<String> aggregates, QueryPlan input) {
+            super(input.predicate, input.rows);
+            this.groupBy = groupBy;
+            this.aggregates = aggregates;
+            this.input = input;
+        }
+
+        @Override
+        double cost() {
+            return input.cost();
+        }
+
+        @Override
+        void explain(String indent, List<String> lines) {
+            lines.add(String.format("%sHashAggregate group=%s aggregates=%s", indent, groupBy, aggregates));
+            input.explain(indent + "  ", lines);
+        }
+    }
+
+    // Outer rows are read by plan of outer table, inner rows of every outer row by PK or index seek of join value
+    static final class IndexJoin extends QueryPlan {
+        final QueryPlan outer;
+        final boolean outerLeft;
+        final String innerTable;
+        // Null when inner rows are read by PK
+        final String innerIndex;
+
+        IndexJoin(QueryPlan outer, boolean outerLeft, String innerTable, String innerIndex, Predicate<Object> innerPredicate) {
+            super(innerPredicate, outer.rows);
+            this.outer = outer;
+            this.outerLeft = outerLeft;
+            this.innerTable = innerTable;
+            this.innerIndex = innerIndex;
+        }
+
+        @Override
+        double cost() {
+            return outer.cost() + outer.rows * (INDEX_SEEK_COST + INDEX_ROW_COST);
+        }
+
+        @Override
+        void explain(String indent, List<String> lines) {
+            lines.add(String.format("%sIndexJoin inner=%s %s rows=%s cost=%.1f", indent, innerTable,
+                    innerIndex == null ? "pk" : "index=" + innerIndex, rows, cost()));
+            outer.explain(indent + "  ", lines);
+        }
+    }
+
+    // Rows of build plan are kept in hash table by join value, rows of probe plan look up their matches
+    static final class HashJoin extends QueryPlan {
+        final QueryPlan build;
+        final QueryPlan probe;
+        final boolean buildLeft;
+        final String buildTable;
+
+        HashJoin(QueryPlan build, QueryPlan probe, boolean buildLeft, String buildTable) {
+            super($ -> true, probe.rows);
+            this.build = build;
+            this.probe = probe;
+            this.buildLeft = buildLeft;
+            this.buildTable = buildTable;
+        }
+
+        @Override
+        double cost() {
+            return build.cost() + probe.cost();
+        }
+
+        @Override
+        void explain(String indent, List<String> lines) {
+            lines.add(String.format("%sHashJoin build=%s rows=%s cost=%.1f", indent, buildTable, rows, cost()));
+            build.explain(indent + "  ", lines);
+            probe.explain(indent + "  ", lines);
+        }
+    }
+}
@@ -1,7 +1,11 @@
 package query.sql;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.Objects;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.function.Predicate;
 
 public class RecordFilterInfo {
@@ -14,13 +18,58 @@ public class RecordFilterInfo {
         this.indexes = indexes;
     }
 
+    /*
+        Prefix search on indexValue, or range search from indexValue till rangeEnd ( exclusive, null is end of index )
+        when it is range. Values of IN list are exact value seeks in sorted order, so rows are read in key order.
+        Prefix is set for LIKE 'prefix%', index value is only start of values searched.
+        Columns is number of where clause columns matched by index.
+     */
     static class IndexParameter {
         public final String indexName;
         public final String indexValue;
+        public final String rangeEnd;
+        public final boolean range;
+        public final boolean prefix;
+        public final List<String> values;
+        public final int columns;
 
         IndexParameter(String indexName, String indexValue) {
+            this(indexName, indexValue, null, 1);
+        }
+
+        IndexParameter(String indexName, String indexValue, String rangeEnd, int columns) {
+            this(indexName, indexValue, rangeEnd, rangeEnd != null, false, null, columns);
+        }
+
+        private IndexParameter(String indexName, String indexValue, String rangeEnd, boolean range, boolean prefix, List<String> values, int columns) {
             this.indexName = indexName;
             this.indexValue = indexValue;
+            this.rangeEnd = rangeEnd;
+            this.range = range;
+            this.prefix = prefix;
+            this.values = values;
+            this.columns = columns;
+        }
+
+        static IndexParameter range(String indexName, String from, String to, int columns) {
+            return new IndexParameter(indexName, from, to, true, false, null, columns);
+        }
+
+        static IndexParameter prefix(String indexName, String prefix) {
+            return new IndexParameter(indexName, prefix, null, false, true, null, 1);
+        }
+
+        static IndexParameter in(String indexName, Collection<String> values) {
+            List<String> sorted = new ArrayList<>(new TreeSet<>(values));
+            return new IndexParameter(indexName, sorted.get(0), null, false, false, sorted, 1);
+        }
+
+        boolean isRange() {
+            return range;
+        }
+
+        boolean isMultiSeek() {
+            return values != null;
         }
 
         @Override
@@ -29,19 +78,25 @@ public class RecordFilterInfo {
             if (o == null || getClass() != o.getClass()) return false;
             IndexParameter that = (IndexParameter) o;
             return indexName.equals(that.indexName) &&
-                    indexValue.equals(that.indexValue);
+                    indexValue.equals(that.indexValue) &&
+                    range == that.range &&
+                    prefix == that.prefix &&
+                    Objects.equals(rangeEnd, that.rangeEnd) &&
+                    Objects.equals(values, that.values);
         }
 
         @Override
         public int hashCode() {
-            return Objects.hash(indexName, indexValue);
+            return Objects.hash(indexName, indexValue, rangeEnd, values);
         }
 
         @Override
         public String toString() {
             return "IndexParameter{" +
                     "indexName='" + indexName + '\'' +
-                    ", indexValue='" + indexValue + '\'' +
+                    (values == null ? ", indexValue='" + indexValue + '\'' : ", values=" + values) +
+                    (range ? ", rangeEnd='" + rangeEnd + '\'' : "") +
+                    (prefix ? ", prefix" : "") +
                     '}';
         }
     }
@@ -1,23 +1,74 @@
 package query.sql;
 
 import org.apache.calcite.sql.*;
+import org.apache.calcite.sql.fun.SqlStdOperatorTable;
 import org.apache.calcite.sql.parser.SqlParseException;
 import org.apache.calcite.sql.parser.SqlParser;
+import org.apache.calcite.sql.util.SqlBasicVisitor;
 import org.apache.calcite.sql.validate.SqlConformanceEnum;
+import query.kv.ColumnReader;
+import query.kv.CompositeIndex;
+import query.kv.Cursor;
 import query.kv.KeyValueStore;
+import query.kv.ReadView;
 import query.kv.SSTable;
+import query.kv.stats.IndexStats;
+import query.kv.stats.TableStats;
+import org.roaringbitmap.RoaringBitmap;
+import query.sql.QueryPlan.BitmapScan;
+import query.sql.QueryPlan.FullScan;
+import query.sql.QueryPlan.HashAggregate;
+import query.sql.QueryPlan.HashJoin;
+import query.sql.QueryPlan.IndexJoin;
+import query.sql.QueryPlan.IndexOnlyScan;
+import query.sql.QueryPlan.IndexScan;
+import query.sql.QueryPlan.Union;
+import query.sql.Statement.CachedPlan;
 import query.sql.RecordFilterInfo.IndexParameter;
 
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiPredicate;
 import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.function.Predicate;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 public class SqlAPI {
 
+    private static final int SCAN_PARALLELISM = Runtime.getRuntime().availableProcessors();
+    // Used when table keeps no stats, so index is still preferred over scan
+    private static final long UNKNOWN_ROWS = 1_000_000;
+    private static final double UNKNOWN_SELECTIVITY = 0.1;
+    private static final double RANGE_SELECTIVITY = 0.25;
+    // Appended to value for exclusive end of range of exact value, index keys of value sort below it & keys of longer values above it
+    private static final String EXACT_VALUE_END = "\u0000";
+    // Cached plan is made again when table rows changed by more than this factor
+    private static final long PLAN_ROWS_CHANGE = 2;
+    private static final Object[] NO_PARAMS = {};
+    private static final long AGGREGATE_MEMORY = Long.getLong("sql.aggregate.memory", 64L << 20);
+    private static final long JOIN_MEMORY = Long.getLong("sql.join.memory", 64L << 20);
+    private static final boolean VECTORIZED = Boolean.parseBoolean(System.getProperty("sql.vectorized", "true"));
     private final KeyValueStore db;
-    private final SqlParser.Config config = SqlParser
+    private long aggregateMemory = AGGREGATE_MEMORY;
+    private long joinMemory = JOIN_MEMORY;
+    private boolean vectorized = VECTORIZED;
+    private static final SqlParser.Config CONFIG = SqlParser
             .config()
             .withConformance(SqlConformanceEnum.MYSQL_5);
 
@@ -25,19 +76,61 @@ public class SqlAPI {
         this.db = keyValueStore;
     }
 
+    // Estimated bytes of group table of aggregate query, groups over it are spilled to disk
+    public SqlAPI aggregateMemory(long bytes) {
+        this.aggregateMemory = bytes;
+        return this;
+    }
+
+    // Estimated bytes of build rows of hash join, rows over it are joined partition by partition from disk
+    public SqlAPI joinMemory(long bytes) {
+        this.joinMemory = bytes;
+        return this;
+    }
+
+    // Full scans filter & aggregate rows in column batches, row at a time when off
+    public SqlAPI vectorized(boolean vectorized) {
+        this.vectorized = vectorized;
+        return this;
+    }
+
+    // Query reads from snapshot taken when it starts, so rows & index entries written during query are not mixed in
     public void execute(String sql, Consumer<RowValue> consumer) {
+        execute(statement(sql), consumer, NO_PARAMS);
+    }
 
-        SqlNode sqlNode = parseQuery(sql);
-        if (isSimpleSelect(sqlNode)) {
-            scan(consumer, (SqlSelect) sqlNode, 10);
-        } else if (isOrderBy(sqlNode)) {
-            SqlOrderBy order = (SqlOrderBy) sqlNode;
-            SqlSelect node = (SqlSelect) order.query;
-            scan(consumer, node, Integer.parseInt(order.fetch.toString()));
-        } else {
-            throw new RuntimeException(sqlNode.getClass() + " not supported");
+    // Many queries can read same view to get results consistent with each other
+    public void execute(String sql, ReadView view, Consumer<RowValue> consumer) {
+        execute(statement(sql), view, consumer, NO_PARAMS);
+    }
+
+    // Parsed once, then every execution binds its values to ? parameters
+    public PreparedQuery prepare(String sql) {
+        return new PreparedQuery(this, statement(sql));
+    }
+
+    // Parsed query of text is taken from plan cache of store when it keeps one
+    private Statement statement(String sql) {
+        QueryCache cache = db.queryCache();
+        return cache == null ? new Statement(parseQuery(sql)) : cache.get(sql, text -> new Statement(parseQuery(text)));
+    }
+
+    void execute(Statement statement, Consumer<RowValue> consumer, Object[] params) {
+        try (ReadView view = db.snapshot()) {
+            execute(statement, view, consumer, params);
         }
+    }
 
+    void execute(Statement statement, ReadView view, Consumer<RowValue> consumer, Object[] params) {
+        if (params.length != statement.parameters) {
+            throw new IllegalArgumentException(String.format("Query has %s parameters but %s values are bound", statement.parameters, params.length));
+        }
+        if (statement.explain) {
+            explain(statement.select, view, consumer, params);
+        } else {
+            int limit = statement.fetch == null ? Statement.DEFAULT_LIMIT : Integer.parseInt(text(statement.fetch, params));
+            scan(consumer, statement, view, limit, params);
+        }
     }
 
     public boolean isOrderBy(SqlNode sqlNode) {
@@ -50,7 +143,7 @@ public class SqlAPI {
 
     public SqlNode parseQuery(String sql) {
         try {
-            SqlParser sqlParser = SqlParser.create(sql, config);
+            SqlParser sqlParser = SqlParser.create(sql, CONFIG);
             return sqlParser.parseQuery();
         } catch (SqlParseException e) {
             throw new RuntimeException(e);
@@ -58,44 +151,675 @@ public class SqlAPI {
     }
 
 
-    void scan(Consumer<RowValue> consumer, SqlSelect node, int limit) {
-        String from = node.getFrom().toString();
-        SSTable<?> table = db.table(from.toLowerCase());
-        Map<String, Integer> nameToIndex = columnOffSet(table);
+    void scan(Consumer<RowValue> consumer, Statement statement, ReadView view, int limit, Object[] params) {
+        SqlSelect node = statement.select;
+        if (JoinQuery.isJoin(node)) {
+            join(consumer, joinQuery(node, view), limit, params);
+            return;
+        }
+        SSTable<?> table = table(node, view);
+        if (AggregateQuery.isAggregate(node)) {
+            aggregate(consumer, node, table, limit, params);
+            return;
+        }
+
+        RowValue rowContainer = row(statement, table);
+        QueryPlan plan = plan(statement, table, params);
+        run(plan, table, currentRow -> {
+            consumer.accept(currentRow);
+            return true;
+        }, rowContainer, limit);
+    }
+
+    // Columns of table are resolved once per statement, every execution gets row of its own
+    private RowValue row(Statement statement, SSTable<?> table) {
+        RowValue row = statement.row;
+        if (row == null) {
+            row = new RowValue(table, columnOffSet(table));
+            statement.row = row;
+        }
+        return new RowValue(row.nameToIndex, row.columns);
+    }
 
-        RowValue rowContainer = new RowValue(table, nameToIndex);
-        RecordFilterInfo filterInfo = createMatcher(node, table);
+    // Plan of query without parameters is made again when table rows moved more than PLAN_ROWS_CHANGE times since
+    private QueryPlan plan(Statement statement, SSTable<?> table, Object[] params) {
+        if (statement.parameters > 0) {
+            return plan(statement.select, table, params);
+        }
+        long rows = rows(table);
+        CachedPlan cached = statement.plan;
+        if (cached == null || rows > cached.tableRows * PLAN_ROWS_CHANGE || rows * PLAN_ROWS_CHANGE < cached.tableRows) {
+            cached = new CachedPlan(plan(statement.select, table, params), rows);
+            statement.plan = cached;
+        }
+        return cached.plan;
+    }
 
-        System.out.println("Possible index" + filterInfo.indexes);
-        if (filterInfo.indexes.isEmpty()) {
-            table.scan(currentRow -> match(consumer, rowContainer, filterInfo.predicate, currentRow), limit);
+    private static long rows(SSTable<?> table) {
+        TableStats<?> stats = table.tableStats();
+        return stats == null ? UNKNOWN_ROWS : stats.rows();
+    }
+
+    private SSTable<?> table(SqlSelect node, ReadView view) {
+        String from = node.getFrom().toString();
+        return db.table(from.toLowerCase()).at(view);
+    }
+
+    private void explain(SqlSelect node, ReadView view, Consumer<RowValue> consumer, Object[] params) {
+        List<String> lines = new ArrayList<>();
+        QueryPlan plan;
+        if (JoinQuery.isJoin(node)) {
+            plan = joinPlan(joinQuery(node, view), params);
         } else {
-            IndexParameter index = filterInfo.indexes.iterator().next();
-            System.out.println("Using index " + index);
-            table.search(index.indexName, index.indexValue, currentRow -> match(consumer, rowContainer, filterInfo.predicate, currentRow), limit);
+            SSTable<?> table = table(node, view);
+            plan = AggregateQuery.isAggregate(node) ? aggregatePlan(node, table, new AggregateQuery(node, params), params) : plan(node, table, params);
+        }
+        plan.explain("", lines);
+
+        Map<String, Integer> nameToIndex = new HashMap<>();
+        nameToIndex.put("plan", 0);
+        RowValue row = new RowValue(nameToIndex, new ColumnReader[]{ColumnReader.of("plan", line -> line)});
+        for (String line : lines) {
+            row.internalRow = line;
+            consumer.accept(row);
         }
     }
 
-    private void match(Consumer<RowValue> consumer, RowValue row, Predicate<Object> matcher, Object r) {
-        if (matcher.test(r)) {
-            row.internalRow = r;
+    // Groups are finished after every input row is read, limit & HAVING apply to groups
+    private void aggregate(Consumer<RowValue> consumer, SqlSelect node, SSTable<?> table, int limit, Object[] params) {
+        AggregateQuery query = new AggregateQuery(node, params);
+        HashAggregate plan = aggregatePlan(node, table, query, params);
+
+        RowValue row = new RowValue(query.nameToIndex(), query.columns());
+        try (HashAggregation aggregation = new HashAggregation(query.keys(table), query.accumulators(table), aggregateMemory)) {
+            if (plan.input instanceof IndexOnlyScan) {
+                String indexName = ((IndexOnlyScan) plan.input).indexName;
+                ColumnReader group = table.column(query.groupBy.get(0));
+                Map<String, Object> groupValues = new HashMap<>();
+                table.scanIndex(indexName, (value, currentRow) -> {
+                    // Entry without row or without group column in covered columns has only string of index value
+                    Object groupValue = currentRow == null ? null : group.value(currentRow);
+                    if (groupValue == null) {
+                        groupValue = groupValues.computeIfAbsent(value, $ -> groupValue(table, indexName, value, group));
+                    }
+                    aggregation.add(new Object[]{groupValue}, currentRow);
+                });
+            } else if (plan.input instanceof FullScan && vectorized) {
+                batchScan(table, ((FullScan) plan.input).batchFilter(), Integer.MAX_VALUE, batch -> {
+                    synchronized (aggregation) {
+                        aggregation.add(batch);
+                    }
+                    return true;
+                });
+            } else {
+                run(plan.input, table, currentRow -> {
+                    aggregation.add(currentRow.internalRow);
+                    return true;
+                }, new RowValue(table, columnOffSet(table)), Integer.MAX_VALUE);
+            }
+            int[] returned = {0};
+            aggregation.finish(group -> {
+                if (returned[0] < limit && query.having.test(group)) {
+                    row.internalRow = group;
+                    consumer.accept(row);
+                    returned[0]++;
+                }
+            });
+        }
+    }
+
+    private HashAggregate aggregatePlan(SqlSelect node, SSTable<?> table, AggregateQuery query, Object[] params) {
+        QueryPlan input = indexOnlyScan(node, table, query).orElseGet(() -> plan(node, table, params));
+        return new HashAggregate(query.groupBy, new ArrayList<>(query.aggregates.keySet()), input);
+    }
+
+    /*
+        GROUP BY of indexed column reads only index, when there is no filter and index covers every aggregated column.
+        Sorted key stores give index value as string of index key, typed group value is read from one row of every value.
+     */
+    private Optional<QueryPlan> indexOnlyScan(SqlSelect node, SSTable<?> table, AggregateQuery query) {
+        if (!hasNoFilter(node) || query.groupBy.size() != 1 || table.indexes() == null) {
+            return Optional.empty();
+        }
+        String indexName = query.groupBy.get(0);
+        Function<?, String> index = table.indexes().get(indexName);
+        if (index == null || index instanceof CompositeIndex || !lowerCase(table.coveredColumns(indexName)).containsAll(query.aggregatedColumns())) {
+            return Optional.empty();
+        }
+        return Optional.of(new IndexOnlyScan(indexName, rows(table)));
+    }
+
+    // Join is planned on every execution, tables of query are resolved at view
+    private JoinQuery joinQuery(SqlSelect node, ReadView view) {
+        if (AggregateQuery.isAggregate(node)) {
+            throw new RuntimeException("Aggregate of join not supported");
+        }
+        return new JoinQuery(node, name -> {
+            SSTable<?> table = db.table(name);
+            if (table == null) {
+                throw new RuntimeException("Table " + name + " not found");
+            }
+            return table.at(view);
+        });
+    }
+
+    /*
+        Joined row is pair of rows of both tables, rows read back from spilled hash join are CoveredRow.
+        Column is named alias.column & table.column, and by column name alone when first table or only one has it.
+     */
+    private void join(Consumer<RowValue> consumer, JoinQuery query, int limit, Object[] params) {
+        QueryPlan plan = joinPlan(query, params);
+
+        Map<String, Integer> nameToIndex = new HashMap<>();
+        List<ColumnReader> columns = new ArrayList<>();
+        for (JoinQuery.Side side : Arrays.asList(query.left, query.right)) {
+            int part = side == query.left ? 0 : 1;
+            for (String col : side.table.cols()) {
+                String name = col.toLowerCase();
+                nameToIndex.put(side.alias + "." + name, columns.size());
+                nameToIndex.put(side.name + "." + name, columns.size());
+                nameToIndex.putIfAbsent(name, columns.size());
+                columns.add(side.table.column(col).part(side.alias + "." + name, row -> ((Object[]) row)[part]));
+            }
+        }
+        RowValue row = new RowValue(nameToIndex, columns.toArray(new ColumnReader[0]));
+
+        if (limit <= 0) {
+            return;
+        }
+        int[] returned = {0};
+        BiPredicate<Object, Object> emit = (left, right) -> {
+            if (returned[0] >= limit) {
+                return false;
+            }
+            row.internalRow = new Object[]{left, right};
             consumer.accept(row);
+            return ++returned[0] < limit;
+        };
+        if (plan instanceof IndexJoin) {
+            indexJoin((IndexJoin) plan, query, emit);
+        } else {
+            hashJoin((HashJoin) plan, query, emit);
+        }
+    }
+
+    /*
+        Index nested loop when join column of a table is its PK or plain index, that table is inner and other table
+        is read by its own plan. When both can be inner, outer is table with fewer rows after its filter.
+        Otherwise hash join builds on table with fewer rows after its filter.
+     */
+    private QueryPlan joinPlan(JoinQuery query, Object[] params) {
+        JoinQuery.Side left = query.left;
+        JoinQuery.Side right = query.right;
+        QueryPlan leftPlan = plan(left.where(), left.projection, left.table, params);
+        QueryPlan rightPlan = plan(right.where(), right.projection, right.table, params);
+        boolean leftSeek = canSeek(left);
+        if (canSeek(right) && (!leftSeek || leftPlan.rows <= rightPlan.rows)) {
+            return indexJoin(leftPlan, true, right, params);
+        }
+        if (leftSeek) {
+            return indexJoin(rightPlan, false, left, params);
+        }
+        boolean buildLeft = leftPlan.rows < rightPlan.rows;
+        return buildLeft ? new HashJoin(leftPlan, rightPlan, true, left.name) : new HashJoin(rightPlan, leftPlan, false, right.name);
+    }
+
+    // Rows of join value are found by PK or plain index of join column
+    private static boolean canSeek(JoinQuery.Side side) {
+        return isPkJoin(side) || (side.table.indexes() != null && isPlainIndex(side.table, side.joinColumn));
+    }
+
+    private static boolean isPkJoin(JoinQuery.Side side) {
+        String pkColumn = side.table.pkColumn();
+        return pkColumn != null && pkColumn.equalsIgnoreCase(side.joinColumn);
+    }
+
+    // Filter of inner table is tested on every row found by seek
+    private IndexJoin indexJoin(QueryPlan outer, boolean outerLeft, JoinQuery.Side inner, Object[] params) {
+        SqlBasicCall where = inner.where();
+        Predicate<Object> predicate = where == null ? $ -> true : predicate(where, inner.table, new Conditions(), params);
+        return new IndexJoin(outer, outerLeft, inner.name, isPkJoin(inner) ? null : inner.joinColumn, predicate);
+    }
+
+    // Join values are compared by string form like index values, rows with null join value match nothing
+    private void indexJoin(IndexJoin plan, JoinQuery query, BiPredicate<Object, Object> emit) {
+        JoinQuery.Side outer = plan.outerLeft ? query.left : query.right;
+        JoinQuery.Side inner = plan.outerLeft ? query.right : query.left;
+        ColumnReader joinColumn = outer.table.column(outer.joinColumn);
+        BiPredicate<Object, Object> joined = plan.outerLeft ? emit : (outerRow, innerRow) -> emit.test(innerRow, outerRow);
+        scanWhile(plan.outer, outer.table, outerRow -> {
+            Object value = joinColumn.value(outerRow);
+            if (value == null) {
+                return true;
+            }
+            String key = value.toString();
+            if (plan.innerIndex == null) {
+                Object innerRow = inner.table.get(key);
+                return innerRow == null || !plan.predicate.test(innerRow) || joined.test(outerRow, innerRow);
+            }
+            try (Cursor<?> rows = inner.table.rangeCursor(plan.innerIndex, key, key + EXACT_VALUE_END)) {
+                while (rows.hasNext()) {
+                    Object innerRow = rows.next();
+                    if (plan.predicate.test(innerRow) && !joined.test(outerRow, innerRow)) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        });
+    }
+
+    private void hashJoin(HashJoin plan, JoinQuery query, BiPredicate<Object, Object> emit) {
+        JoinQuery.Side build = plan.buildLeft ? query.left : query.right;
+        JoinQuery.Side probe = plan.buildLeft ? query.right : query.left;
+        ColumnReader buildKey = build.table.column(build.joinColumn);
+        ColumnReader probeKey = probe.table.column(probe.joinColumn);
+        BiPredicate<Object, Object> joined = plan.buildLeft ? emit : (buildRow, probeRow) -> emit.test(probeRow, buildRow);
+        try (JoinHashTable hashTable = new JoinHashTable(readers(build), readers(probe), joinMemory)) {
+            scanWhile(plan.build, build.table, row -> {
+                Object value = buildKey.value(row);
+                if (value != null) {
+                    hashTable.add(value.toString(), row);
+                }
+                return true;
+            });
+            scanWhile(plan.probe, probe.table, row -> {
+                Object value = probeKey.value(row);
+                return value == null || hashTable.probe(value.toString(), row, joined);
+            });
+            hashTable.finish(joined);
+        }
+    }
+
+    // Columns of table read by query, in order
+    private static Map<String, ColumnReader> readers(JoinQuery.Side side) {
+        Map<String, ColumnReader> readers = new LinkedHashMap<>();
+        side.projection.forEach(column -> readers.put(column, side.table.column(column)));
+        return readers;
+    }
+
+    // Rows of plan are given to consumer one at a time till it returns false
+    private <T> void scanWhile(QueryPlan plan, SSTable<T> table, Predicate<Object> consumer) {
+        run(plan, table, currentRow -> consumer.test(currentRow.internalRow), new RowValue(table, columnOffSet(table)), Integer.MAX_VALUE);
+    }
+
+    /*
+        Cheapest of full scan, index scan of AND chain and union of index scans when where clause is OR of conditions.
+        Union is possible only when every OR condition can use index.
+     */
+    QueryPlan plan(SqlSelect node, SSTable<?> table, Object[] params) {
+        return plan((SqlBasicCall) node.getWhere(), projection(node, table), table, params);
+    }
+
+    // Where clause is null when there is no filter, projection decides if index covers query
+    private QueryPlan plan(SqlBasicCall where, Set<String> projection, SSTable<?> table, Object[] params) {
+        long rows = rows(table);
+        if (where == null) {
+            return new FullScan($ -> true, () -> BatchFilter.ALL, rows);
+        }
+        Predicate<Object> predicate = predicate(where, table, new Conditions(), params);
+
+        List<QueryPlan> plans = new ArrayList<>();
+        plans.add(new FullScan(predicate, () -> batchFilter(where, table, params), rows));
+
+        if (!table.bitmapIndexes().isEmpty()) {
+            RowBitmap bitmap = bitmap(where, table, params);
+            if (bitmap != null) {
+                plans.add(new BitmapScan(predicate, current -> bitmap(where, current, params).ordinals, bitmap.indexes, bitmap.ordinals.getLongCardinality()));
+            }
+        }
+
+        List<SqlBasicCall> disjuncts = disjuncts(where);
+        if (disjuncts.size() == 1) {
+            indexScan(where, predicate, table, projection, rows, params).ifPresent(plans::add);
+        } else {
+            List<IndexScan> branches = new ArrayList<>();
+            Predicate<Object> earlier = $ -> false;
+            for (SqlBasicCall disjunct : disjuncts) {
+                Predicate<Object> branch = predicate(disjunct, table, new Conditions(), params);
+                Optional<IndexScan> index = indexScan(disjunct, branch.and(earlier.negate()), table, projection, rows, params);
+                if (!index.isPresent()) {
+                    break;
+                }
+                branches.add(index.get());
+                earlier = earlier.or(branch);
+            }
+            if (branches.size() == disjuncts.size()) {
+                plans.add(new Union(predicate, branches));
+            }
+        }
+        return plans.stream().min(Comparator.comparingDouble(QueryPlan::cost)).get();
+    }
+
+    private static List<SqlBasicCall> disjuncts(SqlBasicCall where) {
+        List<SqlBasicCall> disjuncts = new ArrayList<>();
+        if (where.getOperator().getName().equalsIgnoreCase("or")) {
+            disjuncts.addAll(disjuncts((SqlBasicCall) where.operands[0]));
+            disjuncts.addAll(disjuncts((SqlBasicCall) where.operands[1]));
+        } else {
+            disjuncts.add(where);
+        }
+        return disjuncts;
+    }
+
+    // Cheapest index scan for AND chain of conditions, empty when no condition can use index
+    private Optional<IndexScan> indexScan(SqlBasicCall conjunction, Predicate<Object> predicate, SSTable<?> table, Set<String> projection, long rows, Object[] params) {
+        Conditions conditions = new Conditions();
+        predicate(conjunction, table, conditions, params);
+        conditions.indexes.addAll(compositeIndexes(table, conditions));
+        conditions.indexes.addAll(rangeIndexes(table, conditions));
+
+        return conditions.indexes
+                .stream()
+                .map(index -> new IndexScan(index, isCovering(index, table, projection), predicate, estimate(index, table, rows)))
+                .min(Comparator.comparingDouble(QueryPlan::cost));
+    }
+
+    // Covering search reads index prefix, so range & IN parameters are not used
+    private static boolean isCovering(IndexParameter index, SSTable<?> table, Set<String> projection) {
+        return !index.isRange() && !index.isMultiSeek() && lowerCase(table.coveredColumns(index.indexName)).containsAll(projection);
+    }
+
+    /*
+        Rows of index value. Value of single column or all columns of composite index is estimated by index stats,
+        prefix of k of n composite columns matches entries / distinct ^ (k / n), range of next column matches part of it.
+        Range or LIKE prefix of single column matches RANGE_SELECTIVITY of entries, IN list matches rows of every value.
+        Without stats every matched column keeps UNKNOWN_SELECTIVITY of rows.
+     */
+    private static long estimate(IndexParameter index, SSTable<?> table, long rows) {
+        if (index.isMultiSeek()) {
+            return index.values.stream().mapToLong(value -> estimate(new IndexParameter(index.indexName, value), table, rows)).sum();
         }
+        TableStats<?> stats = table.tableStats();
+        IndexStats indexStats = stats == null ? null : stats.index(index.indexName);
+        if (indexStats == null) {
+            return (long) Math.ceil(rows * Math.pow(UNKNOWN_SELECTIVITY, index.columns));
+        }
+        Function<?, String> definition = table.indexes().get(index.indexName);
+        if (!(definition instanceof CompositeIndex)) {
+            return index.isRange() || index.prefix ? (long) Math.ceil(indexStats.entries() * RANGE_SELECTIVITY) : indexStats.estimate(index.indexValue);
+        }
+        int columns = ((CompositeIndex<?>) definition).columns().size();
+        boolean exact = !index.isRange() || CompositeIndex.upperBound(index.indexValue).equals(index.rangeEnd);
+        int equalities = exact ? index.columns : index.columns - 1;
+        if (exact && equalities == columns) {
+            return indexStats.estimate(index.indexValue);
+        }
+        double matched = indexStats.entries() / Math.pow(Math.max(1, indexStats.distinct()), (double) equalities / columns);
+        return (long) Math.ceil(exact ? matched : matched * RANGE_SELECTIVITY);
     }
 
-    private RecordFilterInfo createMatcher(SqlSelect node, SSTable<?> table) {
+    /*
+        Rows of plan are given to consumer till limit rows are matched or consumer returns false, every scan stops
+        reading once consumer is closed. Rows of parallel scan threads that race with stop are dropped.
+     */
+    private void run(QueryPlan plan, SSTable<?> table, Predicate<RowValue> consumer, RowValue row, int limit) {
+        if (limit <= 0) {
+            return;
+        }
+        boolean[] open = {true};
+        int[] matched = {0};
+        Predicate<RowValue> limited = currentRow -> open[0] && (open[0] = consumer.test(currentRow) && ++matched[0] < limit);
+        if (plan instanceof FullScan && vectorized) {
+            batchScan(table, ((FullScan) plan).batchFilter(), limit, batch -> {
+                synchronized (row) {
+                    for (int index = 0; index < batch.selected; index++) {
+                        row.internalRow = batch.row(batch.selection[index]);
+                        if (!limited.test(row)) {
+                            return false;
+                        }
+                    }
+                    return true;
+                }
+            });
+        } else if (plan instanceof FullScan) {
+            fullScan(table, plan.predicate, limited, row);
+        } else if (plan instanceof IndexScan) {
+            indexScan((IndexScan) plan, table, limited, row);
+        } else if (plan instanceof BitmapScan) {
+            cursorScan(table.bitmapCursor(((BitmapScan) plan).bitmap.apply(table)), limited, row, plan.predicate);
+        } else {
+            for (IndexScan branch : ((Union) plan).branches) {
+                if (!indexScan(branch, table, limited, row)) {
+                    break;
+                }
+            }
+        }
+    }
 
-        if (hasNoFilter(node)) {
-            return new RecordFilterInfo($ -> true, new HashSet<>());
+    // Filter runs on scan threads, rows are handed to consumer one at a time till it returns false
+    private <T> void fullScan(SSTable<T> table, Predicate<Object> predicate, Predicate<RowValue> consumer, RowValue row) {
+        table.parallelBatchScan(SCAN_PARALLELISM, ColumnBatch.DEFAULT_SIZE, rows -> {
+            for (T currentRow : rows) {
+                if (predicate.test(currentRow)) {
+                    synchronized (row) {
+                        row.internalRow = currentRow;
+                        if (!consumer.test(row)) {
+                            return false;
+                        }
+                    }
+                }
+            }
+            return true;
+        });
+    }
+
+    // Batches are filtered on scan threads, matched rows of batch over limit are dropped before consumer sees batch
+    private <T> void batchScan(SSTable<T> table, BatchFilter filter, int limit, Predicate<ColumnBatch> consumer) {
+        AtomicInteger remaining = new AtomicInteger(limit);
+        table.parallelBatchScan(SCAN_PARALLELISM, ColumnBatch.DEFAULT_SIZE, rows -> {
+            ColumnBatch batch = new ColumnBatch(rows);
+            batch.filter(filter);
+            if (batch.selected == 0) {
+                return remaining.get() > 0;
+            }
+            int before = remaining.getAndAdd(-batch.selected);
+            batch.limit(before);
+            if (batch.selected > 0 && !consumer.test(batch)) {
+                return false;
+            }
+            return before - batch.selected > 0;
+        });
+    }
+
+    // False when consumer stopped scan
+    private boolean indexScan(IndexScan plan, SSTable<?> table, Predicate<RowValue> consumer, RowValue row) {
+        IndexParameter index = plan.index;
+        if (index.isMultiSeek()) {
+            // Seek of value reads range of exact value, so value that is prefix of other value does not read its rows
+            for (String value : index.values) {
+                if (!cursorScan(table.rangeCursor(index.indexName, value, value + EXACT_VALUE_END), consumer, row, plan.predicate)) {
+                    return false;
+                }
+            }
+            return true;
+        } else if (plan.covering) {
+            boolean[] open = {true};
+            table.searchCoveredWhile(index.indexName, index.indexValue, currentRow -> {
+                if (plan.predicate.test(currentRow)) {
+                    row.internalRow = currentRow;
+                    open[0] = consumer.test(row);
+                }
+                return open[0];
+            });
+            return open[0];
+        } else if (index.isRange()) {
+            return cursorScan(table.rangeCursor(index.indexName, index.indexValue, index.rangeEnd), consumer, row, plan.predicate);
         } else {
-            SqlBasicCall where = (SqlBasicCall) node.getWhere();
-            HashSet<IndexParameter> indexes = new HashSet<>();
-            return new RecordFilterInfo(predicate(where, table, indexes), indexes);
+            return cursorScan(table.searchCursor(index.indexName, index.indexValue), consumer, row, plan.predicate);
+        }
+    }
+
+    // Rows of index are read with cursor till consumer returns false, false when consumer stopped scan
+    private boolean cursorScan(Cursor<?> cursor, Predicate<RowValue> consumer, RowValue row, Predicate<Object> matcher) {
+        try (Cursor<?> rows = cursor) {
+            while (rows.hasNext()) {
+                Object currentRow = rows.next();
+                if (matcher.test(currentRow)) {
+                    row.internalRow = currentRow;
+                    if (!consumer.test(row)) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    // Columns used by select list and where clause
+    private Set<String> projection(SqlSelect node, SSTable<?> table) {
+        Set<String> columns = new HashSet<>();
+        SqlBasicVisitor<Void> collector = new SqlBasicVisitor<Void>() {
+            @Override
+            public Void visit(SqlIdentifier id) {
+                if (id.isStar()) {
+                    columns.addAll(lowerCase(table.cols()));
+                } else {
+                    columns.add(id.names.get(id.names.size() - 1).toLowerCase());
+                }
+                return null;
+            }
+        };
+
+        node.getSelectList().accept(collector);
+        if (!hasNoFilter(node)) {
+            node.getWhere().accept(collector);
+        }
+        return columns;
+    }
+
+    private static Set<String> lowerCase(Collection<String> columns) {
+        return columns.stream().map(String::toLowerCase).collect(Collectors.toSet());
+    }
+
+    // Conditions of AND chain of where clause, only these can pick index
+    private static final class Conditions {
+        final Set<IndexParameter> indexes = new HashSet<>();
+        final Map<String, Object> equalities = new HashMap<>();
+        // Text of equality literal, as written in query
+        final Map<String, String> texts = new HashMap<>();
+        final Map<String, Object[]> ranges = new HashMap<>();
+
+        // Bounds of same column are intersected, null bound is unbounded
+        void range(String column, Object low, Object high) {
+            Object[] range = ranges.get(column);
+            if (range == null) {
+                ranges.put(column, new Object[]{low, high});
+            } else {
+                range[0] = tighter(range[0], low, true);
+                range[1] = tighter(range[1], high, false);
+            }
+        }
+
+        // Literal is BigDecimal or string, bounds of different types are not compared
+        @SuppressWarnings("unchecked")
+        private static Object tighter(Object current, Object bound, boolean low) {
+            if (current == null) {
+                return bound;
+            }
+            if (bound == null || current.getClass() != bound.getClass()) {
+                return current;
+            }
+            int order = ((Comparable<Object>) bound).compareTo(current);
+            return (low ? order > 0 : order < 0) ? bound : current;
+        }
+    }
+
+    /*
+        Plain index is in string order of index value, so only range with string bounds reads index range.
+        Range is read till exact value range end of high bound, as index keys of high bound sort below it.
+     */
+    private static List<IndexParameter> rangeIndexes(SSTable<?> table, Conditions conditions) {
+        List<IndexParameter> candidates = new ArrayList<>();
+        conditions.ranges.forEach((column, range) -> {
+            boolean strings = (range[0] == null || range[0] instanceof String) && (range[1] == null || range[1] instanceof String);
+            if (strings && isPlainIndex(table, column)) {
+                candidates.add(IndexParameter.range(column, range[0] == null ? "" : (String) range[0], range[1] == null ? null : range[1] + EXACT_VALUE_END, 1));
+            }
+        });
+        return candidates;
+    }
+
+    private static boolean isPlainIndex(SSTable<?> table, String column) {
+        return table.indexes().containsKey(column) && !(table.indexes().get(column) instanceof CompositeIndex);
+    }
+
+    /*
+        Composite indexes whose leading columns have equality condition, next column can have range condition.
+        Index keeps long & double columns as numbers and other columns as string form of value, as rows compare them.
+        Equality on typed column needs numeric literal, other columns are sought by text of literal.
+        Range on typed column needs numeric bounds, range on other columns needs string bounds.
+     */
+    private List<IndexParameter> compositeIndexes(SSTable<?> table, Conditions conditions) {
+        List<IndexParameter> candidates = new ArrayList<>();
+        for (Map.Entry<String, ? extends Function<?, String>> index : table.indexes().entrySet()) {
+            if (!(index.getValue() instanceof CompositeIndex)) {
+                continue;
+            }
+            List<String> columns = ((CompositeIndex<?>) index.getValue()).columns();
+            List<Object> values = new ArrayList<>();
+            while (values.size() < columns.size()) {
+                String column = columns.get(values.size()).toLowerCase();
+                Object value = conditions.equalities.get(column);
+                if (value == null) {
+                    break;
+                }
+                if (isNumber(table.column(column))) {
+                    if (!(value instanceof BigDecimal)) {
+                        break;
+                    }
+                    values.add(value);
+                } else {
+                    values.add(conditions.texts.get(column));
+                }
+            }
+            Object[] range = values.size() < columns.size() ? conditions.ranges.get(columns.get(values.size()).toLowerCase()) : null;
+            if (range != null) {
+                boolean number = isNumber(table.column(columns.get(values.size()).toLowerCase()));
+                if (!isBound(range[0], number) || !isBound(range[1], number)) {
+                    range = null;
+                }
+            }
+
+            String prefix = CompositeIndex.prefix(values);
+            IndexParameter candidate = null;
+            if (range != null) {
+                // Range without high bound reads till end of leading values, or till end of index when there are none
+                String from = range[0] == null ? prefix : prefix + CompositeIndex.encode(range[0]);
+                String to = range[1] != null ? CompositeIndex.upperBound(prefix + CompositeIndex.encode(range[1]))
+                        : prefix.isEmpty() ? null : CompositeIndex.upperBound(prefix.substring(0, prefix.length() - 1));
+                candidate = IndexParameter.range(index.getKey(), from, to, values.size() + 1);
+            } else if (values.size() == columns.size()) {
+                // Last value is followed by key terminator, not separator
+                String value = prefix.substring(0, prefix.length() - 1);
+                candidate = new IndexParameter(index.getKey(), value, CompositeIndex.upperBound(value), values.size());
+            } else if (!values.isEmpty()) {
+                candidate = new IndexParameter(index.getKey(), prefix, null, values.size());
+            }
+            if (candidate != null) {
+                candidates.add(candidate);
+            }
+        }
+        return candidates;
+    }
+
+    private static boolean isNumber(ColumnReader column) {
+        return column.isLong() || column.isDouble();
+    }
+
+    // Group value of index value as read from first row of value, index value when row is gone
+    private static Object groupValue(SSTable<?> table, String indexName, String value, ColumnReader group) {
+        try (Cursor<?> rows = table.searchCursor(indexName, value)) {
+            return rows.hasNext() ? group.value(rows.next()) : value;
         }
     }
 
+    // Null bound is unbounded
+    private static boolean isBound(Object bound, boolean number) {
+        return bound == null || (number ? bound instanceof BigDecimal : bound instanceof String);
+    }
 
-    private Predicate<Object> predicate(SqlBasicCall where, SSTable<?> table, HashSet<IndexParameter> indexes) {
+    private Predicate<Object> predicate(SqlBasicCall where, SSTable<?> table, Conditions conditions, Object[] params) {
         SqlOperator operator = where.getOperator();
 
         String name = operator.getName().toLowerCase();
@@ -103,38 +827,443 @@ public class SqlAPI {
         switch (name) {
             case "=": {
                 SqlIdentifier filterColumn = (SqlIdentifier) where.operands[0];
-                SqlLiteral filterValue = (SqlLiteral) where.operands[1];
+                Object filterValue = value(where.operands[1], params);
 
-                String columnName = filterColumn.names.get(0).toLowerCase();
-                String columnValue = filterValue.toValue();
-                if (table.indexes().containsKey(columnName)) {
-                    indexes.add(new IndexParameter(columnName, columnValue));
+                String columnName = column(filterColumn);
+                String columnValue = text(where.operands[1], params);
+                if (isPlainIndex(table, columnName)) {
+                    conditions.indexes.add(new IndexParameter(columnName, columnValue));
                 }
+                conditions.equalities.put(columnName, filterValue);
+                conditions.texts.put(columnName, columnValue);
 
-                Predicate<Object> matcher = createEq(table, columnValue, columnName);
+                Predicate<Object> matcher = createEq(table.column(columnName), filterValue, columnValue);
                 return matcher;
             }
+            case "between asymmetric": {
+                SqlIdentifier filterColumn = (SqlIdentifier) where.operands[0];
+                Object low = value(where.operands[1], params);
+                Object high = value(where.operands[2], params);
+
+                String columnName = column(filterColumn);
+                conditions.range(columnName, low, high);
+                return createRange(table.column(columnName), low, true, high, true);
+            }
+            case "<":
+            case "<=":
+            case ">":
+            case ">=": {
+                // 5 < amount is amount > 5
+                boolean flipped = !(where.operands[0] instanceof SqlIdentifier);
+                SqlIdentifier filterColumn = (SqlIdentifier) where.operands[flipped ? 1 : 0];
+                Object bound = value(where.operands[flipped ? 0 : 1], params);
+                boolean upper = name.startsWith("<") != flipped;
+                boolean inclusive = name.endsWith("=");
+
+                String columnName = column(filterColumn);
+                ColumnReader column = table.column(columnName);
+                if (upper) {
+                    conditions.range(columnName, null, bound);
+                    return createRange(column, null, true, bound, inclusive);
+                }
+                conditions.range(columnName, bound, null);
+                return createRange(column, bound, inclusive, null, true);
+            }
+            case "in": {
+                SqlIdentifier filterColumn = (SqlIdentifier) where.operands[0];
+                List<Object> values = new ArrayList<>();
+                Set<String> columnValues = new HashSet<>();
+                for (SqlNode value : ((SqlNodeList) where.operands[1]).getList()) {
+                    values.add(value(value, params));
+                    columnValues.add(text(value, params));
+                }
+
+                String columnName = column(filterColumn);
+                if (isPlainIndex(table, columnName)) {
+                    conditions.indexes.add(IndexParameter.in(columnName, columnValues));
+                }
+                if (values.size() == 1) {
+                    conditions.equalities.put(columnName, values.get(0));
+                    conditions.texts.put(columnName, columnValues.iterator().next());
+                }
+                return createIn(table.column(columnName), values, columnValues);
+            }
+            case "like": {
+                SqlIdentifier filterColumn = (SqlIdentifier) where.operands[0];
+                String pattern = text(where.operands[1], params);
+                Character escape = where.operands.length > 2 ? text(where.operands[2], params).charAt(0) : null;
+
+                String columnName = column(filterColumn);
+                String prefix = likePrefix(pattern, escape);
+                if (!prefix.isEmpty() && isPlainIndex(table, columnName)) {
+                    conditions.indexes.add(IndexParameter.prefix(columnName, prefix));
+                }
+                return createLike(table.column(columnName), pattern, prefix, escape);
+            }
             case "and": {
                 SqlBasicCall left = (SqlBasicCall) where.operands[0];
                 SqlBasicCall right = (SqlBasicCall) where.operands[1];
-                return predicate(left, table, indexes).and(predicate(right, table, indexes));
+                return predicate(left, table, conditions, params).and(predicate(right, table, conditions, params));
             }
             case "or": {
+                // Index of one side does not find rows of other side
                 SqlBasicCall left = (SqlBasicCall) where.operands[0];
                 SqlBasicCall right = (SqlBasicCall) where.operands[1];
-                return predicate(left, table, indexes).or(predicate(right, table, indexes));
+                return predicate(left, table, new Conditions(), params).or(predicate(right, table, new Conditions(), params));
+            }
+            case "not":
+                return predicate((SqlBasicCall) where.operands[0], table, new Conditions(), params).negate();
+            case "<>":
+            case "not in":
+            case "not like": {
+                // Negation of condition, index of condition finds rows that are not wanted
+                SqlOperator positive = name.equals("<>") ? SqlStdOperatorTable.EQUALS : name.equals("not in") ? SqlStdOperatorTable.IN : SqlStdOperatorTable.LIKE;
+                SqlBasicCall condition = (SqlBasicCall) positive.createCall(where.getParserPosition(), where.operands);
+                return predicate(condition, table, new Conditions(), params).negate();
             }
         }
 
         throw new RuntimeException(operator + " not supported ");
     }
 
-    private Predicate<Object> createEq(SSTable<?> tableObject, String columnValue, String columnName) {
-        Predicate<Object> eq = row -> {
-            String value = tableObject.columnValue(columnName, row).toString();
-            return value.equals(columnValue);
+    /*
+        Where clause as bitmap of row ordinals, null when it reads no bitmap indexed column.
+        Condition of one bitmap indexed column is tested on one row of every value, rows of value have same string form
+        of column so all of them match or none does. Rows of null value match no condition, as in predicate of row.
+        AND of condition without bitmap keeps bitmap of other side, which then has rows that may not match.
+        OR needs bitmap of both sides and NOT needs bitmap that has only matched rows.
+     */
+    private RowBitmap bitmap(SqlBasicCall where, SSTable<?> table, Object[] params) {
+        String name = where.getOperator().getName().toLowerCase();
+        if (name.equals("and") || name.equals("or")) {
+            RowBitmap left = bitmap((SqlBasicCall) where.operands[0], table, params);
+            RowBitmap right = bitmap((SqlBasicCall) where.operands[1], table, params);
+            if (left == null || right == null) {
+                RowBitmap side = left == null ? right : left;
+                return name.equals("or") || side == null ? null : new RowBitmap(side.ordinals, false, side.indexes);
+            }
+            Set<String> indexes = new HashSet<>(left.indexes);
+            indexes.addAll(right.indexes);
+            return name.equals("and")
+                    ? new RowBitmap(RoaringBitmap.and(left.ordinals, right.ordinals), left.exact && right.exact, indexes)
+                    : new RowBitmap(RoaringBitmap.or(left.ordinals, right.ordinals), left.exact && right.exact, indexes);
+        }
+        if (name.equals("not")) {
+            RowBitmap operand = bitmap((SqlBasicCall) where.operands[0], table, params);
+            if (operand == null || !operand.exact) {
+                return null;
+            }
+            RoaringBitmap rows = new RoaringBitmap();
+            valueRows(table, operand.indexes.iterator().next()).keySet().forEach(rows::or);
+            return new RowBitmap(RoaringBitmap.andNot(rows, operand.ordinals), true, operand.indexes);
+        }
+
+        Set<String> columns = new HashSet<>();
+        where.accept(new SqlBasicVisitor<Void>() {
+            @Override
+            public Void visit(SqlIdentifier id) {
+                columns.add(column(id));
+                return null;
+            }
+        });
+        if (columns.size() != 1 || !table.bitmapIndexes().containsKey(columns.iterator().next())) {
+            return null;
+        }
+        String column = columns.iterator().next();
+        Predicate<Object> predicate = predicate(where, table, new Conditions(), params);
+        RoaringBitmap ordinals = new RoaringBitmap();
+        valueRows(table, column).forEach((bitmap, row) -> {
+            if (predicate.test(row)) {
+                ordinals.or(bitmap);
+            }
+        });
+        return new RowBitmap(ordinals, true, Collections.singleton(column));
+    }
+
+    // Bitmap of every value of bitmap index with first row of value, value of null column is left out
+    private static Map<RoaringBitmap, Object> valueRows(SSTable<?> table, String column) {
+        ColumnReader reader = table.column(column);
+        Map<RoaringBitmap, Object> rows = new IdentityHashMap<>();
+        for (RoaringBitmap bitmap : table.bitmaps(column).values()) {
+            try (Cursor<?> cursor = table.bitmapCursor(bitmap)) {
+                Object row = cursor.hasNext() ? cursor.next() : null;
+                if (row != null && reader.value(row) != null) {
+                    rows.put(bitmap, row);
+                }
+            }
+        }
+        return rows;
+    }
+
+    // Rows of where clause, exact when bitmap has only matched rows
+    private static final class RowBitmap {
+        final RoaringBitmap ordinals;
+        final boolean exact;
+        final Set<String> indexes;
+
+        RowBitmap(RoaringBitmap ordinals, boolean exact, Set<String> indexes) {
+            this.ordinals = ordinals;
+            this.exact = exact;
+            this.indexes = indexes;
+        }
+    }
+
+    // Numeric literal is compared as primitive on typed columns, other columns compare string form of value
+    private Predicate<Object> createEq(ColumnReader column, Object literal, String columnValue) {
+        if (literal instanceof BigDecimal && (column.isLong() || column.isDouble())) {
+            return createRange(column, literal, true, literal, true);
+        }
+        return row -> column.value(row).toString().equals(columnValue);
+    }
+
+    // Null bound is unbounded, numeric bounds on typed columns compare primitives
+    private Predicate<Object> createRange(ColumnReader column, Object low, boolean lowInclusive, Object high, boolean highInclusive) {
+        boolean numbers = (low == null || low instanceof BigDecimal) && (high == null || high instanceof BigDecimal);
+        if (numbers && column.isLong()) {
+            long[] bounds = longBounds(low, lowInclusive, high, highInclusive);
+            if (bounds == null) {
+                return row -> false;
+            }
+            long fromValue = bounds[0];
+            long toValue = bounds[1];
+            return row -> {
+                long value = column.longValue(row);
+                return value >= fromValue && value <= toValue;
+            };
+        }
+        if (numbers && column.isDouble()) {
+            double from = low == null ? Double.NEGATIVE_INFINITY : ((BigDecimal) low).doubleValue();
+            double to = high == null ? Double.POSITIVE_INFINITY : ((BigDecimal) high).doubleValue();
+            return row -> {
+                double value = column.doubleValue(row);
+                return (lowInclusive ? value >= from : value > from) && (highInclusive ? value <= to : value < to);
+            };
+        }
+        return row -> {
+            Object value = column.value(row);
+            if (low != null) {
+                int order = compare(value, low);
+                if (lowInclusive ? order < 0 : order <= 0) {
+                    return false;
+                }
+            }
+            if (high != null) {
+                int order = compare(value, high);
+                return highInclusive ? order <= 0 : order < 0;
+            }
+            return true;
+        };
+    }
+
+    // Bounds as inclusive integers, x > 2.5 is x >= 3 and x < 3 is x <= 2. Null when no long is in range
+    private static long[] longBounds(Object low, boolean lowInclusive, Object high, boolean highInclusive) {
+        BigDecimal from = low == null ? null : lowInclusive
+                ? ((BigDecimal) low).setScale(0, RoundingMode.CEILING)
+                : ((BigDecimal) low).setScale(0, RoundingMode.FLOOR).add(BigDecimal.ONE);
+        BigDecimal to = high == null ? null : highInclusive
+                ? ((BigDecimal) high).setScale(0, RoundingMode.FLOOR)
+                : ((BigDecimal) high).setScale(0, RoundingMode.CEILING).subtract(BigDecimal.ONE);
+        if ((from != null && from.compareTo(BigDecimal.valueOf(Long.MAX_VALUE)) > 0) || (to != null && to.compareTo(BigDecimal.valueOf(Long.MIN_VALUE)) < 0)) {
+            return null;
+        }
+        return new long[]{from == null ? Long.MIN_VALUE : toLong(from, RoundingMode.FLOOR), to == null ? Long.MAX_VALUE : toLong(to, RoundingMode.FLOOR)};
+    }
+
+    // Numbers of typed column are found by binary search of sorted primitives, other columns by string form of value
+    private Predicate<Object> createIn(ColumnReader column, List<Object> values, Set<String> columnValues) {
+        boolean numbers = values.stream().allMatch(value -> value instanceof BigDecimal);
+        if (numbers && column.isLong()) {
+            long[] longs = longValues(values);
+            return row -> Arrays.binarySearch(longs, column.longValue(row)) >= 0;
+        }
+        if (numbers && column.isDouble()) {
+            double[] doubles = doubleValues(values);
+            // Adding 0.0 turns -0.0 into 0.0, which binary search orders apart
+            return row -> Arrays.binarySearch(doubles, column.doubleValue(row) + 0.0) >= 0;
+        }
+        return row -> columnValues.contains(column.value(row).toString());
+    }
+
+    // Sorted integral values in long range, other values match no long
+    private static long[] longValues(List<Object> values) {
+        return values.stream()
+                .map(value -> (BigDecimal) value)
+                .filter(value -> value.compareTo(value.setScale(0, RoundingMode.FLOOR)) == 0)
+                .filter(value -> value.compareTo(BigDecimal.valueOf(Long.MAX_VALUE)) <= 0 && value.compareTo(BigDecimal.valueOf(Long.MIN_VALUE)) >= 0)
+                .mapToLong(BigDecimal::longValue)
+                .sorted()
+                .toArray();
+    }
+
+    private static double[] doubleValues(List<Object> values) {
+        return values.stream().mapToDouble(value -> ((BigDecimal) value).doubleValue()).sorted().toArray();
+    }
+
+    /*
+        Where clause as filter of column batch. Numeric conditions of long & double columns compare decoded primitives,
+        other conditions are tested row by row with predicate of row path.
+     */
+    private BatchFilter batchFilter(SqlBasicCall where, SSTable<?> table, Object[] params) {
+        String name = where.getOperator().getName().toLowerCase();
+        BatchFilter typed = null;
+        switch (name) {
+            case "and":
+                return batchFilter((SqlBasicCall) where.operands[0], table, params).and(batchFilter((SqlBasicCall) where.operands[1], table, params));
+            case "or":
+                return batchFilter((SqlBasicCall) where.operands[0], table, params).or(batchFilter((SqlBasicCall) where.operands[1], table, params));
+            case "=": {
+                Object value = value(where.operands[1], params);
+                typed = typedRange(table.column(column(where.operands[0])), value, true, value, true);
+                break;
+            }
+            case "between asymmetric":
+                typed = typedRange(table.column(column(where.operands[0])), value(where.operands[1], params), true, value(where.operands[2], params), true);
+                break;
+            case "<":
+            case "<=":
+            case ">":
+            case ">=": {
+                boolean flipped = !(where.operands[0] instanceof SqlIdentifier);
+                ColumnReader column = table.column(column(where.operands[flipped ? 1 : 0]));
+                Object bound = value(where.operands[flipped ? 0 : 1], params);
+                boolean upper = name.startsWith("<") != flipped;
+                boolean inclusive = name.endsWith("=");
+                typed = upper ? typedRange(column, null, true, bound, inclusive) : typedRange(column, bound, inclusive, null, true);
+                break;
+            }
+            case "in": {
+                List<Object> values = new ArrayList<>();
+                for (SqlNode value : ((SqlNodeList) where.operands[1]).getList()) {
+                    values.add(value(value, params));
+                }
+                ColumnReader column = table.column(column(where.operands[0]));
+                if (values.stream().allMatch(value -> value instanceof BigDecimal)) {
+                    typed = column.isLong() ? BatchFilter.longIn(column, longValues(values))
+                            : column.isDouble() ? BatchFilter.doubleIn(column, doubleValues(values)) : null;
+                }
+                break;
+            }
+        }
+        return typed != null ? typed : BatchFilter.rows(predicate(where, table, new Conditions(), params));
+    }
+
+    // Null when column is not typed or bound is not number
+    private static BatchFilter typedRange(ColumnReader column, Object low, boolean lowInclusive, Object high, boolean highInclusive) {
+        boolean numbers = (low == null || low instanceof BigDecimal) && (high == null || high instanceof BigDecimal);
+        if (numbers && column.isLong()) {
+            long[] bounds = longBounds(low, lowInclusive, high, highInclusive);
+            return bounds == null ? BatchFilter.NONE : BatchFilter.longRange(column, bounds[0], bounds[1]);
+        }
+        if (numbers && column.isDouble()) {
+            double from = low == null ? Double.NEGATIVE_INFINITY : ((BigDecimal) low).doubleValue();
+            double to = high == null ? Double.POSITIVE_INFINITY : ((BigDecimal) high).doubleValue();
+            return BatchFilter.doubleRange(column, from, lowInclusive, to, highInclusive);
+        }
+        return null;
+    }
+
+    // Last name of identifier, o.amount is column amount
+    private static String column(SqlNode node) {
+        SqlIdentifier id = (SqlIdentifier) node;
+        return id.names.get(id.names.size() - 1).toLowerCase();
+    }
+
+    // % is any chars and _ is one char, pattern of text followed by % is prefix match
+    private Predicate<Object> createLike(ColumnReader column, String pattern, String prefix, Character escape) {
+        Predicate<String> matcher;
+        if (pattern.equals(prefix + "%") && (escape == null || pattern.indexOf(escape) < 0)) {
+            matcher = value -> value.startsWith(prefix);
+        } else {
+            Pattern regex = likePattern(pattern, escape);
+            matcher = value -> regex.matcher(value).matches();
+        }
+        return row -> {
+            Object value = column.value(row);
+            return value != null && matcher.test(value.toString());
         };
-        return eq;
+    }
+
+    // Text of pattern before first wildcard
+    private static String likePrefix(String pattern, Character escape) {
+        StringBuilder prefix = new StringBuilder();
+        for (int index = 0; index < pattern.length(); index++) {
+            char c = pattern.charAt(index);
+            if (escape != null && c == escape && index + 1 < pattern.length()) {
+                prefix.append(pattern.charAt(++index));
+            } else if (c == '%' || c == '_') {
+                break;
+            } else {
+                prefix.append(c);
+            }
+        }
+        return prefix.toString();
+    }
+
+    private static Pattern likePattern(String pattern, Character escape) {
+        StringBuilder regex = new StringBuilder();
+        for (int index = 0; index < pattern.length(); index++) {
+            char c = pattern.charAt(index);
+            if (escape != null && c == escape && index + 1 < pattern.length()) {
+                regex.append(Pattern.quote(String.valueOf(pattern.charAt(++index))));
+            } else if (c == '%') {
+                regex.append(".*");
+            } else if (c == '_') {
+                regex.append('.');
+            } else {
+                regex.append(Pattern.quote(String.valueOf(c)));
+            }
+        }
+        return Pattern.compile(regex.toString(), Pattern.DOTALL);
+    }
+
+    // Rounded to integer, values outside of long range are clamped
+    private static long toLong(BigDecimal value, RoundingMode mode) {
+        BigDecimal rounded = value.setScale(0, mode);
+        if (rounded.compareTo(BigDecimal.valueOf(Long.MAX_VALUE)) > 0) {
+            return Long.MAX_VALUE;
+        }
+        if (rounded.compareTo(BigDecimal.valueOf(Long.MIN_VALUE)) < 0) {
+            return Long.MIN_VALUE;
+        }
+        return rounded.longValue();
+    }
+
+    // Numeric literal is BigDecimal, others are string
+    static Object literal(SqlLiteral literal) {
+        return literal instanceof SqlNumericLiteral ? literal.bigDecimalValue() : literal.toValue();
+    }
+
+    // Literal or value bound to ? parameter, in same form as literal
+    static Object value(SqlNode node, Object[] params) {
+        if (node instanceof SqlDynamicParam) {
+            Object param = param((SqlDynamicParam) node, params);
+            return param instanceof Number ? new BigDecimal(param.toString()) : param.toString();
+        }
+        return literal((SqlLiteral) node);
+    }
+
+    // String form of literal or bound value, compared with index values & string form of column values
+    static String text(SqlNode node, Object[] params) {
+        return node instanceof SqlDynamicParam ? param((SqlDynamicParam) node, params).toString() : ((SqlLiteral) node).toValue();
+    }
+
+    private static Object param(SqlDynamicParam node, Object[] params) {
+        Object param = params[node.getIndex()];
+        if (param == null) {
+            throw new IllegalArgumentException("Null bound to parameter " + (node.getIndex() + 1));
+        }
+        return param;
+    }
+
+    // Numbers are compared by value, other values by string form
+    static int compare(Object value, Object literal) {
+        if (value instanceof Number && literal instanceof BigDecimal) {
+            if (value instanceof Double || value instanceof Float) {
+                return Double.compare(((Number) value).doubleValue(), ((BigDecimal) literal).doubleValue());
+            }
+            return BigDecimal.valueOf(((Number) value).longValue()).compareTo((BigDecimal) literal);
+        }
+        return String.valueOf(value).compareTo(String.valueOf(literal));
     }
 
     private boolean hasNoFilter(SqlSelect node) {
@@ -150,34 +1279,85 @@ public class SqlAPI {
         return nameToIndex;
     }
 
+    /*
+        Row handed to consumer. Columns are resolved once per query in order of table columns,
+        reads by ordinal skip name lookup and reads by name look up resolved column.
+     */
     public class RowValue {
         private final Map<String, Integer> nameToIndex;
-        private final SSTable<?> tableObject;
+        private final ColumnReader[] columns;
+        private final Map<String, ColumnReader> byName = new HashMap<>();
         private Object internalRow;
 
-        public RowValue(SSTable<?> tableObject, Map<String, Integer> nameToIndex) {
+        private RowValue(Map<String, Integer> nameToIndex, ColumnReader[] columns) {
             this.nameToIndex = nameToIndex;
-            this.tableObject = tableObject;
+            this.columns = columns;
+        }
+
+        public RowValue(SSTable<?> tableObject, Map<String, Integer> nameToIndex) {
+            this.nameToIndex = new HashMap<>();
+            this.columns = new ColumnReader[nameToIndex.size()];
+            nameToIndex.forEach((name, index) -> {
+                this.nameToIndex.put(name.toLowerCase(), index);
+                columns[index] = tableObject.column(name);
+            });
+        }
+
+        public int ordinal(String name) {
+            Integer index = nameToIndex.get(name.toLowerCase());
+            if (index == null) {
+                throw new IllegalArgumentException("Column " + name + " is not in " + nameToIndex.keySet());
+            }
+            return index;
+        }
+
+        private ColumnReader column(String name) {
+            ColumnReader column = byName.get(name);
+            if (column == null) {
+                column = columns[ordinal(name)];
+                byName.put(name, column);
+            }
+            return column;
         }
 
         public Object getValue(String name) {
-            return tableObject.columnValue(name, internalRow);
+            return column(name).value(internalRow);
+        }
+
+        public Object getValue(int ordinal) {
+            return columns[ordinal].value(internalRow);
         }
 
         public long getLong(String name) {
-            return (Long) tableObject.columnValue(name, internalRow);
+            return column(name).longValue(internalRow);
+        }
+
+        public long getLong(int ordinal) {
+            return columns[ordinal].longValue(internalRow);
+        }
+
+        public String getString(String name) {
+            return (String) column(name).value(internalRow);
+        }
+
+        public String getString(int ordinal) {
+            return (String) columns[ordinal].value(internalRow);
+        }
+
+        public int getInt(String name) {
+            return (int) column(name).longValue(internalRow);
         }
 
-        public String getString(String index) {
-            return (String) tableObject.columnValue(index, internalRow);
+        public int getInt(int ordinal) {
+            return (int) columns[ordinal].longValue(internalRow);
         }
 
-        public int getInt(String index) {
-            return (Integer) tableObject.columnValue(index, internalRow);
+        public double getDouble(String name) {
+            return column(name).doubleValue(internalRow);
         }
 
-        public double getDouble(String index) {
-            return (Double) tableObject.columnValue(index, internalRow);
+        public double getDouble(int ordinal) {
+            return columns[ordinal].doubleValue(internalRow);
         }
 
     }
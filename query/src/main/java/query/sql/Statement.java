@@ -0,0 +1,62 @@
+package query.sql;
+
+import org.apache.calcite.sql.SqlDynamicParam;
+import org.apache.calcite.sql.SqlExplain;
+import org.apache.calcite.sql.SqlNode;
+import org.apache.calcite.sql.SqlOrderBy;
+import org.apache.calcite.sql.SqlSelect;
+import org.apache.calcite.sql.util.SqlBasicVisitor;
+import query.sql.SqlAPI.RowValue;
+
+/*
+    Parsed query and what is resolved once per query text, shared by every execution of prepared query or cached text.
+    Row columns are resolved on first execution. Plan of query without parameters is kept with table rows it was made
+    for, values of parameters can change plan so query with parameters is planned on every execution.
+ */
+final class Statement {
+
+    static final int DEFAULT_LIMIT = 10;
+
+    final SqlSelect select;
+    final boolean explain;
+    // Null when query has no limit
+    final SqlNode fetch;
+    final int parameters;
+
+    volatile RowValue row;
+    volatile CachedPlan plan;
+
+    Statement(SqlNode node) {
+        SqlNode query = node instanceof SqlExplain ? ((SqlExplain) node).getExplicandum() : node;
+        if (query instanceof SqlOrderBy) {
+            this.select = (SqlSelect) ((SqlOrderBy) query).query;
+            this.fetch = ((SqlOrderBy) query).fetch;
+        } else if (query instanceof SqlSelect) {
+            this.select = (SqlSelect) query;
+            this.fetch = null;
+        } else {
+            throw new RuntimeException(node.getClass() + " not supported");
+        }
+        this.explain = node instanceof SqlExplain;
+
+        int[] count = {0};
+        node.accept(new SqlBasicVisitor<Void>() {
+            @Override
+            public Void visit(SqlDynamicParam param) {
+                count[0]++;
+                return null;
+            }
+        });
+        this.parameters = count[0];
+    }
+
+    static final class CachedPlan {
+        final QueryPlan plan;
+        final long tableRows;
+
+        CachedPlan(QueryPlan plan, long tableRows) {
+            this.plan = plan;
+            this.tableRows = tableRows;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package query.kv;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+
+import static java.util.Arrays.asList;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CompositeIndexTest {
+
+    @Test
+    public void numbers_are_ordered_as_numbers() {
+        List<Object> values = asList(Long.MIN_VALUE, -10.5d, -1, 0, 9, 10, 20200901L, 1e18d);
+
+        for (int index = 1; index < values.size(); index++) {
+            String previous = CompositeIndex.encode(values.get(index - 1));
+            String current = CompositeIndex.encode(values.get(index));
+            assertTrue(previous.compareTo(current) < 0, values.get(index - 1) + " < " + values.get(index));
+        }
+        assertEquals(CompositeIndex.encode(0.0d), CompositeIndex.encode(-0.0d));
+        assertEquals(CompositeIndex.encode(10), CompositeIndex.encode(new BigDecimal("10")));
+    }
+
+    @Test
+    public void columns_are_ordered_left_to_right() {
+        CompositeIndex<String[]> index = index();
+
+        String shorter = index.apply(new String[]{"a", "z"});
+        String longer = index.apply(new String[]{"ab", "a"});
+        String separatorInValue = index.apply(new String[]{"a\u0001", "a"});
+
+        assertAll(
+                () -> assertTrue(shorter.compareTo(longer) < 0),
+                () -> assertTrue(shorter.compareTo(separatorInValue) < 0),
+                () -> assertFalse(separatorInValue.startsWith(CompositeIndex.prefix(asList("a"))))
+        );
+    }
+
+    @Test
+    public void range_of_next_column_is_within_prefix() {
+        CompositeIndex<String[]> index = index();
+        String prefix = CompositeIndex.prefix(asList("SHIPPED"));
+        String from = prefix + CompositeIndex.encode("b");
+        String to = CompositeIndex.upperBound(prefix + CompositeIndex.encode("c"));
+
+        assertAll(
+                () -> assertTrue(index.apply(new String[]{"SHIPPED", "a"}).compareTo(from) < 0),
+                () -> assertTrue(index.apply(new String[]{"SHIPPED", "b"}).compareTo(from) >= 0),
+                () -> assertTrue(index.apply(new String[]{"SHIPPED", "c"}).compareTo(to) < 0),
+                () -> assertTrue(index.apply(new String[]{"SHIPPED", "ca"}).compareTo(to) >= 0),
+                () -> assertTrue(index.apply(new String[]{"SHIPPEDX", "b"}).compareTo(to) >= 0)
+        );
+    }
+
+    private static CompositeIndex<String[]> index() {
+        List<Function<String[], Object>> values = Arrays.asList(row -> row[0], row -> row[1]);
+        return new CompositeIndex<>(asList("first", "second"), values);
+    }
+}
@@ -0,0 +1,102 @@
+package query.kv;
+
+import query.tables.Order;
+
+import java.io.File;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/*
+    Load throughput with N producer threads inserting into same table using auto generated PK.
+    Engines are picked using -Dstores=memory,memory-wal,mv,rocks,lsm and thread counts using -Dthreads=1,2,4,8,16,32
+ */
+public class ConcurrentLoadApp {
+
+    static File tmpFile = new File(System.getProperty("java.io.tmpdir"));
+
+    public static void main(String[] args) throws Exception {
+        List<String> stores = Arrays.asList(System.getProperty("stores", "memory,memory-wal,mv,rocks,lsm").split(","));
+        List<Integer> threads = Arrays.stream(System.getProperty("threads", "1,2,4,8,16,32").split(","))
+                .map(Integer::parseInt)
+                .collect(Collectors.toList());
+        int rows = Integer.getInteger("rows", 400_000);
+        int batchSize = Integer.getInteger("batchSize", 100);
+
+        for (String type : stores) {
+            long baseline = 0;
+            for (int producers : threads) {
+                KeyValueStore store = KeyValueFactory.create(location(type), true);
+                SSTable<Order> orders = store.createTable("orders", Order.class, cols());
+
+                long start = System.nanoTime();
+                load(orders, producers, rows, batchSize);
+                long time = System.nanoTime() - start;
+                store.close();
+
+                long throughput = rows * 1_000_000_000L / time;
+                baseline = baseline == 0 ? throughput : baseline;
+                System.out.println(String.format("Store %s , threads %s , rows %s , Throughput %s rows/sec , Scaling %.2fx",
+                        type, producers, rows, throughput, throughput / (double) baseline));
+            }
+        }
+    }
+
+    private static void load(SSTable<Order> orders, int producers, int rows, int batchSize) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(producers);
+        List<Future<?>> results = new ArrayList<>();
+        int rowsPerProducer = rows / producers;
+        for (int producer = 0; producer < producers; producer++) {
+            results.add(executor.submit(() -> {
+                List<Order> batch = new ArrayList<>(batchSize);
+                for (int id = 0; id < rowsPerProducer; id++) {
+                    batch.add(Order.of(id, String.valueOf(id % 100_000), 20200901, "SHIPPED", 107.6d, 5));
+                    if (batch.size() == batchSize) {
+                        orders.insertAll(batch, batchSize);
+                        batch.clear();
+                    }
+                }
+                orders.insertAll(batch, batchSize);
+            }));
+        }
+        for (Future<?> result : results) {
+            result.get();
+        }
+        executor.shutdown();
+    }
+
+    private static String location(String type) {
+        switch (type) {
+            case "memory":
+                return "memory:";
+            case "memory-wal":
+                return "memory-wal:" + Paths.get(tmpFile.getAbsolutePath(), "memory-wal-load");
+            case "mv":
+                return "mv:" + Paths.get(tmpFile.getAbsolutePath(), "h2db", "mvstore-load");
+            case "lsm":
+                return "lsm:" + Paths.get(tmpFile.getAbsolutePath(), "lsm-load");
+            default:
+                return "rocks:" + Paths.get(tmpFile.getAbsolutePath(), "rocks-load");
+        }
+    }
+
+    private static Map<String, Function<Order, Object>> cols() {
+        Map<String, Function<Order, Object>> cols = new HashMap<String, Function<Order, Object>>() {{
+            put("orderId", Order::orderId);
+            put("customerId", Order::customerId);
+            put("orderDate", Order::orderDate);
+            put("status", Order::status);
+            put("amount", Order::amount);
+            put("noOfItem", Order::noOfItems);
+        }};
+        return cols;
+    }
+}
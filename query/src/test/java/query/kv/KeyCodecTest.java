@@ -0,0 +1,89 @@
+package query.kv;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.util.Arrays.asList;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class KeyCodecTest {
+
+    @Test
+    public void long_values_are_ordered_as_numbers() {
+        List<Long> values = asList(Long.MIN_VALUE, -100L, -1L, 0L, 1L, 255L, 256L, Long.MAX_VALUE);
+
+        for (int index = 1; index < values.size(); index++) {
+            byte[] previous = KeyCodec.encodeLong(values.get(index - 1));
+            byte[] current = KeyCodec.encodeLong(values.get(index));
+            assertTrue(KeyCodec.compare(previous, current) < 0, values.get(index - 1) + " < " + values.get(index));
+        }
+    }
+
+    @Test
+    public void int_and_date_values_round_trip() {
+        LocalDate date = LocalDate.of(2020, 9, 1);
+
+        assertAll(
+                () -> assertEquals(-42, KeyCodec.decodeInt(KeyCodec.encodeInt(-42), 0)),
+                () -> assertEquals(20200901L, KeyCodec.decodeLong(KeyCodec.encodeLong(20200901L), 0)),
+                () -> assertEquals(date, KeyCodec.decodeDate(KeyCodec.encodeDate(date), 0)),
+                () -> assertTrue(KeyCodec.compare(KeyCodec.encodeDate(date), KeyCodec.encodeDate(date.plusDays(1))) < 0)
+        );
+    }
+
+    @Test
+    public void index_key_sorts_by_value_then_row() {
+        KeyBuilder builder = new KeyBuilder("orders");
+
+        List<byte[]> keys = new ArrayList<>(asList(
+                builder.secondaryIndexKey("status", "SHIPPED#20200902", "1"),
+                builder.secondaryIndexKey("status", "SHIPPED", "2"),
+                builder.secondaryIndexKey("status", "SHIPPED#20200901", "3"),
+                builder.secondaryIndexKey("status", "CANCEL", "4")
+        ));
+        keys.sort(KeyCodec.KEY_ORDER);
+
+        assertAll(
+                () -> assertTrue(KeyCodec.startsWith(keys.get(0), builder.searchKey("status", "CANCEL"))),
+                () -> assertTrue(KeyCodec.startsWith(keys.get(1), builder.secondaryIndexKey("status", "SHIPPED", ""))),
+                () -> assertTrue(KeyCodec.startsWith(keys.get(2), builder.searchKey("status", "SHIPPED#20200901"))),
+                () -> assertTrue(KeyCodec.startsWith(keys.get(3), builder.searchKey("status", "SHIPPED#20200902")))
+        );
+    }
+
+    @Test
+    public void table_and_index_segments_do_not_overlap() {
+        KeyBuilder orders = new KeyBuilder("orders");
+        KeyBuilder ordersHistory = new KeyBuilder("ordershistory");
+
+        assertAll(
+                () -> assertFalse(KeyCodec.startsWith(ordersHistory.primaryKey("1"), orders.primaryKey())),
+                () -> assertFalse(KeyCodec.startsWith(orders.searchKey("pkey", "1"), orders.primaryKey()))
+        );
+    }
+
+    @Test
+    public void prefix_upper_bound_is_greater_than_all_prefix_keys() {
+        byte[] prefix = new KeyBuilder("orders").searchKey("status", "SHIPPED");
+        byte[] bound = KeyCodec.prefixUpperBound(prefix);
+
+        assertAll(
+                () -> assertTrue(KeyCodec.compare(new KeyBuilder("orders").secondaryIndexKey("status", "SHIPPED\uffff", "9"), bound) < 0),
+                () -> assertTrue(KeyCodec.compare(new KeyBuilder("orders").searchKey("status", "SHIPPEE"), bound) >= 0),
+                () -> assertNull(KeyCodec.prefixUpperBound(new byte[]{(byte) 0xFF, (byte) 0xFF}))
+        );
+    }
+
+    @Test
+    public void zero_char_in_value_is_escaped() {
+        KeyBuilder builder = new KeyBuilder("orders");
+
+        byte[] withZero = builder.secondaryIndexKey("status", "A\u0000", "1");
+        byte[] plain = builder.secondaryIndexKey("status", "A", "1");
+
+        assertTrue(KeyCodec.compare(plain, withZero) < 0);
+    }
+}
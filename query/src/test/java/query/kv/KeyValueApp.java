@@ -11,6 +11,7 @@ import java.io.File;
 import java.nio.file.Paths;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
@@ -18,7 +19,6 @@ import java.util.Map;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
-import java.util.stream.IntStream;
 
 public class KeyValueApp {
 
@@ -27,9 +27,9 @@ public class KeyValueApp {
     static File tmpFile = new File(System.getProperty("java.io.tmpdir"));
 
     public static void main(String[] args) {
-        //KeyValueStore store = create("memory://", true);
-        KeyValueStore store = KeyValueFactory.create("mv:" + Paths.get(tmpFile.getAbsolutePath(), "h2db", "mvstore").toString(), true);
-        //KeyValueStore store = KeyValueFactory.create("rocks:" + Paths.get(tmpFile.getAbsolutePath(), "rocks").toString(), true);
+        // -Dstore=mv|rocks|lsm
+        String storeType = System.getProperty("store", "mv");
+        KeyValueStore store = KeyValueFactory.create(location(storeType), true);
 
 
         Map<String, Function<Order, String>> indexes = new HashMap<String, Function<Order, String>>() {{
@@ -48,27 +48,62 @@ public class KeyValueApp {
         DateTimeFormatter yyyyMMdd = DateTimeFormatter.ofPattern("yyyyMMdd");
         List<String> status = Arrays.asList("SHIPPED", "CANCELLED", "ORDERED", "PENDINGPAYMENT");
 
+        int rowsToLoad = 1_000_000;
+        int batchSize = Integer.getInteger("batchSize", SSTable.DEFAULT_BATCH_SIZE);
+        List<Order> batch = new ArrayList<>(batchSize);
+
         long startTime = System.currentTimeMillis();
-        IntStream
-                .range(0, 1_000_000)
-                .forEach(id -> {
-                    int customer = ThreadLocalRandom.current().nextInt(100_000);
-                    int days = ThreadLocalRandom.current().nextInt(365);
-                    int orderDate = Integer.parseInt(start.plusDays(days).format(yyyyMMdd));
-                    String shipped = status.get(ThreadLocalRandom.current().nextInt(status.size()));
-                    orders.insert(Order.of(id, String.valueOf(customer), orderDate, shipped, 107.6d, 5));
-
-                    if (id % 100_000 == 0) {
-                        System.out.println("Loaded -> " + id);
-                    }
-                });
+        for (int id = 0; id < rowsToLoad; id++) {
+            int customer = ThreadLocalRandom.current().nextInt(100_000);
+            int days = ThreadLocalRandom.current().nextInt(365);
+            int orderDate = Integer.parseInt(start.plusDays(days).format(yyyyMMdd));
+            String shipped = status.get(ThreadLocalRandom.current().nextInt(status.size()));
+            batch.add(Order.of(id, String.valueOf(customer), orderDate, shipped, 107.6d, 5));
+
+            if (batch.size() == batchSize) {
+                orders.insertAll(batch, batchSize);
+                batch.clear();
+            }
+
+            if (id % 100_000 == 0) {
+                System.out.println("Loaded -> " + id);
+            }
+        }
+        orders.insertAll(batch, batchSize);
 
         long tot = System.currentTimeMillis() - startTime;
         store.close();
         long compactTime = System.currentTimeMillis() - startTime;
 
         System.out.println("Time " + tot + " Compact time " + compactTime);
+        System.out.println(String.format("Batch size %s , Throughput %s rows/sec", batchSize, (rowsToLoad * 1000L) / Math.max(1, tot)));
+
+        readBack(storeType, ordersTable, rowsToLoad);
+    }
+
+    // Reopened store, so reads are served from disk files and not from write buffers
+    private static void readBack(String storeType, TableInfo<Order> ordersTable, int rows) {
+        KeyValueStore store = KeyValueFactory.create(location(storeType), false);
+        SSTable<Order> orders = store.createTable(ordersTable);
+
+        long startTime = System.currentTimeMillis();
+        long[] count = {0};
+        orders.scan(row -> count[0]++, Integer.MAX_VALUE);
+        long scanTime = System.currentTimeMillis() - startTime;
+        System.out.println(String.format("Scan rows %s , Time %s ms", count[0], scanTime));
+
+        store.close();
+    }
 
+    private static String location(String storeType) {
+        switch (storeType) {
+            case "rocks":
+                return "rocks:" + Paths.get(tmpFile.getAbsolutePath(), "rocks");
+            case "lsm":
+                return "lsm:" + Paths.get(tmpFile.getAbsolutePath(), "lsm");
+            default:
+                return "mv:" + Paths.get(tmpFile.getAbsolutePath(), "h2db", "mvstore");
+        }
     }
 
     private static Map<String, Function<Order, Object>> cols() {
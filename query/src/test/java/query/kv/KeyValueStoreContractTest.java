@@ -1,15 +1,21 @@
 package query.kv;
 
+import com.google.gson.Gson;
 import org.junit.jupiter.api.Test;
+import query.kv.filter.FilterConfig;
 import query.tables.Order;
 
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.function.Function;
 
 import static java.util.Arrays.asList;
 import static java.util.Collections.sort;
 import static org.junit.jupiter.api.Assertions.assertAll;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 public abstract class KeyValueStoreContractTest {
 
@@ -70,6 +76,343 @@ public abstract class KeyValueStoreContractTest {
     }
 
 
+    @Test
+    public void insert_data_in_batch() {
+
+        Map<String, Function<Order, String>> indexes = new HashMap<String, Function<Order, String>>() {{
+            put("status", Order::status);
+        }};
+
+        SSTable<Order> orders = db.createTable("orders", Order.class, cols(), indexes);
+
+        List<Order> expectedRows = asList(
+                Order.of(100, "1", 20200901, "SHIPPED", 107.6d, 5),
+                Order.of(101, "2", 20200902, "SHIPPED", 967.6d, 15),
+                Order.of(102, "1", 20200903, "SHIPPED", 767.6d, 25)
+        );
+
+        orders.insertAll(expectedRows, 2);
+
+        assertAll(
+                () -> {
+                    List<Order> returnRows = new ArrayList<>();
+                    orders.scan(returnRows::add, 5);
+                    assertResult(expectedRows, returnRows);
+                },
+                () -> {
+                    List<Order> returnRows = new ArrayList<>();
+                    orders.search("status", "SHIPPED", returnRows, 5);
+                    assertResult(expectedRows, returnRows);
+                }
+        );
+    }
+
+    @Test
+    public void insert_in_batch_rejects_batch_size_below_one() {
+
+        SSTable<Order> orders = db.createTable("orders", Order.class, cols());
+        List<Order> rows = asList(Order.of(100, "1", 20200901, "SHIPPED", 107.6d, 5));
+
+        assertThrows(IllegalArgumentException.class, () -> orders.insertAll(rows, 0));
+        assertThrows(IllegalArgumentException.class, () -> orders.insertAll(rows, -1));
+
+        List<Order> returnRows = new ArrayList<>();
+        orders.scan(returnRows::add, 5);
+        assertEquals(0, returnRows.size());
+    }
+
+    @Test
+    public void parallel_scan() {
+
+        SSTable<Order> orders = db.createTable(new TableInfo<>("orders", cols(), Collections.emptyMap(), toJson, fromJson, o -> String.valueOf(o.orderId())));
+
+        List<Order> expectedRows = new ArrayList<>();
+        for (int id = 0; id < 100; id++) {
+            expectedRows.add(Order.of(id, String.valueOf(id % 10), 20200901, "SHIPPED", 107.6d, 5));
+        }
+        orders.insertAll(expectedRows);
+
+        assertAll(
+                () -> {
+                    List<Order> returnRows = Collections.synchronizedList(new ArrayList<>());
+                    orders.parallelScan(4, returnRows::add);
+                    assertResult(expectedRows, returnRows);
+                },
+                () -> {
+                    List<Order> returnRows = Collections.synchronizedList(new ArrayList<>());
+                    orders.parallelScan(4, returnRows::add, 10);
+                    assertEquals(10, returnRows.size());
+                    assertEquals(10, new HashSet<>(returnRows).size());
+                }
+        );
+    }
+
+    @Test
+    public void concurrent_insert_with_auto_pk() throws Exception {
+
+        SSTable<Order> orders = db.createTable("orders", Order.class, cols());
+
+        int writers = 8;
+        int rowsPerWriter = 1500;
+        ExecutorService executor = Executors.newFixedThreadPool(writers);
+        List<Future<?>> results = new ArrayList<>();
+        for (int writer = 0; writer < writers; writer++) {
+            int customer = writer;
+            results.add(executor.submit(() -> {
+                for (int id = 0; id < rowsPerWriter; id++) {
+                    orders.insert(Order.of(id, String.valueOf(customer), 20200901, "SHIPPED", 107.6d, 5));
+                }
+            }));
+        }
+        for (Future<?> result : results) {
+            result.get();
+        }
+        executor.shutdown();
+
+        List<Order> returnRows = new ArrayList<>();
+        orders.scan(returnRows::add, Integer.MAX_VALUE);
+
+        assertEquals(writers * rowsPerWriter, returnRows.size());
+    }
+
+    @Test
+    public void scan_cursor_continues_from_token() {
+
+        SSTable<Order> orders = db.createTable(new TableInfo<>("orders", cols(), Collections.emptyMap(), toJson, fromJson, o -> String.valueOf(o.orderId())));
+        List<Order> expectedRows = new ArrayList<>();
+        for (int id = 100; id < 125; id++) {
+            expectedRows.add(Order.of(id, "1", 20200901, "SHIPPED", 107.6d, 5));
+        }
+        orders.insertAll(expectedRows);
+
+        List<Order> returnRows = new ArrayList<>();
+        String token;
+        try (Cursor<Order> cursor = orders.scanCursor()) {
+            assertEquals(null, cursor.continuationToken());
+            returnRows.addAll(cursor.next(10));
+            token = cursor.continuationToken();
+        }
+
+        try (Cursor<Order> cursor = orders.scanCursor()) {
+            cursor.seek(token);
+            returnRows.addAll(cursor.next(100));
+            assertAll(
+                    () -> assertEquals(false, cursor.hasNext()),
+                    () -> assertEquals(0, cursor.next(10).size())
+            );
+        }
+
+        assertResult(expectedRows, returnRows);
+    }
+
+    @Test
+    public void search_cursor_pages_index_matches() {
+
+        SSTable<Order> orders = db.createTable(new TableInfo<>("orders", cols(), customerIndex(), toJson, fromJson, o -> String.valueOf(o.orderId())));
+        List<Order> expectedRows = new ArrayList<>();
+        for (int id = 100; id < 130; id++) {
+            Order row = Order.of(id, String.valueOf(id % 3), 20200901, "SHIPPED", 107.6d, 5);
+            orders.insert(row);
+            if (id % 3 == 1) {
+                expectedRows.add(row);
+            }
+        }
+
+        List<Order> returnRows = new ArrayList<>();
+        String token = null;
+        int pages = 0;
+        do {
+            try (Cursor<Order> cursor = orders.searchCursor("customerId", "1")) {
+                if (token != null) {
+                    cursor.seek(token);
+                }
+                List<Order> page = cursor.next(3);
+                returnRows.addAll(page);
+                token = page.isEmpty() ? null : cursor.continuationToken();
+                pages++;
+            }
+        } while (token != null);
+
+        int pageCount = pages;
+        assertAll(
+                () -> assertResult(expectedRows, returnRows),
+                () -> assertEquals(5, pageCount)
+        );
+    }
+
+    @Test
+    public void cursor_rejects_token_of_other_query() {
+
+        SSTable<Order> orders = db.createTable(new TableInfo<>("orders", cols(), customerIndex(), toJson, fromJson, o -> String.valueOf(o.orderId())));
+        orders.insert(Order.of(100, "1", 20200901, "SHIPPED", 107.6d, 5));
+        orders.insert(Order.of(101, "2", 20200901, "SHIPPED", 107.6d, 5));
+
+        String token;
+        try (Cursor<Order> cursor = orders.searchCursor("customerId", "1")) {
+            cursor.next();
+            token = cursor.continuationToken();
+        }
+
+        try (Cursor<Order> cursor = orders.scanCursor()) {
+            assertThrows(IllegalArgumentException.class, () -> cursor.seek(token));
+        }
+    }
+
+    @Test
+    public void snapshot_does_not_see_later_writes() {
+
+        SSTable<Order> orders = db.createTable(new TableInfo<>("orders", cols(), customerIndex(), toJson, fromJson, o -> String.valueOf(o.orderId())));
+        List<Order> expectedRows = new ArrayList<>();
+        for (int id = 100; id < 110; id++) {
+            expectedRows.add(Order.of(id, "1", 20200901, "SHIPPED", 107.6d, 5));
+        }
+        orders.insertAll(expectedRows);
+
+        try (ReadView view = db.snapshot()) {
+            orders.update(Order.of(100, "2", 20200901, "CANCEL", 107.6d, 5));
+            orders.delete("101");
+            orders.insert(Order.of(200, "1", 20200901, "SHIPPED", 107.6d, 5));
+
+            SSTable<Order> snapshot = orders.at(view);
+            assertAll(
+                    () -> assertEquals(expectedRows.get(0), snapshot.get("100")),
+                    () -> assertEquals(expectedRows.get(1), snapshot.get("101")),
+                    () -> assertEquals(null, snapshot.get("200")),
+                    () -> {
+                        List<Order> returnRows = new ArrayList<>();
+                        snapshot.scan(returnRows::add, Integer.MAX_VALUE);
+                        assertResult(expectedRows, returnRows);
+                    },
+                    () -> {
+                        List<Order> returnRows = Collections.synchronizedList(new ArrayList<>());
+                        snapshot.parallelScan(4, returnRows::add);
+                        assertResult(expectedRows, returnRows);
+                    },
+                    () -> {
+                        List<Order> returnRows = new ArrayList<>();
+                        snapshot.search("customerId", "1", returnRows, Integer.MAX_VALUE);
+                        assertResult(expectedRows, returnRows);
+                    },
+                    () -> {
+                        List<Order> returnRows = new ArrayList<>();
+                        snapshot.search("customerId", "2", returnRows, Integer.MAX_VALUE);
+                        assertEquals(0, returnRows.size());
+                    },
+                    () -> {
+                        try (Cursor<Order> cursor = snapshot.searchCursor("customerId", "1")) {
+                            assertResult(expectedRows, cursor.next(100));
+                        }
+                    },
+                    () -> assertEquals("CANCEL", orders.get("100").status())
+            );
+        }
+    }
+
+    @Test
+    public void snapshot_sees_row_and_index_of_same_write() throws Exception {
+
+        SSTable<Order> orders = db.createTable(new TableInfo<>("orders", cols(), customerIndex(), toJson, fromJson, o -> String.valueOf(o.orderId())));
+        int rows = 50;
+        for (int id = 0; id < rows; id++) {
+            orders.insert(Order.of(id, "A", 20200901, "SHIPPED", 107.6d, 5));
+        }
+
+        // Writer moves rows between customers, every snapshot must find each row under exactly one customer
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<?> writer = executor.submit(() -> {
+            for (int round = 0; round < 20; round++) {
+                for (int id = 0; id < rows; id++) {
+                    orders.update(Order.of(id, round % 2 == 0 ? "B" : "A", 20200901, "SHIPPED", 107.6d, 5));
+                }
+            }
+        });
+
+        do {
+            try (ReadView view = db.snapshot()) {
+                SSTable<Order> snapshot = orders.at(view);
+                List<Order> customerA = new ArrayList<>();
+                List<Order> customerB = new ArrayList<>();
+                snapshot.search("customerId", "A", customerA, Integer.MAX_VALUE);
+                snapshot.search("customerId", "B", customerB, Integer.MAX_VALUE);
+                List<Order> scanned = new ArrayList<>();
+                snapshot.scan(scanned::add, Integer.MAX_VALUE);
+
+                List<Order> indexed = new ArrayList<>(customerA);
+                indexed.addAll(customerB);
+                assertEquals(rows, indexed.size());
+                assertResult(scanned, indexed);
+            }
+        } while (!writer.isDone());
+        writer.get();
+        executor.shutdown();
+    }
+
+    @Test
+    public void table_read_through_snapshot_is_read_only() {
+
+        SSTable<Order> orders = db.createTable(new TableInfo<>("orders", cols(), customerIndex(), toJson, fromJson, o -> String.valueOf(o.orderId())));
+        orders.insert(Order.of(100, "1", 20200901, "SHIPPED", 107.6d, 5));
+
+        try (ReadView view = db.snapshot()) {
+            SSTable<Order> snapshot = orders.at(view);
+            assertThrows(UnsupportedOperationException.class, () -> snapshot.insert(Order.of(101, "1", 20200901, "SHIPPED", 107.6d, 5)));
+        }
+    }
+
+    @Test
+    public void pk_filter_does_not_hide_rows() {
+
+        TableInfo<Order> tableInfo = new TableInfo<>("orders", cols(), customerIndex(), toJson, fromJson, o -> String.valueOf(o.orderId()))
+                .pkFilter(FilterConfig.bloom(100));
+        SSTable<Order> orders = db.createTable(tableInfo);
+
+        Order o1 = Order.of(100, "1", 20200901, "SHIPPED", 107.6d, 5);
+        Order o2 = Order.of(101, "2", 20200902, "SHIPPED", 967.6d, 15);
+        orders.insert(o1);
+        orders.insertAll(asList(o2, Order.of(102, "1", 20200903, "CANCEL", 767.6d, 25)));
+        orders.delete("102");
+
+        assertAll(
+                () -> assertEquals(o1, orders.get("100")),
+                () -> assertEquals(o2, orders.get("101")),
+                () -> assertEquals(null, orders.get("102")),
+                () -> {
+                    for (int id = 1000; id < 1100; id++) {
+                        assertEquals(null, orders.get(String.valueOf(id)));
+                    }
+                }
+        );
+    }
+
+    @Test
+    public void insert_over_existing_pk_removes_index_entries_of_old_row() {
+
+        TableInfo<Order> tableInfo = new TableInfo<>("orders", cols(), customerIndex(), toJson, fromJson, o -> String.valueOf(o.orderId()))
+                .exactStats(true);
+        SSTable<Order> orders = db.createTable(tableInfo);
+
+        Order o1 = Order.of(100, "2", 20200901, "SHIPPED", 107.6d, 5);
+        orders.insert(Order.of(100, "1", 20200901, "SHIPPED", 107.6d, 5));
+        orders.insert(o1);
+        // Rows of same PK in one batch
+        orders.insertAll(asList(Order.of(101, "1", 20200901, "SHIPPED", 107.6d, 5), Order.of(101, "3", 20200901, "SHIPPED", 107.6d, 5)));
+
+        assertAll(
+                () -> assertEquals(o1, orders.get("100")),
+                () -> {
+                    List<Order> returnRows = new ArrayList<>();
+                    orders.search("customerId", "1", returnRows, 5);
+                    assertEquals(asList(), returnRows);
+                },
+                () -> {
+                    List<Order> returnRows = new ArrayList<>();
+                    orders.search("customerId", "2", returnRows, 5);
+                    assertEquals(asList(o1), returnRows);
+                },
+                () -> assertEquals(2, orders.tableStats().rows())
+        );
+    }
+
     @Test
     public void table_with_single_result_index() {
 
@@ -237,6 +580,63 @@ public abstract class KeyValueStoreContractTest {
         assertResult(Arrays.asList(o1, o2), returnRows);
     }
 
+    @Test
+    public void covering_index_search() {
+
+        Map<String, Function<Order, String>> indexes = new HashMap<String, Function<Order, String>>() {{
+            put("status", Order::status);
+            put("customerId", Order::customerId);
+        }};
+
+        Map<String, Function<Order, Object>> cols = new HashMap<String, Function<Order, Object>>() {{
+            put("orderid", Order::orderId);
+            put("customerid", Order::customerId);
+            put("status", Order::status);
+        }};
+
+        TableInfo<Order> tableInfo = new TableInfo<>("orders", cols, indexes, toJson, fromJson, o -> String.valueOf(o.orderId()))
+                .coveringIndex("status")
+                .coveringIndex("customerId", "orderid", "status");
+
+        SSTable<Order> orders = db.createTable(tableInfo);
+
+        Order o1 = Order.of(100, "1", 20200901, "SHIPPED", 107.6d, 5);
+        Order o2 = Order.of(101, "2", 20200902, "SHIPPED", 967.6d, 15);
+        Order o3 = Order.of(102, "1", 20200903, "CANCEL", 767.6d, 25);
+
+        orders.insertAll(asList(o1, o2, o3));
+
+        assertAll(
+                () -> {
+                    List<Order> returnRows = new ArrayList<>();
+                    orders.search("status", "SHIPPED", returnRows, 5);
+                    assertResult(asList(o1, o2), returnRows);
+                },
+                () -> {
+                    List<Order> returnRows = new ArrayList<>();
+                    orders.search("customerId", "1", returnRows, 5);
+                    assertResult(asList(o1, o3), returnRows);
+                },
+                () -> {
+                    List<Object> returnRows = new ArrayList<>();
+                    orders.searchCovered("customerId", "1", returnRows::add, 5);
+
+                    assertEquals(2, returnRows.size());
+                    assertEquals(100L, orders.columnValue("orderId", returnRows.get(0)));
+                    assertEquals("SHIPPED", orders.columnValue("status", returnRows.get(0)));
+                    assertEquals(102L, orders.columnValue("orderId", returnRows.get(1)));
+                    assertEquals("CANCEL", orders.columnValue("status", returnRows.get(1)));
+                },
+                () -> {
+                    List<Object> returnRows = new ArrayList<>();
+                    orders.searchCoveredWhile("customerId", "1", row -> returnRows.add(row) && false);
+
+                    assertEquals(1, returnRows.size());
+                    assertEquals(100L, orders.columnValue("orderId", returnRows.get(0)));
+                }
+        );
+    }
+
     private void assertResult(List<Order> expectedRows, List<Order> actualRows) {
         sort(expectedRows, Comparator.comparing(Order::orderId));
         sort(actualRows, Comparator.comparing(Order::orderId));
@@ -244,7 +644,16 @@ public abstract class KeyValueStoreContractTest {
     }
 
 
-    private Map<String, Function<Order, Object>> cols() {
+    private Map<String, Function<Order, String>> customerIndex() {
+        Map<String, Function<Order, String>> indexes = new HashMap<>();
+        indexes.put("customerId", Order::customerId);
+        return indexes;
+    }
+
+    protected Function<Order, byte[]> toJson = row -> new Gson().toJson(row).getBytes();
+    protected Function<byte[], Order> fromJson = rawBytes -> new Gson().fromJson(new String(rawBytes), Order.class);
+
+    protected Map<String, Function<Order, Object>> cols() {
         Map<String, Function<Order, Object>> cols = new HashMap<String, Function<Order, Object>>() {{
             put("orderId", Order::orderId);
             put("customerId", Order::customerId);
@@ -4,16 +4,20 @@ import com.google.gson.Gson;
 import query.kv.KeyValueStore;
 import query.kv.SSTable;
 import query.kv.TableInfo;
+import query.kv.stats.TableStats;
 import query.tables.Order;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.function.Function;
 
 import static org.junit.jupiter.api.Assertions.assertAll;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 
 public abstract class KeyValueStoreUpdateContractTest {
 
@@ -76,6 +80,94 @@ public abstract class KeyValueStoreUpdateContractTest {
 
     }
 
+    @Test
+    public void update_removes_stale_index_entry() {
+
+        TableInfo<Order> tableInfo = new TableInfo<>("orders", cols(), indexes(), toJson, fromJson, o -> String.valueOf(o.orderId()));
+
+        SSTable<Order> orders = db.createTable(tableInfo);
+
+        orders.insert(Order.of(100, "1", 20200901, "SHIPPED", 107.6d, 5));
+        orders.insert(Order.of(101, "2", 20200901, "SHIPPED", 967.6d, 15));
+
+        for (int i = 0; i < 10; i++) {
+            orders.update(Order.of(100, "1", 20200901, i % 2 == 0 ? "CANCEL" : "PENDING", 107.6d, 5));
+        }
+
+        assertAll(
+                () -> {
+                    List<Order> rows = new ArrayList<>();
+                    orders.search("status", "", rows, 100);
+                    assertEquals(2, rows.size());
+                },
+                () -> {
+                    List<Order> rows = new ArrayList<>();
+                    orders.search("status", "CANCEL", rows, 100);
+                    assertEquals(0, rows.size());
+                },
+                () -> {
+                    List<Order> rows = new ArrayList<>();
+                    orders.search("status", "PENDING", rows, 100);
+                    assertEquals(1, rows.size());
+                    assertEquals("PENDING", rows.get(0).status());
+                }
+        );
+    }
+
+    @Test
+    public void delete_key() {
+
+        TableInfo<Order> tableInfo = new TableInfo<>("orders", cols(), indexes(), toJson, fromJson, o -> String.valueOf(o.orderId()));
+
+        SSTable<Order> orders = db.createTable(tableInfo);
+
+        orders.insert(Order.of(100, "1", 20200901, "SHIPPED", 107.6d, 5));
+        orders.insert(Order.of(101, "2", 20200901, "SHIPPED", 967.6d, 15));
+
+        orders.delete("100");
+        orders.delete("999");
+
+        assertAll(
+                () -> assertNull(orders.get("100")),
+                () -> assertEquals(101, orders.get("101").orderId()),
+                () -> {
+                    List<Order> rows = new ArrayList<>();
+                    orders.search("status", "SHIPPED", rows, 100);
+                    assertEquals(1, rows.size());
+                    assertEquals(101, rows.get(0).orderId());
+                }
+        );
+    }
+
+    @Test
+    public void table_stats_follow_writes() {
+
+        TableInfo<Order> tableInfo = new TableInfo<>("orders", cols(), indexes(), toJson, fromJson, o -> String.valueOf(o.orderId()));
+
+        SSTable<Order> orders = db.createTable(tableInfo);
+
+        orders.insert(Order.of(100, "1", 20200901, "SHIPPED", 107.6d, 5));
+        orders.insert(Order.of(101, "2", 20200901, "SHIPPED", 967.6d, 15));
+        orders.insert(Order.of(102, "3", 20200901, "SHIPPED", 967.6d, 15));
+        orders.update(Order.of(101, "2", 20200901, "CANCEL", 967.6d, 15));
+        orders.delete("100");
+
+        TableStats<Order> stats = orders.tableStats();
+        assertAll(
+                () -> assertEquals(2, stats.rows()),
+                () -> assertEquals(1, stats.index("status").estimate("SHIPPED")),
+                () -> assertEquals(1, stats.index("status").estimate("CANCEL")),
+                () -> assertEquals(2, stats.index("status").entries())
+        );
+    }
+
+    private Map<String, Function<Order, String>> indexes() {
+        Map<String, Function<Order, String>> indexes = new HashMap<String, Function<Order, String>>() {{
+            put("status", Order::status);
+        }};
+        return indexes;
+    }
+
     private Map<String, Function<Order, Object>> cols() {
         Map<String, Function<Order, Object>> cols = new HashMap<String, Function<Order, Object>>() {{
             put("orderId", Order::orderId);
@@ -0,0 +1,78 @@
+package query.kv;
+
+import query.kv.codec.JsonRowCodec;
+import query.tables.Order;
+
+import java.io.File;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/*
+    Full table scan time, single iterator vs parallelScan. Store is picked using -Dstore=memory|mv|rocks and ranges using -Dparallelism
+ */
+public class ParallelScanApp {
+
+    static final int ROWS = 1_000_000;
+    static File tmpFile = new File(System.getProperty("java.io.tmpdir"));
+
+    public static void main(String[] args) {
+        String type = System.getProperty("store", "rocks");
+        KeyValueStore store = KeyValueFactory.create(location(type), true);
+        SSTable<Order> orders = store.createTable(new TableInfo<>("orders", cols(), new HashMap<>(), new JsonRowCodec<>(Order.class), o -> String.valueOf(o.orderId())));
+
+        List<Order> batch = new ArrayList<>();
+        for (int id = 0; id < ROWS; id++) {
+            batch.add(Order.of(id, String.valueOf(id % 100_000), 20200901, "SHIPPED", 107.6d, 5));
+            if (batch.size() == SSTable.DEFAULT_BATCH_SIZE) {
+                orders.insertAll(batch);
+                batch.clear();
+            }
+        }
+        orders.insertAll(batch);
+
+        int parallelism = Integer.getInteger("parallelism", Runtime.getRuntime().availableProcessors());
+        for (int round = 0; round < 5; round++) {
+            LongAdder rows = new LongAdder();
+            long start = System.nanoTime();
+            orders.scan(row -> rows.increment(), Integer.MAX_VALUE);
+            long scanTime = System.nanoTime() - start;
+
+            LongAdder parallelRows = new LongAdder();
+            start = System.nanoTime();
+            orders.parallelScan(parallelism, row -> parallelRows.increment());
+            long parallelTime = System.nanoTime() - start;
+
+            System.out.println(String.format("Store %s , scan %s rows in %s ms , parallelScan(%s) %s rows in %s ms",
+                    type, rows.sum(), scanTime / 1_000_000, parallelism, parallelRows.sum(), parallelTime / 1_000_000));
+        }
+        store.close();
+    }
+
+    private static String location(String type) {
+        switch (type) {
+            case "memory":
+                return "memory:";
+            case "mv":
+                return "mv:" + Paths.get(tmpFile.getAbsolutePath(), "h2db", "mvstore");
+            default:
+                return "rocks:" + Paths.get(tmpFile.getAbsolutePath(), "rocks");
+        }
+    }
+
+    private static Map<String, Function<Order, Object>> cols() {
+        Map<String, Function<Order, Object>> cols = new HashMap<String, Function<Order, Object>>() {{
+            put("orderId", Order::orderId);
+            put("customerId", Order::customerId);
+            put("orderDate", Order::orderDate);
+            put("status", Order::status);
+            put("amount", Order::amount);
+            put("noOfItem", Order::noOfItems);
+        }};
+        return cols;
+    }
+}
@@ -0,0 +1,74 @@
+package query.kv;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SequencesTest {
+
+    @Test
+    public void values_are_reserved_in_blocks() {
+        Map<String, Long> store = new ConcurrentHashMap<>();
+        AtomicInteger writes = new AtomicInteger();
+        Sequences sequences = new Sequences(table -> store.getOrDefault(table, 0L), (table, value) -> {
+            writes.incrementAndGet();
+            store.put(table, value);
+        });
+
+        Sequences.Sequence orders = sequences.of("orders");
+        for (int i = 0; i < Sequences.BLOCK_SIZE + 1; i++) {
+            orders.next();
+        }
+
+        assertAll(
+                () -> assertEquals(2, writes.get()),
+                () -> assertEquals(2L * Sequences.BLOCK_SIZE, store.get("orders")),
+                () -> assertEquals(1, sequences.of("customers").next())
+        );
+    }
+
+    @Test
+    public void restart_continues_after_reserved_value() {
+        Map<String, Long> store = new ConcurrentHashMap<>();
+        Sequences sequences = new Sequences(table -> store.getOrDefault(table, 0L), store::put);
+        long last = 0;
+        for (int i = 0; i < 10; i++) {
+            last = sequences.of("orders").next();
+        }
+
+        Sequences restarted = new Sequences(table -> store.getOrDefault(table, 0L), store::put);
+
+        assertTrue(restarted.of("orders").next() > last);
+    }
+
+    @Test
+    public void concurrent_callers_get_unique_values() throws Exception {
+        Map<String, Long> store = new ConcurrentHashMap<>();
+        Sequences.Sequence sequence = new Sequences(table -> store.getOrDefault(table, 0L), store::put).of("orders");
+        Set<Long> values = ConcurrentHashMap.newKeySet();
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int writer = 0; writer < 8; writer++) {
+            executor.execute(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    values.add(sequence.next());
+                }
+            });
+        }
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+
+        assertAll(
+                () -> assertEquals(80_000, values.size()),
+                () -> assertTrue(store.get("orders") >= 80_000)
+        );
+    }
+}
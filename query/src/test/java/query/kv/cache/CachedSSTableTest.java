@@ -0,0 +1,118 @@
+package query.kv.cache;
+
+import com.google.gson.Gson;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import query.kv.ReadView;
+import query.kv.SSTable;
+import query.kv.TableInfo;
+import query.kv.persistent.rocks.RocksStore;
+import query.tables.Order;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CachedSSTableTest {
+
+    RocksStore db;
+
+    @BeforeEach
+    public void createDB() {
+        File tmpdir = new File(System.getProperty("java.io.tmpdir"), "rocks-cache");
+        tmpdir.mkdirs();
+        for (File f : tmpdir.listFiles()) {
+            f.delete();
+        }
+        this.db = new RocksStore(tmpdir);
+    }
+
+    @AfterEach
+    public void cleanDB() {
+        db.close();
+    }
+
+    @Test
+    public void table_is_wrapped_when_row_cache_is_configured() {
+        SSTable<Order> orders = db.createTable(tableInfo().rowCache(CacheConfig.entries(100)));
+
+        assertAll(
+                () -> assertTrue(orders instanceof CachedSSTable),
+                () -> assertSame(orders, db.table("orders"))
+        );
+    }
+
+    @Test
+    public void get_is_served_from_cache() {
+        CachedSSTable<Order> orders = (CachedSSTable<Order>) db.createTable(tableInfo().rowCache(CacheConfig.entries(100)));
+        orders.insert(Order.of(100, "1", 20200901, "SHIPPED", 107.6d, 5));
+
+        Order first = orders.get("100");
+        Order second = orders.get("100");
+
+        assertAll(
+                () -> assertSame(first, second),
+                () -> assertEquals(1, orders.stats().missCount()),
+                () -> assertEquals(1, orders.stats().hitCount()),
+                () -> assertNull(orders.get("101"))
+        );
+    }
+
+    @Test
+    public void reads_through_view_bypass_cache() {
+        CachedSSTable<Order> orders = (CachedSSTable<Order>) db.createTable(tableInfo().rowCache(CacheConfig.entries(100)));
+        orders.insert(Order.of(100, "1", 20200901, "SHIPPED", 107.6d, 5));
+
+        try (ReadView view = db.snapshot()) {
+            orders.update(Order.of(100, "1", 20200901, "CANCEL", 107.6d, 5));
+            orders.get("100");
+
+            assertAll(
+                    () -> assertEquals("SHIPPED", orders.at(view).get("100").status()),
+                    () -> assertEquals(1, orders.stats().missCount()),
+                    () -> assertEquals(0, orders.stats().hitCount())
+            );
+        }
+    }
+
+    @Test
+    public void update_and_delete_invalidate_cached_row() {
+        CachedSSTable<Order> orders = (CachedSSTable<Order>) db.createTable(tableInfo().rowCache(CacheConfig.entries(100)));
+        orders.insert(Order.of(100, "1", 20200901, "SHIPPED", 107.6d, 5));
+        orders.insert(Order.of(101, "1", 20200901, "SHIPPED", 107.6d, 5));
+        orders.get("100");
+        orders.get("101");
+
+        orders.update(Order.of(100, "1", 20200901, "CANCEL", 107.6d, 5));
+        orders.delete("101");
+
+        List<Order> cancelled = new ArrayList<>();
+        orders.search("status", "CANCEL", cancelled, 10);
+
+        assertAll(
+                () -> assertEquals("CANCEL", orders.get("100").status()),
+                () -> assertNull(orders.get("101")),
+                () -> assertEquals(1, cancelled.size())
+        );
+    }
+
+    private TableInfo<Order> tableInfo() {
+        Map<String, Function<Order, String>> indexes = new HashMap<String, Function<Order, String>>() {{
+            put("status", Order::status);
+        }};
+        Map<String, Function<Order, Object>> cols = new HashMap<String, Function<Order, Object>>() {{
+            put("orderId", Order::orderId);
+            put("status", Order::status);
+        }};
+        return new TableInfo<>("orders", cols, indexes,
+                row -> new Gson().toJson(row).getBytes(),
+                rawBytes -> new Gson().fromJson(new String(rawBytes), Order.class),
+                o -> String.valueOf(o.orderId()));
+    }
+}
@@ -0,0 +1,104 @@
+package query.kv.cache;
+
+import org.HdrHistogram.Histogram;
+import query.kv.KeyValueFactory;
+import query.kv.KeyValueStore;
+import query.kv.SSTable;
+import query.kv.TableInfo;
+import query.kv.codec.JsonRowCodec;
+import query.tables.Order;
+
+import java.io.File;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Function;
+
+/*
+    PK lookup latency on rocks with skewed ( zipf like ) keys, without cache and with each cache policy.
+    Cache holds 5% of rows, -Dskew changes how hot the popular keys are.
+    Lookups are SSTable.get of table, SQL reads through snapshot and is not served from cache.
+ */
+public class RowCacheApp {
+
+    static final int ROWS = 200_000;
+    static final int LOOKUPS = 500_000;
+    static File tmpFile = new File(System.getProperty("java.io.tmpdir"));
+
+    public static void main(String[] args) {
+        double skew = Double.parseDouble(System.getProperty("skew", "0.9"));
+        int[] keys = zipfKeys(skew);
+
+        String location = "rocks:" + Paths.get(tmpFile.getAbsolutePath(), "rocks-row-cache");
+        KeyValueStore store = KeyValueFactory.create(location, true);
+        SSTable<Order> orders = store.createTable(tableInfo());
+        List<Order> batch = new ArrayList<>();
+        for (int id = 0; id < ROWS; id++) {
+            batch.add(Order.of(id, String.valueOf(id % 100_000), 20200901, "SHIPPED", 107.6d, 5));
+            if (batch.size() == SSTable.DEFAULT_BATCH_SIZE) {
+                orders.insertAll(batch);
+                batch.clear();
+            }
+        }
+        orders.insertAll(batch);
+        store.close();
+
+        measure(location, null, keys);
+        measure(location, CacheConfig.entries(ROWS / 20).policy(CacheConfig.Policy.SEGMENTED_LRU), keys);
+        measure(location, CacheConfig.entries(ROWS / 20).policy(CacheConfig.Policy.TINY_LFU), keys);
+        measure(location, CacheConfig.bytes(ROWS / 20 * 200L), keys);
+    }
+
+    private static void measure(String location, CacheConfig config, int[] keys) {
+        KeyValueStore store = KeyValueFactory.create(location, false);
+        TableInfo<Order> tableInfo = tableInfo();
+        if (config != null) {
+            tableInfo.rowCache(config);
+        }
+        SSTable<Order> orders = store.createTable(tableInfo);
+
+        Histogram histogram = new Histogram(2);
+        long start = System.nanoTime();
+        for (int key : keys) {
+            long lookupStart = System.nanoTime();
+            orders.get(String.valueOf(key));
+            histogram.recordValue(System.nanoTime() - lookupStart);
+        }
+        long total = System.nanoTime() - start;
+
+        String stats = orders instanceof CachedSSTable ? ((CachedSSTable<Order>) orders).stats().toString() : "no cache";
+        System.out.println(String.format("%s , Lookups %s in %s ms , Latency (ns) p50 %s p99 %s , %s",
+                config, keys.length, total / 1_000_000, histogram.getValueAtPercentile(50), histogram.getValueAtPercentile(99), stats));
+        store.close();
+    }
+
+    // Key rank is picked with probability 1 / rank^skew
+    private static int[] zipfKeys(double skew) {
+        double[] cumulative = new double[ROWS];
+        double sum = 0;
+        for (int rank = 0; rank < ROWS; rank++) {
+            sum += 1 / Math.pow(rank + 1, skew);
+            cumulative[rank] = sum;
+        }
+        Random random = new Random(42);
+        int[] keys = new int[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; i++) {
+            int rank = Arrays.binarySearch(cumulative, random.nextDouble() * sum);
+            keys[i] = rank < 0 ? -rank - 1 : rank;
+        }
+        return keys;
+    }
+
+    private static TableInfo<Order> tableInfo() {
+        Map<String, Function<Order, Object>> cols = new HashMap<String, Function<Order, Object>>() {{
+            put("orderId", Order::orderId);
+            put("customerId", Order::customerId);
+            put("status", Order::status);
+        }};
+        return new TableInfo<>("orders", cols, new HashMap<>(), new JsonRowCodec<>(Order.class), o -> String.valueOf(o.orderId()));
+    }
+}
@@ -0,0 +1,101 @@
+package query.kv.cache;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RowCacheTest {
+
+    @Test
+    public void evicts_when_entry_bound_is_reached() {
+        RowCache<String> cache = new RowCache<>(CacheConfig.entries(10).policy(CacheConfig.Policy.SEGMENTED_LRU), row -> 1);
+        for (int i = 0; i < 25; i++) {
+            put(cache, "k" + i, "v" + i);
+        }
+
+        assertAll(
+                () -> assertEquals(10, cache.size()),
+                () -> assertEquals(15, cache.stats().evictionCount()),
+                () -> assertNull(cache.get("k0")),
+                () -> assertEquals("v24", cache.get("k24"))
+        );
+    }
+
+    @Test
+    public void rows_read_again_survive_one_time_rows() {
+        RowCache<String> cache = new RowCache<>(CacheConfig.entries(10).policy(CacheConfig.Policy.SEGMENTED_LRU), row -> 1);
+        put(cache, "hot", "v");
+        cache.get("hot");
+
+        for (int i = 0; i < 100; i++) {
+            put(cache, "cold" + i, "v");
+        }
+
+        assertEquals("v", cache.get("hot"));
+    }
+
+    @Test
+    public void tiny_lfu_does_not_admit_rows_read_less_than_victim() {
+        RowCache<String> cache = new RowCache<>(CacheConfig.entries(10), row -> 1);
+        for (int i = 0; i < 10; i++) {
+            String key = "hot" + i;
+            for (int read = 0; read < 5; read++) {
+                cache.get(key);
+            }
+            put(cache, key, "v");
+        }
+
+        for (int i = 0; i < 100; i++) {
+            String key = "scan" + i;
+            cache.get(key);
+            put(cache, key, "v");
+        }
+
+        assertAll(
+                () -> assertEquals(100, cache.stats().rejectionCount()),
+                () -> assertEquals("v", cache.get("hot0")),
+                () -> assertEquals("v", cache.get("hot9"))
+        );
+    }
+
+    @Test
+    public void row_loaded_before_invalidation_is_not_cached() {
+        RowCache<String> cache = new RowCache<>(CacheConfig.entries(10), row -> 1);
+
+        long generation = cache.generation("k1");
+        cache.invalidate("k1"); // Writer updated row after reader loaded old row
+        cache.put("k1", "old", generation);
+
+        assertAll(
+                () -> assertNull(cache.get("k1")),
+                () -> assertEquals(1, cache.stats().invalidationCount())
+        );
+    }
+
+    @Test
+    public void byte_bound_uses_row_weight() {
+        RowCache<String> cache = new RowCache<>(CacheConfig.bytes(100).policy(CacheConfig.Policy.SEGMENTED_LRU), String::length);
+        put(cache, "k1", repeat(60));
+        put(cache, "k2", repeat(60));
+        put(cache, "k3", repeat(200));
+
+        assertAll(
+                () -> assertEquals(1, cache.size()),
+                () -> assertNull(cache.get("k1")),
+                () -> assertNull(cache.get("k3")),
+                () -> assertNotNull(cache.get("k2"))
+        );
+    }
+
+    private static void put(RowCache<String> cache, String key, String value) {
+        cache.put(key, value, cache.generation(key));
+    }
+
+    private static String repeat(int length) {
+        StringBuilder value = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            value.append('x');
+        }
+        return value.toString();
+    }
+}
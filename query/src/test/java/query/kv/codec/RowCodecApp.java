@@ -0,0 +1,61 @@
+package query.kv.codec;
+
+import query.tables.Order;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/*
+    Bytes per row and encode/decode cost of Order row for each codec.
+ */
+public class RowCodecApp {
+
+    static final int ROWS = 100_000;
+    static final int ROUNDS = 20;
+
+    public static void main(String[] args) {
+        List<Order> rows = new ArrayList<>();
+        for (int id = 0; id < ROWS; id++) {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            rows.add(Order.of(id, String.valueOf(random.nextInt(100_000)), 20200901 + random.nextInt(30), "SHIPPED", random.nextDouble(1000), random.nextInt(50)));
+        }
+
+        measure("json", new JsonRowCodec<>(Order.class), rows);
+        measure("avro", new AvroRowCodec<>(Order.class, RowCodecTest::toOrder), rows);
+        measure("binary", new BinaryRowCodec<>(RowCodecTest.cols(), RowCodecTest::toOrder), rows);
+    }
+
+    private static void measure(String name, RowCodec<Order> codec, List<Order> rows) {
+        byte[][] encoded = new byte[rows.size()][];
+        long bytes = 0;
+        long encodeTime = 0;
+        long decodeTime = 0;
+        long checksum = 0;
+
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (int index = 0; index < rows.size(); index++) {
+                encoded[index] = codec.encode(rows.get(index));
+            }
+            long encodedAt = System.nanoTime();
+            for (byte[] data : encoded) {
+                checksum += codec.decode(data).orderId();
+            }
+            long decodedAt = System.nanoTime();
+
+            if (round >= ROUNDS / 2) { // first half is warmup
+                encodeTime += encodedAt - start;
+                decodeTime += decodedAt - encodedAt;
+            }
+        }
+
+        for (byte[] data : encoded) {
+            bytes += data.length;
+        }
+
+        long measured = (long) rows.size() * (ROUNDS - ROUNDS / 2);
+        System.out.println(String.format("%-6s bytes/row %.1f , encode %s ns/row , decode %s ns/row (checksum %s)",
+                name, (double) bytes / rows.size(), encodeTime / measured, decodeTime / measured, checksum));
+    }
+}
@@ -0,0 +1,76 @@
+package query.kv.codec;
+
+import org.junit.jupiter.api.Test;
+import query.tables.Order;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RowCodecTest {
+
+    final Order order = Order.of(100, "1", 20200901, "SHIPPED", 107.6d, 5);
+
+    @Test
+    public void json_round_trip() {
+        assertRoundTrip(new JsonRowCodec<>(Order.class));
+    }
+
+    @Test
+    public void avro_round_trip() {
+        assertRoundTrip(new AvroRowCodec<>(Order.class, RowCodecTest::toOrder));
+    }
+
+    @Test
+    public void binary_round_trip() {
+        assertRoundTrip(new BinaryRowCodec<>(cols(), RowCodecTest::toOrder));
+    }
+
+    @Test
+    public void binary_rows_are_smaller_than_json() {
+        int json = new JsonRowCodec<>(Order.class).encode(order).length;
+
+        assertAll(
+                () -> assertTrue(new AvroRowCodec<>(Order.class, RowCodecTest::toOrder).encode(order).length < json),
+                () -> assertTrue(new BinaryRowCodec<>(cols(), RowCodecTest::toOrder).encode(order).length < json)
+        );
+    }
+
+    private void assertRoundTrip(RowCodec<Order> codec) {
+        Order decoded = codec.decode(codec.encode(order));
+
+        assertAll(
+                () -> assertEquals(order, decoded),
+                () -> assertEquals(order.orderDate(), decoded.orderDate()),
+                () -> assertEquals(order.status(), decoded.status()),
+                () -> assertEquals(order.amount(), decoded.amount()),
+                () -> assertEquals(order.noOfItems(), decoded.noOfItems())
+        );
+    }
+
+    static Order toOrder(Map<String, Object> values) {
+        return Order.of(
+                ((Number) values.get("orderId")).longValue(),
+                (String) values.get("customerId"),
+                ((Number) values.get("orderDate")).intValue(),
+                (String) values.get("status"),
+                ((Number) values.get("amount")).doubleValue(),
+                ((Number) values.get("noOfItems")).intValue());
+    }
+
+    static Map<String, Function<Order, Object>> cols() {
+        Map<String, Function<Order, Object>> cols = new HashMap<String, Function<Order, Object>>() {{
+            put("orderId", Order::orderId);
+            put("customerId", Order::customerId);
+            put("orderDate", Order::orderDate);
+            put("status", Order::status);
+            put("amount", Order::amount);
+            put("noOfItems", Order::noOfItems);
+        }};
+        return cols;
+    }
+}
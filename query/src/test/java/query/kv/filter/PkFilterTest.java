@@ -0,0 +1,115 @@
+package query.kv.filter;
+
+import com.google.gson.Gson;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import query.kv.KeyValueStore;
+import query.kv.SSTable;
+import query.kv.TableInfo;
+import query.kv.persistent.NavigableSSTable;
+import query.kv.persistent.lsm.LsmStore;
+import query.kv.persistent.rocks.RocksStore;
+import query.tables.Order;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PkFilterTest {
+
+    final File tmpdir = new File(System.getProperty("java.io.tmpdir"), "pk-filter");
+
+    @BeforeEach
+    public void cleanFiles() {
+        tmpdir.mkdirs();
+        for (File f : tmpdir.listFiles()) {
+            f.delete();
+        }
+    }
+
+    @Test
+    public void missing_keys_skip_store_with_few_false_positives() {
+        KeyValueStore db = new RocksStore(tmpdir);
+        NavigableSSTable<Order> orders = (NavigableSSTable<Order>) db.createTable(tableInfo());
+        insert(orders, 0, 5000);
+
+        for (int id = 5000; id < 15000; id++) {
+            assertNull(orders.get(String.valueOf(id)));
+        }
+        PkFilter filter = orders.pkFilter();
+        db.close();
+
+        assertAll(
+                () -> assertEquals(10000, filter.lookups()),
+                () -> assertTrue(filter.falsePositiveRate() < 0.03, "False positive rate " + filter.falsePositiveRate())
+        );
+    }
+
+    @Test
+    public void filter_is_saved_on_close_and_loaded_at_open() {
+        KeyValueStore db = new RocksStore(tmpdir);
+        NavigableSSTable<Order> orders = (NavigableSSTable<Order>) db.createTable(tableInfo());
+        insert(orders, 0, 1000);
+        assertTrue(orders.pkFilter().isRebuilt());
+        db.close();
+
+        db = new RocksStore(tmpdir);
+        NavigableSSTable<Order> reopened = (NavigableSSTable<Order>) db.createTable(tableInfo());
+        try {
+            assertAll(
+                    () -> assertFalse(reopened.pkFilter().isRebuilt()),
+                    () -> assertNotNull(reopened.get("999")),
+                    () -> assertNull(reopened.get("1000"))
+            );
+        } finally {
+            db.close();
+        }
+    }
+
+    @Test
+    public void filter_is_rebuilt_when_store_was_not_closed() {
+        KeyValueStore db = new LsmStore(tmpdir);
+        db.createTable(tableInfo());
+        db.close();
+
+        // Saved filter is removed at open, so filter missing rows written after open is not loaded again
+        KeyValueStore crashed = new LsmStore(tmpdir);
+        insert((NavigableSSTable<Order>) crashed.createTable(tableInfo()), 0, 500);
+
+        KeyValueStore db2 = new LsmStore(tmpdir);
+        NavigableSSTable<Order> orders = (NavigableSSTable<Order>) db2.createTable(tableInfo());
+        try {
+            assertAll(
+                    () -> assertTrue(orders.pkFilter().isRebuilt()),
+                    () -> assertNotNull(orders.get("0")),
+                    () -> assertNotNull(orders.get("499"))
+            );
+        } finally {
+            db2.close();
+        }
+    }
+
+    private static void insert(SSTable<Order> orders, int from, int to) {
+        for (int id = from; id < to; id++) {
+            orders.insert(Order.of(id, String.valueOf(id % 10), 20200901, "SHIPPED", 107.6d, 5));
+        }
+    }
+
+    private static TableInfo<Order> tableInfo() {
+        Function<Order, byte[]> toJson = row -> new Gson().toJson(row).getBytes();
+        Function<byte[], Order> fromJson = rawBytes -> new Gson().fromJson(new String(rawBytes), Order.class);
+        Map<String, Function<Order, Object>> cols = new HashMap<>();
+        cols.put("orderId", Order::orderId);
+        return new TableInfo<>("orders", cols, Collections.emptyMap(), toJson, fromJson, o -> String.valueOf(o.orderId()))
+                .pkFilter(FilterConfig.bloom(10_000));
+    }
+}
@@ -0,0 +1,191 @@
+package query.kv.memory;
+
+import com.google.gson.Gson;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import query.kv.KeyValueStoreContractTest;
+import query.kv.SSTable;
+import query.kv.TableInfo;
+import query.kv.memory.wal.Durability;
+import query.tables.Order;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class DurableInMemoryStoreTest extends KeyValueStoreContractTest {
+
+    final File tmpdir = new File(System.getProperty("java.io.tmpdir"), "memory-wal");
+
+    @BeforeEach
+    public void createDB() {
+        cleanFiles(tmpdir);
+        this.db = open();
+    }
+
+    @AfterEach
+    public void cleanDB() {
+        this.db.close();
+    }
+
+    @Test
+    public void recover_rows_and_indexes() {
+
+        SSTable<Order> orders = db.createTable(tableInfo());
+        orders.insert(Order.of(100, "1", 20200901, "SHIPPED", 107.6d, 5));
+        orders.insert(Order.of(101, "2", 20200902, "SHIPPED", 967.6d, 15));
+        orders.insert(Order.of(102, "1", 20200903, "SHIPPED", 767.6d, 25));
+        orders.update(Order.of(101, "2", 20200902, "CANCEL", 967.6d, 15));
+        orders.delete("102");
+        db.close();
+
+        this.db = open();
+        DurableInMemoryStore store = (DurableInMemoryStore) db;
+        SSTable<Order> recovered = db.createTable(tableInfo());
+
+        assertAll(
+                () -> assertEquals(2, store.recoveredRows()),
+                () -> assertTrue(store.recoveryMillis() >= 0),
+                () -> assertEquals(100, recovered.get("100").orderId()),
+                () -> assertEquals("CANCEL", recovered.get("101").status()),
+                () -> assertNull(recovered.get("102")),
+                () -> assertEquals(asIds(101), search(recovered, "CANCEL")),
+                () -> assertEquals(asIds(100), search(recovered, "SHIPPED"))
+        );
+    }
+
+    @Test
+    public void recover_from_snapshot_and_log_tail() {
+
+        DurableInMemoryStore store = (DurableInMemoryStore) db;
+        SSTable<Order> orders = store.createTable(tableInfo());
+
+        List<Order> rows = new ArrayList<>();
+        for (int id = 0; id < 500; id++) {
+            rows.add(Order.of(id, String.valueOf(id % 10), 20200901, "SHIPPED", 107.6d, 5));
+        }
+        orders.insertAll(rows, 100);
+        store.checkpoint();
+        for (int id = 0; id < 10; id++) {
+            orders.update(Order.of(id, String.valueOf(id % 10), 20200901, "CANCEL", 107.6d, 5));
+        }
+
+        // Previous store is not closed, this is same as process crash after fsync
+        this.db = open();
+        SSTable<Order> recovered = db.createTable(tableInfo());
+
+        List<Order> allRows = new ArrayList<>();
+        recovered.scan(allRows::add, 1000);
+
+        assertAll(
+                () -> assertEquals(500, allRows.size()),
+                () -> assertEquals(asIds(0, 1, 2, 3, 4, 5, 6, 7, 8, 9), search(recovered, "CANCEL")),
+                () -> assertEquals(490, search(recovered, "SHIPPED").size())
+        );
+    }
+
+    @Test
+    public void auto_pk_continues_after_restart() {
+
+        SSTable<Order> orders = db.createTable("orders", Order.class, orderCols());
+        for (int id = 0; id < 10; id++) {
+            orders.insert(Order.of(id, "1", 20200901, "SHIPPED", 107.6d, 5));
+        }
+        db.close();
+
+        this.db = open();
+        SSTable<Order> recovered = db.createTable("orders", Order.class, orderCols());
+        recovered.insert(Order.of(10, "1", 20200901, "SHIPPED", 107.6d, 5));
+
+        List<Order> allRows = new ArrayList<>();
+        recovered.scan(allRows::add, 100);
+        assertEquals(11, allRows.size());
+    }
+
+    @Test
+    public void torn_log_record_is_ignored() throws IOException {
+
+        SSTable<Order> orders = db.createTable(tableInfo());
+        orders.insert(Order.of(100, "1", 20200901, "SHIPPED", 107.6d, 5));
+        db.close();
+
+        try (RandomAccessFile segment = new RandomAccessFile(lastSegment().toFile(), "rw")) {
+            segment.writeInt(20);
+            segment.writeInt(12345);
+            segment.write(new byte[10]);
+        }
+
+        this.db = open();
+        SSTable<Order> recovered = db.createTable(tableInfo());
+
+        List<Order> allRows = new ArrayList<>();
+        recovered.scan(allRows::add, 10);
+        assertEquals(1, allRows.size());
+    }
+
+    private DurableInMemoryStore open() {
+        return new DurableInMemoryStore(tmpdir, Durability.syncEveryBatch().segmentSize(4 * 1024));
+    }
+
+    private List<Long> search(SSTable<Order> orders, String status) {
+        List<Order> rows = new ArrayList<>();
+        orders.search("status", status, rows, 1000);
+        return rows.stream().map(Order::orderId).sorted().collect(Collectors.toList());
+    }
+
+    private static List<Long> asIds(long... ids) {
+        List<Long> values = new ArrayList<>();
+        for (long id : ids) {
+            values.add(id);
+        }
+        return values;
+    }
+
+    private Map<String, Function<Order, Object>> orderCols() {
+        return new HashMap<String, Function<Order, Object>>() {{
+            put("orderId", Order::orderId);
+            put("status", Order::status);
+        }};
+    }
+
+    private TableInfo<Order> tableInfo() {
+        Map<String, Function<Order, String>> indexes = new HashMap<String, Function<Order, String>>() {{
+            put("status", Order::status);
+        }};
+        return new TableInfo<>("orders", orderCols(), indexes,
+                row -> new Gson().toJson(row).getBytes(),
+                rawBytes -> new Gson().fromJson(new String(rawBytes), Order.class),
+                o -> String.valueOf(o.orderId()));
+    }
+
+    private Path lastSegment() throws IOException {
+        try (Stream<Path> files = Files.list(tmpdir.toPath())) {
+            return files
+                    .filter(f -> f.getFileName().toString().startsWith("wal-"))
+                    .max(Path::compareTo)
+                    .get();
+        }
+    }
+
+    private void cleanFiles(File folder) {
+        folder.mkdirs();
+        for (File f : folder.listFiles()) {
+            f.delete();
+        }
+    }
+}
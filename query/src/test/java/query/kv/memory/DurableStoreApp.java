@@ -0,0 +1,101 @@
+package query.kv.memory;
+
+import org.HdrHistogram.Histogram;
+import query.kv.SSTable;
+import query.kv.TableInfo;
+import query.kv.codec.JsonRowCodec;
+import query.kv.memory.wal.Durability;
+import query.tables.Order;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/*
+    Insert latency of durable in memory store with fsync per batch vs fsync every 10 ms, and recovery time of loaded rows.
+    Writer threads are set using -Dthreads
+ */
+public class DurableStoreApp {
+
+    static final int ROWS_PER_THREAD = 50_000;
+    static final File location = new File(System.getProperty("java.io.tmpdir"), "memory-wal-app");
+
+    public static void main(String[] args) throws Exception {
+        int threads = Integer.getInteger("threads", 4);
+        measure("fsync per batch", Durability.syncEveryBatch(), threads);
+        measure("fsync every 10 ms", Durability.syncEvery(10, TimeUnit.MILLISECONDS), threads);
+    }
+
+    private static void measure(String name, Durability durability, int threads) throws Exception {
+        clean();
+        DurableInMemoryStore store = new DurableInMemoryStore(location, durability);
+        SSTable<Order> orders = store.createTable(tableInfo());
+
+        Histogram histogram = new Histogram(3);
+        List<Thread> writers = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int thread = 0; thread < threads; thread++) {
+            int firstId = thread * ROWS_PER_THREAD;
+            Thread writer = new Thread(() -> {
+                Histogram local = new Histogram(3);
+                for (int id = firstId; id < firstId + ROWS_PER_THREAD; id++) {
+                    long writeStart = System.nanoTime();
+                    orders.insert(Order.of(id, String.valueOf(id % 100_000), 20200901, "SHIPPED", 107.6d, 5));
+                    local.recordValue((System.nanoTime() - writeStart) / 1000);
+                }
+                synchronized (histogram) {
+                    histogram.add(local);
+                }
+            });
+            writers.add(writer);
+            writer.start();
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+        long total = System.nanoTime() - start;
+        store.close();
+
+        long rows = (long) threads * ROWS_PER_THREAD;
+        System.out.println(String.format("%s , threads %s , rows %s , throughput %s rows/sec", name, threads, rows, rows * 1_000_000_000L / total));
+        System.out.println(String.format("Write latency (us) mean %.2f p50 %s p99 %s p99.9 %s max %s",
+                histogram.getMean(),
+                histogram.getValueAtPercentile(50),
+                histogram.getValueAtPercentile(99),
+                histogram.getValueAtPercentile(99.9),
+                histogram.getMaxValue()));
+
+        long recoveryStart = System.nanoTime();
+        DurableInMemoryStore recovered = new DurableInMemoryStore(location, durability);
+        SSTable<Order> recoveredOrders = recovered.createTable(tableInfo());
+        long recoveryTime = System.nanoTime() - recoveryStart;
+        List<Order> sample = new ArrayList<>();
+        recoveredOrders.search("customerId", "42", sample, 10);
+        System.out.println(String.format("Recovery of %s rows , log replay %s ms , with index build %s ms , sample search %s rows",
+                recovered.recoveredRows(), recovered.recoveryMillis(), recoveryTime / 1_000_000, sample.size()));
+        recovered.close();
+    }
+
+    private static TableInfo<Order> tableInfo() {
+        Map<String, Function<Order, String>> indexes = new HashMap<String, Function<Order, String>>() {{
+            put("customerId", Order::customerId);
+        }};
+        Map<String, Function<Order, Object>> cols = new HashMap<String, Function<Order, Object>>() {{
+            put("orderId", Order::orderId);
+            put("customerId", Order::customerId);
+            put("status", Order::status);
+        }};
+        return new TableInfo<>("orders", cols, indexes, new JsonRowCodec<>(Order.class), o -> String.valueOf(o.orderId()));
+    }
+
+    private static void clean() {
+        location.mkdirs();
+        for (File f : location.listFiles()) {
+            f.delete();
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package query.kv.memory;
+
+import query.kv.KeyValueStore;
+import query.kv.SSTable;
+import query.kv.memory.offheap.OffHeapStore;
+import query.tables.Order;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/*
+    Heap used & GC time of in memory store vs off heap store after loading rows.
+    Run every store in own JVM so heap of one does not count for other, -Dstore=memory|offheap -Drows=10000000
+    50M rows need large heap for memory store, like -Xmx24g
+ */
+public class OffHeapApp {
+
+    public static void main(String[] args) {
+        String type = System.getProperty("store", "offheap");
+        int rows = Integer.getInteger("rows", 10_000_000);
+        int batchSize = Integer.getInteger("batchSize", 1000);
+
+        KeyValueStore store = type.equals("offheap") ? new OffHeapStore() : new InMemoryStore();
+        SSTable<Order> orders = store.createTable("orders", Order.class, cols(), indexes());
+
+        long start = System.nanoTime();
+        List<Order> batch = new ArrayList<>(batchSize);
+        for (int id = 0; id < rows; id++) {
+            batch.add(Order.of(id, String.valueOf(id % 100_000), 20200901, "SHIPPED", 107.6d, 5));
+            if (batch.size() == batchSize) {
+                orders.insertAll(batch, batchSize);
+                batch.clear();
+            }
+        }
+        orders.insertAll(batch, batchSize);
+        long loadTime = System.nanoTime() - start;
+
+        long gcBefore = gcTime();
+        long fullGcStart = System.nanoTime();
+        System.gc();
+        long fullGcTime = System.nanoTime() - fullGcStart;
+        long heapUsed = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+
+        System.out.println(String.format("Store %s , rows %s , Load %s ms , Heap used %s MB , GC time during load %s ms , GC count %s , Full GC %s ms",
+                type, rows, loadTime / 1_000_000, heapUsed / (1024 * 1024), gcBefore, gcCount(), fullGcTime / 1_000_000));
+        store.close();
+    }
+
+    private static long gcTime() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream().mapToLong(GarbageCollectorMXBean::getCollectionTime).sum();
+    }
+
+    private static long gcCount() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream().mapToLong(GarbageCollectorMXBean::getCollectionCount).sum();
+    }
+
+    private static Map<String, Function<Order, String>> indexes() {
+        Map<String, Function<Order, String>> indexes = new HashMap<>();
+        indexes.put("customerId", Order::customerId);
+        return indexes;
+    }
+
+    private static Map<String, Function<Order, Object>> cols() {
+        Map<String, Function<Order, Object>> cols = new HashMap<>();
+        cols.put("orderId", Order::orderId);
+        cols.put("customerId", Order::customerId);
+        cols.put("orderDate", Order::orderDate);
+        cols.put("status", Order::status);
+        cols.put("amount", Order::amount);
+        cols.put("noOfItems", Order::noOfItems);
+        return cols;
+    }
+}
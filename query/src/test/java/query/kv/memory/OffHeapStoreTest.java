@@ -0,0 +1,21 @@
+package query.kv.memory;
+
+
+import query.kv.KeyValueStoreContractTest;
+import query.kv.memory.offheap.OffHeapStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+
+public class OffHeapStoreTest extends KeyValueStoreContractTest {
+
+    @BeforeEach
+    public void createDB() {
+        this.db = new OffHeapStore();
+    }
+
+    @AfterEach
+    public void cleanDB() {
+        this.db.close();
+    }
+
+}
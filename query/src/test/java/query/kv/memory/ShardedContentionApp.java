@@ -0,0 +1,100 @@
+package query.kv.memory;
+
+import query.kv.SSTable;
+import query.kv.TableInfo;
+import query.tables.Order;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/*
+    Insert latency of in memory table with N writer threads, table with single skip list vs sharded table.
+    Shard counts are picked using -Dshards=1,16 and thread counts using -Dthreads=1,2,4,8,16,32,64
+ */
+public class ShardedContentionApp {
+
+    public static void main(String[] args) throws Exception {
+        List<Integer> shards = ints(System.getProperty("shards", "1,16"));
+        List<Integer> threads = ints(System.getProperty("threads", "1,2,4,8,16,32,64"));
+        int rows = Integer.getInteger("rows", 640_000);
+
+        for (int shardCount : shards) {
+            for (int writers : threads) {
+                SSTable<Order> orders = new InMemorySSTable<>(tableInfo(shardCount));
+                long start = System.nanoTime();
+                long[] latencies = load(orders, writers, rows);
+                long time = System.nanoTime() - start;
+
+                Arrays.sort(latencies);
+                System.out.println(String.format("Shards %s , threads %s , rows %s , Throughput %s rows/sec , p50 %s ns , p99 %s ns , max %s ns",
+                        shardCount, writers, rows, rows * 1_000_000_000L / time,
+                        percentile(latencies, 0.50), percentile(latencies, 0.99), latencies[latencies.length - 1]));
+            }
+        }
+    }
+
+    private static long[] load(SSTable<Order> orders, int writers, int rows) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(writers);
+        CountDownLatch start = new CountDownLatch(1);
+        int rowsPerWriter = rows / writers;
+        long[] latencies = new long[rowsPerWriter * writers];
+        List<Future<?>> results = new ArrayList<>();
+        for (int writer = 0; writer < writers; writer++) {
+            int offset = writer * rowsPerWriter;
+            results.add(executor.submit(() -> {
+                start.await();
+                for (int id = offset; id < offset + rowsPerWriter; id++) {
+                    Order order = Order.of(id, String.valueOf(id % 10_000), 20200901, "SHIPPED", 107.6d, 5);
+                    long begin = System.nanoTime();
+                    orders.insert(order);
+                    latencies[id] = System.nanoTime() - begin;
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> result : results) {
+            result.get();
+        }
+        executor.shutdown();
+        return latencies;
+    }
+
+    private static long percentile(long[] sorted, double percentile) {
+        return sorted[Math.min(sorted.length - 1, (int) (sorted.length * percentile))];
+    }
+
+    private static TableInfo<Order> tableInfo(int shards) {
+        Map<String, Function<Order, String>> indexes = new HashMap<>();
+        indexes.put("customerId", Order::customerId);
+        indexes.put("status", Order::status);
+        return new TableInfo<>("orders", cols(), indexes, $ -> null, $ -> null, o -> String.valueOf(o.orderId()))
+                .shards(shards);
+    }
+
+    private static Map<String, Function<Order, Object>> cols() {
+        Map<String, Function<Order, Object>> cols = new HashMap<>();
+        cols.put("orderId", Order::orderId);
+        cols.put("customerId", Order::customerId);
+        cols.put("orderDate", Order::orderDate);
+        cols.put("status", Order::status);
+        cols.put("amount", Order::amount);
+        cols.put("noOfItems", Order::noOfItems);
+        return cols;
+    }
+
+    private static List<Integer> ints(String values) {
+        return Arrays.stream(values.split(","))
+                .map(Integer::parseInt)
+                .collect(Collectors.toList());
+    }
+}
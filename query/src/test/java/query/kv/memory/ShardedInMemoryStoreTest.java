@@ -0,0 +1,21 @@
+package query.kv.memory;
+
+
+import query.kv.KeyValueStoreContractTest;
+import query.kv.SSTable;
+import query.kv.TableInfo;
+import org.junit.jupiter.api.BeforeEach;
+
+public class ShardedInMemoryStoreTest extends KeyValueStoreContractTest {
+
+    @BeforeEach
+    public void createDB() {
+        this.db = new InMemoryStore() {
+            @Override
+            public <Row_Type> SSTable<Row_Type> createTable(TableInfo<Row_Type> tableInfo) {
+                return super.createTable(tableInfo.shards(8));
+            }
+        };
+    }
+
+}
@@ -0,0 +1,180 @@
+package query.kv.memory.offheap;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import query.kv.persistent.NavigablePersistentStore.KeyCursor;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class NavigableOffHeapTest {
+
+    static final int SLAB_SIZE = 16 * 1024;
+    final File tmpdir = new File(System.getProperty("java.io.tmpdir"), "offheap-engine");
+    NavigableOffHeap store;
+
+    @BeforeEach
+    public void createDB() {
+        this.store = new NavigableOffHeap(SLAB_SIZE, null);
+    }
+
+    @AfterEach
+    public void cleanDB() {
+        store.close();
+    }
+
+    @Test
+    public void newest_value_wins_across_chunks_and_slabs() {
+        for (int id = 4999; id >= 0; id--) {
+            store.put(key(id), value(id, "v1"));
+        }
+        for (int id = 0; id < 5000; id += 2) {
+            store.put(key(id), value(id, "v2"));
+        }
+        for (int id = 0; id < 5000; id += 4) {
+            store.delete(key(id));
+        }
+
+        List<byte[]> values = keys(store, "key-".getBytes());
+        assertAll(
+                () -> assertTrue(store.allocated() > SLAB_SIZE * 10, "Records span slabs " + store.allocated()),
+                () -> assertNull(store.get(key(0))),
+                () -> assertArrayEquals(value(2, "v2"), store.get(key(2))),
+                () -> assertArrayEquals(value(3, "v1"), store.get(key(3))),
+                () -> assertEquals(3750, store.size()),
+                () -> assertEquals(3750, values.size()),
+                () -> assertArrayEquals(value(1, "v1"), values.get(0)),
+                () -> assertArrayEquals(value(4999, "v1"), values.get(3749))
+        );
+    }
+
+    @Test
+    public void range_iterate_and_split_keys() {
+        for (int id = 0; id < 3000; id++) {
+            store.put(key(id), value(id, "v1"));
+        }
+
+        List<byte[]> range = new ArrayList<>();
+        store.iterate(key(100), key(199), v -> v, range::add, Integer.MAX_VALUE);
+
+        List<byte[]> splits = store.splitKeys(key(0), key(3000), 4);
+        List<byte[]> partition = new ArrayList<>();
+        store.iterateWhile(key(0), splits.get(0), v -> v, partition::add);
+
+        assertAll(
+                () -> assertEquals(100, range.size()),
+                () -> assertArrayEquals(value(100, "v1"), range.get(0)),
+                () -> assertEquals(3, splits.size()),
+                () -> assertTrue(partition.size() > 0 && partition.size() < 3000, "Partition size " + partition.size())
+        );
+    }
+
+    @Test
+    public void record_larger_than_slab_gets_own_slab() {
+        byte[] large = new byte[SLAB_SIZE * 2];
+        large[large.length - 1] = 7;
+        store.put(key(1), large);
+        store.put(key(2), value(2, "v1"));
+
+        assertAll(
+                () -> assertArrayEquals(large, store.get(key(1))),
+                () -> assertArrayEquals(value(2, "v1"), store.get(key(2)))
+        );
+    }
+
+    @Test
+    public void snapshot_keeps_chunks_changed_after_it() {
+        for (int id = 0; id < 1000; id++) {
+            store.put(key(id), value(id, "v1"));
+        }
+
+        try (NavigableOffHeap.Snapshot snapshot = store.snapshot()) {
+            for (int id = 0; id < 1000; id++) {
+                store.put(key(id), value(id, "v2"));
+            }
+            for (int id = 0; id < 1000; id += 2) {
+                store.delete(key(id));
+            }
+            for (int id = 1000; id < 3000; id++) {
+                store.put(key(id), value(id, "v2"));
+            }
+
+            List<byte[]> values = keys(snapshot, "key-".getBytes());
+            assertAll(
+                    () -> assertArrayEquals(value(0, "v1"), snapshot.get(key(0))),
+                    () -> assertArrayEquals(value(1, "v1"), snapshot.get(key(1))),
+                    () -> assertNull(snapshot.get(key(1000))),
+                    () -> assertEquals(1000, values.size()),
+                    () -> assertArrayEquals(value(999, "v1"), values.get(999)),
+                    () -> assertNull(store.get(key(0))),
+                    () -> assertArrayEquals(value(1, "v2"), store.get(key(1)))
+            );
+        }
+        assertEquals(2500, keys(store, "key-".getBytes()).size());
+    }
+
+    @Test
+    public void cursor_does_not_see_writes_after_it_is_opened() {
+        for (int id = 0; id < 600; id++) {
+            store.put(key(id), value(id, "v1"));
+        }
+
+        List<byte[]> seen = new ArrayList<>();
+        try (KeyCursor cursor = store.cursor(key(500))) {
+            cursor.seek(key(100));
+            assertTrue(cursor.next());
+            seen.add(cursor.value());
+            store.put(key(101), value(101, "v2"));
+            store.delete(key(102));
+            while (cursor.next()) {
+                seen.add(cursor.value());
+            }
+            assertFalse(cursor.next());
+            assertArrayEquals(value(102, "v1"), cursor.get(key(102)));
+        }
+
+        assertAll(
+                () -> assertEquals(400, seen.size()),
+                () -> assertArrayEquals(value(101, "v1"), seen.get(1)),
+                () -> assertArrayEquals(value(499, "v1"), seen.get(399))
+        );
+    }
+
+    @Test
+    public void slabs_mapped_from_files() {
+        store.close();
+        this.store = new NavigableOffHeap(SLAB_SIZE, tmpdir);
+        for (int id = 0; id < 2000; id++) {
+            store.put(key(id), value(id, "v1"));
+        }
+
+        assertAll(
+                () -> assertTrue(tmpdir.listFiles().length > 1, "Slab files " + tmpdir.listFiles().length),
+                () -> assertArrayEquals(value(1999, "v1"), store.get(key(1999))),
+                () -> assertEquals(2000, keys(store, "key-".getBytes()).size())
+        );
+    }
+
+    private static List<byte[]> keys(OffHeapReader store, byte[] prefix) {
+        List<byte[]> values = new ArrayList<>();
+        store.iterate(prefix, v -> v, values::add, Integer.MAX_VALUE);
+        return values;
+    }
+
+    private static byte[] key(int id) {
+        return String.format("key-%06d", id).getBytes();
+    }
+
+    private static byte[] value(int id, String version) {
+        return String.format("value-%s-%s", id, version).getBytes();
+    }
+}
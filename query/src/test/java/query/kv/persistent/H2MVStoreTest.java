@@ -1,11 +1,20 @@
 package query.kv.persistent;
 
+import query.kv.Cursor;
 import query.kv.KeyValueStoreContractTest;
+import query.kv.SSTable;
+import query.kv.TableInfo;
 import query.kv.persistent.mvstore.H2MVStore;
+import query.tables.Order;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
 
 import java.io.File;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 
 public class H2MVStoreTest extends KeyValueStoreContractTest {
 
@@ -25,5 +34,21 @@ public class H2MVStoreTest extends KeyValueStoreContractTest {
         ((H2MVStore) this.db).close();
     }
 
+    @Test
+    public void cursor_reads_snapshot_taken_at_open() {
+        SSTable<Order> orders = db.createTable(new TableInfo<>("orders", cols(), Collections.singletonMap("status", Order::status), toJson, fromJson, o -> String.valueOf(o.orderId())));
+        orders.insert(Order.of(100, "1", 20200901, "SHIPPED", 107.6d, 5));
+        orders.insert(Order.of(101, "1", 20200901, "SHIPPED", 107.6d, 5));
+
+        try (Cursor<Order> scan = orders.scanCursor();
+             Cursor<Order> search = orders.searchCursor("status", "SHIPPED")) {
+            orders.insert(Order.of(102, "1", 20200901, "SHIPPED", 107.6d, 5));
+            orders.delete("100");
 
+            assertAll(
+                    () -> assertEquals(2, scan.next(10).size()),
+                    () -> assertEquals(2, search.next(10).size())
+            );
+        }
+    }
 }
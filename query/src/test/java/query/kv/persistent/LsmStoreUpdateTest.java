@@ -0,0 +1,33 @@
+package query.kv.persistent;
+
+import query.kv.KeyValueStoreUpdateContractTest;
+import query.kv.persistent.lsm.LsmStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+
+import java.io.File;
+
+public class LsmStoreUpdateTest extends KeyValueStoreUpdateContractTest {
+
+    @BeforeEach
+    public void createDB() {
+        File tmpdir = new File(System.getProperty("java.io.tmpdir"), "lsm");
+        System.out.println("DB created at " + tmpdir.getAbsolutePath());
+        cleanFiles(tmpdir);
+        this.db = new LsmStore(tmpdir);
+    }
+
+    private void cleanFiles(File tmpdir) {
+        tmpdir.mkdirs();
+        for (File f : tmpdir.listFiles()) {
+            f.delete();
+        }
+    }
+
+    @AfterEach
+    public void cleanDB() {
+        this.db.close();
+    }
+
+
+}
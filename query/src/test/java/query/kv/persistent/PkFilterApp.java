@@ -0,0 +1,103 @@
+package query.kv.persistent;
+
+import com.google.gson.Gson;
+import org.HdrHistogram.Histogram;
+import query.kv.KeyValueFactory;
+import query.kv.KeyValueStore;
+import query.kv.SSTable;
+import query.kv.TableInfo;
+import query.kv.filter.FilterConfig;
+import query.kv.filter.PkFilter;
+import query.tables.Order;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+
+/*
+    Latency of PK lookups that miss ( dedupe workload ) with and without PK filter, and false positive rate of filter.
+    Engines are picked using -Dstores=rocks,mv,lsm
+ */
+public class PkFilterApp {
+
+    static final int ROWS = Integer.getInteger("rows", 1_000_000);
+    static final int LOOKUPS = Integer.getInteger("lookups", 200_000);
+
+    static Function<Order, byte[]> toJson = row -> new Gson().toJson(row).getBytes();
+    static Function<byte[], Order> fromJson = rawBytes -> new Gson().fromJson(new String(rawBytes), Order.class);
+
+    public static void main(String[] args) {
+        List<String> stores = Arrays.asList(System.getProperty("stores", "rocks,mv,lsm").split(","));
+        for (String type : stores) {
+            for (boolean filtered : new boolean[]{false, true}) {
+                KeyValueStore store = KeyValueFactory.create(location(type), true);
+                SSTable<Order> orders = store.createTable(tableInfo(filtered));
+                load(orders);
+
+                lookup(orders, LOOKUPS / 10); // warmup
+                Histogram histogram = new Histogram(2);
+                long start = System.nanoTime();
+                for (int i = 0; i < LOOKUPS; i++) {
+                    long lookupStart = System.nanoTime();
+                    lookup(orders, 1);
+                    histogram.recordValue(Math.max(1, (System.nanoTime() - lookupStart) / 100));
+                }
+                long total = System.nanoTime() - start;
+
+                PkFilter filter = ((NavigableSSTable<Order>) orders).pkFilter();
+                System.out.println(String.format("Store %s , filter %s , Lookups %s , Time %s ms , False positive rate %s",
+                        type, filtered, LOOKUPS, total / 1_000_000, filter == null ? "-" : String.format("%.4f", filter.falsePositiveRate())));
+                System.out.println(String.format("Miss latency (us) mean %.2f p50 %.1f p99 %.1f p99.9 %.1f",
+                        histogram.getMean() / 10,
+                        histogram.getValueAtPercentile(50) / 10.0,
+                        histogram.getValueAtPercentile(99) / 10.0,
+                        histogram.getValueAtPercentile(99.9) / 10.0));
+                store.close();
+            }
+        }
+    }
+
+    // Keys above ROWS are never inserted, so every lookup misses
+    private static void lookup(SSTable<Order> orders, int count) {
+        for (int i = 0; i < count; i++) {
+            orders.get(String.valueOf(ROWS + ThreadLocalRandom.current().nextInt(ROWS)));
+        }
+    }
+
+    private static void load(SSTable<Order> orders) {
+        List<Order> batch = new ArrayList<>();
+        for (int id = 0; id < ROWS; id++) {
+            batch.add(Order.of(id, String.valueOf(id % 100_000), 20200901, "SHIPPED", 107.6d, 5));
+            if (batch.size() == SSTable.DEFAULT_BATCH_SIZE) {
+                orders.insertAll(batch);
+                batch.clear();
+            }
+        }
+        orders.insertAll(batch);
+    }
+
+    private static TableInfo<Order> tableInfo(boolean filtered) {
+        Map<String, Function<Order, Object>> cols = new HashMap<>();
+        cols.put("orderId", Order::orderId);
+        cols.put("customerId", Order::customerId);
+        TableInfo<Order> tableInfo = new TableInfo<>("orders", cols, new HashMap<>(), toJson, fromJson, o -> String.valueOf(o.orderId()));
+        return filtered ? tableInfo.pkFilter(FilterConfig.bloom(ROWS)) : tableInfo;
+    }
+
+    private static String location(String type) {
+        File tmp = new File(System.getProperty("java.io.tmpdir"), "pk-filter-app");
+        switch (type) {
+            case "mv":
+                return "mv:" + new File(tmp, "mv.db").getAbsolutePath();
+            case "lsm":
+                return "lsm:" + new File(tmp, "lsm").getAbsolutePath();
+            default:
+                return "rocks:" + new File(tmp, "rocks").getAbsolutePath();
+        }
+    }
+}
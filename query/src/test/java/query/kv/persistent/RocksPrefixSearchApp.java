@@ -0,0 +1,120 @@
+package query.kv.persistent;
+
+import com.google.gson.Gson;
+import org.HdrHistogram.Histogram;
+import query.kv.SSTable;
+import query.kv.TableInfo;
+import query.kv.persistent.rocks.RocksStore;
+import query.tables.Order;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+
+/*
+    Point prefix search latency on customerId index, with plain iterator ( key read back and compared ) vs
+    iterator with upper bound + prefix bloom.
+ */
+public class RocksPrefixSearchApp {
+
+    static final int ROWS = 1_000_000;
+    static final int CUSTOMERS = 100_000;
+    static final int SEARCHES = 100_000;
+
+    static Function<Order, byte[]> toJson = row -> new Gson().toJson(row).getBytes();
+    static Function<byte[], Order> fromJson = rawBytes -> new Gson().fromJson(new String(rawBytes), Order.class);
+
+    public static void main(String[] args) throws Exception {
+        File location = new File(System.getProperty("java.io.tmpdir"), "rocks-prefix-search");
+        clean(location);
+
+        RocksStore store = new RocksStore(location);
+        SSTable<Order> orders = store.createTable(tableInfo());
+        load(orders);
+        store.close();
+
+        measure(location, false);
+        measure(location, true);
+    }
+
+    private static void measure(File location, boolean boundedScan) {
+        RocksStore store = new RocksStore(location, boundedScan);
+        SSTable<Order> orders = store.createTable(tableInfo());
+
+        search(orders, SEARCHES / 10); // warmup
+
+        Histogram histogram = new Histogram(2);
+        long start = System.nanoTime();
+        long rows = 0;
+        for (int i = 0; i < SEARCHES; i++) {
+            long searchStart = System.nanoTime();
+            rows += search(orders, 1);
+            histogram.recordValue((System.nanoTime() - searchStart) / 1000);
+        }
+        long total = System.nanoTime() - start;
+
+        System.out.println(String.format("Bounded scan %s , Searches %s , Rows %s , Time %s ms", boundedScan, SEARCHES, rows, total / 1_000_000));
+        System.out.println(String.format("Latency (us) mean %.2f p50 %s p99 %s p99.9 %s max %s",
+                histogram.getMean(),
+                histogram.getValueAtPercentile(50),
+                histogram.getValueAtPercentile(99),
+                histogram.getValueAtPercentile(99.9),
+                histogram.getMaxValue()));
+
+        store.close();
+    }
+
+    private static int search(SSTable<Order> orders, int count) {
+        List<Order> rows = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            String customer = String.valueOf(ThreadLocalRandom.current().nextInt(CUSTOMERS));
+            orders.search("customerId", customer + "/", rows, 100);
+        }
+        return rows.size();
+    }
+
+    private static void load(SSTable<Order> orders) {
+        List<Order> batch = new ArrayList<>();
+        for (int id = 0; id < ROWS; id++) {
+            int customer = ThreadLocalRandom.current().nextInt(CUSTOMERS);
+            batch.add(Order.of(id, String.valueOf(customer), 20200901, "SHIPPED", 107.6d, 5));
+            if (batch.size() == SSTable.DEFAULT_BATCH_SIZE) {
+                orders.insertAll(batch);
+                batch.clear();
+            }
+        }
+        orders.insertAll(batch);
+    }
+
+    private static TableInfo<Order> tableInfo() {
+        Map<String, Function<Order, String>> indexes = new HashMap<String, Function<Order, String>>() {{
+            put("customerId", o -> o.customerId() + "/");
+        }};
+        return new TableInfo<>("orders", cols(), indexes, toJson, fromJson, o -> String.valueOf(o.orderId()));
+    }
+
+    private static Map<String, Function<Order, Object>> cols() {
+        Map<String, Function<Order, Object>> cols = new HashMap<String, Function<Order, Object>>() {{
+            put("orderId", Order::orderId);
+            put("customerId", Order::customerId);
+            put("orderDate", Order::orderDate);
+            put("status", Order::status);
+            put("amount", Order::amount);
+            put("noOfItem", Order::noOfItems);
+        }};
+        return cols;
+    }
+
+    private static void clean(File location) throws Exception {
+        if (location.exists()) {
+            for (File f : location.listFiles()) {
+                Files.deleteIfExists(f.toPath());
+            }
+        }
+    }
+}
@@ -1,20 +1,36 @@
 package query.kv.persistent;
 
+import query.kv.Cursor;
 import query.kv.KeyValueStoreContractTest;
+import query.kv.SSTable;
+import query.kv.TableInfo;
 import query.kv.persistent.rocks.RocksStore;
+import query.tables.Order;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
-
+import org.junit.jupiter.api.Test;
+import org.roaringbitmap.RoaringBitmap;
 
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class RocksStoreTest extends KeyValueStoreContractTest {
 
+    final File tmpdir = new File(System.getProperty("java.io.tmpdir"), "rocks");
+
     @BeforeEach
     public void createDB() {
-        File tmpdir = new File(System.getProperty("java.io.tmpdir"), "rocks");
         System.out.println("DB created at " + tmpdir.getAbsolutePath());
         cleanFiles(tmpdir);
         this.db = new RocksStore(tmpdir);
@@ -40,5 +56,76 @@ public class RocksStoreTest extends KeyValueStoreContractTest {
         this.db.close();
     }
 
+    @Test
+    public void cursor_reads_snapshot_taken_at_open() {
+        SSTable<Order> orders = db.createTable(new TableInfo<>("orders", cols(), Collections.singletonMap("status", Order::status), toJson, fromJson, o -> String.valueOf(o.orderId())));
+        orders.insert(Order.of(100, "1", 20200901, "SHIPPED", 107.6d, 5));
+        orders.insert(Order.of(101, "1", 20200901, "SHIPPED", 107.6d, 5));
+
+        try (Cursor<Order> scan = orders.scanCursor();
+             Cursor<Order> search = orders.searchCursor("status", "SHIPPED")) {
+            orders.insert(Order.of(102, "1", 20200901, "SHIPPED", 107.6d, 5));
+            orders.delete("100");
+
+            assertAll(
+                    () -> assertEquals(2, scan.next(10).size()),
+                    () -> assertEquals(2, search.next(10).size())
+            );
+        }
+    }
+
+    @Test
+    public void bitmaps_are_loaded_when_table_is_opened() {
+        SSTable<Order> orders = db.createTable(bitmapTable());
+        orders.insert(Order.of(100, "1", 20200901, "SHIPPED", 107.6d, 5));
+        orders.insert(Order.of(101, "1", 20200901, "CANCEL", 107.6d, 5));
+        orders.insert(Order.of(102, "1", 20200901, "SHIPPED", 107.6d, 5));
+        orders.delete("100");
+        db.close();
 
+        db = new RocksStore(tmpdir);
+        SSTable<Order> reopened = db.createTable(bitmapTable());
+        reopened.insert(Order.of(103, "1", 20200901, "SHIPPED", 107.6d, 5));
+        reopened.update(Order.of(101, "1", 20200901, "SHIPPED", 107.6d, 5));
+
+        Map<String, RoaringBitmap> bitmaps = reopened.bitmaps("status");
+        List<Long> shipped = new ArrayList<>();
+        try (Cursor<Order> rows = reopened.bitmapCursor(bitmaps.get("SHIPPED"))) {
+            rows.forEachRemaining(o -> shipped.add(o.orderId()));
+        }
+
+        assertAll(
+                () -> assertEquals(Collections.singleton("SHIPPED"), bitmaps.keySet()),
+                () -> assertEquals(3, bitmaps.get("SHIPPED").getCardinality()),
+                () -> assertEquals(Arrays.asList(101L, 102L, 103L), shipped)
+        );
+    }
+
+    @Test
+    public void bitmaps_over_many_chunks_are_loaded_when_table_is_opened() {
+        // Ordinals 0 to 69999 are in chunks 0 & 1
+        SSTable<Order> orders = db.createTable(bitmapTable());
+        List<Order> rows = new ArrayList<>();
+        for (int id = 0; id < 70_000; id++) {
+            rows.add(Order.of(id, "1", 20200901, id % 2 == 0 ? "SHIPPED" : "CANCEL", 107.6d, 5));
+        }
+        orders.insertAll(rows);
+        orders.update(Order.of(1, "1", 20200901, "SHIPPED", 107.6d, 5));
+        orders.delete("69998");
+        db.close();
+
+        db = new RocksStore(tmpdir);
+        Map<String, RoaringBitmap> bitmaps = db.createTable(bitmapTable()).bitmaps("status");
+
+        assertAll(
+                () -> assertEquals(35_000, bitmaps.get("SHIPPED").getCardinality()),
+                () -> assertEquals(34_999, bitmaps.get("CANCEL").getCardinality()),
+                () -> assertTrue(bitmaps.get("SHIPPED").contains(1)),
+                () -> assertFalse(bitmaps.get("SHIPPED").contains(69_998))
+        );
+    }
+
+    private TableInfo<Order> bitmapTable() {
+        return new TableInfo<>("orders", cols(), Collections.emptyMap(), toJson, fromJson, o -> String.valueOf(o.orderId())).bitmapIndex("status");
+    }
 }
@@ -0,0 +1,174 @@
+package query.kv.persistent.lsm;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import query.kv.memory.wal.Durability;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class NavigableLsmTest {
+
+    static final int MEMTABLE_SIZE = 8 * 1024;
+    final File tmpdir = new File(System.getProperty("java.io.tmpdir"), "lsm-engine");
+    NavigableLsm lsm;
+
+    @BeforeEach
+    public void createDB() {
+        tmpdir.mkdirs();
+        for (File f : tmpdir.listFiles()) {
+            f.delete();
+        }
+        this.lsm = open();
+    }
+
+    @AfterEach
+    public void cleanDB() {
+        lsm.close();
+    }
+
+    @Test
+    public void read_flushed_and_compacted_files() {
+        for (int id = 0; id < 5000; id++) {
+            lsm.put(key(id), value(id, "v1"));
+        }
+        lsm.close();
+        this.lsm = open();
+
+        assertAll(
+                () -> assertTrue(lsm.fileCount() < NavigableLsm.COMPACTION_TRIGGER * 3, "Files are compacted " + lsm.fileCount()),
+                () -> assertArrayEquals(value(0, "v1"), lsm.get(key(0))),
+                () -> assertArrayEquals(value(4999, "v1"), lsm.get(key(4999))),
+                () -> assertNull(lsm.get(key(5000))),
+                () -> assertEquals(5000, keys(lsm, "key-".getBytes()).size())
+        );
+    }
+
+    @Test
+    public void newest_value_wins_across_files() {
+        for (int id = 0; id < 2000; id++) {
+            lsm.put(key(id), value(id, "v1"));
+        }
+        for (int id = 0; id < 2000; id += 2) {
+            lsm.put(key(id), value(id, "v2"));
+        }
+        for (int id = 0; id < 2000; id += 4) {
+            lsm.delete(key(id));
+        }
+
+        List<byte[]> values = new ArrayList<>();
+        lsm.iterate("key-".getBytes(), v -> v, values::add, Integer.MAX_VALUE);
+
+        assertAll(
+                () -> assertNull(lsm.get(key(0))),
+                () -> assertArrayEquals(value(2, "v2"), lsm.get(key(2))),
+                () -> assertArrayEquals(value(3, "v1"), lsm.get(key(3))),
+                () -> assertEquals(1500, values.size()),
+                () -> assertArrayEquals(value(1, "v1"), values.get(0))
+        );
+
+        lsm.close();
+        this.lsm = open();
+
+        assertAll(
+                () -> assertNull(lsm.get(key(4))),
+                () -> assertArrayEquals(value(6, "v2"), lsm.get(key(6))),
+                () -> assertEquals(1500, keys(lsm, "key-".getBytes()).size())
+        );
+    }
+
+    @Test
+    public void range_iterate_and_split_keys() {
+        for (int id = 0; id < 3000; id++) {
+            lsm.put(key(id), value(id, "v1"));
+        }
+
+        List<byte[]> range = new ArrayList<>();
+        lsm.iterate(key(100), key(199), v -> v, range::add, Integer.MAX_VALUE);
+
+        List<byte[]> splits = lsm.splitKeys(key(0), key(3000), 4);
+        List<byte[]> partition = new ArrayList<>();
+        lsm.iterateWhile(key(0), splits.get(0), v -> v, partition::add);
+
+        assertAll(
+                () -> assertEquals(100, range.size()),
+                () -> assertEquals(3, splits.size()),
+                () -> assertTrue(partition.size() > 0 && partition.size() < 3000, "Partition size " + partition.size())
+        );
+    }
+
+    @Test
+    public void recover_memtable_from_log() {
+        lsm.put(key(1), value(1, "v1"));
+        lsm.put(key(2), value(2, "v1"));
+        lsm.delete(key(2));
+
+        // Previous engine is not closed, this is same as process crash after fsync
+        this.lsm = open();
+
+        assertAll(
+                () -> assertArrayEquals(value(1, "v1"), lsm.get(key(1))),
+                () -> assertNull(lsm.get(key(2)))
+        );
+    }
+
+    @Test
+    public void snapshot_reads_old_versions_after_flush_and_compaction() {
+        for (int id = 0; id < 1000; id++) {
+            lsm.put(key(id), value(id, "v1"));
+        }
+
+        try (NavigableLsm.Snapshot snapshot = lsm.snapshot()) {
+            int flushed = lsm.flushCount();
+            for (int id = 0; id < 1000; id++) {
+                lsm.put(key(id), value(id, "v2"));
+            }
+            for (int id = 0; id < 1000; id += 2) {
+                lsm.delete(key(id));
+            }
+            for (int id = 1000; id < 6000; id++) {
+                lsm.put(key(id), value(id, "v2"));
+            }
+            // Writer waits when flush is behind, so memtables of snapshot are flushed by now
+            assertTrue(lsm.flushCount() > flushed + NavigableLsm.COMPACTION_TRIGGER);
+
+            List<byte[]> values = keys(snapshot, "key-".getBytes());
+            assertAll(
+                    () -> assertArrayEquals(value(0, "v1"), snapshot.get(key(0))),
+                    () -> assertArrayEquals(value(1, "v1"), snapshot.get(key(1))),
+                    () -> assertNull(snapshot.get(key(1000))),
+                    () -> assertEquals(1000, values.size()),
+                    () -> assertArrayEquals(value(999, "v1"), values.get(999)),
+                    () -> assertNull(lsm.get(key(0))),
+                    () -> assertArrayEquals(value(1, "v2"), lsm.get(key(1)))
+            );
+        }
+        assertEquals(5500, keys(lsm, "key-".getBytes()).size());
+    }
+
+    private NavigableLsm open() {
+        return new NavigableLsm(tmpdir, MEMTABLE_SIZE, Durability.syncEveryBatch().segmentSize(64 * 1024));
+    }
+
+    private static List<byte[]> keys(LsmReader lsm, byte[] prefix) {
+        List<byte[]> values = new ArrayList<>();
+        lsm.iterate(prefix, v -> v, values::add, Integer.MAX_VALUE);
+        return values;
+    }
+
+    private static byte[] key(int id) {
+        return String.format("key-%06d", id).getBytes();
+    }
+
+    private static byte[] value(int id, String version) {
+        return String.format("value-%s-%s", id, version).getBytes();
+    }
+}
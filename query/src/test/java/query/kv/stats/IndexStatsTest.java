@@ -0,0 +1,146 @@
+package query.kv.stats;
+
+import com.google.gson.Gson;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import query.kv.KeyValueStore;
+import query.kv.SSTable;
+import query.kv.TableInfo;
+import query.kv.filter.FilterConfig;
+import query.kv.persistent.rocks.RocksStore;
+import query.tables.Order;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import static java.util.Arrays.asList;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class IndexStatsTest {
+
+    final File tmpdir = new File(System.getProperty("java.io.tmpdir"), "index-stats");
+
+    @BeforeEach
+    public void cleanFiles() {
+        tmpdir.mkdirs();
+        for (File f : tmpdir.listFiles()) {
+            f.delete();
+        }
+    }
+
+    @Test
+    public void distinct_values_are_estimated_within_few_percent() {
+        IndexStats stats = new IndexStats();
+        for (int value = 0; value < 100_000; value++) {
+            stats.add(String.valueOf(value));
+            stats.add(String.valueOf(value));
+        }
+
+        long distinct = stats.distinct();
+        assertAll(
+                () -> assertEquals(200_000, stats.entries()),
+                () -> assertTrue(Math.abs(distinct - 100_000) < 5_000, "Distinct " + distinct),
+                () -> assertEquals(2, stats.estimate("42"))
+        );
+    }
+
+    @Test
+    public void frequent_values_are_tracked() {
+        IndexStats stats = new IndexStats();
+        for (int value = 0; value < 10_000; value++) {
+            stats.add(value % 10 == 0 ? "SHIPPED" : String.valueOf(value));
+        }
+        stats.add("CANCEL");
+        stats.remove("CANCEL");
+
+        assertAll(
+                () -> assertEquals("SHIPPED", stats.topValues().keySet().iterator().next()),
+                () -> assertTrue(stats.estimate("SHIPPED") >= 950, "SHIPPED " + stats.estimate("SHIPPED")),
+                () -> assertEquals(1, stats.estimate("7"))
+        );
+    }
+
+    @Test
+    public void stats_are_loaded_from_keys_when_table_is_opened() {
+        KeyValueStore db = new RocksStore(tmpdir);
+        SSTable<Order> orders = db.createTable(tableInfo());
+        for (int id = 0; id < 1000; id++) {
+            orders.insert(Order.of(id, String.valueOf(id), 20200901, id < 10 ? "CANCEL\u0000" : "SHIPPED", 107.6d, 5));
+        }
+        db.close();
+
+        db = new RocksStore(tmpdir);
+        TableStats<Order> stats = db.createTable(tableInfo()).tableStats();
+        db.close();
+
+        assertAll(
+                () -> assertEquals(1000, stats.rows()),
+                () -> assertEquals(10, stats.index("status").estimate("CANCEL\u0000")),
+                () -> assertEquals(990, stats.index("status").estimate("SHIPPED"))
+        );
+    }
+
+    @Test
+    public void rows_written_again_over_their_pk_do_not_change_stats() {
+        assertStatsOfRowsWrittenAgain(tableInfo().exactStats(true));
+        assertStatsOfRowsWrittenAgain(tableInfo().pkFilter(FilterConfig.bloom(1_000)));
+    }
+
+    @Test
+    public void row_written_again_in_same_batch_replaces_its_stats() {
+        KeyValueStore db = new RocksStore(tmpdir);
+        SSTable<Order> orders = db.createTable(tableInfo());
+        orders.insertAll(asList(
+                Order.of(1, "1", 20200901, "CANCEL", 107.6d, 5),
+                Order.of(1, "1", 20200901, "SHIPPED", 107.6d, 5),
+                Order.of(2, "2", 20200901, "SHIPPED", 107.6d, 5)));
+        TableStats<Order> stats = orders.tableStats();
+        db.close();
+
+        assertAll(
+                () -> assertEquals(2, stats.rows()),
+                () -> assertEquals(2, stats.index("status").entries())
+        );
+    }
+
+    private void assertStatsOfRowsWrittenAgain(TableInfo<Order> tableInfo) {
+        cleanFiles();
+        KeyValueStore db = new RocksStore(tmpdir);
+        SSTable<Order> orders = db.createTable(tableInfo);
+        List<Order> rows = new ArrayList<>();
+        for (int id = 0; id < 100; id++) {
+            rows.add(Order.of(id, String.valueOf(id), 20200901, id < 10 ? "CANCEL" : "SHIPPED", 107.6d, 5));
+        }
+        orders.insertAll(rows);
+        orders.insertAll(rows, 7);
+        orders.insert(rows.get(0));
+        orders.insert(Order.of(1, "1", 20200901, "SHIPPED", 107.6d, 5));
+        TableStats<Order> stats = orders.tableStats();
+        db.close();
+
+        assertAll(
+                () -> assertEquals(100, stats.rows()),
+                () -> assertEquals(100, stats.index("status").entries()),
+                () -> assertEquals(9, stats.index("status").estimate("CANCEL")),
+                () -> assertEquals(91, stats.index("status").estimate("SHIPPED"))
+        );
+    }
+
+    private TableInfo<Order> tableInfo() {
+        Map<String, Function<Order, Object>> cols = new HashMap<String, Function<Order, Object>>() {{
+            put("orderid", Order::orderId);
+            put("status", Order::status);
+        }};
+        Map<String, Function<Order, String>> indexes = new HashMap<String, Function<Order, String>>() {{
+            put("status", Order::status);
+        }};
+        return new TableInfo<>("orders", cols, indexes, row -> new Gson().toJson(row).getBytes(),
+                bytes -> new Gson().fromJson(new String(bytes), Order.class), o -> String.valueOf(o.orderId()));
+    }
+}
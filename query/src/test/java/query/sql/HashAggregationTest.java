@@ -0,0 +1,64 @@
+package query.sql;
+
+import org.junit.jupiter.api.Test;
+import query.kv.ColumnReader;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static java.util.Arrays.asList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class HashAggregationTest {
+
+    // Row is { group, value }
+    private final ColumnReader group = ColumnReader.of("group", row -> ((Object[]) row)[0]);
+    private final ColumnReader value = ColumnReader.of("value", row -> ((Object[]) row)[1]);
+
+    @Test
+    public void partial_states_of_spilled_groups_are_merged() {
+        Map<Object, List<Object>> inMemory = aggregate(Long.MAX_VALUE);
+        Map<Object, List<Object>> spilled = aggregate(1);
+
+        assertEquals(asList(334L, 166833L, 0L, 999L, 499.5d, "0"), spilled.get(0L));
+        assertEquals(inMemory, spilled);
+        assertEquals(3, spilled.size());
+    }
+
+    @Test
+    public void aggregate_without_values_is_null() {
+        List<Object[]> rows = new ArrayList<>();
+        try (HashAggregation aggregation = new HashAggregation(new ArrayList<>(), accumulators(), Long.MAX_VALUE)) {
+            aggregation.add(new Object[]{null, null});
+            aggregation.finish(rows::add);
+        }
+
+        assertEquals(asList(1L, null, null, null, null, null), asList(rows.get(0)));
+    }
+
+    private Map<Object, List<Object>> aggregate(long memoryLimit) {
+        Map<Object, List<Object>> groups = new TreeMap<>();
+        try (HashAggregation aggregation = new HashAggregation(asList(group), accumulators(), memoryLimit)) {
+            // Every row of memory limit 1 starts new group table, as groups take turns
+            for (long id = 0; id < 1000; id++) {
+                aggregation.add(new Object[]{id % 3, id});
+            }
+            assertEquals(memoryLimit == 1, aggregation.spilled());
+            aggregation.finish(row -> groups.put(row[0], asList(row).subList(1, row.length)));
+        }
+        return groups;
+    }
+
+    private List<Accumulator> accumulators() {
+        ColumnReader text = ColumnReader.of("text", row -> ((Object[]) row)[1] == null ? null : String.valueOf(((Object[]) row)[1]).substring(0, 1));
+        return asList(
+                Accumulator.of("count", null),
+                Accumulator.of("sum", value),
+                Accumulator.of("min", value),
+                Accumulator.of("max", value),
+                Accumulator.of("avg", value),
+                Accumulator.of("min", text));
+    }
+}
@@ -0,0 +1,100 @@
+package query.sql;
+
+import org.junit.jupiter.api.Test;
+import query.kv.ColumnReader;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+public class JoinHashTableTest {
+
+    // Row is { key, value }
+    private final ColumnReader key = ColumnReader.of("key", row -> ((Object[]) row)[0]);
+    private final ColumnReader value = ColumnReader.of("value", row -> ((Object[]) row)[1]);
+
+    @Test
+    public void spilled_partitions_join_same_pairs() {
+        List<String> inMemory = join(Long.MAX_VALUE, Integer.MAX_VALUE);
+        List<String> spilled = join(1, Integer.MAX_VALUE);
+
+        // 100 build rows of 10 keys, 30 of 50 probe rows have key of 0 to 9
+        assertEquals(300, inMemory.size());
+        assertEquals(inMemory, spilled);
+    }
+
+    @Test
+    public void join_stops_when_predicate_returns_false() {
+        assertEquals(7, join(Long.MAX_VALUE, 7).size());
+        assertEquals(7, join(1, 7).size());
+    }
+
+    @Test
+    public void partition_over_memory_limit_is_partitioned_again() {
+        // Partition of 1000 keys is over limit of ~10 rows, it is spilled again till partitions fit
+        List<String> joined = new ArrayList<>();
+        try (JoinHashTable table = new JoinHashTable(columns(), columns(), 1_500)) {
+            for (long id = 0; id < 1000; id++) {
+                table.add(String.valueOf(id), new Object[]{String.valueOf(id), id});
+            }
+            for (long id = 0; id < 1000; id += 3) {
+                Object[] row = {String.valueOf(id), -id};
+                table.probe((String) row[0], row, (build, probe) -> add(joined, build, probe, Integer.MAX_VALUE));
+            }
+            table.finish((build, probe) -> add(joined, build, probe, Integer.MAX_VALUE));
+        }
+        assertEquals(334, joined.size());
+        assertEquals(334, new HashSet<>(joined).size());
+    }
+
+    @Test
+    public void rows_of_one_key_are_loaded_over_memory_limit() {
+        List<String> joined = new ArrayList<>();
+        try (JoinHashTable table = new JoinHashTable(columns(), columns(), 1)) {
+            for (long id = 0; id < 100; id++) {
+                table.add("1", new Object[]{"1", id});
+            }
+            assertFalse(table.spilled());
+            Object[] row = {"1", -1L};
+            table.probe("1", row, (build, probe) -> add(joined, build, probe, Integer.MAX_VALUE));
+        }
+        assertEquals(100, joined.size());
+    }
+
+    private List<String> join(long memoryLimit, int limit) {
+        List<String> joined = new ArrayList<>();
+        try (JoinHashTable table = new JoinHashTable(columns(), columns(), memoryLimit)) {
+            for (long id = 0; id < 100; id++) {
+                table.add(String.valueOf(id % 10), new Object[]{String.valueOf(id % 10), id});
+            }
+            assertEquals(memoryLimit == 1, table.spilled());
+            for (long id = 0; id < 50; id++) {
+                Object[] row = {String.valueOf(id % 20), -id};
+                if (!table.probe((String) row[0], row, (build, probe) -> add(joined, build, probe, limit))) {
+                    break;
+                }
+            }
+            table.finish((build, probe) -> add(joined, build, probe, limit));
+        }
+        Collections.sort(joined);
+        return joined;
+    }
+
+    private boolean add(List<String> joined, Object build, Object probe, int limit) {
+        joined.add(key.value(build) + ":" + value.value(build) + ":" + value.value(probe));
+        return joined.size() < limit;
+    }
+
+    private Map<String, ColumnReader> columns() {
+        Map<String, ColumnReader> columns = new LinkedHashMap<>();
+        columns.put("key", key);
+        columns.put("value", value);
+        return columns;
+    }
+}
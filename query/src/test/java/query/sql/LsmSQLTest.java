@@ -0,0 +1,29 @@
+package query.sql;
+
+import org.junit.jupiter.api.BeforeEach;
+import query.kv.KeyValueStore;
+import query.kv.persistent.lsm.LsmStore;
+
+import java.io.File;
+
+public class LsmSQLTest extends SimpleSQLContractTest {
+    @BeforeEach
+    public void createDB() {
+        this.db = lsm();
+    }
+
+
+    public KeyValueStore lsm() {
+        File tmpdir = new File(System.getProperty("java.io.tmpdir"), "lsm-simple-sql");
+        System.out.println("DB created at " + tmpdir.getAbsolutePath());
+        cleanFiles(tmpdir);
+        return new LsmStore(tmpdir);
+    }
+
+    private void cleanFiles(File tmpdir) {
+        tmpdir.mkdirs();
+        for (File f : tmpdir.listFiles()) {
+            f.delete();
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package query.sql;
+
+import org.junit.jupiter.api.BeforeEach;
+import query.kv.memory.offheap.OffHeapStore;
+
+public class OffHeapSQLTest extends SimpleSQLContractTest {
+    @BeforeEach
+    public void createDB() {
+        this.db = new OffHeapStore();
+    }
+}
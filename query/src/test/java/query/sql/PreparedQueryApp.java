@@ -0,0 +1,96 @@
+package query.sql;
+
+import query.kv.KeyValueFactory;
+import query.kv.KeyValueStore;
+import query.kv.SSTable;
+import query.kv.TableInfo;
+import query.kv.codec.JsonRowCodec;
+import query.tables.Order;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/*
+    Queries/sec of point lookup by indexed customer id. SQL text with literal is parsed on every query,
+    prepared query is parsed once and binds customer id to parameter. Plan lines printed by queries are discarded.
+ */
+public class PreparedQueryApp {
+
+    static final int ROWS = Integer.getInteger("rows", 100_000);
+    static final int QUERIES = Integer.getInteger("queries", 200_000);
+
+    public static void main(String[] args) {
+        KeyValueStore store = KeyValueFactory.create("memory:", true);
+        load(store.createTable(tableInfo()));
+        PreparedQuery prepared = store.prepare("select * from orders where customerid = ?");
+        long[] found = {0};
+        Consumer<SqlAPI.RowValue> counter = row -> found[0]++;
+
+        PrintStream out = System.out;
+        PrintStream discard = new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+        });
+        for (int round = 0; round < 5; round++) {
+            System.setOut(discard);
+            long start = System.nanoTime();
+            for (int query = 0; query < QUERIES; query++) {
+                new SqlAPI(store).execute("select * from orders where customerid = '" + query % ROWS + "'", counter);
+            }
+            long literal = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int query = 0; query < QUERIES; query++) {
+                prepared.execute(counter, String.valueOf(query % ROWS));
+            }
+            long bound = System.nanoTime() - start;
+            System.setOut(out);
+
+            System.out.println(String.format("literal %,10.0f queries/sec , prepared %,10.0f queries/sec , rows %s",
+                    queriesPerSec(literal), queriesPerSec(bound), found[0]));
+            found[0] = 0;
+        }
+        store.close();
+    }
+
+    private static double queriesPerSec(long nanos) {
+        return QUERIES * 1_000_000_000d / nanos;
+    }
+
+    private static void load(SSTable<Order> orders) {
+        List<Order> batch = new ArrayList<>();
+        for (int id = 0; id < ROWS; id++) {
+            batch.add(Order.of(id, String.valueOf(id), 20200901 + id % 30, "SHIPPED", 107.6d + id % 1000, 1 + id % 50));
+            if (batch.size() == SSTable.DEFAULT_BATCH_SIZE) {
+                orders.insertAll(batch);
+                batch.clear();
+            }
+        }
+        orders.insertAll(batch);
+    }
+
+    private static TableInfo<Order> tableInfo() {
+        Map<String, Function<Order, String>> indexes = new HashMap<>();
+        indexes.put("customerid", Order::customerId);
+        return new TableInfo<>("orders", cols(), indexes, new JsonRowCodec<>(Order.class), o -> String.valueOf(o.orderId()));
+    }
+
+    private static Map<String, Function<Order, Object>> cols() {
+        Map<String, Function<Order, Object>> cols = new HashMap<String, Function<Order, Object>>() {{
+            put("orderid", Order::orderId);
+            put("customerid", Order::customerId);
+            put("orderdate", Order::orderDate);
+            put("status", Order::status);
+            put("amount", Order::amount);
+            put("noofitem", Order::noOfItems);
+        }};
+        return cols;
+    }
+}
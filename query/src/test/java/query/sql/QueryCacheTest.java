@@ -0,0 +1,31 @@
+package query.sql;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public class QueryCacheTest {
+
+    @Test
+    public void text_is_normalized_outside_of_quotes() {
+        assertEquals("select * from orders where status = 'Shipped  X'",
+                QueryCache.normalize("  SELECT *\n\tFROM Orders   where status = 'Shipped  X' "));
+        assertEquals("select \"Id\" from t", QueryCache.normalize("Select \"Id\"  From T"));
+    }
+
+    @Test
+    public void least_recently_used_query_is_evicted() {
+        QueryCache cache = new QueryCache(2);
+        SqlAPI sqlAPI = new SqlAPI(null);
+        Statement first = cache.get("select * from a", text -> new Statement(sqlAPI.parseQuery(text)));
+        cache.get("select * from b", text -> new Statement(sqlAPI.parseQuery(text)));
+        assertSame(first, cache.get("SELECT * FROM a", text -> new Statement(sqlAPI.parseQuery(text))));
+        cache.get("select * from c", text -> new Statement(sqlAPI.parseQuery(text)));
+
+        assertEquals(2, cache.size());
+        assertSame(first, cache.get("select * from a", text -> new Statement(sqlAPI.parseQuery(text))));
+        assertEquals(2, cache.hits());
+        assertEquals(3, cache.misses());
+    }
+}
@@ -0,0 +1,85 @@
+package query.sql;
+
+import query.kv.KeyValueFactory;
+import query.kv.KeyValueStore;
+import query.kv.SSTable;
+import query.kv.TableInfo;
+import query.kv.codec.JsonRowCodec;
+import query.tables.Order;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/*
+    Filter cost per row of full table scan, table with schema functions only vs table with typed long & double columns,
+    typed table is scanned row at a time and in column batches. Filters match no row and limit is row count, so every row is read.
+ */
+public class ScanFilterApp {
+
+    static final int ROWS = Integer.getInteger("rows", 1_000_000);
+    static final String[] FILTERS = {
+            "orderdate=20200999 and amount=1.5",
+            "orderid between 2000000 and 3000000",
+            "amount between 1 and 2 or noofitem=99"
+    };
+
+    public static void main(String[] args) {
+        KeyValueStore store = KeyValueFactory.create("memory:", true);
+        TableInfo<Order> typed = tableInfo("typed_orders")
+                .longColumn("orderid", Order::orderId)
+                .longColumn("orderdate", Order::orderDate)
+                .longColumn("noofitem", Order::noOfItems)
+                .doubleColumn("amount", Order::amount);
+        load(store.createTable(tableInfo("orders")));
+        load(store.createTable(typed));
+
+        for (int round = 0; round < 5; round++) {
+            for (String filter : FILTERS) {
+                System.out.println(String.format("%-40s schema %5.1f ns/row , typed %5.1f ns/row , vectorized %5.1f ns/row",
+                        filter, costPerRow(new SqlAPI(store).vectorized(false), "orders", filter),
+                        costPerRow(new SqlAPI(store).vectorized(false), "typed_orders", filter),
+                        costPerRow(new SqlAPI(store).vectorized(true), "typed_orders", filter)));
+            }
+        }
+        store.close();
+    }
+
+    private static double costPerRow(SqlAPI sqlAPI, String table, String filter) {
+        long start = System.nanoTime();
+        sqlAPI.execute("select * from " + table + " where " + filter + " limit " + ROWS, row -> {
+            throw new IllegalStateException("Filter should not match " + filter);
+        });
+        return (double) (System.nanoTime() - start) / ROWS;
+    }
+
+    private static void load(SSTable<Order> orders) {
+        List<Order> batch = new ArrayList<>();
+        for (int id = 0; id < ROWS; id++) {
+            batch.add(Order.of(id, String.valueOf(id % 100_000), 20200901 + id % 30, "SHIPPED", 107.6d + id % 1000, 1 + id % 50));
+            if (batch.size() == SSTable.DEFAULT_BATCH_SIZE) {
+                orders.insertAll(batch);
+                batch.clear();
+            }
+        }
+        orders.insertAll(batch);
+    }
+
+    private static TableInfo<Order> tableInfo(String name) {
+        return new TableInfo<>(name, cols(), new HashMap<>(), new JsonRowCodec<>(Order.class), o -> String.valueOf(o.orderId()));
+    }
+
+    private static Map<String, Function<Order, Object>> cols() {
+        Map<String, Function<Order, Object>> cols = new HashMap<String, Function<Order, Object>>() {{
+            put("orderid", Order::orderId);
+            put("customerid", Order::customerId);
+            put("orderdate", Order::orderDate);
+            put("status", Order::status);
+            put("amount", Order::amount);
+            put("noofitem", Order::noOfItems);
+        }};
+        return cols;
+    }
+}
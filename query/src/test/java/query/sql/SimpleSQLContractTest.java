@@ -3,6 +3,7 @@ package query.sql;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 import query.kv.KeyValueStore;
+import query.kv.ReadView;
 import query.kv.SSTable;
 import query.tables.Order;
 
@@ -61,6 +62,30 @@ public abstract class SimpleSQLContractTest {
         assertEquals(1, returnRows.size());
     }
 
+    @Test
+    void queries_on_same_view_do_not_see_later_writes() {
+
+        SSTable<Order> orders = db.createTable("orders", Order.class, cols());
+
+        List<Order> expectedRows = asList(
+                Order.of(100, "1", 20200901, "SHIPPED", 107.6d, 5),
+                Order.of(101, "2", 20200902, "SHIPPED", 967.6d, 15)
+        );
+        expectedRows.forEach(orders::insert);
+
+        List<Order> returnRows = new ArrayList<>();
+        try (ReadView view = db.snapshot()) {
+            orders.insert(Order.of(102, "1", 20200903, "SHIPPED", 767.6d, 25));
+
+            db.execute("select * From orders", view, row -> {
+                returnRows.add(Order.of(row.getLong("orderId"), row.getString("customerId"), row.getInt("orderDate"),
+                        row.getString("status"), row.getDouble("amount"), row.getInt("noOfItem")));
+            });
+        }
+
+        assertResult(expectedRows, returnRows);
+    }
+
     @Test
     void select_rows_based_on_criteria() {
         SSTable<Order> orders = db.createTable("orders", Order.class, cols());
@@ -1,17 +1,27 @@
 package query.sql.index;
 
+import com.google.gson.Gson;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 import query.kv.KeyValueStore;
 import query.kv.SSTable;
+import query.kv.TableInfo;
+import query.sql.PreparedQuery;
+import query.sql.QueryCache;
+import query.sql.SqlAPI;
+import query.tables.Customer;
 import query.tables.Order;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
+import java.util.function.Predicate;
 
 import static java.util.Arrays.asList;
 import static java.util.Collections.sort;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public abstract class SQLIndexContractTest {
 
@@ -44,6 +54,641 @@ public abstract class SQLIndexContractTest {
 
     }
 
+    @Test
+    void select_columns_using_covering_index() {
+
+        Map<String, Function<Order, String>> indexes = new HashMap<String, Function<Order, String>>() {{
+            put("customerid", Order::customerId);
+        }};
+
+        TableInfo<Order> tableInfo = new TableInfo<>("orders", cols(), indexes, toJson, fromJson, o -> String.valueOf(o.orderId()))
+                .coveringIndex("customerid", "orderid", "customerid", "status");
+
+        SSTable<Order> orders = db.createTable(tableInfo);
+        asList(
+                Order.of(100, "1", 20200901, "SHIPPED", 107.6d, 5),
+                Order.of(101, "2", 20200902, "SHIPPED", 967.6d, 15),
+                Order.of(102, "1", 20200903, "CANCEL", 767.6d, 25)
+        ).forEach(orders::insert);
+
+        List<String> returnRows = new ArrayList<>();
+
+        db.execute("select orderid, status From orders where customerid='1' and status='SHIPPED' ", row ->
+                returnRows.add(row.getLong("orderId") + "/" + row.getString("status")));
+
+        assertEquals(asList("100/SHIPPED"), returnRows);
+    }
+
+    @Test
+    void select_records_using_composite_index_range() {
+
+        TableInfo<Order> tableInfo = new TableInfo<>("orders", cols(), new HashMap<>(), toJson, fromJson, o -> String.valueOf(o.orderId()))
+                .compositeIndex("status_date", "status", "orderdate")
+                .compositeIndex("status_items", "status", "noofitem")
+                .longColumn("orderdate", Order::orderDate)
+                .longColumn("noofitem", Order::noOfItems);
+
+        SSTable<Order> orders = db.createTable(tableInfo);
+        asList(
+                Order.of(100, "1", 20200901, "SHIPPED", 107.6d, 9),
+                Order.of(101, "2", 20200902, "SHIPPED", 967.6d, 10),
+                Order.of(102, "1", 20200903, "SHIPPED", 767.6d, 25),
+                Order.of(103, "3", 20200902, "CANCEL", 67.6d, 10)
+        ).forEach(orders::insert);
+
+        List<Long> returnRows = new ArrayList<>();
+        db.execute("select * From orders where status='SHIPPED' and orderdate between 20200901 and 20200902", row -> returnRows.add(row.getLong("orderId")));
+        sort(returnRows);
+        assertEquals(asList(100L, 101L), returnRows);
+
+        returnRows.clear();
+        db.execute("select * From orders where noofitem between 9 and 10 and status='SHIPPED'", row -> returnRows.add(row.getLong("orderId")));
+        sort(returnRows);
+        assertEquals(asList(100L, 101L), returnRows);
+    }
+
+    @Test
+    void quoted_number_on_composite_index_returns_rows_of_full_scan() {
+
+        TableInfo<Order> plain = new TableInfo<>("plain_orders", cols(), new HashMap<>(), toJson, fromJson, o -> String.valueOf(o.orderId()));
+        TableInfo<Order> indexed = new TableInfo<>("orders", cols(), new HashMap<>(), toJson, fromJson, o -> String.valueOf(o.orderId()))
+                .compositeIndex("status_date", "status", "orderdate");
+        TableInfo<Order> typed = new TableInfo<>("typed_orders", cols(), new HashMap<>(), toJson, fromJson, o -> String.valueOf(o.orderId()))
+                .compositeIndex("status_date", "status", "orderdate")
+                .longColumn("orderdate", Order::orderDate);
+        List<SSTable<Order>> tables = asList(db.createTable(plain), db.createTable(indexed), db.createTable(typed));
+        for (int id = 0; id < 40; id++) {
+            Order order = Order.of(id, String.valueOf(id), 20200901 + id % 4, id % 2 == 0 ? "SHIPPED" : "CANCEL", id, 5);
+            tables.forEach(table -> table.insert(order));
+        }
+
+        // Untyped column is indexed as string, typed column as number
+        assertPlan("select * from orders where status='SHIPPED' and orderdate='20200903'", "IndexRangeScan index=status_date from=SHIPPED.20200903 to=SHIPPED.20200903. rows=10 cost=30.0");
+        assertPlan("select * from typed_orders where status='SHIPPED' and orderdate=20200903", "IndexRangeScan index=status_date from=SHIPPED.\\w{16} to=SHIPPED.\\w{16}. rows=10 cost=30.0");
+        for (String where : asList("status='SHIPPED' and orderdate='20200903'", "status='SHIPPED' and orderdate between '20200902' and '20200903'",
+                "status='SHIPPED' and orderdate=20200903", "status='SHIPPED' and orderdate >= 20200902", "status='SHIPPED' and orderdate in ('20200901')")) {
+            List<Long> fullScan = orderIds("select * from plain_orders where " + where + " limit 100");
+            assertTrue(!fullScan.isEmpty(), where);
+            assertEquals(fullScan, orderIds("select * from orders where " + where + " limit 100"), where);
+            assertEquals(fullScan, orderIds("select * from typed_orders where " + where + " limit 100"), where);
+        }
+    }
+
+    @Test
+    void select_records_using_typed_columns() {
+
+        TableInfo<Order> tableInfo = new TableInfo<>("orders", cols(), new HashMap<>(), toJson, fromJson, o -> String.valueOf(o.orderId()))
+                .longColumn("orderid", Order::orderId)
+                .longColumn("orderdate", Order::orderDate)
+                .doubleColumn("amount", Order::amount);
+
+        SSTable<Order> orders = db.createTable(tableInfo);
+        asList(
+                Order.of(100, "1", 20200901, "SHIPPED", 107.6d, 5),
+                Order.of(101, "2", 20200902, "SHIPPED", 967.6d, 15),
+                Order.of(102, "1", 20200903, "CANCEL", 767.6d, 25)
+        ).forEach(orders::insert);
+
+        List<String> returnRows = new ArrayList<>();
+        db.execute("select * From orders where orderdate between 20200901.5 and 20200903 and amount=767.6", row ->
+                returnRows.add(row.getLong("orderId") + "/" + row.getInt("orderDate") + "/" + row.getDouble(row.ordinal("amount"))));
+        assertEquals(asList("102/20200903/767.6"), returnRows);
+
+        returnRows.clear();
+        db.execute("select * From orders where orderdate=20200902.5 or amount between 100 and 500", row -> returnRows.add(row.getString("status")));
+        assertEquals(asList("SHIPPED"), returnRows);
+
+        returnRows.clear();
+        db.execute("select * From orders where orderdate > 20200901.5 and orderdate < 20200903 and amount >= 967.6", row -> returnRows.add(String.valueOf(row.getLong("orderId"))));
+        db.execute("select * From orders where orderid in (100, 102.5, 1e30) and amount in (107.6, 1)", row -> returnRows.add(String.valueOf(row.getLong("orderId"))));
+        assertEquals(asList("101", "100"), returnRows);
+    }
+
+    @Test
+    void vectorized_scan_returns_rows_of_row_scan() {
+
+        TableInfo<Order> tableInfo = new TableInfo<>("orders", cols(), new HashMap<>(), toJson, fromJson, o -> String.valueOf(o.orderId()))
+                .longColumn("orderid", Order::orderId)
+                .longColumn("noofitem", Order::noOfItems)
+                .doubleColumn("amount", Order::amount);
+        SSTable<Order> orders = db.createTable(tableInfo);
+        List<Order> rows = new ArrayList<>();
+        for (int id = 0; id < 3000; id++) {
+            rows.add(Order.of(id, String.valueOf(id % 7), 20200901 + id % 30, id % 10 == 0 ? "CANCEL" : "SHIPPED", id % 100 + 0.5d, id % 50));
+        }
+        orders.insertAll(rows);
+
+        List<String> queries = asList(
+                "select * from orders where amount between 10 and 20.5 and noofitem > 12 limit 5000",
+                "select * from orders where orderid in (5, 2999, 1500.5) or status = 'CANCEL' and amount < 3 limit 5000",
+                "select * from orders where orderdate = 20200905 and noofitem <= 4 limit 5000",
+                "select * from orders where 2990 < orderid or customerid like '6%' and amount = 99.5 limit 5000");
+        for (String query : queries) {
+            List<Long> vectorized = orderIds(new SqlAPI(db).vectorized(true), query);
+            assertEquals(orderIds(new SqlAPI(db).vectorized(false), query), vectorized, query);
+            assertTrue(!vectorized.isEmpty(), query);
+        }
+        assertEquals(25, orderIds(new SqlAPI(db).vectorized(true), "select * from orders where noofitem = 7 limit 25").size());
+
+        String aggregate = "select status, count(*), sum(amount), avg(noofitem), min(orderid), max(amount) from orders where noofitem >= 10 group by status limit 10";
+        String[] columns = {"status", "count(*)", "sum(amount)", "avg(noofitem)", "min(orderid)", "max(amount)"};
+        assertEquals(groups(new SqlAPI(db).vectorized(false), aggregate, columns), groups(new SqlAPI(db).vectorized(true), aggregate, columns));
+        assertEquals(asList("[600, 6000.0]"), groups(new SqlAPI(db).vectorized(true), "select count(*), sum(amount) from orders where amount < 20", "count(*)", "sum(amount)"));
+    }
+
+    private static List<Long> orderIds(SqlAPI sqlAPI, String query) {
+        List<Long> returnRows = new ArrayList<>();
+        sqlAPI.execute(query, row -> returnRows.add(row.getLong("orderId")));
+        sort(returnRows);
+        return returnRows;
+    }
+
+    private static List<String> groups(SqlAPI sqlAPI, String query, String... columns) {
+        List<String> groups = new ArrayList<>();
+        sqlAPI.execute(query, row -> {
+            List<Object> values = new ArrayList<>();
+            for (String column : columns) {
+                values.add(row.getValue(column));
+            }
+            groups.add(values.toString());
+        });
+        sort(groups);
+        return groups;
+    }
+
+    @Test
+    void explain_shows_cheapest_plan() {
+
+        statsTable();
+
+        // Index of in memory store keeps rows, so it covers every query
+        assertPlan("select * from orders where status='SHIPPED'", "FullScan rows=200 cost=200.0");
+        assertPlan("select * from orders where status='CANCEL'", "(Covering)?IndexScan index=status value=CANCEL rows=10 cost=(20|30).0");
+        assertPlan("select * from orders where status='CANCEL' and customerid='7'", "(Covering)?IndexScan index=customerid value=7 rows=1 cost=1[12].0");
+        assertPlan("select * from orders where customerid='150' or status='CANCEL'",
+                "Union rows=11 cost=(31|42).0",
+                "  (Covering)?IndexScan index=customerid value=150 rows=1 cost=1[12].0",
+                "  (Covering)?IndexScan index=status value=CANCEL rows=10 cost=(20|30).0");
+        assertPlan("select * from orders where customerid='150' or amount=10.0", "FullScan rows=200 cost=200.0");
+    }
+
+    @Test
+    void or_conditions_return_rows_of_every_branch_once() {
+
+        statsTable();
+
+        List<Long> returnRows = new ArrayList<>();
+        db.execute("select * From orders where customerid='5' or status='CANCEL' or customerid='150' limit 100", row -> returnRows.add(row.getLong("orderId")));
+        sort(returnRows);
+        assertEquals(asList(0L, 1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L, 150L), returnRows);
+    }
+
+    @Test
+    void filter_on_full_scan_returns_rows_after_limit_rows_are_read() {
+
+        statsTable();
+
+        List<Long> returnRows = new ArrayList<>();
+        db.execute("select * From orders where amount=199.0", row -> returnRows.add(row.getLong("orderId")));
+        assertEquals(asList(199L), returnRows);
+    }
+
+    @Test
+    void group_by_aggregates_rows_of_every_group() {
+
+        statsTable();
+
+        Map<String, List<Object>> groups = new TreeMap<>();
+        db.execute("select status, count(*), sum(amount), avg(amount), min(orderid), max(amount) from orders group by status", row ->
+                groups.put(row.getString("status"), asList(row.getLong("count(*)"), row.getValue("sum(amount)"), row.getValue("avg(amount)"),
+                        row.getValue("min(orderid)"), row.getValue("max(amount)"))));
+
+        assertEquals(asList(10L, 45.0d, 4.5d, 0L, 9.0d), groups.get("CANCEL"));
+        assertEquals(asList(190L, 19855.0d, 104.5d, 10L, 199.0d), groups.get("SHIPPED"));
+        assertEquals(2, groups.size());
+    }
+
+    @Test
+    void having_filters_groups_of_matched_rows() {
+
+        statsTable();
+
+        List<String> returnRows = new ArrayList<>();
+        db.execute("select status, count(*) as orders from orders where amount between 0 and 99 group by status having count(*) > 10", row ->
+                returnRows.add(row.getString("status") + "/" + row.getLong("orders")));
+        assertEquals(asList("SHIPPED/90"), returnRows);
+
+        returnRows.clear();
+        db.execute("select status, count(*) as orders from orders group by status having orders < 100 or status = 'NEW'", row ->
+                returnRows.add(row.getString("status") + "/" + row.getLong("orders")));
+        assertEquals(asList("CANCEL/10"), returnRows);
+    }
+
+    @Test
+    void aggregate_without_group_by_returns_one_row() {
+
+        statsTable();
+
+        List<String> returnRows = new ArrayList<>();
+        db.execute("select count(*), sum(noofitem) as items from orders", row -> returnRows.add(row.getLong(0) + "/" + row.getValue("items")));
+        db.execute("select count(*), sum(noofitem) as items from orders where status='NEW'", row -> returnRows.add(row.getLong(0) + "/" + row.getValue("items")));
+        assertEquals(asList("200/1000", "0/null"), returnRows);
+    }
+
+    @Test
+    void groups_over_memory_limit_are_spilled() {
+
+        statsTable();
+
+        Map<String, Double> amounts = new HashMap<>();
+        new SqlAPI(db).aggregateMemory(1024).execute("select customerid, count(*), sum(amount) from orders group by customerid limit 1000", row -> {
+            assertEquals(1L, row.getLong("count(*)"));
+            amounts.put(row.getString("customerid"), row.getDouble("sum(amount)"));
+        });
+
+        assertEquals(200, amounts.size());
+        amounts.forEach((customer, amount) -> assertEquals(Double.parseDouble(customer), amount));
+    }
+
+    @Test
+    void group_by_indexed_column_reads_index_only() {
+
+        statsTable();
+
+        // Index of in memory store keeps rows, so it covers every aggregate
+        assertPlan("select status, count(*) from orders group by status",
+                "HashAggregate group=\\[status\\] aggregates=\\[count\\(\\*\\)\\]",
+                "  IndexOnlyScan index=status rows=200 cost=200.0");
+        assertPlan("select status, sum(amount) from orders group by status",
+                "HashAggregate group=\\[status\\] aggregates=\\[sum\\(amount\\)\\]",
+                "  (FullScan|IndexOnlyScan index=status) rows=200 cost=200.0");
+        assertPlan("select status, count(*) from orders where customerid='7' group by status",
+                "HashAggregate group=\\[status\\] aggregates=\\[count\\(\\*\\)\\]",
+                "  (Covering)?IndexScan index=customerid value=7 rows=1 cost=1[12].0");
+
+        Map<String, Long> counts = new TreeMap<>();
+        db.execute("select status, count(*) from orders group by status", row -> counts.put(row.getString("status"), row.getLong(1)));
+        assertEquals("{CANCEL=10, SHIPPED=190}", counts.toString());
+    }
+
+    @Test
+    void group_by_indexed_numeric_column_returns_numbers() {
+
+        Map<String, Function<Order, String>> indexes = new HashMap<String, Function<Order, String>>() {{
+            put("orderdate", o -> String.valueOf(o.orderDate()));
+        }};
+        SSTable<Order> orders = db.createTable(new TableInfo<>("orders", cols(), indexes, toJson, fromJson, o -> String.valueOf(o.orderId())));
+        for (int id = 0; id < 30; id++) {
+            orders.insert(Order.of(id, String.valueOf(id), 20200901 + id % 3, "SHIPPED", id, 5));
+        }
+
+        // Index key holds string of number, group value is read from one row of every value
+        assertPlan("select orderdate, count(*) as c from orders group by orderdate",
+                "HashAggregate group=\\[orderdate\\] aggregates=\\[count\\(\\*\\)\\]",
+                "  IndexOnlyScan index=orderdate rows=30 cost=30.0");
+
+        Map<Long, Long> counts = new TreeMap<>();
+        db.execute("select orderdate, count(*) as c from orders group by orderdate", row -> counts.put(row.getLong("orderdate"), row.getLong("c")));
+        assertEquals("{20200901=10, 20200902=10, 20200903=10}", counts.toString());
+    }
+
+    @Test
+    void range_operators_filter_rows() {
+
+        statsTable();
+
+        assertEquals(asList(196L, 197L, 198L, 199L), orderIds("select * From orders where amount > 195 limit 100"));
+        assertEquals(asList(198L), orderIds("select * From orders where amount >= 198 and orderid < 199"));
+        assertEquals(asList(0L, 1L, 2L, 3L, 4L), orderIds("select * From orders where 5 > orderid limit 100"));
+        assertEquals(asList(0L, 1L, 2L), orderIds("select * From orders where amount < 2.5 limit 100"));
+        assertEquals(asList(3L, 4L), orderIds("select * From orders where orderid in (3, 4, 500)"));
+    }
+
+    @Test
+    void range_of_indexed_column_reads_index_range() {
+
+        statsTable();
+
+        assertPlan("select * from orders where customerid between '150' and '152'", "IndexRangeScan index=customerid from=150 to=152\\\\0 rows=50 cost=110.0");
+        assertPlan("select * from orders where customerid >= '198'", "IndexRangeScan index=customerid from=198 rows=50 cost=110.0");
+        assertPlan("select * from orders where amount >= 198", "FullScan rows=200 cost=200.0");
+
+        assertEquals(asList(150L, 151L, 152L), orderIds("select * From orders where customerid between '150' and '152'"));
+        assertEquals(asList(198L), orderIds("select * From orders where customerid > '197' and customerid < '199'"));
+        assertEquals(asList(0L), orderIds("select * From orders where customerid < '1'"));
+        assertEquals(90, orderIds("select * From orders where customerid >= '198' limit 100").size());
+    }
+
+    @Test
+    void in_list_seeks_every_value_in_key_order() {
+
+        statsTable();
+
+        assertPlan("select * from orders where customerid in ('7', '150', '15', '1')", "IndexScan index=customerid values=\\[1, 15, 150, 7\\] rows=\\d+ cost=\\d+.0");
+
+        List<Long> returnRows = new ArrayList<>();
+        db.execute("select * From orders where customerid in ('7', '150', '15', '1')", row -> returnRows.add(row.getLong("orderId")));
+        assertEquals(asList(1L, 15L, 150L, 7L), returnRows);
+
+        assertEquals(10, orderIds("select * From orders where status in ('CANCEL', 'NEW') limit 100").size());
+    }
+
+    @Test
+    void like_prefix_reads_index_prefix() {
+
+        statsTable();
+
+        assertPlan("select * from orders where status like 'CAN%'", "(Covering)?IndexScan index=status prefix=CAN rows=50 cost=(60|110).0");
+
+        assertEquals(10, orderIds("select * From orders where status like 'CAN%' limit 100").size());
+        assertEquals(190, orderIds("select * From orders where status like '%IP%ED' limit 1000").size());
+        assertEquals(asList(109L, 119L, 129L, 139L, 149L, 159L, 169L, 179L, 189L, 199L), orderIds("select * From orders where customerid like '1_9' limit 100"));
+    }
+
+    @Test
+    void prepared_query_binds_parameters_on_every_execution() {
+
+        statsTable();
+
+        PreparedQuery byCustomer = db.prepare("select * From orders where customerid = ? and status = ?");
+        assertEquals(2, byCustomer.parameterCount());
+        assertEquals(asList(7L), orderIds(byCustomer, "7", "CANCEL"));
+        assertEquals(asList(150L), orderIds(byCustomer, 150, "SHIPPED"));
+        assertEquals(asList(), orderIds(byCustomer, "150", "CANCEL"));
+
+        assertEquals(asList(3L, 4L, 5L), orderIds(db.prepare("select * From orders where orderid between ? and ? limit ?"), 3, 5, 100));
+        assertEquals(asList(1L, 15L), orderIds(db.prepare("select * From orders where customerid in (?, '15', ?)"), "1", "1000"));
+        assertEquals(asList(198L, 199L), orderIds(db.prepare("select * From orders where ? < orderid limit 100"), 197));
+    }
+
+    @Test
+    void prepared_query_needs_value_for_every_parameter() {
+
+        statsTable();
+
+        PreparedQuery byCustomer = db.prepare("select * From orders where customerid = ?");
+        assertThrows(IllegalArgumentException.class, () -> orderIds(byCustomer));
+        assertThrows(IllegalArgumentException.class, () -> orderIds(byCustomer, "1", "2"));
+        assertThrows(IllegalArgumentException.class, () -> orderIds(byCustomer, (Object) null));
+    }
+
+    @Test
+    void query_text_is_parsed_once_until_table_is_created() {
+
+        statsTable();
+        QueryCache cache = db.queryCache();
+
+        assertEquals(asList(7L), orderIds("select * From orders where customerid = '7'"));
+        assertEquals(asList(7L), orderIds("SELECT *   from ORDERS where customerid = '7'"));
+        assertEquals(asList(), orderIds("select * From orders where customerid = 'a7'"));
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.hits());
+
+        db.createTable("customers", Order.class, cols());
+        assertEquals(0, cache.size());
+        assertEquals(asList(7L), orderIds("select * From orders where customerid = '7'"));
+        assertEquals(1, cache.hits());
+    }
+
+    @Test
+    void join_reads_inner_rows_by_pk() {
+
+        joinTables(false, true);
+
+        String query = "select o.orderid, c.customername from orders o join customers c on o.customerid = c.customerid"
+                + " where c.city = 'London' and o.amount >= 50 limit 500";
+        assertEquals(expectedJoin(order -> order.amount() >= 50, customer -> customer.city().equals("London")), joined(new SqlAPI(db), query));
+
+        List<String> qualified = new ArrayList<>();
+        db.execute(query, row -> qualified.add(row.getLong("o.orderid") + ":" + row.getString("c.customername") + ":" + row.getString("customers.city")));
+        assertEquals(expectedJoin(order -> order.amount() >= 50, customer -> customer.city().equals("London")).size(), qualified.size());
+        assertTrue(qualified.stream().allMatch(row -> row.endsWith(":London")), qualified.toString());
+        assertPlan(query, "IndexJoin inner=customers pk rows=\\d+ cost=[\\d.]+", "  FullScan rows=200 cost=200.0");
+    }
+
+    @Test
+    void join_reads_inner_rows_by_index() {
+
+        joinTables(true, false);
+
+        String query = "select orders.orderid, customers.customername from customers join orders on customers.customerid = orders.customerid"
+                + " where city = 'Paris' and noofitem = 3 limit 500";
+        assertEquals(expectedJoin(order -> order.noOfItems() == 3, customer -> customer.city().equals("Paris")), joined(new SqlAPI(db), query));
+        assertPlan(query, "IndexJoin inner=orders index=customerid rows=\\d+ cost=[\\d.]+", "  FullScan rows=20 cost=20.0");
+    }
+
+    @Test
+    void join_without_index_builds_hash_table_of_smaller_table() {
+
+        joinTables(false, false);
+
+        String query = "select * from orders o join customers c on c.customerid = o.customerid where o.status = 'SHIPPED' limit 500";
+        List<String> expected = expectedJoin(order -> order.status().equals("SHIPPED"), customer -> true);
+        assertEquals(expected, joined(new SqlAPI(db), query));
+        assertEquals(expected, joined(new SqlAPI(db).vectorized(false), query));
+        assertPlan(query, "HashJoin build=customers rows=200 cost=220.0", "  FullScan rows=20 cost=20.0", "  FullScan rows=200 cost=200.0");
+
+        List<String> limited = joined(new SqlAPI(db), "select * from orders o join customers c on c.customerid = o.customerid limit 7");
+        assertEquals(7, limited.size());
+        assertThrows(RuntimeException.class, () -> db.execute("select * from orders o left join customers c on c.customerid = o.customerid", row -> {
+        }));
+        assertThrows(RuntimeException.class, () -> db.execute("select * from orders o join customers c on c.customerid = o.customerid where o.status = c.city", row -> {
+        }));
+    }
+
+    @Test
+    void hash_join_over_memory_limit_is_spilled() {
+
+        joinTables(false, false);
+
+        String query = "select o.orderid, c.customername from orders o join customers c on o.customerid = c.customerid limit 500";
+        assertEquals(expectedJoin(order -> true, customer -> true), joined(new SqlAPI(db).joinMemory(1_000), query));
+        assertEquals(3, joined(new SqlAPI(db).joinMemory(1_000), "select o.orderid, c.customername from orders o join customers c on o.customerid = c.customerid limit 3").size());
+    }
+
+    @Test
+    void index_join_limit_stops_scan_of_outer_table() {
+        assertJoinStopsAtLimit(true);
+    }
+
+    @Test
+    void hash_join_limit_stops_probe_scan() {
+        assertJoinStopsAtLimit(false);
+    }
+
+    // Filter of orders is tested on every row read by row at a time scan, scan of 200 orders stops after 7 joined rows
+    private void assertJoinStopsAtLimit(boolean customerPk) {
+        AtomicInteger reads = new AtomicInteger();
+        Map<String, Function<Order, Object>> orderCols = cols();
+        orderCols.put("noofitem", order -> {
+            reads.incrementAndGet();
+            return order.noOfItems();
+        });
+        joinTables(false, customerPk, orderCols);
+
+        String query = "select o.orderid, c.customername from orders o join customers c on o.customerid = c.customerid where o.noofitem >= 0 limit 7";
+        reads.set(0);
+        assertEquals(7, joined(new SqlAPI(db).vectorized(false), query).size());
+        assertTrue(reads.get() < 20, "Orders read by join " + reads);
+        assertEquals(7, joined(new SqlAPI(db), query).size());
+    }
+
+    @Test
+    void bitmap_indexes_evaluate_and_or_not_before_rows_are_read() {
+
+        bitmapTable();
+
+        assertPlan("select * from orders where status='CANCEL' and noofitem=3", "BitmapScan indexes=\\[(noofitem, status|status, noofitem)\\] rows=10 cost=30.0");
+        assertPlan("select * from orders where not (status='CANCEL' or noofitem < 2)", "BitmapScan indexes=\\[.*\\] rows=90 cost=190.0");
+        assertPlan("select * from orders where amount < 10 or status='CANCEL'", "FullScan rows=200 cost=200.0");
+
+        assertEquals(bitmapRows(o -> o.status().equals("CANCEL")), orderIds("select * from orders where status='CANCEL' limit 1000"));
+        assertEquals(bitmapRows(o -> o.status().equals("CANCEL") && o.noOfItems() == 3), orderIds("select * from orders where status='CANCEL' and noofitem=3"));
+        assertEquals(bitmapRows(o -> o.status().equals("CANCEL") || o.noOfItems() == 3), orderIds("select * from orders where status='CANCEL' or noofitem=3 limit 1000"));
+        assertEquals(bitmapRows(o -> !(o.status().equals("CANCEL") || o.noOfItems() < 2)), orderIds("select * from orders where not (status='CANCEL' or noofitem < 2) limit 1000"));
+        assertEquals(bitmapRows(o -> !o.status().equals("NEW") && (o.noOfItems() == 1 || o.noOfItems() == 2)), orderIds("select * from orders where status <> 'NEW' and noofitem in (1, 2) limit 1000"));
+        assertEquals(bitmapRows(o -> !o.status().startsWith("N")), orderIds("select * from orders where status not like 'N%' limit 1000"));
+        // Bitmap of AND side of other column has rows that do not match, rows are filtered when read
+        assertEquals(bitmapRows(o -> !asList("NEW", "SHIPPED").contains(o.status()) && o.amount() < 50), orderIds("select * from orders where status not in ('NEW', 'SHIPPED') and amount < 50 limit 1000"));
+    }
+
+    @Test
+    void bitmap_indexes_follow_updates_and_deletes() {
+
+        SSTable<Order> orders = bitmapTable();
+        orders.update(Order.of(0, "0", 20200901, "CANCEL", 0, 0));
+        orders.insert(Order.of(1, "1", 20200901, "CANCEL", 1, 1));
+        orders.delete("2");
+        orders.insert(Order.of(500, "500", 20200901, "CANCEL", 500, 0));
+
+        assertEquals(asList(0L, 1L, 6L, 10L, 14L, 18L, 500L), orderIds("select * from orders where status='CANCEL' and orderid < 20 or status='CANCEL' and orderid = 500 limit 1000"));
+        assertEquals(asList(0L, 10L, 500L), orderIds("select * from orders where status='CANCEL' and noofitem=0 and orderid < 20 or orderid = 500 limit 1000"));
+        assertEquals(asList(4L, 8L, 12L, 16L), orderIds("select * from orders where status='NEW' and orderid < 20 limit 1000"));
+        assertEquals(49, orderIds("select * from orders where status='NEW' limit 1000").size());
+    }
+
+    // 200 orders of 4 status & 5 item counts, both bitmap indexed
+    private SSTable<Order> bitmapTable() {
+        TableInfo<Order> tableInfo = new TableInfo<>("orders", cols(), new HashMap<>(), toJson, fromJson, o -> String.valueOf(o.orderId()))
+                .bitmapIndex("status")
+                .bitmapIndex("noofitem");
+        SSTable<Order> orders = db.createTable(tableInfo);
+        orders.insertAll(bitmapOrders());
+        return orders;
+    }
+
+    private static List<Order> bitmapOrders() {
+        List<String> status = asList("NEW", "SHIPPED", "CANCEL", "RETURNED");
+        List<Order> orders = new ArrayList<>();
+        for (int id = 0; id < 200; id++) {
+            orders.add(Order.of(id, String.valueOf(id), 20200901, status.get(id % 4), id, id % 5));
+        }
+        return orders;
+    }
+
+    private static List<Long> bitmapRows(Predicate<Order> filter) {
+        List<Long> rows = new ArrayList<>();
+        bitmapOrders().stream().filter(filter).forEach(o -> rows.add(o.orderId()));
+        return rows;
+    }
+
+    // 20 customers of London & Paris, 200 orders of 25 customer ids so orders of 5 ids have no customer
+    private void joinTables(boolean orderIndex, boolean customerPk) {
+        joinTables(orderIndex, customerPk, cols());
+    }
+
+    private void joinTables(boolean orderIndex, boolean customerPk, Map<String, Function<Order, Object>> orderCols) {
+        Map<String, Function<Order, String>> indexes = new HashMap<>();
+        if (orderIndex) {
+            indexes.put("customerid", Order::customerId);
+        }
+        SSTable<Order> orders = db.createTable(new TableInfo<>("orders", orderCols, indexes, toJson, fromJson, o -> String.valueOf(o.orderId())));
+        orders.insertAll(joinOrders());
+
+        Map<String, Function<Customer, Object>> customerCols = new HashMap<String, Function<Customer, Object>>() {{
+            put("customerid", Customer::customerId);
+            put("customername", Customer::customerName);
+            put("city", Customer::city);
+        }};
+        TableInfo<Customer> customerInfo = new TableInfo<>("customers", customerCols, new HashMap<>(),
+                row -> new Gson().toJson(row).getBytes(), rawBytes -> new Gson().fromJson(new String(rawBytes), Customer.class), Customer::customerId);
+        SSTable<Customer> customers = db.createTable(customerPk ? customerInfo.pkColumn("customerid") : customerInfo);
+        customers.insertAll(joinCustomers());
+    }
+
+    private static List<Order> joinOrders() {
+        List<Order> orders = new ArrayList<>();
+        for (int id = 0; id < 200; id++) {
+            orders.add(Order.of(id, String.valueOf(id % 25), 20200901, id % 3 == 0 ? "CANCEL" : "SHIPPED", id, id % 5));
+        }
+        return orders;
+    }
+
+    private static List<Customer> joinCustomers() {
+        List<Customer> customers = new ArrayList<>();
+        for (int id = 0; id < 20; id++) {
+            customers.add(Customer.of(String.valueOf(id), "customer-" + id, id % 2 == 0 ? "London" : "Paris"));
+        }
+        return customers;
+    }
+
+    private static List<String> expectedJoin(Predicate<Order> orderFilter, Predicate<Customer> customerFilter) {
+        List<String> joined = new ArrayList<>();
+        for (Order order : joinOrders()) {
+            for (Customer customer : joinCustomers()) {
+                if (order.customerId().equals(customer.customerId()) && orderFilter.test(order) && customerFilter.test(customer)) {
+                    joined.add(order.orderId() + ":" + customer.customerName());
+                }
+            }
+        }
+        sort(joined);
+        return joined;
+    }
+
+    private static List<String> joined(SqlAPI sqlAPI, String query) {
+        List<String> joined = new ArrayList<>();
+        sqlAPI.execute(query, row -> joined.add(row.getLong("orderid") + ":" + row.getString("customername")));
+        sort(joined);
+        return joined;
+    }
+
+    private List<Long> orderIds(PreparedQuery query, Object... params) {
+        List<Long> returnRows = new ArrayList<>();
+        query.execute(row -> returnRows.add(row.getLong("orderId")), params);
+        sort(returnRows);
+        return returnRows;
+    }
+
+    private List<Long> orderIds(String query) {
+        List<Long> returnRows = new ArrayList<>();
+        db.execute(query, row -> returnRows.add(row.getLong("orderId")));
+        sort(returnRows);
+        return returnRows;
+    }
+
+    // 200 orders, 10 of them CANCEL
+    private SSTable<Order> statsTable() {
+        Map<String, Function<Order, String>> indexes = new HashMap<String, Function<Order, String>>() {{
+            put("status", Order::status);
+            put("customerid", Order::customerId);
+        }};
+        TableInfo<Order> tableInfo = new TableInfo<>("orders", cols(), indexes, toJson, fromJson, o -> String.valueOf(o.orderId()));
+        SSTable<Order> orders = db.createTable(tableInfo);
+        for (int id = 0; id < 200; id++) {
+            orders.insert(Order.of(id, String.valueOf(id), 20200901, id < 10 ? "CANCEL" : "SHIPPED", id, 5));
+        }
+        return orders;
+    }
+
+    private void assertPlan(String query, String... lines) {
+        List<String> plan = new ArrayList<>();
+        db.execute("explain plan for " + query, row -> plan.add(row.getString("plan")));
+        assertEquals(lines.length, plan.size(), plan.toString());
+        for (int line = 0; line < lines.length; line++) {
+            assertTrue(plan.get(line).matches(lines[line]), plan.get(line) + " does not match " + lines[line]);
+        }
+    }
+
     private void assertResult(List<Order> expectedRows, List<Order> actualRows) {
         sort(expectedRows, Comparator.comparing(Order::orderId));
         sort(actualRows, Comparator.comparing(Order::orderId));
@@ -51,6 +696,9 @@ public abstract class SQLIndexContractTest {
     }
 
 
+    Function<Order, byte[]> toJson = row -> new Gson().toJson(row).getBytes();
+    Function<byte[], Order> fromJson = rawBytes -> new Gson().fromJson(new String(rawBytes), Order.class);
+
     private Map<String, Function<Order, Object>> cols() {
         Map<String, Function<Order, Object>> cols = new HashMap<String, Function<Order, Object>>() {{
             put("orderid", Order::orderId);
@@ -0,0 +1,49 @@
+package query.tables;
+
+import java.util.Objects;
+
+public class Customer {
+    private final String customerId;
+    private final String customerName;
+    private final String city;
+
+    public Customer(String customerId, String customerName, String city) {
+        this.customerId = customerId;
+        this.customerName = customerName;
+        this.city = city;
+    }
+
+    public static Customer of(String customerId, String customerName, String city) {
+        return new Customer(customerId, customerName, city);
+    }
+
+    public String customerId() {
+        return customerId;
+    }
+
+    public String customerName() {
+        return customerName;
+    }
+
+    public String city() {
+        return city;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("CustomerId:%s; customerName:%s; city:%s", customerId, customerName, city);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        Customer customer = (Customer) o;
+        return customerId.equals(customer.customerId);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(customerId);
+    }
+}